@@ -48,6 +48,8 @@ public class AccessParameters {
 
     private byte[] serializedToken; //Required only by spring oauth2
 
+    private long version; // incremented whenever the serialized token is replaced, to detect concurrent refreshes
+
     public String getId() {
         return id;
     }
@@ -137,4 +139,12 @@ public class AccessParameters {
     public void setSerializedToken(byte[] serializedToken) {
         this.serializedToken = serializedToken;
     }
+
+    public long getVersion() {
+        return version;
+    }
+
+    public void setVersion(long version) {
+        this.version = version;
+    }
 }
@@ -0,0 +1,189 @@
+/*
+ * Copyright 2017 Open mHealth
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.openmhealth.shim;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.SerializableString;
+import com.fasterxml.jackson.core.json.JsonGeneratorImpl;
+import com.fasterxml.jackson.databind.JsonSerializable;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.jsontype.TypeSerializer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+
+/**
+ * A JSON document that is passed through as is, e.g. a data provider response that isn't normalized. When it is
+ * written as JSON, it is copied into the output as a raw value without being parsed. When it is written in
+ * another format, e.g. Smile or CBOR, it is streamed token by token into the output without building a tree.
+ */
+public class RawJson implements JsonSerializable {
+
+    private static final JsonFactory jsonFactory = new JsonFactory();
+
+    private final byte[] content;
+
+
+    /**
+     * @param content the UTF-8 encoded JSON document, which is trusted to be well-formed
+     */
+    public RawJson(byte[] content) {
+
+        checkNotNull(content);
+
+        this.content = content;
+    }
+
+    public byte[] getContent() {
+        return content;
+    }
+
+    @Override
+    public void serialize(JsonGenerator generator, SerializerProvider serializers) throws IOException {
+
+        // a generator that writes bytes copies the content straight into its output, while a generator that writes
+        // characters decodes it once, and both write the separator that precedes the value
+        if (generator instanceof JsonGeneratorImpl) {
+            generator.writeRawValue(new RawContent());
+            return;
+        }
+
+        try (JsonParser parser = jsonFactory.createParser(content)) {
+            parser.nextToken();
+            generator.copyCurrentStructure(parser);
+        }
+    }
+
+    @Override
+    public void serializeWithType(JsonGenerator generator, SerializerProvider serializers, TypeSerializer typeSer)
+            throws IOException {
+
+        serialize(generator, serializers);
+    }
+
+    @Override
+    public String toString() {
+        return new String(content, UTF_8);
+    }
+
+
+    /**
+     * The content as a string that is only ever written unquoted, which lets a byte-based generator write the content
+     * without decoding it.
+     */
+    private class RawContent implements SerializableString {
+
+        @Override
+        public String getValue() {
+            return RawJson.this.toString();
+        }
+
+        @Override
+        public int charLength() {
+            return getValue().length();
+        }
+
+        @Override
+        public byte[] asUnquotedUTF8() {
+            return content;
+        }
+
+        @Override
+        public int appendUnquotedUTF8(byte[] buffer, int offset) {
+
+            if (offset + content.length > buffer.length) {
+                return -1;
+            }
+
+            System.arraycopy(content, 0, buffer, offset, content.length);
+
+            return content.length;
+        }
+
+        @Override
+        public int appendUnquoted(char[] buffer, int offset) {
+
+            String value = getValue();
+
+            if (offset + value.length() > buffer.length) {
+                return -1;
+            }
+
+            value.getChars(0, value.length(), buffer, offset);
+
+            return value.length();
+        }
+
+        @Override
+        public int writeUnquotedUTF8(OutputStream outputStream) throws IOException {
+
+            outputStream.write(content);
+
+            return content.length;
+        }
+
+        @Override
+        public int putUnquotedUTF8(ByteBuffer buffer) {
+
+            if (content.length > buffer.remaining()) {
+                return -1;
+            }
+
+            buffer.put(content);
+
+            return content.length;
+        }
+
+        @Override
+        public char[] asQuotedChars() {
+            throw new UnsupportedOperationException("Raw JSON is never quoted.");
+        }
+
+        @Override
+        public byte[] asQuotedUTF8() {
+            throw new UnsupportedOperationException("Raw JSON is never quoted.");
+        }
+
+        @Override
+        public int appendQuotedUTF8(byte[] buffer, int offset) {
+            throw new UnsupportedOperationException("Raw JSON is never quoted.");
+        }
+
+        @Override
+        public int appendQuoted(char[] buffer, int offset) {
+            throw new UnsupportedOperationException("Raw JSON is never quoted.");
+        }
+
+        @Override
+        public int writeQuotedUTF8(OutputStream outputStream) {
+            throw new UnsupportedOperationException("Raw JSON is never quoted.");
+        }
+
+        @Override
+        public int putQuotedUTF8(ByteBuffer buffer) {
+            throw new UnsupportedOperationException("Raw JSON is never quoted.");
+        }
+    }
+}
@@ -16,7 +16,10 @@
 
 package org.openmhealth.shim;
 
+import org.openmhealth.shim.common.mapper.IntradayTimeSeriesRollup;
+
 import java.time.OffsetDateTime;
+import java.util.Optional;
 
 
 /**
@@ -52,6 +55,18 @@ public class ShimDataRequest {
      */
     private boolean normalize = true;
 
+    /**
+     * If true, normalized intraday time series are returned as compact columnar time series instead of data points,
+     * if the shim supports it for the requested data type.
+     */
+    private boolean columnarTimeSeries = false;
+
+    /**
+     * If set, normalized intraday time series are rolled up into coarser buckets, if the shim supports it for the
+     * requested data type.
+     */
+    private IntradayTimeSeriesRollup rollup;
+
     public OffsetDateTime getStartDateTime() {
 
         return startDateTime;
@@ -101,4 +116,33 @@ public class ShimDataRequest {
 
         this.normalize = normalize;
     }
+
+    public boolean getColumnarTimeSeries() {
+
+        return columnarTimeSeries;
+    }
+
+    public void setColumnarTimeSeries(boolean columnarTimeSeries) {
+
+        this.columnarTimeSeries = columnarTimeSeries;
+    }
+
+    public Optional<IntradayTimeSeriesRollup> getRollup() {
+
+        return Optional.ofNullable(rollup);
+    }
+
+    public void setRollup(IntradayTimeSeriesRollup rollup) {
+
+        this.rollup = rollup;
+    }
+
+    /**
+     * @return true if normalized intraday data has to be mapped through an intraday time series, i.e. if columnar time
+     * series or a rollup are requested
+     */
+    public boolean requiresIntradayTimeSeries() {
+
+        return columnarTimeSeries || rollup != null;
+    }
 }
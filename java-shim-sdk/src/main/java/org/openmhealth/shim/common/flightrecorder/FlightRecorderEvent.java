@@ -0,0 +1,103 @@
+/*
+ * Copyright 2017 Open mHealth
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.openmhealth.shim.common.flightrecorder;
+
+import java.lang.invoke.MethodHandle;
+
+import static org.openmhealth.shim.common.flightrecorder.FlightRecorderEventType.*;
+
+
+/**
+ * The base class of the Java Flight Recorder events emitted by the shims. It mirrors the lifecycle of a
+ * <code>jdk.jfr.Event</code>, to which it delegates when the runtime includes Flight Recorder. Otherwise every method
+ * does nothing.
+ */
+public abstract class FlightRecorderEvent {
+
+    private final Object event;
+
+
+    FlightRecorderEvent(FlightRecorderEventType eventType) {
+
+        this.event = eventType.newEvent();
+    }
+
+    public void begin() {
+
+        invoke(BEGIN);
+    }
+
+    public void end() {
+
+        invoke(END);
+    }
+
+    /**
+     * @return true if the event is going to be recorded when it's committed, so that fields can be left unpopulated
+     * otherwise
+     */
+    public boolean shouldCommit() {
+
+        if (event == null) {
+            return false;
+        }
+
+        try {
+            return (boolean) SHOULD_COMMIT.invoke(event);
+        }
+        catch (Throwable throwable) {
+            throw new IllegalStateException("A Flight Recorder event couldn't be checked.", throwable);
+        }
+    }
+
+    public void commit() {
+
+        invoke(COMMIT);
+    }
+
+    /**
+     * @param index the index of the field, as defined by the event type
+     * @param value the value of the field
+     */
+    void set(int index, Object value) {
+
+        if (event == null) {
+            return;
+        }
+
+        try {
+            SET.invoke(event, index, value);
+        }
+        catch (Throwable throwable) {
+            throw new IllegalStateException("A Flight Recorder event field couldn't be set.", throwable);
+        }
+    }
+
+    private void invoke(MethodHandle method) {
+
+        if (event == null) {
+            return;
+        }
+
+        try {
+            method.invoke(event);
+        }
+        catch (Throwable throwable) {
+            throw new IllegalStateException("A Flight Recorder event couldn't be updated.", throwable);
+        }
+    }
+}
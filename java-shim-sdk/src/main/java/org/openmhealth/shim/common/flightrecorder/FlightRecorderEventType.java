@@ -0,0 +1,217 @@
+/*
+ * Copyright 2017 Open mHealth
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.openmhealth.shim.common.flightrecorder;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.annotation.Annotation;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.reflect.Constructor;
+import java.util.ArrayList;
+import java.util.List;
+
+import static java.lang.invoke.MethodType.methodType;
+
+
+/**
+ * A Java Flight Recorder event type that is defined at runtime through the <code>jdk.jfr</code> API, if the runtime
+ * has one. Referring to that API only reflectively keeps the shims running on Java 8 runtimes that don't include
+ * Flight Recorder, where events of the type simply do nothing.
+ */
+final class FlightRecorderEventType {
+
+    private static final Logger logger = LoggerFactory.getLogger(FlightRecorderEventType.class);
+
+    private static final String[] CATEGORY = {"Open mHealth", "Shimmer"};
+
+    // the jdk.jfr.Event methods, or null if the runtime doesn't include Flight Recorder
+    static final MethodHandle BEGIN;
+    static final MethodHandle END;
+    static final MethodHandle SHOULD_COMMIT;
+    static final MethodHandle COMMIT;
+    static final MethodHandle SET;
+
+    static {
+
+        MethodHandle begin = null;
+        MethodHandle end = null;
+        MethodHandle shouldCommit = null;
+        MethodHandle commit = null;
+        MethodHandle set = null;
+
+        try {
+            Class<?> eventClass = Class.forName("jdk.jfr.Event");
+            MethodHandles.Lookup lookup = MethodHandles.publicLookup();
+
+            begin = lookup.findVirtual(eventClass, "begin", methodType(void.class));
+            end = lookup.findVirtual(eventClass, "end", methodType(void.class));
+            shouldCommit = lookup.findVirtual(eventClass, "shouldCommit", methodType(boolean.class));
+            commit = lookup.findVirtual(eventClass, "commit", methodType(void.class));
+            set = lookup.findVirtual(eventClass, "set", methodType(void.class, int.class, Object.class));
+        }
+        catch (ReflectiveOperationException e) {
+            logger.info("Java Flight Recorder isn't available, so no Shimmer events will be recorded.");
+        }
+
+        BEGIN = begin;
+        END = end;
+        SHOULD_COMMIT = shouldCommit;
+        COMMIT = commit;
+        SET = set;
+    }
+
+    private final MethodHandle newEvent;
+
+
+    /**
+     * @param name the name of the event type
+     * @param label the human-readable name of the event type
+     * @param description the description of the event type
+     * @param fields the fields of the event type, in the order of their indices
+     */
+    FlightRecorderEventType(String name, String label, String description, Field... fields) {
+
+        this.newEvent = BEGIN != null ? newEventFactoryHandle(name, label, description, fields) : null;
+    }
+
+    /**
+     * @return a new event of this type, or null if events of this type aren't recorded
+     */
+    Object newEvent() {
+
+        if (newEvent == null) {
+            return null;
+        }
+
+        try {
+            return newEvent.invoke();
+        }
+        catch (Throwable throwable) {
+            throw new IllegalStateException("A Flight Recorder event couldn't be created.", throwable);
+        }
+    }
+
+    /**
+     * @return true if events of this type are recorded, false if they do nothing
+     */
+    boolean isRecorded() {
+        return newEvent != null;
+    }
+
+    /**
+     * @return a handle that creates events of the type, or null if the type couldn't be defined
+     */
+    private static MethodHandle newEventFactoryHandle(String name, String label, String description,
+            Field... fields) {
+
+        try {
+            List<Object> annotationElements = new ArrayList<>();
+
+            annotationElements.add(newAnnotationElement("Name", name));
+            annotationElements.add(newAnnotationElement("Label", label));
+            annotationElements.add(newAnnotationElement("Category", CATEGORY));
+            annotationElements.add(newAnnotationElement("Description", description));
+            annotationElements.add(newAnnotationElement("StackTrace", false));
+
+            Class<?> valueDescriptorClass = Class.forName("jdk.jfr.ValueDescriptor");
+            Constructor<?> valueDescriptorConstructor =
+                    valueDescriptorClass.getConstructor(Class.class, String.class, List.class);
+
+            List<Object> valueDescriptors = new ArrayList<>();
+
+            for (Field field : fields) {
+
+                List<Object> fieldAnnotationElements = new ArrayList<>();
+
+                fieldAnnotationElements.add(newAnnotationElement("Label", field.label));
+
+                if (field.description != null) {
+                    fieldAnnotationElements.add(newAnnotationElement("Description", field.description));
+                }
+                if (field.dataAmount) {
+                    fieldAnnotationElements.add(newAnnotationElement("DataAmount", "BYTES"));
+                }
+
+                valueDescriptors.add(
+                        valueDescriptorConstructor.newInstance(field.type, field.name, fieldAnnotationElements));
+            }
+
+            Class<?> eventFactoryClass = Class.forName("jdk.jfr.EventFactory");
+
+            Object eventFactory = eventFactoryClass.getMethod("create", List.class, List.class)
+                    .invoke(null, annotationElements, valueDescriptors);
+
+            return MethodHandles.publicLookup()
+                    .findVirtual(eventFactoryClass, "newEvent", methodType(Class.forName("jdk.jfr.Event")))
+                    .bindTo(eventFactory);
+        }
+        catch (ReflectiveOperationException | RuntimeException e) {
+            logger.warn("The Flight Recorder event type '{}' couldn't be defined, so it won't be recorded.", name, e);
+            return null;
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Object newAnnotationElement(String annotationName, Object value)
+            throws ReflectiveOperationException {
+
+        Class<? extends Annotation> annotationClass =
+                (Class<? extends Annotation>) Class.forName("jdk.jfr." + annotationName);
+
+        return Class.forName("jdk.jfr.AnnotationElement")
+                .getConstructor(Class.class, Object.class)
+                .newInstance(annotationClass, value);
+    }
+
+    /**
+     * A field of an event type.
+     */
+    static final class Field {
+
+        private final Class<?> type;
+        private final String name;
+        private final String label;
+        private final String description;
+        private final boolean dataAmount;
+
+        private Field(Class<?> type, String name, String label, String description, boolean dataAmount) {
+
+            this.type = type;
+            this.name = name;
+            this.label = label;
+            this.description = description;
+            this.dataAmount = dataAmount;
+        }
+
+        static Field of(Class<?> type, String name, String label) {
+            return new Field(type, name, label, null, false);
+        }
+
+        static Field of(Class<?> type, String name, String label, String description) {
+            return new Field(type, name, label, description, false);
+        }
+
+        /**
+         * @return a field whose value is a number of bytes
+         */
+        static Field ofBytes(String name, String label, String description) {
+            return new Field(long.class, name, label, description, true);
+        }
+    }
+}
@@ -0,0 +1,51 @@
+/*
+ * Copyright 2017 Open mHealth
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.openmhealth.shim.common.flightrecorder;
+
+import static org.openmhealth.shim.common.flightrecorder.FlightRecorderEventType.Field;
+
+
+/**
+ * A Java Flight Recorder event emitted each time a data point mapper maps a data provider response.
+ */
+public class ShimMappingEvent extends FlightRecorderEvent {
+
+    private static final FlightRecorderEventType EVENT_TYPE = new FlightRecorderEventType(
+            "org.openmhealth.shim.ShimMapping",
+            "Shim Mapping",
+            "The mapping of data provider responses to data points",
+            Field.of(Class.class, "mapperClass", "Mapper Class"),
+            Field.of(int.class, "inputNodes", "Input Nodes", "The number of inputs passed to the mapper"),
+            Field.of(int.class, "outputPoints", "Output Points", "The number of data points created by the mapper"));
+
+
+    public ShimMappingEvent() {
+        super(EVENT_TYPE);
+    }
+
+    public void setMapperClass(Class<?> mapperClass) {
+        set(0, mapperClass);
+    }
+
+    public void setInputNodes(int inputNodes) {
+        set(1, inputNodes);
+    }
+
+    public void setOutputPoints(int outputPoints) {
+        set(2, outputPoints);
+    }
+}
@@ -0,0 +1,59 @@
+/*
+ * Copyright 2017 Open mHealth
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.openmhealth.shim.common.flightrecorder;
+
+import static org.openmhealth.shim.common.flightrecorder.FlightRecorderEventType.Field;
+
+
+/**
+ * A Java Flight Recorder event emitted for each call made to a data provider API.
+ */
+public class ShimUpstreamCallEvent extends FlightRecorderEvent {
+
+    private static final FlightRecorderEventType EVENT_TYPE = new FlightRecorderEventType(
+            "org.openmhealth.shim.ShimUpstreamCall",
+            "Shim Upstream Call",
+            "A call made by a shim to a data provider API",
+            Field.of(String.class, "shim", "Shim"),
+            Field.of(String.class, "endpoint", "Endpoint",
+                    "The host and path of the called endpoint, without any query parameters"),
+            Field.of(int.class, "status", "Status",
+                    "The HTTP status code of the response, or 0 if no response was received"),
+            Field.ofBytes("bytes", "Bytes",
+                    "The length of the response body as reported by the data provider, or -1 if unknown"));
+
+
+    public ShimUpstreamCallEvent() {
+        super(EVENT_TYPE);
+    }
+
+    public void setShim(String shim) {
+        set(0, shim);
+    }
+
+    public void setEndpoint(String endpoint) {
+        set(1, endpoint);
+    }
+
+    public void setStatus(int status) {
+        set(2, status);
+    }
+
+    public void setBytes(long bytes) {
+        set(3, bytes);
+    }
+}
@@ -0,0 +1,51 @@
+/*
+ * Copyright 2017 Open mHealth
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.openmhealth.shim.common.flightrecorder;
+
+import static org.openmhealth.shim.common.flightrecorder.FlightRecorderEventType.Field;
+
+
+/**
+ * A Java Flight Recorder event emitted each time stored access tokens are read, written or removed.
+ */
+public class TokenStoreAccessEvent extends FlightRecorderEvent {
+
+    private static final FlightRecorderEventType EVENT_TYPE = new FlightRecorderEventType(
+            "org.openmhealth.shim.TokenStoreAccess",
+            "Token Store Access",
+            "An access to the store of access tokens",
+            Field.of(String.class, "shim", "Shim"),
+            Field.of(String.class, "operation", "Operation"),
+            Field.of(boolean.class, "found", "Found", "Whether the operation found existing access parameters"));
+
+
+    public TokenStoreAccessEvent() {
+        super(EVENT_TYPE);
+    }
+
+    public void setShim(String shim) {
+        set(0, shim);
+    }
+
+    public void setOperation(String operation) {
+        set(1, operation);
+    }
+
+    public void setFound(boolean found) {
+        set(2, found);
+    }
+}
@@ -0,0 +1,78 @@
+/*
+ * Copyright 2017 Open mHealth
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.openmhealth.shim.common.mapper;
+
+import org.openmhealth.schema.domain.omh.DataPoint;
+import org.openmhealth.schema.domain.omh.SchemaSupport;
+import org.openmhealth.shim.common.flightrecorder.ShimMappingEvent;
+import org.openmhealth.shim.common.timing.RequestTimingContext;
+import org.openmhealth.shim.common.timing.RequestTimingContext.TimedOperation;
+
+import java.util.List;
+
+import static org.openmhealth.shim.common.timing.RequestTimingPhase.MAPPING;
+
+
+/**
+ * Support for invoking data point mappers in a way that is visible to monitoring. Each invocation is timed in the
+ * current {@link RequestTimingContext}, if any, and emits a {@link ShimMappingEvent} when Java Flight Recorder is
+ * recording it.
+ */
+public class DataPointMapperInstrumentation {
+
+    /**
+     * @param mapper the mapper to invoke
+     * @param inputs the inputs to map
+     * @return the data points created by the mapper
+     * @see DataPointMapper#asDataPoints(List)
+     */
+    public static <B extends SchemaSupport, I> List<DataPoint<B>> asDataPoints(DataPointMapper<B, I> mapper,
+            List<I> inputs) {
+
+        return asDataPoints(mapper, inputs.size(), () -> mapper.asDataPoints(inputs));
+    }
+
+    /**
+     * Instruments a mapping that doesn't go through {@link DataPointMapper#asDataPoints(List)}, e.g. one that maps a
+     * response while it's being read, one that creates another representation of the data points, such as an intraday
+     * time series, or one that routes a response to several mappers.
+     *
+     * @param mapper the mapper being invoked, or the object that invokes several mappers
+     * @param inputCount the number of inputs being mapped
+     * @param mapping the invocation of the mapper
+     * @return the data points, or the other representation, created by the mapper
+     */
+    public static <R extends List<?>, E extends Exception> R asDataPoints(Object mapper, int inputCount,
+            TimedOperation<R, E> mapping) throws E {
+
+        ShimMappingEvent event = new ShimMappingEvent();
+        event.begin();
+
+        R dataPoints = RequestTimingContext.time(MAPPING, mapping);
+
+        event.end();
+
+        if (event.shouldCommit()) {
+            event.setMapperClass(mapper.getClass());
+            event.setInputNodes(inputCount);
+            event.setOutputPoints(dataPoints.size());
+            event.commit();
+        }
+
+        return dataPoints;
+    }
+}
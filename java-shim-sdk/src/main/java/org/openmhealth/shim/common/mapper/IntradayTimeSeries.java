@@ -0,0 +1,246 @@
+/*
+ * Copyright 2017 Open mHealth
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.openmhealth.shim.common.mapper;
+
+import org.openmhealth.schema.domain.omh.DataPointAcquisitionProvenance;
+import org.openmhealth.schema.domain.omh.SchemaId;
+
+import java.time.Duration;
+import java.time.OffsetDateTime;
+import java.util.Arrays;
+import java.util.Optional;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkElementIndex;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+
+/**
+ * A compact, columnar representation of an intraday time series of integral measure values, e.g. a day of per-minute
+ * step counts. Instead of a data point per entry, each with its own header, a time series has a single header-like
+ * section that applies to all entries, the start date time of the first entry, a fixed interval, and primitive arrays
+ * that hold the start offset and value of each entry. Entries whose duration differs from the interval are the
+ * exception, so durations are only included if at least one entry has a different duration.
+ * <p>
+ * A time series can be expanded into the equivalent data points using the {@link IntradayTimeSeriesMapper} that
+ * created it.
+ *
+ * @see IntradayTimeSeriesMapper#asDataPoints(IntradayTimeSeries)
+ */
+public class IntradayTimeSeries {
+
+    private SchemaId bodySchemaId;
+    private DataPointAcquisitionProvenance acquisitionProvenance;
+    private String unit;
+    private OffsetDateTime startDateTime;
+    private long intervalInSeconds;
+    private int[] offsetsInSeconds;
+    private int[] durationsInSeconds;
+    private long[] values;
+
+
+    private IntradayTimeSeries() {
+    }
+
+    /**
+     * @return the schema identifier of the bodies of the equivalent data points
+     */
+    public SchemaId getBodySchemaId() {
+        return bodySchemaId;
+    }
+
+    /**
+     * @return the acquisition provenance shared by all entries
+     */
+    public DataPointAcquisitionProvenance getAcquisitionProvenance() {
+        return acquisitionProvenance;
+    }
+
+    /**
+     * @return the unit of the values, if the measure has one
+     */
+    public Optional<String> getUnit() {
+        return Optional.ofNullable(unit);
+    }
+
+    /**
+     * @return the start date time of the first entry, or an empty optional if the time series has no entries
+     */
+    public Optional<OffsetDateTime> getStartDateTime() {
+        return Optional.ofNullable(startDateTime);
+    }
+
+    public long getIntervalInSeconds() {
+        return intervalInSeconds;
+    }
+
+    /**
+     * @return the offset of the start of each entry from the start date time
+     */
+    public int[] getOffsetsInSeconds() {
+        return offsetsInSeconds;
+    }
+
+    /**
+     * @return the duration of each entry, or an empty optional if every entry lasts exactly one interval
+     */
+    public Optional<int[]> getDurationsInSeconds() {
+        return Optional.ofNullable(durationsInSeconds);
+    }
+
+    public long[] getValues() {
+        return values;
+    }
+
+    /**
+     * @return the number of entries
+     */
+    public int size() {
+        return values.length;
+    }
+
+    /**
+     * @param index the index of an entry
+     * @return the start date time of the entry
+     */
+    public OffsetDateTime getStartDateTime(int index) {
+
+        checkElementIndex(index, size());
+
+        return startDateTime.plusSeconds(offsetsInSeconds[index]);
+    }
+
+    /**
+     * @param index the index of an entry
+     * @return the duration of the entry
+     */
+    public long getDurationInSeconds(int index) {
+
+        checkElementIndex(index, size());
+
+        return durationsInSeconds == null ? intervalInSeconds : durationsInSeconds[index];
+    }
+
+    /**
+     * @param index the index of an entry
+     * @return the value of the entry
+     */
+    public long getValue(int index) {
+
+        checkElementIndex(index, size());
+
+        return values[index];
+    }
+
+
+    public static class Builder {
+
+        private final SchemaId bodySchemaId;
+        private final DataPointAcquisitionProvenance acquisitionProvenance;
+        private final long intervalInSeconds;
+        private String unit;
+
+        private OffsetDateTime startDateTime;
+        private int[] offsetsInSeconds = new int[64];
+        private int[] durationsInSeconds = new int[64];
+        private long[] values = new long[64];
+        private int size;
+        private boolean durationsVary;
+
+
+        /**
+         * @param bodySchemaId the schema identifier of the bodies of the equivalent data points
+         * @param acquisitionProvenance the acquisition provenance shared by all entries
+         * @param intervalInSeconds the interval between entries
+         */
+        public Builder(SchemaId bodySchemaId, DataPointAcquisitionProvenance acquisitionProvenance,
+                long intervalInSeconds) {
+
+            checkNotNull(bodySchemaId);
+            checkNotNull(acquisitionProvenance);
+            checkArgument(intervalInSeconds > 0, "The interval must be positive.");
+
+            this.bodySchemaId = bodySchemaId;
+            this.acquisitionProvenance = acquisitionProvenance;
+            this.intervalInSeconds = intervalInSeconds;
+        }
+
+        public Builder setUnit(String unit) {
+
+            this.unit = unit;
+            return this;
+        }
+
+        /**
+         * Adds an entry. Entries must be added in chronological order.
+         *
+         * @param startDateTime the start date time of the entry
+         * @param durationInSeconds the duration of the entry
+         * @param value the value of the entry
+         */
+        public Builder addEntry(OffsetDateTime startDateTime, long durationInSeconds, long value) {
+
+            checkNotNull(startDateTime);
+            checkArgument(durationInSeconds >= 0 && durationInSeconds <= Integer.MAX_VALUE,
+                    "The duration is out of range.");
+
+            if (this.startDateTime == null) {
+                this.startDateTime = startDateTime;
+            }
+
+            long offsetInSeconds = Duration.between(this.startDateTime, startDateTime).getSeconds();
+
+            checkArgument(size == 0 || offsetInSeconds >= offsetsInSeconds[size - 1],
+                    "The entries aren't in chronological order.");
+            checkArgument(offsetInSeconds <= Integer.MAX_VALUE, "The time series is too long.");
+
+            if (size == values.length) {
+                offsetsInSeconds = Arrays.copyOf(offsetsInSeconds, size * 2);
+                durationsInSeconds = Arrays.copyOf(durationsInSeconds, size * 2);
+                values = Arrays.copyOf(values, size * 2);
+            }
+
+            offsetsInSeconds[size] = (int) offsetInSeconds;
+            durationsInSeconds[size] = (int) durationInSeconds;
+            values[size] = value;
+            size++;
+
+            if (durationInSeconds != intervalInSeconds) {
+                durationsVary = true;
+            }
+
+            return this;
+        }
+
+        public IntradayTimeSeries build() {
+
+            IntradayTimeSeries timeSeries = new IntradayTimeSeries();
+
+            timeSeries.bodySchemaId = bodySchemaId;
+            timeSeries.acquisitionProvenance = acquisitionProvenance;
+            timeSeries.unit = unit;
+            timeSeries.startDateTime = startDateTime;
+            timeSeries.intervalInSeconds = intervalInSeconds;
+            timeSeries.offsetsInSeconds = Arrays.copyOf(offsetsInSeconds, size);
+            timeSeries.durationsInSeconds = durationsVary ? Arrays.copyOf(durationsInSeconds, size) : null;
+            timeSeries.values = Arrays.copyOf(values, size);
+
+            return timeSeries;
+        }
+    }
+}
@@ -0,0 +1,69 @@
+/*
+ * Copyright 2017 Open mHealth
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.openmhealth.shim.common.mapper;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import org.openmhealth.schema.domain.omh.DataPoint;
+import org.openmhealth.schema.domain.omh.Measure;
+import org.openmhealth.shim.ShimDataRequest;
+
+import java.util.List;
+
+import static java.util.Collections.singletonList;
+
+
+/**
+ * A mapper that can translate an intraday response into an {@link IntradayTimeSeries} instead of data points, and
+ * can expand such a time series into the data points it would otherwise have created.
+ *
+ * @param <T> the measure type of the data points
+ */
+public interface IntradayTimeSeriesMapper<T extends Measure> {
+
+    /**
+     * @param responseNode an intraday response
+     * @return the time series of the response
+     */
+    IntradayTimeSeries asTimeSeries(JsonNode responseNode);
+
+    /**
+     * @param timeSeries a time series created by this mapper
+     * @return the data points that this mapper would have created from the response the time series was created from
+     */
+    List<DataPoint<T>> asDataPoints(IntradayTimeSeries timeSeries);
+
+    /**
+     * Maps an intraday response the way a data request asks for it. The time series of the response is rolled up if
+     * the request asks for a rollup, and is then expanded into data points unless the request asks for columnar time
+     * series.
+     *
+     * @param responseNode an intraday response
+     * @param shimDataRequest the data request the response was retrieved for
+     * @return a list containing the time series if the request asks for columnar time series, or else the data points
+     */
+    default List<?> asRequestedRepresentation(JsonNode responseNode, ShimDataRequest shimDataRequest) {
+
+        IntradayTimeSeries timeSeries = asTimeSeries(responseNode);
+
+        if (shimDataRequest.getRollup().isPresent()) {
+            timeSeries = shimDataRequest.getRollup().get().rollUp(timeSeries);
+        }
+
+        return shimDataRequest.getColumnarTimeSeries() ? singletonList(timeSeries) : asDataPoints(timeSeries);
+    }
+}
@@ -0,0 +1,163 @@
+/*
+ * Copyright 2017 Open mHealth
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.openmhealth.shim.common.mapper;
+
+import java.time.Duration;
+import java.time.OffsetDateTime;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static java.lang.Math.floorDiv;
+import static java.util.concurrent.TimeUnit.DAYS;
+
+
+/**
+ * A rollup of an {@link IntradayTimeSeries} into fixed-size buckets, e.g. hourly sums of minute-by-minute step
+ * counts. Buckets are aligned to the local time of the time series, so hourly buckets start on the hour and daily
+ * buckets start at midnight. Each bucket that contains at least one entry becomes a single entry of the rolled up
+ * time series, whose interval is the granularity of the rollup.
+ */
+public class IntradayTimeSeriesRollup {
+
+    private static final long SECONDS_PER_DAY = DAYS.toSeconds(1);
+
+    private final Duration granularity;
+    private final Aggregate aggregate;
+
+
+    /**
+     * @param granularity the size of each bucket, which must evenly divide a day, e.g. 15 minutes or an hour
+     * @param aggregate the function that combines the values in a bucket
+     */
+    public IntradayTimeSeriesRollup(Duration granularity, Aggregate aggregate) {
+
+        checkNotNull(granularity);
+        checkNotNull(aggregate);
+        checkArgument(!granularity.isNegative() && !granularity.isZero() && granularity.getNano() == 0,
+                "The granularity must be a positive number of seconds.");
+        checkArgument(SECONDS_PER_DAY % granularity.getSeconds() == 0, "The granularity must evenly divide a day.");
+
+        this.granularity = granularity;
+        this.aggregate = aggregate;
+    }
+
+    public Duration getGranularity() {
+        return granularity;
+    }
+
+    public Aggregate getAggregate() {
+        return aggregate;
+    }
+
+    /**
+     * Rolls up a time series in a single pass over its offsets and values.
+     *
+     * @param timeSeries the time series to roll up, whose interval can't be longer than the granularity
+     * @return the rolled up time series
+     */
+    public IntradayTimeSeries rollUp(IntradayTimeSeries timeSeries) {
+
+        checkNotNull(timeSeries);
+
+        long bucketSizeInSeconds = granularity.getSeconds();
+
+        checkArgument(timeSeries.getIntervalInSeconds() <= bucketSizeInSeconds,
+                "The granularity can't be finer than the interval of the time series.");
+
+        IntradayTimeSeries.Builder builder = new IntradayTimeSeries.Builder(timeSeries.getBodySchemaId(),
+                timeSeries.getAcquisitionProvenance(), bucketSizeInSeconds)
+                .setUnit(timeSeries.getUnit().orElse(null));
+
+        if (timeSeries.size() == 0) {
+            return builder.build();
+        }
+
+        OffsetDateTime startDateTime = timeSeries.getStartDateTime().get();
+        int[] offsetsInSeconds = timeSeries.getOffsetsInSeconds();
+        long[] values = timeSeries.getValues();
+
+        // the local time of the first entry, counted in seconds from the local epoch
+        long localStartInSeconds = startDateTime.toEpochSecond() + startDateTime.getOffset().getTotalSeconds();
+
+        long bucket = floorDiv(localStartInSeconds, bucketSizeInSeconds);
+        long accumulator = values[0];
+        int count = 1;
+
+        for (int i = 1; i < values.length; i++) {
+
+            long entryBucket = floorDiv(localStartInSeconds + offsetsInSeconds[i], bucketSizeInSeconds);
+
+            if (entryBucket != bucket) {
+                addBucket(builder, startDateTime, localStartInSeconds, bucket, accumulator, count);
+
+                bucket = entryBucket;
+                accumulator = values[i];
+                count = 1;
+            }
+            else {
+                accumulator = aggregate.accumulate(accumulator, values[i]);
+                count++;
+            }
+        }
+
+        addBucket(builder, startDateTime, localStartInSeconds, bucket, accumulator, count);
+
+        return builder.build();
+    }
+
+    private void addBucket(IntradayTimeSeries.Builder builder, OffsetDateTime startDateTime,
+            long localStartInSeconds, long bucket, long accumulator, int count) {
+
+        OffsetDateTime bucketStartDateTime =
+                startDateTime.plusSeconds(bucket * granularity.getSeconds() - localStartInSeconds);
+
+        builder.addEntry(bucketStartDateTime, granularity.getSeconds(), aggregate.complete(accumulator, count));
+    }
+
+
+    /**
+     * A function that combines the values in a bucket.
+     */
+    public enum Aggregate {
+
+        SUM,
+        MIN,
+        MAX,
+        /**
+         * The arithmetic mean, rounded to the nearest whole value.
+         */
+        MEAN;
+
+        long accumulate(long accumulator, long value) {
+
+            switch (this) {
+                case MIN:
+                    return Math.min(accumulator, value);
+                case MAX:
+                    return Math.max(accumulator, value);
+                default:
+                    return accumulator + value;
+            }
+        }
+
+        long complete(long accumulator, int count) {
+
+            return this == MEAN ? Math.round((double) accumulator / count) : accumulator;
+        }
+    }
+}
@@ -184,10 +184,38 @@ public class JsonNodeMappingSupport {
             Class<T> clazz,
             BiFunction<String, DateTimeFormatter, T> parseFunction) {
 
+        return asRequiredTemporal(parentNode, path, clazz, string -> parseFunction.apply(string, formatter));
+    }
+
+    /**
+     * @param parentNode a parent node
+     * @param path the path to a child node
+     * @param clazz the class of the temporal
+     * @param cache the cache of the response being mapped, which also determines how the value is parsed
+     * @param <T> the generic temporal type
+     * @return the value of the child node as an instance of the temporal type
+     * @throws MissingJsonNodeMappingException if the child doesn't exist
+     * @throws IncompatibleJsonNodeMappingException if the value of the child node can't be parsed
+     */
+    public static <T extends Temporal> T asRequiredTemporal(
+            JsonNode parentNode,
+            String path,
+            Class<T> clazz,
+            ParsedTemporalCache<T> cache) {
+
+        return asRequiredTemporal(parentNode, path, clazz, cache::parse);
+    }
+
+    private static <T extends Temporal> T asRequiredTemporal(
+            JsonNode parentNode,
+            String path,
+            Class<T> clazz,
+            Function<String, T> parseFunction) {
+
         String string = asRequiredString(parentNode, path);
 
         try {
-            return parseFunction.apply(string, formatter);
+            return parseFunction.apply(string);
         }
         catch (DateTimeParseException e) {
             throw new IncompatibleJsonNodeMappingException(parentNode, path, clazz, e);
@@ -246,6 +274,51 @@ public class JsonNodeMappingSupport {
         return asRequiredLocalTime(parentNode, path, ISO_LOCAL_TIME);
     }
 
+    /**
+     * Parses a time of day without going through a {@link DateTimeFormatter}, which matters when mapping intraday
+     * series with thousands of entries. The time can then be added to the start of its day arithmetically.
+     *
+     * @param parentNode a parent node
+     * @param path the path to a child node
+     * @return the value of the child node, a time matching {@link DateTimeFormatter#ISO_LOCAL_TIME}, as the number of
+     * seconds since midnight
+     * @throws MissingJsonNodeMappingException if the child doesn't exist
+     * @throws IncompatibleJsonNodeMappingException if the value of the child node isn't a time
+     */
+    public static int asRequiredSecondOfDay(JsonNode parentNode, String path) {
+
+        String string = asRequiredString(parentNode, path);
+
+        // the common "HH:mm:ss" case, anything else goes through the formatter
+        if (string.length() == 8 && string.charAt(2) == ':' && string.charAt(5) == ':') {
+
+            int hour = parseTwoDigits(string, 0);
+            int minute = parseTwoDigits(string, 3);
+            int second = parseTwoDigits(string, 6);
+
+            if (hour >= 0 && hour < 24 && minute >= 0 && minute < 60 && second >= 0 && second < 60) {
+                return (hour * 60 + minute) * 60 + second;
+            }
+        }
+
+        return asRequiredLocalTime(parentNode, path).toSecondOfDay();
+    }
+
+    /**
+     * @return the two digit number starting at the index, or a negative number if there isn't one
+     */
+    private static int parseTwoDigits(String string, int index) {
+
+        int tens = string.charAt(index) - '0';
+        int units = string.charAt(index + 1) - '0';
+
+        if (tens < 0 || tens > 9 || units < 0 || units > 9) {
+            return -1;
+        }
+
+        return tens * 10 + units;
+    }
+
     /**
      * @param parentNode a parent node
      * @param path the path to a child node
@@ -428,6 +501,30 @@ public class JsonNodeMappingSupport {
             DateTimeFormatter formatter,
             BiFunction<String, DateTimeFormatter, T> parseFunction) {
 
+        return asOptionalTemporal(parentNode, path, string -> parseFunction.apply(string, formatter));
+    }
+
+    /**
+     * @param parentNode a parent node
+     * @param path the path to a child node
+     * @param cache the cache of the response being mapped, which also determines how the value is parsed
+     * @param <T> the generic temporal type
+     * @return the value of the child node as an instance of the temporal type, or an empty optional if the child
+     * doesn't exist or if the value of the child node isn't parseable
+     */
+    public static <T extends Temporal> Optional<T> asOptionalTemporal(
+            JsonNode parentNode,
+            String path,
+            ParsedTemporalCache<T> cache) {
+
+        return asOptionalTemporal(parentNode, path, cache::parse);
+    }
+
+    private static <T extends Temporal> Optional<T> asOptionalTemporal(
+            JsonNode parentNode,
+            String path,
+            Function<String, T> parseFunction) {
+
         Optional<String> string = asOptionalString(parentNode, path);
 
         if (!string.isPresent()) {
@@ -437,7 +534,7 @@ public class JsonNodeMappingSupport {
         T temporal = null;
 
         try {
-            temporal = parseFunction.apply(string.get(), formatter);
+            temporal = parseFunction.apply(string.get());
         }
         catch (DateTimeParseException e) {
             logger.warn("The '{}' field in node '{}' with value '{}' isn't a valid temporal.",
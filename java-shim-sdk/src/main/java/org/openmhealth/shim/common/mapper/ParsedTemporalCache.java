@@ -0,0 +1,99 @@
+/*
+ * Copyright 2017 Open mHealth
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.openmhealth.shim.common.mapper;
+
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.time.temporal.Temporal;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.BiFunction;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+
+/**
+ * A small cache of temporals parsed with a single formatter, meant to live as long as the mapping of a single
+ * response. Data provider responses tend to repeat the same timestamps, e.g. the end of one segment is the start of
+ * the next, and each distinct value is then parsed only once. The cache isn't thread-safe.
+ */
+public class ParsedTemporalCache<T extends Temporal> {
+
+    public static final int DEFAULT_MAXIMUM_SIZE = 256;
+
+    private final DateTimeFormatter formatter;
+    private final BiFunction<String, DateTimeFormatter, T> parseFunction;
+    private final int maximumSize;
+    private final Map<String, T> parsedTemporals = new HashMap<>();
+
+
+    /**
+     * @param formatter the formatter to parse values with
+     * @param parseFunction the function to parse values with, e.g. {@code OffsetDateTime::parse}
+     */
+    public ParsedTemporalCache(DateTimeFormatter formatter, BiFunction<String, DateTimeFormatter, T> parseFunction) {
+
+        this(formatter, parseFunction, DEFAULT_MAXIMUM_SIZE);
+    }
+
+    /**
+     * @param formatter the formatter to parse values with
+     * @param parseFunction the function to parse values with, e.g. {@code OffsetDateTime::parse}
+     * @param maximumSize the number of distinct values to remember, after which further values are parsed every time
+     */
+    public ParsedTemporalCache(DateTimeFormatter formatter, BiFunction<String, DateTimeFormatter, T> parseFunction,
+            int maximumSize) {
+
+        checkNotNull(formatter);
+        checkNotNull(parseFunction);
+        checkArgument(maximumSize >= 0, "The maximum size can't be negative.");
+
+        this.formatter = formatter;
+        this.parseFunction = parseFunction;
+        this.maximumSize = maximumSize;
+    }
+
+    /**
+     * @param string the value to parse
+     * @return the parsed temporal
+     * @throws DateTimeParseException if the value can't be parsed, in which case nothing is cached
+     */
+    public T parse(String string) {
+
+        checkNotNull(string);
+
+        T temporal = parsedTemporals.get(string);
+
+        if (temporal == null) {
+            temporal = parseFunction.apply(string, formatter);
+
+            if (parsedTemporals.size() < maximumSize) {
+                parsedTemporals.put(string, temporal);
+            }
+        }
+
+        return temporal;
+    }
+
+    /**
+     * @return the number of cached values
+     */
+    public int size() {
+        return parsedTemporals.size();
+    }
+}
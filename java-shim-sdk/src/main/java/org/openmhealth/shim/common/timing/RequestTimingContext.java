@@ -0,0 +1,243 @@
+/*
+ * Copyright 2017 Open mHealth
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.openmhealth.shim.common.timing;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Optional;
+import java.util.Queue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+
+
+/**
+ * A lightweight, per-request record of how long the different phases of a data request take. A context is bound to
+ * the current thread by {@link #start()} and released by {@link #clear()}. Code that runs on the request thread can
+ * time its work using the static {@link #time(RequestTimingPhase, TimedOperation)} methods, which do nothing beyond
+ * invoking the operation if no context is bound.
+ */
+public class RequestTimingContext {
+
+    private static final ThreadLocal<RequestTimingContext> currentContext = new ThreadLocal<>();
+
+    private final Queue<PhaseTiming> phaseTimings = new ConcurrentLinkedQueue<>();
+
+
+    /**
+     * Binds a new context to the current thread, replacing any existing context.
+     *
+     * @return the new context
+     */
+    public static RequestTimingContext start() {
+
+        RequestTimingContext context = new RequestTimingContext();
+
+        currentContext.set(context);
+
+        return context;
+    }
+
+    /**
+     * @return the context bound to the current thread, if any
+     */
+    public static Optional<RequestTimingContext> current() {
+
+        return Optional.ofNullable(currentContext.get());
+    }
+
+    /**
+     * Releases the context bound to the current thread, if any.
+     */
+    public static void clear() {
+
+        currentContext.remove();
+    }
+
+    /**
+     * Wraps a task so that, wherever it runs, it runs with the context bound to the current thread. This lets work
+     * handed off to other threads on behalf of a request contribute to that request's timings.
+     *
+     * @param task the task to wrap
+     * @return the wrapped task, or the task itself if no context is bound to the current thread
+     */
+    public static <T> Callable<T> propagate(Callable<T> task) {
+
+        checkNotNull(task);
+
+        RequestTimingContext context = currentContext.get();
+
+        if (context == null) {
+            return task;
+        }
+
+        return () -> {
+
+            RequestTimingContext previousContext = currentContext.get();
+            currentContext.set(context);
+
+            try {
+                return task.call();
+            }
+            finally {
+                if (previousContext == null) {
+                    currentContext.remove();
+                }
+                else {
+                    currentContext.set(previousContext);
+                }
+            }
+        };
+    }
+
+    /**
+     * Invokes an operation, recording its duration in the current context if one is bound.
+     *
+     * @param phase the phase the operation belongs to
+     * @param operation the operation to invoke
+     * @return the result of the operation
+     */
+    public static <T, E extends Exception> T time(RequestTimingPhase phase, TimedOperation<T, E> operation)
+            throws E {
+
+        return time(phase, null, operation);
+    }
+
+    /**
+     * Invokes an operation, recording its duration in the current context if one is bound.
+     *
+     * @param phase the phase the operation belongs to
+     * @param description an optional description of the operation, e.g. the endpoint being called
+     * @param operation the operation to invoke
+     * @return the result of the operation
+     */
+    public static <T, E extends Exception> T time(RequestTimingPhase phase, String description,
+            TimedOperation<T, E> operation)
+            throws E {
+
+        RequestTimingContext context = currentContext.get();
+
+        if (context == null) {
+            return operation.execute();
+        }
+
+        long startTimeInNanos = System.nanoTime();
+
+        try {
+            return operation.execute();
+        }
+        finally {
+            context.record(phase, description, System.nanoTime() - startTimeInNanos);
+        }
+    }
+
+    /**
+     * Records the duration of a phase.
+     *
+     * @param phase the phase
+     * @param description an optional description of the timed operation
+     * @param durationInNanos the duration in nanoseconds
+     */
+    public void record(RequestTimingPhase phase, String description, long durationInNanos) {
+
+        checkNotNull(phase);
+
+        phaseTimings.add(new PhaseTiming(phase, description, durationInNanos));
+    }
+
+    /**
+     * @return the recorded timings, in the order in which they completed
+     */
+    public List<PhaseTiming> getPhaseTimings() {
+
+        return new ArrayList<>(phaseTimings);
+    }
+
+    /**
+     * @return the recorded timings formatted as the value of a <code>Server-Timing</code> header, e.g.
+     * <code>access-parameters;dur=1.204, upstream;dur=312.5;desc="api.fitbit.com"</code>
+     */
+    public String toServerTimingHeaderValue() {
+
+        StringBuilder builder = new StringBuilder();
+
+        for (PhaseTiming phaseTiming : phaseTimings) {
+
+            if (builder.length() > 0) {
+                builder.append(", ");
+            }
+
+            builder.append(phaseTiming.getPhase().getMetricName());
+            builder.append(String.format(Locale.ROOT, ";dur=%.3f", phaseTiming.getDurationInMillis()));
+
+            if (phaseTiming.getDescription().isPresent()) {
+                builder.append(";desc=\"")
+                        .append(phaseTiming.getDescription().get().replace("\\", "\\\\").replace("\"", "\\\""))
+                        .append('"');
+            }
+        }
+
+        return builder.toString();
+    }
+
+
+    /**
+     * An operation whose duration is recorded.
+     */
+    @FunctionalInterface
+    public interface TimedOperation<T, E extends Exception> {
+
+        T execute() throws E;
+    }
+
+
+    /**
+     * The duration of a single timed operation.
+     */
+    public static class PhaseTiming {
+
+        private final RequestTimingPhase phase;
+        private final String description;
+        private final long durationInNanos;
+
+        public PhaseTiming(RequestTimingPhase phase, String description, long durationInNanos) {
+
+            this.phase = phase;
+            this.description = description;
+            this.durationInNanos = durationInNanos;
+        }
+
+        public RequestTimingPhase getPhase() {
+            return phase;
+        }
+
+        public Optional<String> getDescription() {
+            return Optional.ofNullable(description);
+        }
+
+        public long getDurationInNanos() {
+            return durationInNanos;
+        }
+
+        public double getDurationInMillis() {
+            return durationInNanos / (double) MILLISECONDS.toNanos(1);
+        }
+    }
+}
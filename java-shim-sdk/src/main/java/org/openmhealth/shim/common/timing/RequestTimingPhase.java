@@ -0,0 +1,42 @@
+/*
+ * Copyright 2017 Open mHealth
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.openmhealth.shim.common.timing;
+
+/**
+ * The phases of a data request that are timed and reported in the <code>Server-Timing</code> response header.
+ */
+public enum RequestTimingPhase {
+
+    ACCESS_PARAMETER_LOOKUP("access-parameters"),
+    TOKEN_REFRESH("token"),
+    UPSTREAM_CALL("upstream"),
+    MAPPING("mapping"),
+    SERIALIZATION("serialization");
+
+    private final String metricName;
+
+    RequestTimingPhase(String metricName) {
+        this.metricName = metricName;
+    }
+
+    /**
+     * @return the name of the metric as it appears in the <code>Server-Timing</code> header
+     */
+    public String getMetricName() {
+        return metricName;
+    }
+}
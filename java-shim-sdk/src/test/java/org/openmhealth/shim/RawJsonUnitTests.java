@@ -0,0 +1,88 @@
+/*
+ * Copyright 2017 Open mHealth
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.openmhealth.shim;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.testng.annotations.Test;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.Arrays.asList;
+import static java.util.Collections.singletonMap;
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+
+public class RawJsonUnitTests {
+
+    private static final String CONTENT = "{\"steps\" : [ 1, 2.5, \"é\" ], \"next\":null}";
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+
+    @Test
+    public void writeValueAsBytesShouldCopyContent() throws Exception {
+
+        byte[] bytes = objectMapper.writeValueAsBytes(new RawJson(CONTENT.getBytes(UTF_8)));
+
+        assertThat(new String(bytes, UTF_8), equalTo(CONTENT));
+    }
+
+    @Test
+    public void writeValueAsStringShouldCopyContent() throws Exception {
+
+        String json = objectMapper.writeValueAsString(
+                singletonMap("result", singletonMap("content", new RawJson(CONTENT.getBytes(UTF_8)))));
+
+        assertThat(json, equalTo("{\"result\":{\"content\":" + CONTENT + "}}"));
+    }
+
+    @Test
+    public void writeValueAsBytesShouldSeparateConsecutiveContents() throws Exception {
+
+        RawJson rawJson = new RawJson(CONTENT.getBytes(UTF_8));
+
+        byte[] bytes = objectMapper.writeValueAsBytes(asList(rawJson, singletonMap("content", rawJson), rawJson));
+
+        assertThat(new String(bytes, UTF_8),
+                equalTo("[" + CONTENT + ",{\"content\":" + CONTENT + "}," + CONTENT + "]"));
+    }
+
+    @Test
+    public void writeValueAsBytesShouldCopyContentLargerThanOutputBuffer() throws Exception {
+
+        StringBuilder largeContent = new StringBuilder("[0");
+
+        for (int i = 1; i < 10_000; i++) {
+            largeContent.append(',').append(i);
+        }
+
+        largeContent.append(']');
+
+        byte[] bytes = objectMapper.writeValueAsBytes(
+                asList(1, new RawJson(largeContent.toString().getBytes(UTF_8)), 2));
+
+        assertThat(new String(bytes, UTF_8), equalTo("[1," + largeContent + ",2]"));
+    }
+
+    @Test
+    public void valueToTreeShouldStreamContentIntoNonJsonGenerator() throws Exception {
+
+        assertThat(objectMapper.valueToTree(new RawJson(CONTENT.getBytes(UTF_8))),
+                equalTo(objectMapper.readTree(CONTENT)));
+    }
+}
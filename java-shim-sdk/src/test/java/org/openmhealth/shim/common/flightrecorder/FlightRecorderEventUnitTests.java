@@ -0,0 +1,90 @@
+/*
+ * Copyright 2017 Open mHealth
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.openmhealth.shim.common.flightrecorder;
+
+import org.testng.annotations.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.openmhealth.shim.common.flightrecorder.FlightRecorderEventType.Field;
+
+
+public class FlightRecorderEventUnitTests {
+
+    @Test
+    public void eventTypeShouldBeRecordedIfRuntimeIncludesFlightRecorder() {
+
+        FlightRecorderEventType eventType = new FlightRecorderEventType("org.openmhealth.shim.Test", "Test",
+                "A test event", Field.of(String.class, "shim", "Shim"), Field.ofBytes("bytes", "Bytes", "Bytes"));
+
+        assertThat(eventType.isRecorded(), equalTo(isFlightRecorderAvailable()));
+    }
+
+    @Test
+    public void eventTypeShouldNotBeRecordedIfItCantBeDefined() {
+
+        // Flight Recorder doesn't support fields of arbitrary types
+        FlightRecorderEventType eventType = new FlightRecorderEventType("org.openmhealth.shim.InvalidTest",
+                "Invalid Test", "An invalid test event", Field.of(Object.class, "value", "Value"));
+
+        assertThat(eventType.isRecorded(), equalTo(false));
+        assertThat(eventType.newEvent() == null, equalTo(true));
+    }
+
+    @Test
+    public void eventsShouldSupportTheirLifecycle() {
+
+        ShimUpstreamCallEvent event = new ShimUpstreamCallEvent();
+
+        event.begin();
+        event.end();
+        event.setShim("fitbit");
+        event.setEndpoint("api.fitbit.com/1/user/-/activities.json");
+        event.setStatus(200);
+        event.setBytes(-1);
+        event.commit();
+
+        ShimMappingEvent mappingEvent = new ShimMappingEvent();
+
+        mappingEvent.begin();
+        mappingEvent.end();
+        mappingEvent.setMapperClass(FlightRecorderEventUnitTests.class);
+        mappingEvent.setInputNodes(1);
+        mappingEvent.setOutputPoints(0);
+        mappingEvent.commit();
+
+        TokenStoreAccessEvent tokenStoreAccessEvent = new TokenStoreAccessEvent();
+
+        tokenStoreAccessEvent.begin();
+        tokenStoreAccessEvent.end();
+        tokenStoreAccessEvent.setShim("fitbit");
+        tokenStoreAccessEvent.setOperation("get");
+        tokenStoreAccessEvent.setFound(true);
+        tokenStoreAccessEvent.commit();
+    }
+
+    private static boolean isFlightRecorderAvailable() {
+
+        try {
+            Class.forName("jdk.jfr.EventFactory");
+            return true;
+        }
+        catch (ClassNotFoundException e) {
+            return false;
+        }
+    }
+}
@@ -0,0 +1,100 @@
+/*
+ * Copyright 2017 Open mHealth
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.openmhealth.shim.common.mapper;
+
+import org.openmhealth.schema.domain.omh.DataPointAcquisitionProvenance;
+import org.openmhealth.schema.domain.omh.SchemaId;
+import org.testng.annotations.Test;
+
+import java.time.Duration;
+import java.time.OffsetDateTime;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.openmhealth.shim.common.mapper.IntradayTimeSeriesRollup.Aggregate.*;
+
+
+public class IntradayTimeSeriesRollupUnitTests {
+
+    private static final OffsetDateTime START_DATE_TIME = OffsetDateTime.parse("2015-06-20T00:04:00-06:00");
+
+
+    private IntradayTimeSeries newTimeSeries() {
+
+        return new IntradayTimeSeries.Builder(new SchemaId("omh", "step-count", "2.0"),
+                new DataPointAcquisitionProvenance.Builder("test").build(), 60)
+                .addEntry(START_DATE_TIME, 60, 21)
+                .addEntry(START_DATE_TIME.plusMinutes(25), 60, 47)
+                .addEntry(START_DATE_TIME.plusMinutes(26), 60, 20)
+                .addEntry(START_DATE_TIME.plusMinutes(56), 60, 74)
+                .addEntry(START_DATE_TIME.plusMinutes(57), 60, 3)
+                .build();
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void constructorShouldThrowExceptionOnGranularityThatDoesNotDivideDay() {
+
+        new IntradayTimeSeriesRollup(Duration.ofMinutes(7), SUM);
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void rollUpShouldThrowExceptionOnGranularityFinerThanInterval() {
+
+        new IntradayTimeSeriesRollup(Duration.ofSeconds(30), SUM).rollUp(newTimeSeries());
+    }
+
+    @Test
+    public void rollUpShouldReturnEmptyTimeSeriesOnEmptyTimeSeries() {
+
+        IntradayTimeSeries timeSeries = new IntradayTimeSeries.Builder(new SchemaId("omh", "step-count", "2.0"),
+                new DataPointAcquisitionProvenance.Builder("test").build(), 60).build();
+
+        IntradayTimeSeries rollup = new IntradayTimeSeriesRollup(Duration.ofHours(1), SUM).rollUp(timeSeries);
+
+        assertThat(rollup.size(), equalTo(0));
+        assertThat(rollup.getIntervalInSeconds(), equalTo(3600L));
+    }
+
+    @Test
+    public void rollUpShouldAlignBucketsToLocalTime() {
+
+        IntradayTimeSeries rollup = new IntradayTimeSeriesRollup(Duration.ofMinutes(15), SUM).rollUp(newTimeSeries());
+
+        assertThat(rollup.size(), equalTo(4));
+        assertThat(rollup.getStartDateTime(0), equalTo(OffsetDateTime.parse("2015-06-20T00:00:00-06:00")));
+        assertThat(rollup.getStartDateTime(1), equalTo(OffsetDateTime.parse("2015-06-20T00:15:00-06:00")));
+        assertThat(rollup.getStartDateTime(2), equalTo(OffsetDateTime.parse("2015-06-20T00:30:00-06:00")));
+        assertThat(rollup.getStartDateTime(3), equalTo(OffsetDateTime.parse("2015-06-20T01:00:00-06:00")));
+        assertThat(rollup.getDurationsInSeconds().isPresent(), equalTo(false));
+        assertThat(rollup.getIntervalInSeconds(), equalTo(900L));
+        assertThat(rollup.getValues(), equalTo(new long[] {21, 47, 20, 77}));
+    }
+
+    @Test
+    public void rollUpShouldComputeAggregates() {
+
+        assertThat(new IntradayTimeSeriesRollup(Duration.ofHours(1), SUM).rollUp(newTimeSeries()).getValues(),
+                equalTo(new long[] {88, 77}));
+        assertThat(new IntradayTimeSeriesRollup(Duration.ofHours(1), MIN).rollUp(newTimeSeries()).getValues(),
+                equalTo(new long[] {20, 3}));
+        assertThat(new IntradayTimeSeriesRollup(Duration.ofHours(1), MAX).rollUp(newTimeSeries()).getValues(),
+                equalTo(new long[] {47, 74}));
+        assertThat(new IntradayTimeSeriesRollup(Duration.ofHours(1), MEAN).rollUp(newTimeSeries()).getValues(),
+                equalTo(new long[] {29, 39}));
+    }
+}
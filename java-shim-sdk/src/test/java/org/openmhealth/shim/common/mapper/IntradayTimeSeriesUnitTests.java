@@ -0,0 +1,87 @@
+/*
+ * Copyright 2017 Open mHealth
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.openmhealth.shim.common.mapper;
+
+import org.openmhealth.schema.domain.omh.DataPointAcquisitionProvenance;
+import org.openmhealth.schema.domain.omh.SchemaId;
+import org.testng.annotations.Test;
+
+import java.time.OffsetDateTime;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+
+public class IntradayTimeSeriesUnitTests {
+
+    private static final SchemaId SCHEMA_ID = new SchemaId("omh", "step-count", "2.0");
+    private static final OffsetDateTime START_DATE_TIME = OffsetDateTime.parse("2015-06-20T00:04:00Z");
+
+
+    private IntradayTimeSeries.Builder newBuilder() {
+
+        return new IntradayTimeSeries.Builder(SCHEMA_ID,
+                new DataPointAcquisitionProvenance.Builder("test").build(), 60);
+    }
+
+    @Test
+    public void buildShouldReturnEmptyTimeSeriesWithoutEntries() {
+
+        IntradayTimeSeries timeSeries = newBuilder().build();
+
+        assertThat(timeSeries.size(), equalTo(0));
+        assertThat(timeSeries.getStartDateTime().isPresent(), equalTo(false));
+    }
+
+    @Test
+    public void buildShouldStoreOffsetsRelativeToFirstEntry() {
+
+        IntradayTimeSeries timeSeries = newBuilder()
+                .addEntry(START_DATE_TIME, 60, 21)
+                .addEntry(START_DATE_TIME.plusMinutes(25), 60, 47)
+                .build();
+
+        assertThat(timeSeries.getStartDateTime().get(), equalTo(START_DATE_TIME));
+        assertThat(timeSeries.getOffsetsInSeconds(), equalTo(new int[] {0, 1500}));
+        assertThat(timeSeries.getValues(), equalTo(new long[] {21, 47}));
+        assertThat(timeSeries.getStartDateTime(1), equalTo(START_DATE_TIME.plusMinutes(25)));
+        assertThat(timeSeries.getDurationsInSeconds().isPresent(), equalTo(false));
+        assertThat(timeSeries.getDurationInSeconds(1), equalTo(60L));
+    }
+
+    @Test
+    public void buildShouldStoreDurationsOnlyIfTheyVary() {
+
+        IntradayTimeSeries timeSeries = newBuilder()
+                .addEntry(START_DATE_TIME, 60, 21)
+                .addEntry(START_DATE_TIME.plusMinutes(1), 30, 47)
+                .build();
+
+        assertThat(timeSeries.getDurationsInSeconds().get(), equalTo(new int[] {60, 30}));
+        assertThat(timeSeries.getDurationInSeconds(0), equalTo(60L));
+        assertThat(timeSeries.getDurationInSeconds(1), equalTo(30L));
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void addEntryShouldThrowExceptionOnOutOfOrderEntry() {
+
+        newBuilder()
+                .addEntry(START_DATE_TIME, 60, 21)
+                .addEntry(START_DATE_TIME.minusMinutes(1), 60, 47);
+    }
+}
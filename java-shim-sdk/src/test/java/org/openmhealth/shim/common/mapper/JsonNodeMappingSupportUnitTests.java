@@ -9,6 +9,7 @@ import java.io.IOException;
 import java.math.BigDecimal;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.time.LocalTime;
 import java.time.OffsetDateTime;
 import java.time.ZoneOffset;
 import java.time.format.DateTimeFormatter;
@@ -16,6 +17,7 @@ import java.util.Optional;
 
 import static org.hamcrest.CoreMatchers.equalTo;
 import static org.hamcrest.CoreMatchers.notNullValue;
+import static org.hamcrest.CoreMatchers.sameInstance;
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.openmhealth.shim.common.mapper.JsonNodeMappingSupport.*;
 
@@ -656,4 +658,64 @@ public class JsonNodeMappingSupportUnitTests {
         assertThat(value, notNullValue());
         assertThat(value.isPresent(), equalTo(false));
     }
-}
\ No newline at end of file
+
+    @Test
+    public void asRequiredSecondOfDayShouldReturnSecondOfDay() throws IOException {
+
+        JsonNode node = objectMapper.readTree("{\"first\": \"00:00:00\", \"time\": \"13:05:09\", " +
+                "\"last\": \"23:59:59\", \"short\": \"13:05\"}");
+
+        assertThat(asRequiredSecondOfDay(node, "first"), equalTo(0));
+        assertThat(asRequiredSecondOfDay(node, "time"), equalTo(LocalTime.of(13, 5, 9).toSecondOfDay()));
+        assertThat(asRequiredSecondOfDay(node, "last"), equalTo(LocalTime.of(23, 59, 59).toSecondOfDay()));
+        assertThat(asRequiredSecondOfDay(node, "short"), equalTo(LocalTime.of(13, 5).toSecondOfDay()));
+    }
+
+    @Test(expectedExceptions = JsonNodeMappingException.class)
+    public void asRequiredSecondOfDayShouldThrowExceptionOnOutOfRangeTime() throws IOException {
+
+        asRequiredSecondOfDay(objectMapper.readTree("{\"time\": \"24:00:00\"}"), "time");
+    }
+
+    @Test(expectedExceptions = JsonNodeMappingException.class)
+    public void asRequiredSecondOfDayShouldThrowExceptionOnNonTime() throws IOException {
+
+        asRequiredSecondOfDay(objectMapper.readTree("{\"time\": \"1a:05:09\"}"), "time");
+    }
+
+    @Test
+    public void asOptionalTemporalShouldReuseCachedTemporal() throws IOException {
+
+        ParsedTemporalCache<OffsetDateTime> cache =
+                new ParsedTemporalCache<>(DateTimeFormatter.ISO_OFFSET_DATE_TIME, OffsetDateTime::parse);
+
+        JsonNode node = objectMapper.readTree("{\"end_date_time\": \"2014-01-01T12:15:04+02:00\"}");
+
+        Optional<OffsetDateTime> startDateTime = asOptionalTemporal(testNode, "date_time", cache);
+        Optional<OffsetDateTime> endDateTime = asOptionalTemporal(node, "end_date_time", cache);
+
+        assertThat(startDateTime.isPresent(), equalTo(true));
+        assertThat(startDateTime.get(), equalTo(OffsetDateTime.of(2014, 1, 1, 12, 15, 4, 0, ZoneOffset.ofHours(2))));
+        assertThat(endDateTime.get(), sameInstance(startDateTime.get()));
+        assertThat(cache.size(), equalTo(1));
+    }
+
+    @Test
+    public void asOptionalTemporalShouldReturnEmptyOnUncachedMalformedTemporal() {
+
+        ParsedTemporalCache<OffsetDateTime> cache =
+                new ParsedTemporalCache<>(DateTimeFormatter.ISO_OFFSET_DATE_TIME, OffsetDateTime::parse);
+
+        Optional<OffsetDateTime> value = asOptionalTemporal(testNode, "string", cache);
+
+        assertThat(value.isPresent(), equalTo(false));
+        assertThat(cache.size(), equalTo(0));
+    }
+
+    @Test(expectedExceptions = JsonNodeMappingException.class)
+    public void asRequiredTemporalShouldThrowExceptionOnMalformedCachedTemporal() {
+
+        asRequiredTemporal(testNode, "date", OffsetDateTime.class,
+                new ParsedTemporalCache<>(DateTimeFormatter.ISO_OFFSET_DATE_TIME, OffsetDateTime::parse));
+    }
+}
@@ -0,0 +1,89 @@
+/*
+ * Copyright 2017 Open mHealth
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.openmhealth.shim.common.timing;
+
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.Test;
+
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.hasSize;
+import static org.openmhealth.shim.common.timing.RequestTimingPhase.*;
+
+
+public class RequestTimingContextUnitTests {
+
+    @AfterMethod
+    public void clearContext() {
+
+        RequestTimingContext.clear();
+    }
+
+    @Test
+    public void timeShouldInvokeOperationWithoutContext() {
+
+        String result = RequestTimingContext.time(MAPPING, () -> "foo");
+
+        assertThat(result, equalTo("foo"));
+        assertThat(RequestTimingContext.current().isPresent(), equalTo(false));
+    }
+
+    @Test
+    public void timeShouldRecordPhaseInCurrentContext() {
+
+        RequestTimingContext context = RequestTimingContext.start();
+
+        RequestTimingContext.time(UPSTREAM_CALL, "api.fitbit.com/1/user/-/activities", () -> null);
+        RequestTimingContext.time(MAPPING, () -> null);
+
+        assertThat(context.getPhaseTimings(), hasSize(2));
+        assertThat(context.getPhaseTimings().get(0).getPhase(), equalTo(UPSTREAM_CALL));
+        assertThat(context.getPhaseTimings().get(1).getPhase(), equalTo(MAPPING));
+    }
+
+    @Test
+    public void timeShouldRecordPhaseWhenOperationFails() {
+
+        RequestTimingContext context = RequestTimingContext.start();
+
+        try {
+            RequestTimingContext.time(MAPPING, () -> {
+                throw new IllegalStateException();
+            });
+        }
+        catch (IllegalStateException e) {
+            // expected
+        }
+
+        assertThat(context.getPhaseTimings(), hasSize(1));
+    }
+
+    @Test
+    public void toServerTimingHeaderValueShouldFormatTimings() {
+
+        RequestTimingContext context = RequestTimingContext.start();
+
+        context.record(ACCESS_PARAMETER_LOOKUP, null, MILLISECONDS.toNanos(2));
+        context.record(UPSTREAM_CALL, "api.fitbit.com/1/user/-/body/log/weight", 312_500_000L);
+        context.record(SERIALIZATION, "say \"hi\"", 1_250L);
+
+        assertThat(context.toServerTimingHeaderValue(), equalTo("access-parameters;dur=2.000, " +
+                "upstream;dur=312.500;desc=\"api.fitbit.com/1/user/-/body/log/weight\", " +
+                "serialization;dur=0.001;desc=\"say \\\"hi\\\"\""));
+    }
+}
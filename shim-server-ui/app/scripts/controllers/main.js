@@ -141,7 +141,7 @@ angular.module('sandboxConsoleApp')
          */
         $scope.doLookup = function () {
             var searchTerm = $($("#uid-term")[0]).val();
-            var url = API_ROOT_URL + "/authorizations?username=" + searchTerm.trim();
+            var url = API_ROOT_URL + "/authorizations?match=substring&username=" + searchTerm.trim();
             $http.get(url)
                 .success(function (data) {
                     console.info("The data is: ", data);
@@ -17,6 +17,7 @@
 package org.openmhealth.shim;
 
 
+import org.openmhealth.shim.common.flightrecorder.TokenStoreAccessEvent;
 import org.springframework.data.domain.Sort;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.oauth2.client.resource.OAuth2ProtectedResourceDetails;
@@ -47,9 +48,14 @@ public class AccessParameterClientTokenServices implements ClientTokenServices {
         String username = authentication.getPrincipal().toString();
         String shimKey = authentication.getDetails().toString();
 
+        TokenStoreAccessEvent event = new TokenStoreAccessEvent();
+        event.begin();
+
         AccessParameters accessParameters = accessParametersRepo.findByUsernameAndShimKey(
                 username, shimKey, new Sort(Sort.Direction.DESC, "dateCreated"));
 
+        commitEvent(event, shimKey, "get", accessParameters != null);
+
         if (accessParameters == null || accessParameters.getSerializedToken() == null) {
             return null; //No token was found!
         }
@@ -65,12 +71,23 @@ public class AccessParameterClientTokenServices implements ClientTokenServices {
         String username = authentication.getPrincipal().toString();
         String shimKey = authentication.getDetails().toString();
 
+        TokenStoreAccessEvent event = new TokenStoreAccessEvent();
+        event.begin();
+
         AccessParameters accessParameters =
                 accessParametersRepo.findByUsernameAndShimKey(
                         username,
                         shimKey,
                         new Sort(Sort.Direction.DESC, "dateCreated"));
 
+        boolean found = accessParameters != null;
+
+        // a token refreshed by another request has already been stored
+        if (found && accessToken.getValue().equals(getValue(accessParameters))) {
+            commitEvent(event, shimKey, "save", true);
+            return;
+        }
+
         if (accessParameters == null) {
             accessParameters = new AccessParameters();
             accessParameters.setUsername(username);
@@ -80,16 +97,69 @@ public class AccessParameterClientTokenServices implements ClientTokenServices {
         accessParameters.setSerializedToken(SerializationUtils.serialize(accessToken));
 
         accessParametersRepo.save(accessParameters);
+
+        commitEvent(event, shimKey, "save", found);
     }
 
+    /**
+     * Removes the access token of a user, unless it can be refreshed. This is called when a token has expired, before
+     * it's refreshed, and a refreshable token is kept so that concurrent requests can wait for the refresh instead of
+     * finding no token at all. A refreshable token that can't be refreshed is removed by
+     * {@link AccessTokenRefreshCoordinator}.
+     */
     @Override
     public void removeAccessToken(OAuth2ProtectedResourceDetails resource, Authentication authentication) {
 
         String username = authentication.getPrincipal().toString();
         String shimKey = authentication.getDetails().toString();
 
+        TokenStoreAccessEvent event = new TokenStoreAccessEvent();
+        event.begin();
+
         List<AccessParameters> accessParameters = accessParametersRepo.findAllByUsernameAndShimKey(username, shimKey);
 
+        if (accessParameters.stream().anyMatch(this::isRefreshable)) {
+            commitEvent(event, shimKey, "remove", false);
+            return;
+        }
+
         accessParametersRepo.delete(accessParameters);
+
+        commitEvent(event, shimKey, "remove", !accessParameters.isEmpty());
+    }
+
+    private boolean isRefreshable(AccessParameters accessParameters) {
+
+        OAuth2AccessToken accessToken = getToken(accessParameters);
+
+        return accessToken != null && accessToken.getRefreshToken() != null;
+    }
+
+    private String getValue(AccessParameters accessParameters) {
+
+        OAuth2AccessToken accessToken = getToken(accessParameters);
+
+        return accessToken != null ? accessToken.getValue() : null;
+    }
+
+    private OAuth2AccessToken getToken(AccessParameters accessParameters) {
+
+        if (accessParameters.getSerializedToken() == null) {
+            return null;
+        }
+
+        return SerializationUtils.deserialize(accessParameters.getSerializedToken());
+    }
+
+    private void commitEvent(TokenStoreAccessEvent event, String shimKey, String operation, boolean found) {
+
+        event.end();
+
+        if (event.shouldCommit()) {
+            event.setShim(shimKey);
+            event.setOperation(operation);
+            event.setFound(found);
+            event.commit();
+        }
     }
 }
@@ -18,6 +18,7 @@ package org.openmhealth.shim;
 
 import org.springframework.data.domain.Sort;
 import org.springframework.data.mongodb.repository.MongoRepository;
+import org.springframework.data.mongodb.repository.Query;
 
 import java.util.List;
 
@@ -25,11 +26,15 @@ import java.util.List;
 /**
  * @author Danilo Bonilla
  */
-public interface AccessParametersRepo extends MongoRepository<AccessParameters, String> {
+public interface AccessParametersRepo extends MongoRepository<AccessParameters, String>, AccessParametersRepoCustom {
 
     AccessParameters findByUsernameAndShimKey(String username, String shimKey, Sort sort);
 
     List<AccessParameters> findAllByUsernameAndShimKey(String username, String shimKey);
 
-    List<AccessParameters> findAllByUsernameLike(String username);
+    /**
+     * @return the access parameters of a shim, with only their usernames populated
+     */
+    @Query(value = "{ 'shimKey' : ?0 }", fields = "{ 'username' : 1 }")
+    List<AccessParameters> findAllUsernamesByShimKey(String shimKey);
 }
@@ -0,0 +1,67 @@
+/*
+ * Copyright 2017 Open mHealth
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.openmhealth.shim;
+
+import java.util.List;
+
+
+/**
+ * Queries on access parameters that can't be derived from method names.
+ */
+public interface AccessParametersRepoCustom {
+
+    /**
+     * Finds the authorizations of users whose usernames start with a prefix. The authorizations are sorted by username
+     * and can be paged through by passing the last username of a page as the cursor of the next one.
+     *
+     * @param usernamePrefix the prefix of the usernames to find, which is matched literally
+     * @param afterUsername the username after which to start, or null to start with the first matching username
+     * @param limit the maximum number of users to return
+     * @return the authorizations of the matching users, sorted by username
+     */
+    List<UserAuthorizations> findAuthorizationsByUsernamePrefix(String usernamePrefix, String afterUsername, int limit);
+
+    /**
+     * Finds the authorizations of users whose usernames contain a substring. Unlike a prefix search, a substring search
+     * has to check every username in the index, so it's slower on large collections.
+     *
+     * @param usernameSubstring the substring of the usernames to find, which is matched literally
+     * @param afterUsername the username after which to start, or null to start with the first matching username
+     * @param limit the maximum number of users to return
+     * @return the authorizations of the matching users, sorted by username
+     * @see #findAuthorizationsByUsernamePrefix(String, String, int)
+     */
+    List<UserAuthorizations> findAuthorizationsByUsernameSubstring(String usernameSubstring, String afterUsername,
+            int limit);
+
+    /**
+     * Replaces the serialized token of access parameters, unless they have been modified since they were read.
+     *
+     * @param accessParameters the access parameters as they were read, whose version is incremented on success
+     * @param serializedToken the new serialized token
+     * @return true if the token has been replaced, false if the access parameters have been modified or deleted
+     */
+    boolean replaceSerializedToken(AccessParameters accessParameters, byte[] serializedToken);
+
+    /**
+     * Deletes access parameters, unless they have been modified since they were read.
+     *
+     * @param accessParameters the access parameters as they were read
+     * @return true if the access parameters have been deleted
+     */
+    boolean deleteIfUnmodified(AccessParameters accessParameters);
+}
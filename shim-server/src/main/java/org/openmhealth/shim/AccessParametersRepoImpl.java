@@ -0,0 +1,230 @@
+/*
+ * Copyright 2017 Open mHealth
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.openmhealth.shim;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoOperations;
+import org.springframework.data.mongodb.core.aggregation.TypedAggregation;
+import org.springframework.data.mongodb.core.index.Index;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+import javax.annotation.PostConstruct;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static java.util.Collections.emptyList;
+import static org.springframework.data.domain.Sort.Direction.ASC;
+import static org.springframework.data.mongodb.core.aggregation.Aggregation.*;
+
+
+/**
+ * Finds authorizations in two steps. The usernames of a page are found first, by walking the username index from the
+ * cursor, and the shim keys of only those users are then grouped by an aggregation. Both steps only read the username
+ * and shim key of each access parameters document, so tokens are neither transferred nor loaded into memory, and the
+ * cost of a page doesn't depend on the number of users after it.
+ *
+ * @see AccessParametersRepoCustom
+ */
+public class AccessParametersRepoImpl implements AccessParametersRepoCustom {
+
+    private static final String REGEX_METACHARACTERS = "\\^$.|?*+()[]{}";
+
+    @Autowired
+    private MongoOperations mongoOperations;
+
+
+    /**
+     * Creates the index that covers authorization queries.
+     */
+    @PostConstruct
+    public void ensureUsernameIndex() {
+
+        mongoOperations.indexOps(AccessParameters.class)
+                .ensureIndex(new Index().on("username", ASC).on("shimKey", ASC));
+    }
+
+    @Override
+    public List<UserAuthorizations> findAuthorizationsByUsernamePrefix(String usernamePrefix, String afterUsername,
+            int limit) {
+
+        checkNotNull(usernamePrefix);
+
+        // a case-sensitive regular expression anchored at the start is answered with an index range scan
+        return findAuthorizations("^" + escapeRegex(usernamePrefix), afterUsername, limit);
+    }
+
+    @Override
+    public List<UserAuthorizations> findAuthorizationsByUsernameSubstring(String usernameSubstring,
+            String afterUsername, int limit) {
+
+        checkNotNull(usernameSubstring);
+
+        // an unanchored regular expression is matched against every key of the username index instead
+        return findAuthorizations(escapeRegex(usernameSubstring), afterUsername, limit);
+    }
+
+    private List<UserAuthorizations> findAuthorizations(String usernameRegex, String afterUsername, int limit) {
+
+        checkArgument(limit > 0, "The limit must be positive.");
+
+        Set<String> usernames = findUsernames(usernameRegex, afterUsername, limit);
+
+        if (usernames.isEmpty()) {
+            return emptyList();
+        }
+
+        return mongoOperations
+                .aggregate(newAuthorizationsAggregation(usernames), UserAuthorizations.class)
+                .getMappedResults();
+    }
+
+    /**
+     * Finds the distinct usernames of a page. A user with several authorizations has several documents, so documents
+     * are read in batches until the page is full, and each batch starts after the last username of the previous one.
+     */
+    private Set<String> findUsernames(String usernameRegex, String afterUsername, int limit) {
+
+        Set<String> usernames = new LinkedHashSet<>();
+        String cursor = afterUsername;
+
+        while (usernames.size() < limit) {
+
+            List<AccessParameters> batch =
+                    mongoOperations.find(newUsernamesQuery(usernameRegex, cursor, limit), AccessParameters.class);
+
+            for (AccessParameters accessParameters : batch) {
+                if (usernames.size() < limit) {
+                    usernames.add(accessParameters.getUsername());
+                }
+            }
+
+            if (batch.size() < limit) {
+                break;
+            }
+
+            cursor = batch.get(batch.size() - 1).getUsername();
+        }
+
+        return usernames;
+    }
+
+    /**
+     * @return a query covered by the username index that reads the usernames of a batch of documents in order
+     */
+    static Query newUsernamesQuery(String usernameRegex, String afterUsername, int limit) {
+
+        Criteria criteria = Criteria.where("username").regex(usernameRegex);
+
+        if (afterUsername != null) {
+            // the bounds of both criteria are intersected into a single index range
+            criteria = new Criteria().andOperator(criteria, Criteria.where("username").gt(afterUsername));
+        }
+
+        Query query = new Query(criteria)
+                .with(new Sort(ASC, "username"))
+                .limit(limit);
+
+        query.fields().include("username").exclude("_id");
+
+        return query;
+    }
+
+    @Override
+    public boolean replaceSerializedToken(AccessParameters accessParameters, byte[] serializedToken) {
+
+        checkNotNull(accessParameters);
+        checkNotNull(serializedToken);
+
+        Update update = new Update()
+                .set("serializedToken", serializedToken)
+                .set("version", accessParameters.getVersion() + 1);
+
+        if (mongoOperations.updateFirst(newUnmodifiedQuery(accessParameters), update, AccessParameters.class).getN()
+                == 0) {
+            return false;
+        }
+
+        accessParameters.setSerializedToken(serializedToken);
+        accessParameters.setVersion(accessParameters.getVersion() + 1);
+
+        return true;
+    }
+
+    @Override
+    public boolean deleteIfUnmodified(AccessParameters accessParameters) {
+
+        checkNotNull(accessParameters);
+
+        return mongoOperations.remove(newUnmodifiedQuery(accessParameters), AccessParameters.class).getN() > 0;
+    }
+
+    /**
+     * @return a query that matches the access parameters if their version hasn't changed since they were read
+     */
+    static Query newUnmodifiedQuery(AccessParameters accessParameters) {
+
+        checkNotNull(accessParameters.getId());
+
+        Criteria versionCriteria = Criteria.where("version").is(accessParameters.getVersion());
+
+        // documents written before versioning was introduced don't have a version
+        if (accessParameters.getVersion() == 0) {
+            versionCriteria = new Criteria().orOperator(versionCriteria, Criteria.where("version").exists(false));
+        }
+
+        return new Query(new Criteria().andOperator(Criteria.where("_id").is(accessParameters.getId()),
+                versionCriteria));
+    }
+
+    static TypedAggregation<AccessParameters> newAuthorizationsAggregation(Collection<String> usernames) {
+
+        return newAggregation(AccessParameters.class,
+                match(Criteria.where("username").in(usernames)),
+                project("username", "shimKey").andExclude("_id"),
+                group("username").addToSet("shimKey").as("auths"),
+                sort(ASC, "_id"),
+                project("auths").and("username").previousOperation());
+    }
+
+    /**
+     * Escapes the metacharacters of a string with backslashes, rather than quoting it with \Q and \E, since MongoDB
+     * only uses an index for prefixes without quoting.
+     */
+    static String escapeRegex(String value) {
+
+        StringBuilder escapedValue = new StringBuilder(value.length() + 8);
+
+        for (int i = 0; i < value.length(); i++) {
+            char character = value.charAt(i);
+
+            if (REGEX_METACHARACTERS.indexOf(character) >= 0) {
+                escapedValue.append('\\');
+            }
+
+            escapedValue.append(character);
+        }
+
+        return escapedValue.toString();
+    }
+}
@@ -0,0 +1,223 @@
+/*
+ * Copyright 2017 Open mHealth
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.openmhealth.shim;
+
+import org.openmhealth.shimmer.common.service.LeaseService;
+import org.openmhealth.shimmer.configuration.ClusterSettings;
+import org.slf4j.Logger;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Sort;
+import org.springframework.security.oauth2.client.resource.UserRedirectRequiredException;
+import org.springframework.security.oauth2.common.OAuth2AccessToken;
+import org.springframework.security.oauth2.common.exceptions.InvalidGrantException;
+import org.springframework.security.oauth2.common.exceptions.OAuth2Exception;
+import org.springframework.security.oauth2.common.util.SerializationUtils;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Supplier;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+import static org.slf4j.LoggerFactory.getLogger;
+
+
+/**
+ * Makes sure that the access token of a user and shim is refreshed by a single request at a time, across all instances.
+ * Data providers that rotate refresh tokens, like Fitbit, invalidate a refresh token once it's used, so a second,
+ * concurrent refresh would fail and cost the user their authorization.
+ * <p>
+ * Requests on the same instance share a single refresh. Across instances, the refresh is guarded by a lease, and the
+ * new token is only stored if the access parameters haven't changed since they were read. Requests that lose the race
+ * for the lease wait for the winner to store its token and then use it, instead of calling the data provider.
+ */
+@Component
+public class AccessTokenRefreshCoordinator {
+
+    private static final Logger logger = getLogger(AccessTokenRefreshCoordinator.class);
+
+    static final long POLL_INTERVAL_IN_MILLIS = 100;
+
+    private final AccessParametersRepo accessParametersRepo;
+    private final LeaseService leaseService;
+    private final ClusterSettings clusterSettings;
+    private final ConcurrentMap<String, CompletableFuture<OAuth2AccessToken>> refreshesInFlight =
+            new ConcurrentHashMap<>();
+
+
+    @Autowired
+    public AccessTokenRefreshCoordinator(AccessParametersRepo accessParametersRepo, LeaseService leaseService,
+            ClusterSettings clusterSettings) {
+
+        checkNotNull(accessParametersRepo);
+        checkNotNull(leaseService);
+        checkNotNull(clusterSettings);
+
+        this.accessParametersRepo = accessParametersRepo;
+        this.leaseService = leaseService;
+        this.clusterSettings = clusterSettings;
+    }
+
+    /**
+     * Refreshes the expired access token of a user and shim, or returns the token another request has refreshed it to.
+     *
+     * @param username the user
+     * @param shimKey the shim
+     * @param refreshCall the call to the data provider that refreshes the token
+     * @return the refreshed access token
+     */
+    public OAuth2AccessToken refresh(String username, String shimKey, Supplier<OAuth2AccessToken> refreshCall) {
+
+        checkNotNull(username);
+        checkNotNull(shimKey);
+        checkNotNull(refreshCall);
+
+        String refreshKey = shimKey + ":" + username;
+
+        CompletableFuture<OAuth2AccessToken> refresh = new CompletableFuture<>();
+        CompletableFuture<OAuth2AccessToken> refreshInFlight = refreshesInFlight.putIfAbsent(refreshKey, refresh);
+
+        if (refreshInFlight != null) {
+            return join(refreshInFlight);
+        }
+
+        try {
+            refresh.complete(refreshOnce(refreshKey, username, shimKey, refreshCall));
+        }
+        catch (RuntimeException e) {
+            refresh.completeExceptionally(e);
+        }
+        finally {
+            refreshesInFlight.remove(refreshKey, refresh);
+        }
+
+        return join(refresh);
+    }
+
+    private OAuth2AccessToken refreshOnce(String refreshKey, String username, String shimKey,
+            Supplier<OAuth2AccessToken> refreshCall) {
+
+        String leaseName = "token-refresh:" + refreshKey;
+
+        // a winner that stops without releasing its lease is replaced once the lease expires
+        long deadline = System.currentTimeMillis() + 2 * clusterSettings.getTimeToLiveInMillis();
+
+        while (true) {
+            AccessParameters accessParameters = findRequiredAccessParameters(username, shimKey);
+            OAuth2AccessToken storedToken = getToken(accessParameters);
+
+            if (storedToken != null && !storedToken.isExpired()) {
+                return storedToken;
+            }
+
+            if (leaseService.tryAcquire(leaseName)) {
+                try {
+                    return refreshWhileHoldingLease(username, shimKey, refreshCall);
+                }
+                finally {
+                    leaseService.release(leaseName);
+                }
+            }
+
+            if (System.currentTimeMillis() > deadline) {
+                throw new IllegalStateException("The access token of user '" + username + "' for shim '" + shimKey
+                        + "' hasn't been refreshed by the instance refreshing it.");
+            }
+
+            try {
+                Thread.sleep(POLL_INTERVAL_IN_MILLIS);
+            }
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("The wait for an access token refresh has been interrupted.", e);
+            }
+        }
+    }
+
+    private OAuth2AccessToken refreshWhileHoldingLease(String username, String shimKey,
+            Supplier<OAuth2AccessToken> refreshCall) {
+
+        // the previous holder of the lease may have stored a token between the last read and the acquisition
+        AccessParameters accessParameters = findRequiredAccessParameters(username, shimKey);
+        OAuth2AccessToken storedToken = getToken(accessParameters);
+
+        if (storedToken != null && !storedToken.isExpired()) {
+            return storedToken;
+        }
+
+        OAuth2AccessToken refreshedToken;
+
+        try {
+            refreshedToken = refreshCall.get();
+        }
+        catch (OAuth2Exception | UserRedirectRequiredException e) {
+            // the refresh token has been rejected, so the user has to authorize the shim again
+            if (accessParametersRepo.deleteIfUnmodified(accessParameters)) {
+                logger.info("The access token of user '{}' for shim '{}' couldn't be refreshed and has been removed.",
+                        username, shimKey);
+            }
+
+            throw e;
+        }
+
+        if (!accessParametersRepo.replaceSerializedToken(accessParameters,
+                SerializationUtils.serialize(refreshedToken))) {
+            logger.warn("The access parameters of user '{}' for shim '{}' changed while their token was refreshed.",
+                    username, shimKey);
+        }
+
+        return refreshedToken;
+    }
+
+    /**
+     * @throws InvalidGrantException if the access parameters have been removed, e.g. by a request whose refresh token
+     * was rejected, in which case the user has to authorize the shim again and refreshing would only fail once more
+     */
+    private AccessParameters findRequiredAccessParameters(String username, String shimKey) {
+
+        AccessParameters accessParameters = accessParametersRepo
+                .findByUsernameAndShimKey(username, shimKey, new Sort(Sort.Direction.DESC, "dateCreated"));
+
+        if (accessParameters == null) {
+            throw new InvalidGrantException("The access token of user '" + username + "' for shim '" + shimKey
+                    + "' has been removed.");
+        }
+
+        return accessParameters;
+    }
+
+    private static OAuth2AccessToken getToken(AccessParameters accessParameters) {
+
+        if (accessParameters.getSerializedToken() == null) {
+            return null;
+        }
+
+        return SerializationUtils.deserialize(accessParameters.getSerializedToken());
+    }
+
+    private static OAuth2AccessToken join(CompletableFuture<OAuth2AccessToken> refresh) {
+
+        try {
+            return refresh.join();
+        }
+        catch (CompletionException e) {
+            throw e.getCause() instanceof RuntimeException ? (RuntimeException) e.getCause() : e;
+        }
+    }
+}
@@ -0,0 +1,217 @@
+/*
+ * Copyright 2017 Open mHealth
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.openmhealth.shim;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.bson.types.ObjectId;
+import org.openmhealth.shimmer.configuration.AuthorizationRequestStoreSettings;
+import org.openmhealth.shimmer.configuration.ClusterSettings;
+import org.slf4j.Logger;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.concurrent.TimeUnit.MINUTES;
+import static org.slf4j.LoggerFactory.getLogger;
+
+
+/**
+ * A store of pending authorization requests, i.e. requests that are waiting for a data provider to redirect the user
+ * back to Shimmer. Requests are kept in memory for a limited time, so that redirects are resolved without a database
+ * lookup. Requests are also written to the database, which is where they are read from if they have been evicted from
+ * memory, e.g. after a restart or when the redirect reaches a different instance. A single instance writes requests in
+ * the background, but instances in a cluster write them before returning, so that any instance can resolve the
+ * redirect.
+ */
+@Component
+public class AuthorizationRequestParametersStore {
+
+    private static final Logger logger = getLogger(AuthorizationRequestParametersStore.class);
+
+    private final AuthorizationRequestParametersRepo repository;
+    private final AuthorizationRequestStoreSettings settings;
+    private final ClusterSettings clusterSettings;
+    private final Cache<String, AuthorizationRequestParameters> parametersByStateKey;
+
+    // the latest unwritten version of each request, keyed by identifier
+    private final ConcurrentMap<String, AuthorizationRequestParameters> pendingWrites = new ConcurrentHashMap<>();
+    private final AtomicBoolean writeScheduled = new AtomicBoolean();
+    private final ScheduledExecutorService writeExecutorService;
+
+
+    @Autowired
+    public AuthorizationRequestParametersStore(AuthorizationRequestParametersRepo repository,
+            AuthorizationRequestStoreSettings settings, ClusterSettings clusterSettings) {
+
+        checkNotNull(repository);
+        checkNotNull(settings);
+        checkNotNull(clusterSettings);
+        checkArgument(settings.getTimeToLiveInMinutes() > 0, "The time to live must be positive.");
+        checkArgument(settings.getMaximumSize() > 0, "The maximum size must be positive.");
+        checkArgument(settings.getWriteBehindDelayInMillis() >= 0, "The write behind delay is negative.");
+
+        this.repository = repository;
+        this.settings = settings;
+        this.clusterSettings = clusterSettings;
+        this.parametersByStateKey = CacheBuilder.newBuilder()
+                .expireAfterWrite(settings.getTimeToLiveInMinutes(), MINUTES)
+                .maximumSize(settings.getMaximumSize())
+                .build();
+        this.writeExecutorService = Executors.newSingleThreadScheduledExecutor(
+                new ThreadFactoryBuilder().setNameFormat("authorization-request-writer").setDaemon(true).build());
+    }
+
+    /**
+     * Saves an authorization request. The request is available to {@link #findByStateKey(String)} immediately. It is
+     * written to the database shortly after, or before this method returns if clustering is enabled.
+     *
+     * @param parameters the authorization request, which is assigned an identifier if it doesn't have one
+     * @return the authorization request
+     */
+    public AuthorizationRequestParameters save(AuthorizationRequestParameters parameters) {
+
+        checkNotNull(parameters);
+
+        // assigned here instead of by the database, so the request isn't modified while it's being written
+        if (parameters.getId() == null) {
+            parameters.setId(new ObjectId().toHexString());
+        }
+
+        if (parameters.getStateKey() != null) {
+            parametersByStateKey.put(parameters.getStateKey(), parameters);
+        }
+
+        if (clusterSettings.isEnabled()) {
+            repository.save(parameters);
+            return parameters;
+        }
+
+        // a copy is written, since the saved request can be modified, e.g. by the caller, while it's being written
+        pendingWrites.put(parameters.getId(), copyOf(parameters));
+
+        if (writeScheduled.compareAndSet(false, true)) {
+            writeExecutorService.schedule(this::writePendingRequests, settings.getWriteBehindDelayInMillis(),
+                    MILLISECONDS);
+        }
+
+        return parameters;
+    }
+
+    /**
+     * @param stateKey the state key of an authorization request
+     * @return the authorization request, or null if none exists
+     */
+    public AuthorizationRequestParameters findByStateKey(String stateKey) {
+
+        checkNotNull(stateKey);
+
+        AuthorizationRequestParameters parameters = parametersByStateKey.getIfPresent(stateKey);
+
+        if (parameters == null) {
+            parameters = repository.findByStateKey(stateKey);
+
+            if (parameters != null) {
+                parametersByStateKey.put(stateKey, parameters);
+            }
+        }
+
+        return parameters;
+    }
+
+    /**
+     * @return a copy of the authorization request that shares none of its mutable state
+     */
+    private static AuthorizationRequestParameters copyOf(AuthorizationRequestParameters parameters) {
+
+        AuthorizationRequestParameters copy = new AuthorizationRequestParameters();
+
+        copy.setId(parameters.getId());
+        copy.setStateKey(parameters.getStateKey());
+        copy.setUsername(parameters.getUsername());
+        copy.setRedirectUri(parameters.getRedirectUri());
+        copy.setAuthorizationUrl(parameters.getAuthorizationUrl());
+        copy.setClientRedirectUrl(parameters.getClientRedirectUrl());
+        copy.setAuthorized(parameters.getIsAuthorized());
+
+        if (parameters.getRequestParams() != null) {
+            copy.setRequestParams(new HashMap<>(parameters.getRequestParams()));
+        }
+
+        if (parameters.getSerializedRequest() != null) {
+            copy.setSerializedRequest(parameters.getSerializedRequest().clone());
+        }
+
+        return copy;
+    }
+
+    /**
+     * Writes the requests saved since the last write in a single batch.
+     */
+    void writePendingRequests() {
+
+        writeScheduled.set(false);
+
+        List<AuthorizationRequestParameters> batch = new ArrayList<>();
+
+        for (String id : pendingWrites.keySet()) {
+            AuthorizationRequestParameters parameters = pendingWrites.remove(id);
+
+            if (parameters != null) {
+                batch.add(parameters);
+            }
+        }
+
+        if (batch.isEmpty()) {
+            return;
+        }
+
+        try {
+            repository.save(batch);
+        }
+        catch (RuntimeException e) {
+            logger.error("{} authorization requests couldn't be written, they will be retried.", batch.size(), e);
+
+            // newer versions saved in the meantime take precedence
+            batch.forEach(parameters -> pendingWrites.putIfAbsent(parameters.getId(), parameters));
+
+            if (!writeExecutorService.isShutdown() && writeScheduled.compareAndSet(false, true)) {
+                writeExecutorService.schedule(this::writePendingRequests, 1, MINUTES);
+            }
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+
+        writeExecutorService.shutdownNow();
+        writePendingRequests();
+    }
+}
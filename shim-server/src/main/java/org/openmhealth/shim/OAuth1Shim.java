@@ -18,23 +18,48 @@
 package org.openmhealth.shim;
 
 import oauth.signpost.OAuth;
+import org.apache.http.Header;
+import org.apache.http.HttpEntity;
 import org.apache.http.HttpResponse;
+import org.apache.http.HttpVersion;
 import org.apache.http.client.HttpClient;
 import org.apache.http.client.methods.HttpGet;
 import org.apache.http.client.methods.HttpRequestBase;
-import org.apache.http.impl.client.HttpClients;
+import org.apache.http.entity.ByteArrayEntity;
+import org.apache.http.entity.InputStreamEntity;
+import org.apache.http.message.BasicHttpResponse;
+import org.apache.http.message.BasicStatusLine;
+import org.apache.http.util.EntityUtils;
+import org.openmhealth.shim.UpstreamResponseSharingContext.SharedResponse;
+import org.openmhealth.shim.common.flightrecorder.ShimUpstreamCallEvent;
+import org.openmhealth.shim.common.timing.RequestTimingContext;
 import org.openmhealth.shimmer.configuration.DeploymentSettings;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.Sort;
 import org.springframework.http.HttpMethod;
+import org.springframework.util.LinkedMultiValueMap;
+import org.springframework.util.MultiValueMap;
 import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.util.UriComponents;
+import org.springframework.web.util.UriComponentsBuilder;
 
 import javax.servlet.http.HttpServletRequest;
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
 import java.net.URL;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicReference;
 
+import static org.openmhealth.shim.UpstreamResponseSharingContext.isWholeBody;
+import static org.openmhealth.shim.UpstreamResponseSharingContext.readBodyPrefix;
+import static org.openmhealth.shim.common.timing.RequestTimingPhase.UPSTREAM_CALL;
 import static org.springframework.data.domain.Sort.Direction.DESC;
 
 
@@ -48,12 +73,16 @@ public abstract class OAuth1Shim implements Shim {
     private AccessParametersRepo accessParametersRepo;
 
     @Autowired
-    private AuthorizationRequestParametersRepo authorizationRequestParametersRepo;
+    private AuthorizationRequestParametersStore authorizationRequestParametersStore;
 
     @Autowired
     private DeploymentSettings deploymentSettings;
 
-    protected HttpClient httpClient = HttpClients.createDefault();
+    /**
+     * The shared client, which pools connections and negotiates compressed responses.
+     */
+    @Autowired
+    protected HttpClient httpClient;
 
 
     protected abstract OAuth1ClientSettings getClientSettings();
@@ -90,7 +119,7 @@ public abstract class OAuth1Shim implements Shim {
             tokenRequest =
                     getRequestTokenRequest(getRequestTokenUrl(), null, null, requestTokenParameters);
 
-            HttpResponse httpResponse = httpClient.execute(tokenRequest);
+            HttpResponse httpResponse = executeUpstreamRequest(tokenRequest);
 
             Map<String, String> tokenParameters = OAuth1Utils.parseRequestTokenResponse(httpResponse);
 
@@ -115,7 +144,7 @@ public abstract class OAuth1Shim implements Shim {
             parameters.setAuthorizationUrl(authorizeUrl.toString());
             parameters.setRequestParams(tokenParameters);
 
-            return authorizationRequestParametersRepo.save(parameters);
+            return authorizationRequestParametersStore.save(parameters);
         }
         catch (HttpClientErrorException e) {
             e.printStackTrace();
@@ -140,7 +169,7 @@ public abstract class OAuth1Shim implements Shim {
         String requestToken = servletRequest.getParameter(OAuth.OAUTH_TOKEN);
         final String requestVerifier = servletRequest.getParameter(OAuth.OAUTH_VERIFIER);
 
-        AuthorizationRequestParameters authParams = authorizationRequestParametersRepo.findByStateKey(stateKey);
+        AuthorizationRequestParameters authParams = authorizationRequestParametersStore.findByStateKey(stateKey);
         if (authParams == null) {
             throw new ShimException("Invalid state, could not find corresponding auth parameters");
         }
@@ -155,7 +184,7 @@ public abstract class OAuth1Shim implements Shim {
                     requestToken, requestTokenSecret, new HashMap<String, String>() {{
                         put(OAuth.OAUTH_VERIFIER, requestVerifier);
                     }});
-            response = httpClient.execute(accessTokenRequest);
+            response = executeUpstreamRequest(accessTokenRequest);
         }
         catch (IOException e) {
             e.printStackTrace();
@@ -193,6 +222,138 @@ public abstract class OAuth1Shim implements Shim {
         //noop, override if additional parameters must be set here
     }
 
+    /**
+     * Executes a request to the data provider, recording its duration in the current request timing context, if any,
+     * and emitting a flight recorder event. If an upstream response sharing context is bound to the current thread,
+     * the response of a GET request is shared with identical requests that differ only in their OAuth parameters,
+     * unless it's an error response or its body is too large to share.
+     *
+     * @param request the request to execute
+     * @return the response
+     */
+    protected HttpResponse executeUpstreamRequest(HttpRequestBase request) throws IOException {
+
+        Optional<UpstreamResponseSharingContext> context = UpstreamResponseSharingContext.current();
+
+        if (!context.isPresent() || !HttpGet.METHOD_NAME.equals(request.getMethod())) {
+            return executeTimedUpstreamRequest(request);
+        }
+
+        AtomicReference<HttpResponse> unsharedResponse = new AtomicReference<>();
+
+        Optional<SharedResponse> sharedResponse = context.get().getOrCall(getSharingKey(request), () -> {
+
+            HttpResponse response = executeTimedUpstreamRequest(request);
+            HttpEntity entity = response.getEntity();
+
+            if (response.getStatusLine().getStatusCode() / 100 != 2) {
+                unsharedResponse.set(response);
+                return Optional.empty();
+            }
+
+            byte[] body = new byte[0];
+
+            if (entity != null) {
+                InputStream content = entity.getContent();
+
+                try {
+                    body = readBodyPrefix(content);
+                }
+                catch (IOException | RuntimeException e) {
+                    EntityUtils.consumeQuietly(entity);
+                    throw e;
+                }
+
+                if (isWholeBody(body)) {
+                    EntityUtils.consumeQuietly(entity);
+                }
+                else {
+                    // the part that has been read is replayed before the rest of the body is streamed
+                    InputStreamEntity prefixedEntity = new InputStreamEntity(
+                            new SequenceInputStream(new ByteArrayInputStream(body), content));
+
+                    prefixedEntity.setContentType(entity.getContentType());
+                    prefixedEntity.setContentEncoding(entity.getContentEncoding());
+                    response.setEntity(prefixedEntity);
+
+                    unsharedResponse.set(response);
+                    return Optional.empty();
+                }
+            }
+
+            Map<String, List<String>> headers = new LinkedHashMap<>();
+
+            for (Header header : response.getAllHeaders()) {
+                headers.computeIfAbsent(header.getName(), name -> new ArrayList<>()).add(header.getValue());
+            }
+
+            return Optional.of(new SharedResponse(response.getStatusLine().getStatusCode(),
+                    response.getStatusLine().getReasonPhrase(), headers, body));
+        });
+
+        if (!sharedResponse.isPresent()) {
+            return unsharedResponse.get();
+        }
+
+        HttpResponse response = new BasicHttpResponse(new BasicStatusLine(HttpVersion.HTTP_1_1,
+                sharedResponse.get().getStatusCode(), sharedResponse.get().getReasonPhrase()));
+
+        for (Map.Entry<String, List<String>> header : sharedResponse.get().getHeaders().entrySet()) {
+            for (String value : header.getValue()) {
+                response.addHeader(header.getKey(), value);
+            }
+        }
+
+        response.setEntity(new ByteArrayEntity(sharedResponse.get().getBody()));
+
+        return response;
+    }
+
+    /**
+     * @return a key that identifies the request regardless of the nonce, timestamp and signature it was signed with
+     */
+    private String getSharingKey(HttpRequestBase request) {
+
+        UriComponents uriComponents = UriComponentsBuilder.fromUri(request.getURI()).build(true);
+
+        MultiValueMap<String, String> queryParams = new LinkedMultiValueMap<>(uriComponents.getQueryParams());
+        queryParams.keySet().removeIf(name -> name.startsWith("oauth_"));
+
+        return UriComponentsBuilder.fromUri(request.getURI())
+                .replaceQueryParams(queryParams)
+                .build(true)
+                .toUriString();
+    }
+
+    private HttpResponse executeTimedUpstreamRequest(HttpRequestBase request) throws IOException {
+
+        String endpoint = request.getURI().getHost() + request.getURI().getPath();
+
+        ShimUpstreamCallEvent event = new ShimUpstreamCallEvent();
+        event.begin();
+
+        HttpResponse response = null;
+
+        try {
+            response = RequestTimingContext.time(UPSTREAM_CALL, endpoint, () -> httpClient.execute(request));
+
+            return response;
+        }
+        finally {
+            event.end();
+
+            if (event.shouldCommit()) {
+                event.setShim(getShimKey());
+                event.setEndpoint(endpoint);
+                event.setStatus(response != null ? response.getStatusLine().getStatusCode() : 0);
+                event.setBytes(response != null && response.getEntity() != null
+                        ? response.getEntity().getContentLength()
+                        : -1);
+                event.commit();
+            }
+        }
+    }
+
     protected HttpRequestBase getSignedRequest(String unsignedUrl, String token, String tokenSecret,
             Map<String, String> oauthParams)
             throws ShimException {
@@ -0,0 +1,411 @@
+/*
+ * Copyright 2017 Open mHealth
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.openmhealth.shim;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.UnsupportedEncodingException;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.net.URLDecoder;
+import java.security.GeneralSecurityException;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.SortedSet;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ThreadLocalRandom;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+
+/**
+ * Signs OAuth 1.0a requests with HMAC-SHA1. The signer produces the same signatures, signed URLs and authorization
+ * headers as Signpost does, including Signpost's treatment of additional parameters, which are signed as given, and of
+ * query parameters, which replace additional parameters of the same name. Unlike Signpost, it leaves parameters without
+ * a value out of authorization headers instead of writing them as "null", doesn't create consumer objects or parse the
+ * signed URL back apart, and reuses the {@link Mac} instances of each thread, keyed by signing key.
+ */
+public class OAuth1Signer {
+
+    public static final String SIGNATURE_METHOD = "HMAC-SHA1";
+
+    private static final String MAC_ALGORITHM = "HmacSHA1";
+    private static final int MAXIMUM_MACS_PER_THREAD = 16;
+    private static final char[] HEX_DIGITS = "0123456789ABCDEF".toCharArray();
+
+    private static final ThreadLocal<Map<String, Mac>> macsBySigningKey = ThreadLocal.withInitial(() ->
+            new LinkedHashMap<String, Mac>(MAXIMUM_MACS_PER_THREAD * 2, 0.75f, true) {
+
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, Mac> eldest) {
+                    return size() > MAXIMUM_MACS_PER_THREAD;
+                }
+            });
+
+    private final String consumerKey;
+    private final String consumerSecret;
+
+
+    public OAuth1Signer(String consumerKey, String consumerSecret) {
+
+        this.consumerKey = checkNotNull(consumerKey, "A consumer key hasn't been specified.");
+        this.consumerSecret = checkNotNull(consumerSecret, "A consumer secret hasn't been specified.");
+    }
+
+    /**
+     * Signs a GET request by adding the OAuth parameters and the signature to its query string.
+     *
+     * @param unsignedUrl the URL to sign
+     * @param token the request or access token, if any
+     * @param tokenSecret the secret of the token, if any
+     * @param additionalParameters parameters to sign, e.g. oauth_callback, which are used as given, i.e. they must
+     * already be encoded if necessary
+     * @return the signed URL
+     */
+    public String signUrl(String unsignedUrl, String token, String tokenSecret,
+            Map<String, String> additionalParameters) throws ShimException {
+
+        SignatureParameters parameters = getSignedParameters("GET", unsignedUrl, token, tokenSecret,
+                additionalParameters);
+
+        StringBuilder signedUrl = new StringBuilder(unsignedUrl.length() + 256).append(unsignedUrl);
+        char delimiter = unsignedUrl.contains("?") ? '&' : '?';
+
+        for (Map.Entry<String, SortedSet<String>> parameter : parameters.getOAuthParameters().entrySet()) {
+            for (String value : parameter.getValue()) {
+                signedUrl.append(delimiter).append(parameter.getKey()).append('=').append(value);
+                delimiter = '&';
+            }
+        }
+
+        return signedUrl.toString();
+    }
+
+    /**
+     * Signs a request for an authorization header.
+     *
+     * @param method the HTTP method of the request
+     * @param url the URL of the request
+     * @param token the request or access token, if any
+     * @param tokenSecret the secret of the token, if any
+     * @param additionalParameters parameters to sign, which are used as given
+     * @return the value of the authorization header
+     */
+    public String getAuthorizationHeader(String method, String url, String token, String tokenSecret,
+            Map<String, String> additionalParameters) throws ShimException {
+
+        SignatureParameters parameters = getSignedParameters(method, url, token, tokenSecret, additionalParameters);
+
+        StringBuilder header = new StringBuilder(256).append("OAuth ");
+
+        if (parameters.containsKey("realm") && !parameters.get("realm").isEmpty()) {
+            appendHeaderElement(header, "realm", parameters.get("realm")).append(", ");
+        }
+
+        boolean first = true;
+
+        for (Map.Entry<String, SortedSet<String>> parameter : parameters.getOAuthParameters().entrySet()) {
+
+            // a parameter without a value, e.g. an additional parameter whose value is null, is left out of the header
+            if (parameter.getValue().isEmpty()) {
+                continue;
+            }
+
+            if (!first) {
+                header.append(", ");
+            }
+
+            appendHeaderElement(header, parameter.getKey(), parameter.getValue());
+            first = false;
+        }
+
+        return header.toString();
+    }
+
+    private static StringBuilder appendHeaderElement(StringBuilder header, String key, SortedSet<String> values) {
+
+        return header.append(key).append("=\"").append(values.first()).append('"');
+    }
+
+    /**
+     * @return the parameters of the request, including the OAuth parameters and the signature
+     */
+    private SignatureParameters getSignedParameters(String method, String url, String token, String tokenSecret,
+            Map<String, String> additionalParameters) throws ShimException {
+
+        checkNotNull(method);
+        checkNotNull(url);
+
+        SignatureParameters parameters = new SignatureParameters();
+
+        if (additionalParameters != null) {
+            additionalParameters.forEach((key, value) -> parameters.put(key, value, false));
+        }
+
+        int queryIndex = url.indexOf('?');
+
+        if (queryIndex >= 0) {
+            parameters.replaceAll(decodeForm(url.substring(queryIndex + 1)));
+        }
+
+        boolean hasToken = token != null && !token.isEmpty();
+
+        parameters.putIfAbsent("oauth_consumer_key", consumerKey);
+        parameters.putIfAbsent("oauth_signature_method", SIGNATURE_METHOD);
+        parameters.putIfAbsent("oauth_timestamp", Long.toString(System.currentTimeMillis() / 1000L));
+        parameters.putIfAbsent("oauth_nonce", Long.toString(ThreadLocalRandom.current().nextLong()));
+        parameters.putIfAbsent("oauth_version", "1.0");
+
+        if (hasToken) {
+            parameters.putIfAbsent("oauth_token", token);
+        }
+
+        parameters.remove("oauth_signature");
+
+        String signingKey = percentEncode(consumerSecret) + '&' + percentEncode(token != null ? tokenSecret : null);
+        String signature = sign(signingKey, getSignatureBaseString(method, url, parameters));
+
+        parameters.put("oauth_signature", signature, true);
+
+        return parameters;
+    }
+
+    private static String getSignatureBaseString(String method, String url, SignatureParameters parameters)
+            throws ShimException {
+
+        StringBuilder normalizedParameters = new StringBuilder(512);
+
+        for (Map.Entry<String, SortedSet<String>> parameter : parameters.entrySet()) {
+            String key = parameter.getKey();
+
+            if (key.equals("oauth_signature") || key.equals("realm")) {
+                continue;
+            }
+            if (normalizedParameters.length() > 0) {
+                normalizedParameters.append('&');
+            }
+
+            boolean firstValue = true;
+
+            for (String value : parameter.getValue()) {
+                if (!firstValue) {
+                    normalizedParameters.append('&');
+                }
+
+                normalizedParameters.append(key).append('=').append(value);
+                firstValue = false;
+            }
+        }
+
+        return method + '&' + percentEncode(normalizeUrl(url)) + '&' + percentEncode(normalizedParameters.toString());
+    }
+
+    private static String normalizeUrl(String url) throws ShimException {
+
+        URI uri;
+
+        try {
+            uri = new URI(url);
+        }
+        catch (URISyntaxException e) {
+            throw new ShimException("The URL '" + url + "' can't be signed.", e);
+        }
+
+        String scheme = uri.getScheme().toLowerCase();
+        String authority = uri.getAuthority().toLowerCase();
+
+        boolean isDefaultPort =
+                (scheme.equals("http") && uri.getPort() == 80) || (scheme.equals("https") && uri.getPort() == 443);
+
+        if (isDefaultPort) {
+            authority = authority.substring(0, authority.lastIndexOf(':'));
+        }
+
+        String path = uri.getRawPath();
+
+        return scheme + "://" + authority + (path == null || path.isEmpty() ? "/" : path);
+    }
+
+    private static String sign(String signingKey, String signatureBaseString) throws ShimException {
+
+        Map<String, Mac> macs = macsBySigningKey.get();
+        Mac mac = macs.get(signingKey);
+
+        if (mac == null) {
+            try {
+                mac = Mac.getInstance(MAC_ALGORITHM);
+                mac.init(new SecretKeySpec(signingKey.getBytes(UTF_8), MAC_ALGORITHM));
+            }
+            catch (GeneralSecurityException e) {
+                throw new ShimException("A request can't be signed.", e);
+            }
+
+            macs.put(signingKey, mac);
+        }
+
+        // doFinal() resets the MAC, so it's ready for the next signature with the same key
+        return Base64.getEncoder().encodeToString(mac.doFinal(signatureBaseString.getBytes(UTF_8)));
+    }
+
+    /**
+     * Percent-encodes a string as specified by RFC 3986, which leaves only letters, digits, '-', '.', '_' and '~'
+     * unencoded.
+     *
+     * @param value the string to encode, or null
+     * @return the encoded string, or an empty string if the value is null
+     */
+    public static String percentEncode(String value) {
+
+        if (value == null) {
+            return "";
+        }
+
+        int length = value.length();
+        int index = 0;
+
+        while (index < length && isUnreserved(value.charAt(index))) {
+            index++;
+        }
+
+        if (index == length) {
+            return value;
+        }
+
+        StringBuilder encodedValue = new StringBuilder(length + 16).append(value, 0, index);
+
+        while (index < length) {
+            char character = value.charAt(index);
+
+            if (isUnreserved(character)) {
+                encodedValue.append(character);
+                index++;
+                continue;
+            }
+
+            // encode the whole run of reserved characters at once, so surrogate pairs are encoded together
+            int end = index + 1;
+
+            while (end < length && !isUnreserved(value.charAt(end))) {
+                end++;
+            }
+
+            for (byte encodedByte : value.substring(index, end).getBytes(UTF_8)) {
+                encodedValue.append('%').append(HEX_DIGITS[(encodedByte >> 4) & 0xF])
+                        .append(HEX_DIGITS[encodedByte & 0xF]);
+            }
+
+            index = end;
+        }
+
+        return encodedValue.toString();
+    }
+
+    private static boolean isUnreserved(char character) {
+
+        return (character >= 'a' && character <= 'z') || (character >= 'A' && character <= 'Z')
+                || (character >= '0' && character <= '9')
+                || character == '-' || character == '.' || character == '_' || character == '~';
+    }
+
+    private static SignatureParameters decodeForm(String form) {
+
+        SignatureParameters parameters = new SignatureParameters();
+
+        if (form.isEmpty()) {
+            return parameters;
+        }
+
+        for (String pair : form.split("&")) {
+            int equalsIndex = pair.indexOf('=');
+
+            if (equalsIndex < 0) {
+                parameters.put(decodePercent(pair), null, false);
+            }
+            else {
+                parameters.put(decodePercent(pair.substring(0, equalsIndex)),
+                        decodePercent(pair.substring(equalsIndex + 1)), false);
+            }
+        }
+
+        return parameters;
+    }
+
+    private static String decodePercent(String value) {
+
+        try {
+            return URLDecoder.decode(value, "UTF-8");
+        }
+        catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+
+    /**
+     * The parameters of a request, sorted by key and then by value, with the same semantics as Signpost's parameters.
+     */
+    private static class SignatureParameters extends TreeMap<String, SortedSet<String>> {
+
+        void put(String key, String value, boolean encode) {
+
+            SortedSet<String> values = get(key);
+
+            if (values == null) {
+                values = new TreeSet<>();
+                put(encode ? percentEncode(key) : key, values);
+            }
+
+            if (value != null) {
+                values.add(encode ? percentEncode(value) : value);
+            }
+        }
+
+        void putIfAbsent(String key, String value) {
+
+            if (!containsKey(key)) {
+                put(key, value, true);
+            }
+        }
+
+        /**
+         * Encodes and adds decoded parameters, replacing any existing values of the same keys.
+         */
+        void replaceAll(SignatureParameters decodedParameters) {
+
+            decodedParameters.forEach((key, values) -> {
+                remove(key);
+                values.forEach(value -> put(key, value, true));
+            });
+        }
+
+        SignatureParameters getOAuthParameters() {
+
+            SignatureParameters oauthParameters = new SignatureParameters();
+
+            forEach((key, values) -> {
+                if (key.startsWith("oauth_") || key.startsWith("x_oauth_")) {
+                    oauthParameters.put(key, values);
+                }
+            });
+
+            return oauthParameters;
+        }
+    }
+}
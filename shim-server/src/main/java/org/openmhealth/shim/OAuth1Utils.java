@@ -19,11 +19,6 @@ package org.openmhealth.shim;
 import oauth.signpost.OAuth;
 import oauth.signpost.OAuthConsumer;
 import oauth.signpost.basic.DefaultOAuthConsumer;
-import oauth.signpost.basic.UrlStringRequestAdapter;
-import oauth.signpost.commonshttp.CommonsHttpOAuthConsumer;
-import oauth.signpost.exception.OAuthCommunicationException;
-import oauth.signpost.exception.OAuthExpectationFailedException;
-import oauth.signpost.exception.OAuthMessageSignerException;
 import oauth.signpost.http.HttpParameters;
 import oauth.signpost.signature.QueryStringSigningStrategy;
 import org.apache.commons.io.IOUtils;
@@ -118,33 +113,13 @@ public class OAuth1Utils {
                                                    String tokenSecret,
                                                    Map<String, String> oAuthParameters) throws ShimException {
 
-        URL requestUrl = buildSignedUrl(unsignedUrl, clientId, clientSecret, token, tokenSecret, oAuthParameters);
-        String[] signedParams = requestUrl.toString().split("\\?")[1].split("&");
+        HttpRequestBase request = method == HttpMethod.GET ? new HttpGet(unsignedUrl) : new HttpPost(unsignedUrl);
 
-        HttpRequestBase postRequest = method == HttpMethod.GET ?
-            new HttpGet(unsignedUrl) : new HttpPost(unsignedUrl);
-        String oauthHeader = "";
-        for (String signedParam : signedParams) {
-            String[] parts = signedParam.split("=");
-            oauthHeader += parts[0] + "=\"" + parts[1] + "\",";
-        }
-        oauthHeader = "OAuth " + oauthHeader.substring(0, oauthHeader.length() - 1);
-        postRequest.setHeader("Authorization", oauthHeader);
-        CommonsHttpOAuthConsumer consumer = new CommonsHttpOAuthConsumer(clientId, clientSecret);
-        consumer.setSendEmptyTokens(false);
-        if (token != null) {
-            consumer.setTokenWithSecret(token, tokenSecret);
-        }
-        try {
-            consumer.sign(postRequest);
-            return postRequest;
-        } catch (
-            OAuthMessageSignerException
-                | OAuthExpectationFailedException
-                | OAuthCommunicationException e) {
-            e.printStackTrace();
-            throw new ShimException("Could not sign POST request, cannot continue");
-        }
+        request.setHeader("Authorization", new OAuth1Signer(clientId, clientSecret)
+            .getAuthorizationHeader(method.name(), unsignedUrl, token, tokenSecret,
+                encodeCallback(oAuthParameters)));
+
+        return request;
     }
 
     public static HttpRequestBase getSignedRequest(String unsignedUrl,
@@ -177,45 +152,43 @@ public class OAuth1Utils {
         String tokenSecret,
         Map<String, String> oAuthParameters) throws ShimException {
 
-        // Build the oauth consumer used for signing requests.
-        OAuthConsumer consumer = createOAuthConsumer(clientId, clientSecret);
-
-        if (token != null) {
-            consumer.setTokenWithSecret(token, tokenSecret);
+        // Sign the URL.
+        try {
+            return new URL(new OAuth1Signer(clientId, clientSecret)
+                .signUrl(unsignedUrl, token, tokenSecret, encodeCallback(oAuthParameters)));
+        } catch (MalformedURLException e) {
+            throw new ShimException("Error signing URL", e);
         }
+    }
 
-        // Add any additional parameters.
-        if (oAuthParameters != null) {
-            try {
-                HttpParameters httpParameters = new HttpParameters();
-                for (String key : oAuthParameters.keySet()) {
-                    if (key.equals(OAuth.OAUTH_CALLBACK)) {
-                        httpParameters.put(key, URLEncoder.encode(oAuthParameters.get(key), "UTF-8"));
-                    } else {
-                        httpParameters.put(key, oAuthParameters.get(key));
-                    }
-                }
-                consumer.setAdditionalParameters(httpParameters);
-            } catch (UnsupportedEncodingException e) {
-                e.printStackTrace();
-                throw new ShimException("Could not URL Encode callbackUrl, cannot continue");
-            }
+    /**
+     * The signer uses additional parameters as given, so the callback URL is encoded before signing, whether the
+     * parameters end up in a signed URL or in an authorization header.
+     *
+     * @param oAuthParameters - Any additional parameters, or null
+     * @return The parameters with an encoded callback URL, or null if no parameters were given
+     * @throws ShimException
+     */
+    private static Map<String, String> encodeCallback(Map<String, String> oAuthParameters) throws ShimException {
+
+        if (oAuthParameters == null) {
+            return null;
         }
 
-        // Sign the URL.
-        URL url;
+        Map<String, String> additionalParameters = new HashMap<>();
+
         try {
-            UrlStringRequestAdapter adapter = new UrlStringRequestAdapter(unsignedUrl);
-            consumer.sign(adapter);
-            url = new URL(adapter.getRequestUrl());
-        } catch (MalformedURLException
-            | OAuthExpectationFailedException
-            | OAuthCommunicationException
-            | OAuthMessageSignerException
-            e) {
-            throw new ShimException("Error signing URL", e);
+            for (String key : oAuthParameters.keySet()) {
+                if (key.equals(OAuth.OAUTH_CALLBACK)) {
+                    additionalParameters.put(key, URLEncoder.encode(oAuthParameters.get(key), "UTF-8"));
+                } else {
+                    additionalParameters.put(key, oAuthParameters.get(key));
+                }
+            }
+        } catch (UnsupportedEncodingException e) {
+            throw new ShimException("Could not URL Encode callbackUrl, cannot continue", e);
         }
 
-        return url;
+        return additionalParameters;
     }
 }
@@ -17,13 +17,16 @@
 
 package org.openmhealth.shim;
 
-import org.openmhealth.shim.common.mapper.JsonNodeMappingException;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import org.openmhealth.shim.common.timing.RequestTimingContext;
 import org.openmhealth.shimmer.configuration.DeploymentSettings;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.Sort;
 import org.springframework.http.ResponseEntity;
+import org.springframework.http.client.ClientHttpRequestFactory;
 import org.springframework.security.oauth2.client.DefaultOAuth2ClientContext;
 import org.springframework.security.oauth2.client.OAuth2RestOperations;
 import org.springframework.security.oauth2.client.OAuth2RestTemplate;
@@ -34,16 +37,25 @@ import org.springframework.security.oauth2.client.token.AccessTokenRequest;
 import org.springframework.security.oauth2.client.token.DefaultAccessTokenRequest;
 import org.springframework.security.oauth2.client.token.grant.code.AuthorizationCodeAccessTokenProvider;
 import org.springframework.security.oauth2.client.token.grant.code.AuthorizationCodeResourceDetails;
+import org.springframework.security.oauth2.common.OAuth2AccessToken;
 import org.springframework.security.oauth2.common.exceptions.OAuth2Exception;
 import org.springframework.security.oauth2.common.util.SerializationUtils;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.RestClientException;
 
 import javax.servlet.http.HttpServletRequest;
+import java.net.URI;
 import java.util.Map;
+import java.util.Optional;
 
+import static java.util.Arrays.asList;
 import static java.util.Collections.singletonList;
+import static java.util.concurrent.TimeUnit.MINUTES;
 import static org.openmhealth.shim.AuthorizationResponse.denied;
 import static org.openmhealth.shim.AuthorizationResponse.error;
 import static org.openmhealth.shim.OAuth2ErrorResponseCode.ACCESS_DENIED;
+import static org.openmhealth.shim.common.timing.RequestTimingPhase.TOKEN_REFRESH;
+import static org.springframework.http.HttpStatus.UNAUTHORIZED;
 
 
 /**
@@ -55,16 +67,28 @@ public abstract class OAuth2Shim implements Shim {
     private static final Logger logger = LoggerFactory.getLogger(OAuth2Shim.class);
 
     @Autowired
-    private AuthorizationRequestParametersRepo authorizationRequestParametersRepo;
+    private AuthorizationRequestParametersStore authorizationRequestParametersStore;
 
     @Autowired
     private AccessParametersRepo accessParametersRepo;
 
+    @Autowired
+    private AccessTokenRefreshCoordinator accessTokenRefreshCoordinator;
+
     @Autowired
     protected DeploymentSettings deploymentSettings;
 
+    @Autowired
+    private ClientHttpRequestFactory clientHttpRequestFactory;
+
     public static final String REDIRECT_URL_KEY = "redirect_url";
 
+    // whether data providers have accepted access tokens in authorization checks, keyed by token value
+    private final Cache<String, Boolean> acceptedAccessTokenCache = CacheBuilder.newBuilder()
+            .maximumSize(10_000)
+            .expireAfterWrite(5, MINUTES)
+            .build();
+
     protected abstract OAuth2ClientSettings getClientSettings();
 
     @Override
@@ -92,11 +116,18 @@ public abstract class OAuth2Shim implements Shim {
         OAuth2RestOperations restTemplate = restTemplate();
 
         try {
-            // TODO replace with restTemplate.getAccessToken();
-            trigger(restTemplate, getTriggerDataRequest());
+            // loads the stored token, refreshing it if it has expired, or throws if there's no usable token
+            if (isAccessTokenAccepted(restTemplate)) {
+                return AuthorizationRequestParameters.authorized();
+            }
+
+            // the data provider has rejected the token, e.g. because the user revoked access, so start over
+            accessParametersRepo.delete(accessParametersRepo.findAllByUsernameAndShimKey(username, getShimKey()));
+
+            restTemplate = restTemplate();
+            restTemplate.getAccessToken();
 
-            // if no exception has been thrown, assume that the current authorization is valid
-            return AuthorizationRequestParameters.authorized();
+            throw new IllegalStateException("An access token was found after all access parameters were deleted.");
         }
         catch (UserRedirectRequiredException e) {
             // if an exception was thrown it means a redirect is required
@@ -117,7 +148,7 @@ public abstract class OAuth2Shim implements Shim {
             authRequestParams.setRequestParams(additionalParameters);
             // the url to custom page.
             authRequestParams.setClientRedirectUrl(deploymentSettings.getClientRedirectUrl());
-            return authorizationRequestParametersRepo.save(authRequestParams);
+            return authorizationRequestParametersStore.save(authRequestParams);
         }
     }
 
@@ -141,17 +172,63 @@ public abstract class OAuth2Shim implements Shim {
     }
 
     /**
-     * Request parameters to be used when 'triggering'
-     * spring oauth2. This should be the equivalent
-     * of a ping to the external data provider.
+     * @return the URI of a cheap endpoint, e.g. a user profile endpoint, that can be requested to confirm that the data
+     * provider still accepts an access token, or empty if the validity and expiry of the stored token are trusted
+     */
+    protected Optional<URI> getAuthorizationCheckUri() {
+
+        return Optional.empty();
+    }
+
+    /**
+     * Checks whether a user is authorized without requesting any data. The stored access token is loaded, and
+     * refreshed if it has expired. If the shim has an authorization check endpoint, the data provider is then asked
+     * whether it accepts the token, and its answer is cached for a few minutes.
      *
-     * @return - The Shim data request to use for trigger.
+     * @return true if the access token is accepted, false if the data provider has rejected it
+     * @throws UserRedirectRequiredException if there is no usable access token
      */
-    protected ShimDataRequest getTriggerDataRequest() {
+    private boolean isAccessTokenAccepted(OAuth2RestOperations restTemplate) {
+
+        OAuth2AccessToken accessToken = restTemplate.getAccessToken();
+        Optional<URI> authorizationCheckUri = getAuthorizationCheckUri();
+
+        if (!authorizationCheckUri.isPresent()) {
+            return true;
+        }
+
+        Boolean cachedAccepted = acceptedAccessTokenCache.getIfPresent(accessToken.getValue());
+
+        if (cachedAccepted != null) {
+            return cachedAccepted;
+        }
+
+        boolean accepted;
 
-        ShimDataRequest shimDataRequest = new ShimDataRequest();
-        shimDataRequest.setDataTypeKey(getShimDataTypes()[0].toString());
-        return shimDataRequest;
+        try {
+            restTemplate.getForEntity(authorizationCheckUri.get(), byte[].class);
+            accepted = true;
+        }
+        catch (OAuth2Exception e) {
+            accepted = false;
+        }
+        catch (HttpClientErrorException e) {
+            if (e.getStatusCode() != UNAUTHORIZED) {
+                // e.g. the check was rate limited, which says nothing about the token, so the answer isn't cached
+                logger.warn("The authorization check of shim '{}' failed.", getShimKey(), e);
+                return true;
+            }
+
+            accepted = false;
+        }
+        catch (RestClientException e) {
+            logger.warn("The authorization check of shim '{}' failed.", getShimKey(), e);
+            return true;
+        }
+
+        acceptedAccessTokenCache.put(accessToken.getValue(), accepted);
+
+        return accepted;
     }
 
     @Override
@@ -171,7 +248,7 @@ public abstract class OAuth2Shim implements Shim {
         String stateKey = servletRequest.getParameter("state");
 
         AuthorizationRequestParameters authorizationRequestParameters =
-                authorizationRequestParametersRepo.findByStateKey(stateKey);
+                authorizationRequestParametersStore.findByStateKey(stateKey);
 
         if (authorizationRequestParameters == null) {
             throw new IllegalStateException(
@@ -180,7 +257,7 @@ public abstract class OAuth2Shim implements Shim {
 
         String authorizationCode = servletRequest.getParameter("code");
 
-        OAuth2RestOperations restTemplate = restTemplate(stateKey, authorizationCode);
+        OAuth2RestOperations restTemplate = restTemplate(authorizationRequestParameters, authorizationCode);
         try {
             /**
              * Create a persistable access parameters entity so that
@@ -193,17 +270,9 @@ public abstract class OAuth2Shim implements Shim {
             accessParameters.setStateKey(stateKey);
             accessParametersRepo.save(accessParameters);
 
-            try {
-                trigger(restTemplate, getTriggerDataRequest());
-            }
-            catch (JsonNodeMappingException e) {
-                // In this case authentication may have succeeded, but the data request may have failed so we
-                // should not fail. We should check and see if authentication succeeded in subsequent lines.
-            }
-
             /**
-             * By this line we will have an approved access token or
-             * not, if we do not then we delete the access parameters entity.
+             * Exchange the authorization code for an access token, which the client token services store. If
+             * we don't get one, we delete the access parameters entity.
              */
             if (restTemplate.getAccessToken() == null) {
                 accessParametersRepo.delete(accessParameters);
@@ -236,22 +305,28 @@ public abstract class OAuth2Shim implements Shim {
     @Override
     public ShimDataResponse getData(ShimDataRequest shimDataRequest) throws ShimException {
 
-        return getData(restTemplate(), shimDataRequest).getBody();
-    }
+        OAuth2RestOperations restTemplate = restTemplate();
 
-    // TODO rename this thing, if it's even necessary
-    public void trigger(OAuth2RestOperations restTemplate, ShimDataRequest shimDataRequest) throws ShimException {
+        // the token would otherwise be loaded, and refreshed if necessary, on the first data request; doing it up front
+        // lets us tell token refresh time apart from the time spent waiting on the data provider
+        RequestTimingContext.time(TOKEN_REFRESH, restTemplate::getAccessToken);
 
-        getData(restTemplate, shimDataRequest);
+        return getData(restTemplate, shimDataRequest).getBody();
     }
 
-    protected OAuth2RestOperations restTemplate(String stateKey, String code) {
+    /**
+     * @param authorizationRequestParameters the pending authorization request a redirect belongs to, if any
+     * @param code the authorization code received in the redirect, if any
+     */
+    protected OAuth2RestOperations restTemplate(AuthorizationRequestParameters authorizationRequestParameters,
+            String code) {
 
         DefaultAccessTokenRequest existingRequest = null;
+        String stateKey = null;
 
-        if (stateKey != null && authorizationRequestParametersRepo.findByStateKey(stateKey) != null) {
-            existingRequest = SerializationUtils.deserialize(
-                    authorizationRequestParametersRepo.findByStateKey(stateKey).getSerializedRequest());
+        if (authorizationRequestParameters != null) {
+            existingRequest = SerializationUtils.deserialize(authorizationRequestParameters.getSerializedRequest());
+            stateKey = authorizationRequestParameters.getStateKey();
         }
 
         if (existingRequest != null && code != null) {
@@ -268,14 +343,24 @@ public abstract class OAuth2Shim implements Shim {
 
         OAuth2RestTemplate restTemplate = new OAuth2RestTemplate(getResource(), context);
 
+        // the shared request factory pools connections and negotiates compressed responses
+        restTemplate.setRequestFactory(clientHttpRequestFactory);
+
+        AuthorizationCodeAccessTokenProvider tokenProvider = getAuthorizationCodeAccessTokenProvider();
+        tokenProvider.setRequestFactory(clientHttpRequestFactory);
+
         // TODO figure out what's going on in here; is a chain the only way to set client token services?
         AccessTokenProviderChain tokenProviderChain =
-                new AccessTokenProviderChain(singletonList(getAuthorizationCodeAccessTokenProvider()));
+                new SingleFlightAccessTokenProviderChain(singletonList(tokenProvider), accessTokenRefreshCoordinator);
         tokenProviderChain.setClientTokenServices(
                 new AccessParameterClientTokenServices(accessParametersRepo));
         restTemplate.setAccessTokenProvider(tokenProviderChain);
 
         restTemplate.setAuthenticator(new CaseStandardizingOAuth2RequestAuthenticator());
+        // the sharing interceptor comes first, so that shared responses aren't timed as upstream calls
+        restTemplate.setInterceptors(asList(
+                new UpstreamResponseSharingInterceptor(),
+                new UpstreamCallTimingInterceptor(getShimKey())));
 
         return restTemplate;
     }
@@ -0,0 +1,46 @@
+/*
+ * Copyright 2017 Open mHealth
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.openmhealth.shim;
+
+import org.springframework.boot.bind.RelaxedPropertyResolver;
+import org.springframework.context.annotation.Condition;
+import org.springframework.context.annotation.ConditionContext;
+import org.springframework.core.type.AnnotatedTypeMetadata;
+
+import java.util.Map;
+
+
+/**
+ * A condition that matches if the client ID property under the prefix given by {@link ConditionalOnClientId} is set
+ * to a non-empty value. Relaxed names are supported, e.g. <code>client-id</code>, <code>clientId</code> and the
+ * <code>OPENMHEALTH_SHIM_FITBIT_CLIENT_ID</code> environment variable.
+ */
+class OnClientIdCondition implements Condition {
+
+    @Override
+    public boolean matches(ConditionContext context, AnnotatedTypeMetadata metadata) {
+
+        Map<String, Object> attributes = metadata.getAnnotationAttributes(ConditionalOnClientId.class.getName());
+
+        String prefix = (String) attributes.get("value");
+
+        String clientId = new RelaxedPropertyResolver(context.getEnvironment(), prefix + ".").getProperty("client-id");
+
+        return clientId != null && !clientId.isEmpty();
+    }
+}
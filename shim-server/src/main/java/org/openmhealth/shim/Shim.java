@@ -18,6 +18,7 @@
 package org.openmhealth.shim;
 
 import javax.servlet.http.HttpServletRequest;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -96,6 +97,25 @@ public interface Shim {
      */
     ShimDataResponse getData(final ShimDataRequest shimDataRequest) throws ShimException;
 
+    /**
+     * Obtain data of several data types from the external data provider. Shims whose data types share endpoints can
+     * override this to fetch each shared response once; by default, each request is fulfilled on its own.
+     *
+     * @param shimDataRequests - Data requests to be full-filled by the shim, one per data type.
+     * @return The responses, keyed by data type and in request order.
+     */
+    default Map<String, ShimDataResponse> getData(final List<ShimDataRequest> shimDataRequests)
+            throws ShimException {
+
+        Map<String, ShimDataResponse> shimDataResponses = new LinkedHashMap<>();
+
+        for (ShimDataRequest shimDataRequest : shimDataRequests) {
+            shimDataResponses.put(shimDataRequest.getDataTypeKey(), getData(shimDataRequest));
+        }
+
+        return shimDataResponses;
+    }
+
 
     /**
      * Checks if this shim is properly configured.
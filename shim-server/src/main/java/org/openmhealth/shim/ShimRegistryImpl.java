@@ -35,8 +35,9 @@ import static java.lang.String.format;
 @Component
 public class ShimRegistryImpl implements ShimRegistry {
 
-    @Autowired
-    private List<Shim> allShims;
+    // shims without a client ID aren't registered, so there may not be any
+    @Autowired(required = false)
+    private List<Shim> allShims = new ArrayList<>();
 
     private Map<String, Shim> configuredShims = new LinkedHashMap<>();
 
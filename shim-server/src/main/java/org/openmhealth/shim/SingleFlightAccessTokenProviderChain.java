@@ -0,0 +1,67 @@
+/*
+ * Copyright 2017 Open mHealth
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.openmhealth.shim;
+
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.oauth2.client.resource.OAuth2ProtectedResourceDetails;
+import org.springframework.security.oauth2.client.resource.UserRedirectRequiredException;
+import org.springframework.security.oauth2.client.token.AccessTokenProvider;
+import org.springframework.security.oauth2.client.token.AccessTokenProviderChain;
+import org.springframework.security.oauth2.client.token.AccessTokenRequest;
+import org.springframework.security.oauth2.common.OAuth2AccessToken;
+import org.springframework.security.oauth2.common.OAuth2RefreshToken;
+
+import java.util.List;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+
+/**
+ * An access token provider chain that refreshes tokens through an {@link AccessTokenRefreshCoordinator}, so that
+ * concurrent refreshes of the same user's token are collapsed into one.
+ */
+public class SingleFlightAccessTokenProviderChain extends AccessTokenProviderChain {
+
+    private final AccessTokenRefreshCoordinator refreshCoordinator;
+
+
+    public SingleFlightAccessTokenProviderChain(List<? extends AccessTokenProvider> chain,
+            AccessTokenRefreshCoordinator refreshCoordinator) {
+
+        super(chain);
+
+        checkNotNull(refreshCoordinator);
+
+        this.refreshCoordinator = refreshCoordinator;
+    }
+
+    @Override
+    public OAuth2AccessToken refreshAccessToken(OAuth2ProtectedResourceDetails resource,
+            OAuth2RefreshToken refreshToken, AccessTokenRequest request) throws UserRedirectRequiredException {
+
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+
+        if (authentication == null) {
+            return super.refreshAccessToken(resource, refreshToken, request);
+        }
+
+        return refreshCoordinator.refresh(authentication.getPrincipal().toString(),
+                authentication.getDetails().toString(),
+                () -> super.refreshAccessToken(resource, refreshToken, request));
+    }
+}
@@ -0,0 +1,73 @@
+/*
+ * Copyright 2017 Open mHealth
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.openmhealth.shim;
+
+import org.openmhealth.shim.common.flightrecorder.ShimUpstreamCallEvent;
+import org.openmhealth.shim.common.timing.RequestTimingContext;
+import org.springframework.http.HttpRequest;
+import org.springframework.http.client.ClientHttpRequestExecution;
+import org.springframework.http.client.ClientHttpRequestInterceptor;
+import org.springframework.http.client.ClientHttpResponse;
+
+import java.io.IOException;
+
+import static org.openmhealth.shim.common.timing.RequestTimingPhase.UPSTREAM_CALL;
+
+
+/**
+ * An interceptor that records the duration of each call made to a data provider API in the current
+ * {@link RequestTimingContext}, if any, and emits a {@link ShimUpstreamCallEvent} when Java Flight Recorder is
+ * recording it.
+ */
+public class UpstreamCallTimingInterceptor implements ClientHttpRequestInterceptor {
+
+    private final String shimKey;
+
+    public UpstreamCallTimingInterceptor(String shimKey) {
+
+        this.shimKey = shimKey;
+    }
+
+    @Override
+    public ClientHttpResponse intercept(HttpRequest request, byte[] body, ClientHttpRequestExecution execution)
+            throws IOException {
+
+        String endpoint = request.getURI().getHost() + request.getURI().getPath();
+
+        ShimUpstreamCallEvent event = new ShimUpstreamCallEvent();
+        event.begin();
+
+        ClientHttpResponse response = null;
+
+        try {
+            response = RequestTimingContext.time(UPSTREAM_CALL, endpoint, () -> execution.execute(request, body));
+
+            return response;
+        }
+        finally {
+            event.end();
+
+            if (event.shouldCommit()) {
+                event.setShim(shimKey);
+                event.setEndpoint(endpoint);
+                event.setStatus(response != null ? response.getRawStatusCode() : 0);
+                event.setBytes(response != null ? response.getHeaders().getContentLength() : -1);
+                event.commit();
+            }
+        }
+    }
+}
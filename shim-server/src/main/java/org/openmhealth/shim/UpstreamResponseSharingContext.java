@@ -0,0 +1,266 @@
+/*
+ * Copyright 2017 Open mHealth
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.openmhealth.shim;
+
+import com.google.common.io.ByteStreams;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+
+/**
+ * A per-request store of data provider responses that lets several data types served by the same upstream endpoint
+ * share a single call. While a context is bound to the current thread, upstream calls made through a shim are keyed
+ * by their request, and a call whose key has already been seen gets the stored response instead of hitting the data
+ * provider again. Concurrent calls with the same key wait for the first one to complete.
+ * <p>
+ * Only successful responses whose body is at most {@link #MAXIMUM_SHARED_BODY_SIZE_IN_BYTES} long are shared. Error
+ * responses are handed to their caller as they are, and larger bodies are streamed to their caller instead of being
+ * held in memory.
+ */
+public class UpstreamResponseSharingContext {
+
+    public static final int MAXIMUM_SHARED_BODY_SIZE_IN_BYTES = 1024 * 1024;
+
+    private static final ThreadLocal<UpstreamResponseSharingContext> currentContext = new ThreadLocal<>();
+
+    private final ConcurrentMap<String, CompletableFuture<Optional<SharedResponse>>> responses =
+            new ConcurrentHashMap<>();
+
+
+    /**
+     * Binds a new context to the current thread, replacing any existing context.
+     *
+     * @return the new context
+     */
+    public static UpstreamResponseSharingContext start() {
+
+        UpstreamResponseSharingContext context = new UpstreamResponseSharingContext();
+
+        currentContext.set(context);
+
+        return context;
+    }
+
+    /**
+     * @return the context bound to the current thread, if any
+     */
+    public static Optional<UpstreamResponseSharingContext> current() {
+
+        return Optional.ofNullable(currentContext.get());
+    }
+
+    /**
+     * Releases the context bound to the current thread, if any.
+     */
+    public static void clear() {
+
+        currentContext.remove();
+    }
+
+    /**
+     * Wraps a task so that, wherever it runs, it runs with the context bound to the current thread.
+     *
+     * @param task the task to wrap
+     * @return the wrapped task, or the task itself if no context is bound to the current thread
+     */
+    public static <T> Callable<T> propagate(Callable<T> task) {
+
+        checkNotNull(task);
+
+        UpstreamResponseSharingContext context = currentContext.get();
+
+        if (context == null) {
+            return task;
+        }
+
+        return () -> {
+
+            UpstreamResponseSharingContext previousContext = currentContext.get();
+            currentContext.set(context);
+
+            try {
+                return task.call();
+            }
+            finally {
+                if (previousContext == null) {
+                    currentContext.remove();
+                }
+                else {
+                    currentContext.set(previousContext);
+                }
+            }
+        };
+    }
+
+    /**
+     * Reads one byte more than the maximum shared body size from a response body, at most, which tells whether the
+     * body is small enough to be shared.
+     *
+     * @param body the response body
+     * @return the bytes read, which are the whole body if there are no more than the maximum shared body size
+     */
+    public static byte[] readBodyPrefix(InputStream body) throws IOException {
+
+        checkNotNull(body);
+
+        return ByteStreams.toByteArray(ByteStreams.limit(body, MAXIMUM_SHARED_BODY_SIZE_IN_BYTES + 1L));
+    }
+
+    /**
+     * @param bodyPrefix the bytes returned by {@link #readBodyPrefix(InputStream)}
+     * @return true if the bytes are the whole body, and the body can therefore be shared
+     */
+    public static boolean isWholeBody(byte[] bodyPrefix) {
+
+        return bodyPrefix.length <= MAXIMUM_SHARED_BODY_SIZE_IN_BYTES;
+    }
+
+    /**
+     * @param key the key of the upstream request
+     * @param call the call to make if no response has been stored for the key
+     * @return the stored response if there is one, or the response of the call otherwise, or an empty optional if the
+     * response of the call can't be shared, in which case the call has handed its response to its caller directly
+     */
+    public Optional<SharedResponse> getOrCall(String key, UpstreamCall call) throws IOException {
+
+        checkNotNull(key);
+        checkNotNull(call);
+
+        CompletableFuture<Optional<SharedResponse>> newResponse = new CompletableFuture<>();
+        CompletableFuture<Optional<SharedResponse>> existingResponse = responses.putIfAbsent(key, newResponse);
+
+        if (existingResponse != null) {
+            Optional<SharedResponse> response = await(existingResponse);
+
+            // a response that couldn't be shared is requested again, without sharing the new response either
+            return response.isPresent() ? response : call.execute();
+        }
+
+        try {
+            Optional<SharedResponse> response = call.execute();
+
+            if (!response.isPresent()) {
+                responses.remove(key, newResponse);
+            }
+
+            newResponse.complete(response);
+
+            return response;
+        }
+        catch (IOException | RuntimeException | Error e) {
+            // failures aren't shared, so a later call with the same key tries again
+            responses.remove(key, newResponse);
+            newResponse.completeExceptionally(e);
+
+            throw e;
+        }
+    }
+
+    private Optional<SharedResponse> await(CompletableFuture<Optional<SharedResponse>> response) throws IOException {
+
+        try {
+            return response.get();
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Waiting for a shared upstream response was interrupted.", e);
+        }
+        catch (ExecutionException e) {
+
+            Throwable cause = e.getCause();
+
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+
+            throw new IOException(cause);
+        }
+    }
+
+
+    /**
+     * A call to a data provider whose response can be shared.
+     */
+    @FunctionalInterface
+    public interface UpstreamCall {
+
+        /**
+         * @return the response to share, or an empty optional if the response can't be shared, e.g. because it's an
+         * error response or its body is too large to hold in memory
+         */
+        Optional<SharedResponse> execute() throws IOException;
+    }
+
+
+    /**
+     * A fully buffered data provider response.
+     */
+    public static class SharedResponse {
+
+        private final int statusCode;
+        private final String reasonPhrase;
+        private final Map<String, List<String>> headers;
+        private final byte[] body;
+
+        public SharedResponse(int statusCode, String reasonPhrase, Map<String, List<String>> headers, byte[] body) {
+
+            checkNotNull(headers);
+            checkNotNull(body);
+
+            this.statusCode = statusCode;
+            this.reasonPhrase = reasonPhrase;
+            this.headers = new LinkedHashMap<>(headers);
+            this.body = body;
+        }
+
+        public int getStatusCode() {
+            return statusCode;
+        }
+
+        public String getReasonPhrase() {
+            return reasonPhrase;
+        }
+
+        public Map<String, List<String>> getHeaders() {
+            return headers;
+        }
+
+        public byte[] getBody() {
+            return body;
+        }
+    }
+}
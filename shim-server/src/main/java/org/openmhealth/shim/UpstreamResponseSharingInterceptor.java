@@ -0,0 +1,184 @@
+/*
+ * Copyright 2017 Open mHealth
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.openmhealth.shim;
+
+import org.openmhealth.shim.UpstreamResponseSharingContext.SharedResponse;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpRequest;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.client.ClientHttpRequestExecution;
+import org.springframework.http.client.ClientHttpRequestInterceptor;
+import org.springframework.http.client.ClientHttpResponse;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.openmhealth.shim.UpstreamResponseSharingContext.isWholeBody;
+import static org.openmhealth.shim.UpstreamResponseSharingContext.readBodyPrefix;
+
+
+/**
+ * An interceptor that shares the responses of GET requests made to a data provider API through the current
+ * {@link UpstreamResponseSharingContext}, if any. Requests are keyed by their URI and <code>Accept</code> header.
+ * Responses that can't be shared, i.e. error responses and responses with large bodies, are returned as they are,
+ * and large bodies are still streamed once the part read to check their size has been replayed.
+ */
+public class UpstreamResponseSharingInterceptor implements ClientHttpRequestInterceptor {
+
+    @Override
+    public ClientHttpResponse intercept(HttpRequest request, byte[] body, ClientHttpRequestExecution execution)
+            throws IOException {
+
+        Optional<UpstreamResponseSharingContext> context = UpstreamResponseSharingContext.current();
+
+        if (!context.isPresent() || request.getMethod() != HttpMethod.GET) {
+            return execution.execute(request, body);
+        }
+
+        String key = request.getURI() + " " + request.getHeaders().getAccept();
+        AtomicReference<ClientHttpResponse> unsharedResponse = new AtomicReference<>();
+
+        Optional<SharedResponse> sharedResponse = context.get().getOrCall(key, () -> {
+
+            ClientHttpResponse response = execution.execute(request, body);
+
+            try {
+                if (response.getRawStatusCode() / 100 != 2) {
+                    unsharedResponse.set(response);
+                    return Optional.empty();
+                }
+
+                byte[] bodyPrefix = readBodyPrefix(response.getBody());
+
+                if (!isWholeBody(bodyPrefix)) {
+                    unsharedResponse.set(new PrefixedClientHttpResponse(response, bodyPrefix));
+                    return Optional.empty();
+                }
+
+                SharedResponse shareableResponse = new SharedResponse(response.getRawStatusCode(),
+                        response.getStatusText(), response.getHeaders(), bodyPrefix);
+
+                response.close();
+
+                return Optional.of(shareableResponse);
+            }
+            catch (IOException | RuntimeException e) {
+                response.close();
+                throw e;
+            }
+        });
+
+        if (sharedResponse.isPresent()) {
+            return new SharedClientHttpResponse(sharedResponse.get());
+        }
+
+        return unsharedResponse.get();
+    }
+
+
+    /**
+     * A response whose body is too large to share, and whose start has already been read.
+     */
+    private static class PrefixedClientHttpResponse implements ClientHttpResponse {
+
+        private final ClientHttpResponse response;
+        private final InputStream body;
+
+        PrefixedClientHttpResponse(ClientHttpResponse response, byte[] bodyPrefix) throws IOException {
+
+            this.response = response;
+            this.body = new SequenceInputStream(new ByteArrayInputStream(bodyPrefix), response.getBody());
+        }
+
+        @Override
+        public HttpStatus getStatusCode() throws IOException {
+            return response.getStatusCode();
+        }
+
+        @Override
+        public int getRawStatusCode() throws IOException {
+            return response.getRawStatusCode();
+        }
+
+        @Override
+        public String getStatusText() throws IOException {
+            return response.getStatusText();
+        }
+
+        @Override
+        public HttpHeaders getHeaders() {
+            return response.getHeaders();
+        }
+
+        @Override
+        public InputStream getBody() throws IOException {
+            return body;
+        }
+
+        @Override
+        public void close() {
+            response.close();
+        }
+    }
+
+
+    private static class SharedClientHttpResponse implements ClientHttpResponse {
+
+        private final SharedResponse sharedResponse;
+        private final HttpHeaders headers = new HttpHeaders();
+
+        SharedClientHttpResponse(SharedResponse sharedResponse) {
+
+            this.sharedResponse = sharedResponse;
+            this.headers.putAll(sharedResponse.getHeaders());
+        }
+
+        @Override
+        public HttpStatus getStatusCode() throws IOException {
+            return HttpStatus.valueOf(sharedResponse.getStatusCode());
+        }
+
+        @Override
+        public int getRawStatusCode() throws IOException {
+            return sharedResponse.getStatusCode();
+        }
+
+        @Override
+        public String getStatusText() throws IOException {
+            return sharedResponse.getReasonPhrase();
+        }
+
+        @Override
+        public HttpHeaders getHeaders() {
+            return headers;
+        }
+
+        @Override
+        public InputStream getBody() throws IOException {
+            return new ByteArrayInputStream(sharedResponse.getBody());
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
@@ -0,0 +1,49 @@
+/*
+ * Copyright 2017 Open mHealth
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.openmhealth.shim;
+
+import java.util.Set;
+
+
+/**
+ * The shims a user has authorized.
+ */
+public class UserAuthorizations {
+
+    private String username;
+    private Set<String> auths;
+
+
+    public String getUsername() {
+        return username;
+    }
+
+    public void setUsername(String username) {
+        this.username = username;
+    }
+
+    /**
+     * @return the keys of the shims the user has authorized
+     */
+    public Set<String> getAuths() {
+        return auths;
+    }
+
+    public void setAuths(Set<String> auths) {
+        this.auths = auths;
+    }
+}
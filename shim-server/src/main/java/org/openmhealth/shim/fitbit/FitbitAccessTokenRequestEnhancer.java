@@ -17,6 +17,7 @@
 
 package org.openmhealth.shim.fitbit;
 
+import org.openmhealth.shim.ConditionalOnClientId;
 import org.openmhealth.shimmer.configuration.DeploymentSettings;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpHeaders;
@@ -36,6 +37,7 @@ import org.springframework.util.MultiValueMap;
  * @author Emerson Farrugia
  */
 @Component
+@ConditionalOnClientId("openmhealth.shim.fitbit")
 public class FitbitAccessTokenRequestEnhancer implements RequestEnhancer {
 
     @Autowired
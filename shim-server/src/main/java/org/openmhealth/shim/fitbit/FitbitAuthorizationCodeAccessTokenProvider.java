@@ -17,6 +17,7 @@
 
 package org.openmhealth.shim.fitbit;
 
+import org.openmhealth.shim.ConditionalOnClientId;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -36,6 +37,7 @@ import java.util.List;
  * @author Emerson Farrugia
  */
 @Component
+@ConditionalOnClientId("openmhealth.shim.fitbit")
 public class FitbitAuthorizationCodeAccessTokenProvider extends AuthorizationCodeAccessTokenProvider {
 
     private static final Logger logger = LoggerFactory.getLogger(FitbitAuthorizationCodeAccessTokenProvider.class);
@@ -18,14 +18,16 @@
 package org.openmhealth.shim.fitbit;
 
 import com.fasterxml.jackson.databind.JsonNode;
-import com.fasterxml.jackson.databind.ObjectMapper;
 import com.google.common.base.Joiner;
 import com.google.common.collect.Lists;
 import org.openmhealth.schema.domain.omh.DataPoint;
 import org.openmhealth.shim.*;
+import org.openmhealth.shim.common.mapper.IntradayTimeSeriesMapper;
 import org.openmhealth.shim.fitbit.mapper.*;
 import org.slf4j.Logger;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.oauth2.client.OAuth2RestOperations;
 import org.springframework.security.oauth2.client.resource.OAuth2ProtectedResourceDetails;
@@ -35,20 +37,27 @@ import org.springframework.stereotype.Component;
 import org.springframework.util.CollectionUtils;
 import org.springframework.web.client.HttpClientErrorException;
 import org.springframework.web.client.HttpServerErrorException;
+import org.springframework.web.client.HttpStatusCodeException;
 import org.springframework.web.util.UriComponentsBuilder;
 
-import java.io.IOException;
 import java.net.URI;
 import java.time.LocalDate;
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
 
 import static java.lang.String.format;
+import static java.util.Collections.singletonList;
+import static java.util.Collections.singletonMap;
 import static org.openmhealth.shim.ShimDataResponse.result;
+import static org.openmhealth.shim.common.mapper.DataPointMapperInstrumentation.asDataPoints;
 import static org.openmhealth.shim.fitbit.FitbitShim.FitbitDataType.HEART_RATE;
 import static org.openmhealth.shim.fitbit.FitbitShim.FitbitDataType.STEP_COUNT;
 import static org.slf4j.LoggerFactory.getLogger;
+import static org.springframework.http.HttpMethod.GET;
+import static org.springframework.http.MediaType.APPLICATION_JSON;
 import static org.springframework.http.ResponseEntity.ok;
 
 
@@ -58,12 +67,15 @@ import static org.springframework.http.ResponseEntity.ok;
  * @author Emerson Farrugia
  */
 @Component
+@ConditionalOnClientId("openmhealth.shim.fitbit")
 public class FitbitShim extends OAuth2Shim {
 
     public static final String SHIM_KEY = "fitbit";
     private static final String DATA_URL = "https://api.fitbit.com";
     private static final String USER_AUTHORIZATION_URL = "https://www.fitbit.com/oauth2/authorize";
     private static final String ACCESS_TOKEN_URL = "https://api.fitbit.com/oauth2/token";
+    // a cheap endpoint covered by the default activity scope
+    private static final String AUTHORIZATION_CHECK_URL = "https://api.fitbit.com/1/user/-/activities/goals/daily.json";
 
     private static final Logger logger = getLogger(FitbitShim.class);
 
@@ -97,6 +109,12 @@ public class FitbitShim extends OAuth2Shim {
         return ACCESS_TOKEN_URL;
     }
 
+    @Override
+    protected Optional<URI> getAuthorizationCheckUri() {
+
+        return Optional.of(URI.create(AUTHORIZATION_CHECK_URL));
+    }
+
     @Override
     protected OAuth2ClientSettings getClientSettings() {
 
@@ -206,7 +224,7 @@ public class FitbitShim extends OAuth2Shim {
                     startDate,
                     endDate,
                     fitbitDataType,
-                    shimDataRequest.getNormalize());
+                    shimDataRequest);
         }
         else {
             /*
@@ -219,8 +237,8 @@ public class FitbitShim extends OAuth2Shim {
 
             while (!indexDate.isAfter(endDate)) {
 
-                dayResponses.add(getDataForSingleDate(restTemplate, indexDate, fitbitDataType,
-                        shimDataRequest.getNormalize()).getBody());
+                dayResponses.add(getDataForSingleDate(restTemplate, indexDate, fitbitDataType, shimDataRequest)
+                        .getBody());
 
                 indexDate = indexDate.plusDays(1);
             }
@@ -302,53 +320,91 @@ public class FitbitShim extends OAuth2Shim {
     private ResponseEntity<ShimDataResponse> executeRequest(
             OAuth2RestOperations restTemplate,
             URI requestUri,
-            boolean normalize,
+            ShimDataRequest shimDataRequest,
             FitbitDataType fitbitDataType,
             LocalDate date)
             throws ShimException {
 
+        if (!shimDataRequest.getNormalize()) {
+            return ok().body(ShimDataResponse.result(FitbitShim.SHIM_KEY, getRawBody(restTemplate, requestUri, date)));
+        }
+
         ResponseEntity<JsonNode> responseEntity;
 
         try {
             responseEntity = restTemplate.getForEntity(requestUri, JsonNode.class);
         }
         catch (HttpClientErrorException | HttpServerErrorException e) {
-            // TODO figure out how to handle this
-            throw new ShimException("A request for Fitbit data has failed.", e);
+            throw newRequestFailedException(e);
         }
 
-        if (normalize) {
-            FitbitDataPointMapper<?> dataPointMapper = getDataPointMapper(fitbitDataType);
+        FitbitDataPointMapper<?> dataPointMapper = getDataPointMapper(fitbitDataType);
+
+        if (shimDataRequest.requiresIntradayTimeSeries() && dataPointMapper instanceof IntradayTimeSeriesMapper) {
 
-            List<? extends DataPoint<?>> dataPoints = dataPointMapper.asDataPoints(responseEntity.getBody());
+            IntradayTimeSeriesMapper<?> timeSeriesMapper = (IntradayTimeSeriesMapper<?>) dataPointMapper;
+            JsonNode responseBody = responseEntity.getBody();
 
-            return ok().body(ShimDataResponse.result(FitbitShim.SHIM_KEY, dataPoints));
+            List<?> body = asDataPoints(timeSeriesMapper, 1,
+                    () -> timeSeriesMapper.asRequestedRepresentation(responseBody, shimDataRequest));
+
+            return ok().body(ShimDataResponse.result(FitbitShim.SHIM_KEY, body));
         }
-        else {
 
-            /*
-              For types that only allow us to retrieve a single day at a time, Fitbit does not always provide
-              date information since it is assumed we know what date we requested. However, this is problematic
-              when we are aggregating multiple single date responses, so we wrap each single day Fitbit data
-              point with date information.
-             */
-            ObjectMapper objectMapper = new ObjectMapper();
+        List<? extends DataPoint<?>> dataPoints =
+                asDataPoints(dataPointMapper, singletonList(responseEntity.getBody()));
 
-            String jsonContent = responseEntity.getBody().toString();
+        return ok().body(ShimDataResponse.result(FitbitShim.SHIM_KEY, dataPoints));
+    }
 
-            // TODO replace with proper wrapping
-            if (date != null) {
-                jsonContent = "{\"result\": {\"date\": \"" + date.toString() + "\" " +
-                        ",\"content\": " + responseEntity.getBody().toString() + "}}";
-            }
+    /**
+     * Retrieves a response without parsing it, so that its bytes can be passed straight through to the client.
+     *
+     * @param date the date the response is for, if a single date was requested
+     */
+    private Object getRawBody(OAuth2RestOperations restTemplate, URI requestUri, LocalDate date)
+            throws ShimException {
 
-            try {
-                return ok().body(ShimDataResponse.result(FitbitShim.SHIM_KEY, objectMapper.readTree(jsonContent)));
-            }
-            catch (IOException e) {
-                throw new ShimException("A Fitbit response doesn't contain valid JSON.", e);
-            }
+        HttpHeaders headers = new HttpHeaders();
+        headers.setAccept(singletonList(APPLICATION_JSON));
+
+        RawJson responseBody;
+
+        try {
+            responseBody = new RawJson(
+                    restTemplate.exchange(requestUri, GET, new HttpEntity<>(headers), byte[].class).getBody());
+        }
+        catch (HttpClientErrorException | HttpServerErrorException e) {
+            throw newRequestFailedException(e);
+        }
+
+        if (date == null) {
+            return responseBody;
         }
+
+        /*
+          For types that only allow us to retrieve a single day at a time, Fitbit does not always provide
+          date information since it is assumed we know what date we requested. However, this is problematic
+          when we are aggregating multiple single date responses, so we wrap each single day Fitbit data
+          point with date information.
+         */
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("date", date.toString());
+        result.put("content", responseBody);
+
+        return singletonMap("result", result);
+    }
+
+    /**
+     * @return an exception that reports the status and the error response of a failed request for Fitbit data
+     */
+    private ShimException newRequestFailedException(HttpStatusCodeException exception) {
+
+        logger.warn("A request for Fitbit data has failed with status {} and response '{}'.",
+                exception.getRawStatusCode(), exception.getResponseBodyAsString());
+
+        return new ShimException(format("A request for Fitbit data has failed with status %d.",
+                exception.getRawStatusCode()), exception);
     }
 
     private FitbitDataPointMapper getDataPointMapper(FitbitDataType fitbitDataType) {
@@ -393,7 +449,7 @@ public class FitbitShim extends OAuth2Shim {
             LocalDate startDate,
             LocalDate endDate,
             FitbitDataType dataType,
-            boolean normalize) throws ShimException {
+            ShimDataRequest shimDataRequest) throws ShimException {
 
         URI url = UriComponentsBuilder
                 .fromUriString(DATA_URL)
@@ -402,14 +458,14 @@ public class FitbitShim extends OAuth2Shim {
                 .encode()
                 .toUri();
 
-        return executeRequest(restTemplate, url, normalize, dataType, null);
+        return executeRequest(restTemplate, url, shimDataRequest, dataType, null);
     }
 
     private ResponseEntity<ShimDataResponse> getDataForSingleDate(
             OAuth2RestOperations restTemplate,
             LocalDate date,
             FitbitDataType dataType,
-            boolean normalize) throws ShimException {
+            ShimDataRequest shimDataRequest) throws ShimException {
 
         String detailLevel = "";
 
@@ -427,6 +483,6 @@ public class FitbitShim extends OAuth2Shim {
                 .encode()
                 .toUri();
 
-        return executeRequest(restTemplate, url, normalize, dataType, date);
+        return executeRequest(restTemplate, url, shimDataRequest, dataType, date);
     }
 }
@@ -19,19 +19,24 @@ package org.openmhealth.shim.fitbit.mapper;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.google.common.collect.Lists;
 import org.openmhealth.schema.domain.omh.DataPoint;
+import org.openmhealth.schema.domain.omh.DataPointAcquisitionProvenance;
 import org.openmhealth.schema.domain.omh.DurationUnitValue;
-import org.openmhealth.schema.domain.omh.SchemaSupport;
+import org.openmhealth.schema.domain.omh.Measure;
 import org.openmhealth.schema.domain.omh.TimeFrame;
+import org.openmhealth.shim.common.mapper.IntradayTimeSeries;
+import org.openmhealth.shim.common.mapper.IntradayTimeSeriesMapper;
 
+import java.math.BigDecimal;
 import java.time.LocalDate;
-import java.time.LocalDateTime;
-import java.time.LocalTime;
 import java.time.OffsetDateTime;
 import java.util.List;
+import java.util.Optional;
 
 import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkNotNull;
+import static java.util.concurrent.TimeUnit.MINUTES;
 import static org.openmhealth.schema.domain.omh.DurationUnit.MINUTE;
+import static org.openmhealth.schema.domain.omh.DurationUnit.SECOND;
 import static org.openmhealth.schema.domain.omh.TimeInterval.ofStartDateTimeAndDuration;
 import static org.openmhealth.shim.common.mapper.JsonNodeMappingSupport.*;
 
@@ -42,10 +47,12 @@ import static org.openmhealth.shim.common.mapper.JsonNodeMappingSupport.*;
  * @author Chris Schaefbauer
  * @author Emerson Farrugia
  */
-public abstract class FitbitIntradayDataPointMapper<T extends SchemaSupport> extends FitbitDataPointMapper<T> {
+public abstract class FitbitIntradayDataPointMapper<T extends Measure> extends FitbitDataPointMapper<T>
+        implements IntradayTimeSeriesMapper<T> {
 
     // FIXME this shared state is a critical section if the mapper is reused
     private JsonNode responseNode;
+    private OffsetDateTime effectiveStartOfDay;
     private Integer intradayDataGranularityInMinutes;
 
 
@@ -59,7 +66,7 @@ public abstract class FitbitIntradayDataPointMapper<T extends SchemaSupport> ext
         checkNotNull(responseNodes);
         checkArgument(responseNodes.size() == 1, "A single response node is allowed per call.");
 
-        responseNode = responseNodes.get(0);
+        setResponseNode(responseNodes.get(0));
 
         List<DataPoint<T>> dataPoints = Lists.newArrayList();
 
@@ -70,6 +77,107 @@ public abstract class FitbitIntradayDataPointMapper<T extends SchemaSupport> ext
         return dataPoints;
     }
 
+    @Override
+    protected Optional<DataPoint<T>> asDataPoint(JsonNode listEntryNode) {
+
+        BigDecimal value = asRequiredBigDecimal(listEntryNode, "value");
+
+        if (value.intValue() == 0) {
+            return Optional.empty();
+        }
+
+        T measure = newMeasure(value, getTimeSeriesEntryEffectiveTimeFrame(listEntryNode));
+
+        return Optional.of(newDataPoint(measure, getTimeSeriesEntryExternalId(listEntryNode)));
+    }
+
+    @Override
+    public IntradayTimeSeries asTimeSeries(JsonNode responseNode) {
+
+        checkNotNull(responseNode);
+
+        setResponseNode(responseNode);
+
+        IntradayTimeSeries.Builder builder = new IntradayTimeSeries.Builder(
+                getBodySchemaId(),
+                new DataPointAcquisitionProvenance.Builder(RESOURCE_API_SOURCE_NAME).build(),
+                MINUTES.toSeconds(intradayDataGranularityInMinutes))
+                .setUnit(getTimeSeriesUnit());
+
+        for (JsonNode listEntryNode : asRequiredNode(responseNode, getListNodeName())) {
+
+            BigDecimal value = asRequiredBigDecimal(listEntryNode, "value");
+
+            // zero entries are kept so that rollups such as MIN and MEAN account for them, and are only skipped when
+            // the time series is expanded into data points
+            builder.addEntry(getTimeSeriesEntryEffectiveStartDateTime(listEntryNode),
+                    MINUTES.toSeconds(intradayDataGranularityInMinutes), value.longValue());
+        }
+
+        return builder.build();
+    }
+
+    @Override
+    public List<DataPoint<T>> asDataPoints(IntradayTimeSeries timeSeries) {
+
+        checkNotNull(timeSeries);
+
+        List<DataPoint<T>> dataPoints = Lists.newArrayListWithCapacity(timeSeries.size());
+
+        for (int i = 0; i < timeSeries.size(); i++) {
+
+            // entries are skipped for the same reason they don't become data points
+            if (timeSeries.getValue(i) == 0) {
+                continue;
+            }
+
+            OffsetDateTime effectiveStartDateTime = timeSeries.getStartDateTime(i);
+
+            T measure = newMeasure(BigDecimal.valueOf(timeSeries.getValue(i)),
+                    getEffectiveTimeFrame(effectiveStartDateTime, timeSeries.getDurationInSeconds(i)));
+
+            dataPoints.add(newDataPoint(measure, effectiveStartDateTime.toEpochSecond()));
+        }
+
+        return dataPoints;
+    }
+
+    /**
+     * @param value the value of a time series entry
+     * @param effectiveTimeFrame the effective time frame of the entry
+     * @return the measure of the entry
+     */
+    protected abstract T newMeasure(BigDecimal value, TimeFrame effectiveTimeFrame);
+
+    /**
+     * @return the unit of time series values, or null if the measure has no unit
+     */
+    protected String getTimeSeriesUnit() {
+        return null;
+    }
+
+    /**
+     * Sets the response being mapped. The start of its effective date is resolved on the first entry rather than
+     * here, since a response without entries may also have an empty date summary.
+     */
+    private void setResponseNode(JsonNode responseNode) {
+
+        this.responseNode = responseNode;
+        this.effectiveStartOfDay = null;
+    }
+
+    /**
+     * @return the start of the effective date of the response being mapped, resolved once rather than per entry
+     */
+    private OffsetDateTime getEffectiveStartOfDay() {
+
+        if (effectiveStartOfDay == null) {
+            effectiveStartOfDay = asOffsetDateTimeWithFakeUtcTimeZone(getEffectiveDate().atStartOfDay());
+        }
+
+        return effectiveStartOfDay;
+    }
+
     /**
      * @return the effective date of an intraday response
      */
@@ -86,10 +194,7 @@ public abstract class FitbitIntradayDataPointMapper<T extends SchemaSupport> ext
      */
     protected OffsetDateTime getTimeSeriesEntryEffectiveStartDateTime(JsonNode timeSeriesEntryNode) {
 
-        LocalDate effectiveDate = getEffectiveDate();
-        LocalTime effectiveStartDateTime = asRequiredLocalTime(timeSeriesEntryNode, "time");
-
-        return asOffsetDateTimeWithFakeUtcTimeZone(LocalDateTime.of(effectiveDate, effectiveStartDateTime));
+        return getEffectiveStartOfDay().plusSeconds(asRequiredSecondOfDay(timeSeriesEntryNode, "time"));
     }
 
     /**
@@ -108,9 +213,18 @@ public abstract class FitbitIntradayDataPointMapper<T extends SchemaSupport> ext
      */
     protected TimeFrame getTimeSeriesEntryEffectiveTimeFrame(JsonNode timeSeriesEntryNode) {
 
-        return new TimeFrame(ofStartDateTimeAndDuration(
-                getTimeSeriesEntryEffectiveStartDateTime(timeSeriesEntryNode),
-                new DurationUnitValue(MINUTE, intradayDataGranularityInMinutes)));
+        return getEffectiveTimeFrame(getTimeSeriesEntryEffectiveStartDateTime(timeSeriesEntryNode),
+                MINUTES.toSeconds(intradayDataGranularityInMinutes));
+    }
+
+    private TimeFrame getEffectiveTimeFrame(OffsetDateTime effectiveStartDateTime, long durationInSeconds) {
+
+        // rolled up entries needn't last a whole number of minutes
+        DurationUnitValue duration = durationInSeconds % 60 == 0
+                ? new DurationUnitValue(MINUTE, durationInSeconds / 60)
+                : new DurationUnitValue(SECOND, durationInSeconds);
+
+        return new TimeFrame(ofStartDateTimeAndDuration(effectiveStartDateTime, duration));
     }
 
     /**
@@ -16,15 +16,12 @@
 
 package org.openmhealth.shim.fitbit.mapper;
 
-import com.fasterxml.jackson.databind.JsonNode;
-import org.openmhealth.schema.domain.omh.DataPoint;
 import org.openmhealth.schema.domain.omh.HeartRate;
 import org.openmhealth.schema.domain.omh.TimeFrame;
 
 import java.math.BigDecimal;
-import java.util.Optional;
 
-import static org.openmhealth.shim.common.mapper.JsonNodeMappingSupport.asRequiredBigDecimal;
+import static org.openmhealth.schema.domain.omh.HeartRateUnit.BEATS_PER_MINUTE;
 
 
 /**
@@ -51,20 +48,15 @@ public class FitbitIntradayHeartRateDataPointMapper extends FitbitIntradayDataPo
     }
 
     @Override
-    protected Optional<DataPoint<HeartRate>> asDataPoint(JsonNode listEntryNode) {
+    protected HeartRate newMeasure(BigDecimal value, TimeFrame effectiveTimeFrame) {
 
-        BigDecimal heartRateValue = asRequiredBigDecimal(listEntryNode, "value");
-
-        if (heartRateValue.intValue() == 0) {
-            return Optional.empty();
-        }
-
-        TimeFrame effectiveTimeFrame = getTimeSeriesEntryEffectiveTimeFrame(listEntryNode);
-
-        HeartRate.Builder heartRateBuilder = new HeartRate.Builder(heartRateValue)
-                .setEffectiveTimeFrame(effectiveTimeFrame);
+        return new HeartRate.Builder(value)
+                .setEffectiveTimeFrame(effectiveTimeFrame)
+                .build();
+    }
 
-        return Optional.of(
-                newDataPoint(heartRateBuilder.build(), getTimeSeriesEntryExternalId(listEntryNode)));
+    @Override
+    protected String getTimeSeriesUnit() {
+        return BEATS_PER_MINUTE.getSchemaValue();
     }
 }
@@ -16,15 +16,10 @@
 
 package org.openmhealth.shim.fitbit.mapper;
 
-import com.fasterxml.jackson.databind.JsonNode;
-import org.openmhealth.schema.domain.omh.DataPoint;
 import org.openmhealth.schema.domain.omh.StepCount2;
 import org.openmhealth.schema.domain.omh.TimeFrame;
 
 import java.math.BigDecimal;
-import java.util.Optional;
-
-import static org.openmhealth.shim.common.mapper.JsonNodeMappingSupport.asRequiredBigDecimal;
 
 
 /**
@@ -51,19 +46,8 @@ public class FitbitIntradayStepCountDataPointMapper extends FitbitIntradayDataPo
     }
 
     @Override
-    protected Optional<DataPoint<StepCount2>> asDataPoint(JsonNode listEntryNode) {
-
-        BigDecimal stepCountValue = asRequiredBigDecimal(listEntryNode, "value");
-
-        if (stepCountValue.intValue() == 0) {
-            return Optional.empty();
-        }
-
-        TimeFrame effectiveTimeFrame = getTimeSeriesEntryEffectiveTimeFrame(listEntryNode);
-
-        StepCount2.Builder stepCountBuilder = new StepCount2.Builder(stepCountValue, effectiveTimeFrame);
+    protected StepCount2 newMeasure(BigDecimal value, TimeFrame effectiveTimeFrame) {
 
-        return Optional.of(
-                newDataPoint(stepCountBuilder.build(), getTimeSeriesEntryExternalId(listEntryNode)));
+        return new StepCount2.Builder(value, effectiveTimeFrame).build();
     }
 }
@@ -48,6 +48,8 @@ import java.time.OffsetDateTime;
 import java.time.ZoneOffset;
 import java.util.Map;
 
+import static java.util.Collections.singletonList;
+import static org.openmhealth.shim.common.mapper.DataPointMapperInstrumentation.asDataPoints;
 import static org.slf4j.LoggerFactory.getLogger;
 import static org.springframework.http.ResponseEntity.ok;
 
@@ -59,6 +61,7 @@ import static org.springframework.http.ResponseEntity.ok;
  * @author Chris Schaefbauer
  */
 @Component
+@ConditionalOnClientId("openmhealth.shim.googlefit")
 public class GoogleFitShim extends OAuth2Shim {
 
     private static final Logger logger = getLogger(GoogleFitShim.class);
@@ -195,8 +198,8 @@ public class GoogleFitShim extends OAuth2Shim {
         if (shimDataRequest.getNormalize()) {
             GoogleFitDataPointMapper<?> dataPointMapper = getDataPointMapper(googleFitDataType);
 
-            return ok().body(ShimDataResponse
-                    .result(GoogleFitShim.SHIM_KEY, dataPointMapper.asDataPoints(responseEntity.getBody())));
+            return ok().body(ShimDataResponse.result(GoogleFitShim.SHIM_KEY,
+                    asDataPoints(dataPointMapper, singletonList(responseEntity.getBody()))));
         }
         else {
             return ok().body(ShimDataResponse
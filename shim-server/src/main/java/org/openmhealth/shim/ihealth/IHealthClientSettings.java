@@ -18,6 +18,7 @@
 package org.openmhealth.shim.ihealth;
 
 import org.hibernate.validator.constraints.URL;
+import org.openmhealth.shim.ConditionalOnClientId;
 import org.openmhealth.shim.OAuth2ClientSettings;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.stereotype.Component;
@@ -34,6 +35,7 @@ import static java.util.Optional.ofNullable;
  * @author Emerson Farrugia
  */
 @Component
+@ConditionalOnClientId("openmhealth.shim.ihealth")
 @ConfigurationProperties("openmhealth.shim.ihealth")
 public class IHealthClientSettings extends OAuth2ClientSettings {
 
@@ -59,6 +59,7 @@ import java.util.Map;
 
 import static com.google.common.collect.Lists.newArrayList;
 import static java.util.Collections.singletonList;
+import static org.openmhealth.shim.common.mapper.DataPointMapperInstrumentation.asDataPoints;
 import static org.openmhealth.shim.ihealth.IHealthShim.IHealthDataTypes.*;
 import static org.slf4j.LoggerFactory.getLogger;
 
@@ -70,6 +71,7 @@ import static org.slf4j.LoggerFactory.getLogger;
  * @author Emerson Farrugia
  */
 @Component
+@ConditionalOnClientId("openmhealth.shim.ihealth")
 public class IHealthShim extends OAuth2Shim {
 
     private static final Logger logger = getLogger(IHealthShim.class);
@@ -81,6 +83,9 @@ public class IHealthShim extends OAuth2Shim {
     @Autowired
     private IHealthClientSettings clientSettings;
 
+    @Autowired
+    private ObjectMapper objectMapper;
+
     @Override
     public String getLabel() {
 
@@ -121,7 +126,7 @@ public class IHealthShim extends OAuth2Shim {
     public ShimDataType[] getShimDataTypes() {
 
         return new ShimDataType[] {
-                BLOOD_PRESSURE, // TODO the order matters here since the first is used as a trigger request
+                BLOOD_PRESSURE,
                 BLOOD_GLUCOSE,
                 PHYSICAL_ACTIVITY,
                 BODY_WEIGHT,
@@ -198,7 +203,7 @@ public class IHealthShim extends OAuth2Shim {
         String scValue = clientSettings.getClientSerialNumber();
         List<String> svValues = getEndpointSecrets(dataType);
 
-        List<JsonNode> responseEntities = newArrayList();
+        List<Object> responseEntities = newArrayList();
 
         int i = 0;
 
@@ -208,8 +213,7 @@ public class IHealthShim extends OAuth2Shim {
 
             UriComponentsBuilder uriBuilder = UriComponentsBuilder.fromUriString(clientSettings.getApiBaseUrl() + "/");
 
-            // Need to use a dummy userId if we haven't authenticated yet. This is the case where we are using
-            // getData to trigger Spring to conduct the OAuth exchange
+            // Need to use a dummy userId if we haven't authenticated yet
             String userId = "uk";
 
             if (shimDataRequest.getAccessParameters() != null) {
@@ -289,7 +293,7 @@ public class IHealthShim extends OAuth2Shim {
                         throw new UnsupportedOperationException();
                 }
 
-                responseEntities.addAll(mapper.asDataPoints(singletonList(responseEntity.getBody())));
+                responseEntities.addAll(asDataPoints(mapper, singletonList(responseEntity.getBody())));
             }
             else {
                 responseEntities.add(responseEntity.getBody());
@@ -389,7 +393,7 @@ public class IHealthShim extends OAuth2Shim {
                 @Override
                 public OAuth2AccessToken extractData(ClientHttpResponse response) throws IOException {
 
-                    JsonNode node = new ObjectMapper().readTree(response.getBody());
+                    JsonNode node = objectMapper.readTree(response.getBody());
                     String token = Preconditions
                             .checkNotNull(node.path("AccessToken").textValue(), "Missing access token: %s", node);
                     String refreshToken = Preconditions
@@ -18,8 +18,20 @@
 package org.openmhealth.shim.jawbone;
 
 import com.fasterxml.jackson.databind.JsonNode;
+import com.google.common.collect.Range;
+import org.openmhealth.schema.domain.omh.DataPoint;
 import org.openmhealth.shim.*;
 import org.openmhealth.shim.jawbone.mapper.*;
+import org.openmhealth.shimmer.common.configuration.DefaultEndpointSettings;
+import org.openmhealth.shimmer.common.configuration.EndpointSettings;
+import org.openmhealth.shimmer.common.domain.DataPointRequest;
+import org.openmhealth.shimmer.common.domain.parameters.DateTimeRequestParameter;
+import org.openmhealth.shimmer.common.domain.parameters.NumberRequestParameter;
+import org.openmhealth.shimmer.common.pagination.NextLinkPageUriResolver;
+import org.openmhealth.shimmer.common.pagination.NextPageUriResolver;
+import org.openmhealth.shimmer.common.service.PaginatedResponseReader;
+import org.openmhealth.shimmer.common.service.PaginatedResponseReader.PageFetcher;
+import org.openmhealth.shimmer.common.service.RequestEntityAssemblerChain;
 import org.slf4j.Logger;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpHeaders;
@@ -37,11 +49,19 @@ import org.springframework.util.StringUtils;
 import org.springframework.web.client.HttpClientErrorException;
 import org.springframework.web.client.HttpServerErrorException;
 import org.springframework.web.util.UriComponentsBuilder;
+import org.springframework.web.util.UriTemplate;
 
+import java.net.URI;
 import java.time.OffsetDateTime;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Optional;
 
 import static java.util.Collections.singletonList;
+import static org.openmhealth.shim.common.mapper.DataPointMapperInstrumentation.asDataPoints;
+import static org.openmhealth.shimmer.common.domain.parameters.RequestParameterLocation.QUERY;
 import static org.slf4j.LoggerFactory.getLogger;
 
 
@@ -52,6 +72,7 @@ import static org.slf4j.LoggerFactory.getLogger;
  * @author Chris Schaefbauer
  */
 @Component
+@ConditionalOnClientId("openmhealth.shim.jawbone")
 public class JawboneShim extends OAuth2Shim {
 
     private static final Logger logger = getLogger(JawboneShim.class);
@@ -60,10 +81,67 @@ public class JawboneShim extends OAuth2Shim {
     private static final String DATA_URL = "https://jawbone.com/nudge/api/v.1.1/users/@me/";
     private static final String USER_AUTHORIZATION_URL = "https://jawbone.com/auth/oauth2/auth";
     private static final String ACCESS_TOKEN_URL = "https://jawbone.com/auth/oauth2/token";
+    private static final String AUTHORIZATION_CHECK_URL = "https://jawbone.com/nudge/api/v.1.1/users/@me";
+
+    /*
+        Jawbone defaults to returning a maximum of 10 entries per request (limit = 10 by default), so we ask for
+        larger pages and follow the link to the next page that each page carries.
+     */
+    private static final double PAGE_SIZE = 100;
+    private static final NextPageUriResolver NEXT_PAGE_URI_RESOLVER = new NextLinkPageUriResolver("data.links.next");
+    private static final Map<JawboneDataTypes, EndpointSettings> ENDPOINT_SETTINGS = newEndpointSettings();
 
     @Autowired
     private JawboneClientSettings clientSettings;
 
+    @Autowired
+    private PaginatedResponseReader paginatedResponseReader;
+
+    @Autowired
+    private RequestEntityAssemblerChain requestEntityAssemblerChain;
+
+    private static Map<JawboneDataTypes, EndpointSettings> newEndpointSettings() {
+
+        Map<JawboneDataTypes, EndpointSettings> settingsByDataType = new EnumMap<>(JawboneDataTypes.class);
+
+        for (JawboneDataTypes dataType : JawboneDataTypes.values()) {
+            settingsByDataType.put(dataType, newEndpointSettings(dataType));
+        }
+
+        return settingsByDataType;
+    }
+
+    static EndpointSettings newEndpointSettings(JawboneDataTypes dataType) {
+
+        DefaultEndpointSettings settings = new DefaultEndpointSettings();
+
+        settings.setId(dataType.name().toLowerCase());
+        settings.setUriTemplate(new UriTemplate(DATA_URL + dataType.getEndPoint()));
+
+        // a date time parameter without a format is sent as seconds since the epoch
+        settings.setEffectiveStartDateTimeParameter(newDateTimeRequestParameter("start_time"));
+        settings.setEffectiveEndDateTimeParameter(newDateTimeRequestParameter("end_time"));
+
+        NumberRequestParameter pageSizeParameter = new NumberRequestParameter();
+        pageSizeParameter.setParameterName("limit");
+        pageSizeParameter.setRequestParameterLocation(QUERY);
+        pageSizeParameter.setDefaultValue(PAGE_SIZE);
+        settings.setPageSizeParameter(pageSizeParameter);
+
+        return settings;
+    }
+
+    private static DateTimeRequestParameter newDateTimeRequestParameter(String parameterName) {
+
+        DateTimeRequestParameter parameter = new DateTimeRequestParameter();
+
+        parameter.setParameterName(parameterName);
+        parameter.setRequestParameterLocation(QUERY);
+        parameter.setRequired(true);
+
+        return parameter;
+    }
+
     @Override
     public String getLabel() {
         return "Jawbone UP";
@@ -84,6 +162,12 @@ public class JawboneShim extends OAuth2Shim {
         return ACCESS_TOKEN_URL;
     }
 
+    @Override
+    protected Optional<URI> getAuthorizationCheckUri() {
+
+        return Optional.of(URI.create(AUTHORIZATION_CHECK_URL));
+    }
+
     @Override
     protected OAuth2ClientSettings getClientSettings() {
 
@@ -143,71 +227,73 @@ public class JawboneShim extends OAuth2Shim {
                     + " in shimDataRequest, cannot retrieve data.");
         }
 
-        /*
-            Jawbone defaults to returning a maximum of 10 entries per request (limit = 10 by default), so
-            we override the default by specifying an arbitrarily large number as the limit.
-         */
-        long numToReturn = 100_000;
-
         OffsetDateTime today = OffsetDateTime.now();
 
         OffsetDateTime startDateTime = shimDataRequest.getStartDateTime() == null ?
                 today.minusDays(1) : shimDataRequest.getStartDateTime();
-        long startTimeInEpochSecond = startDateTime.toEpochSecond();
 
         // We are inclusive of the last day, so we need to add an extra day since we are dealing with start of day,
         // and would miss the activities that occurred during the last day within going to midnight of that day
         OffsetDateTime endDateTime = shimDataRequest.getEndDateTime() == null ?
                 today.plusDays(1) : shimDataRequest.getEndDateTime().plusDays(1);
-        long endTimeInEpochSecond = endDateTime.toEpochSecond();
 
-        UriComponentsBuilder uriComponentsBuilder =
-                UriComponentsBuilder.fromUriString(DATA_URL).path(jawboneDataType.getEndPoint())
-                        .queryParam("start_time", startTimeInEpochSecond).queryParam("end_time", endTimeInEpochSecond)
-                        .queryParam("limit", numToReturn);
+        DataPointRequest request = new DataPointRequest(ENDPOINT_SETTINGS.get(jawboneDataType));
+        request.setEffectiveDateTimeRange(Range.closedOpen(startDateTime, endDateTime));
 
-        ResponseEntity<JsonNode> responseEntity;
-        try {
-            responseEntity = restTemplate.getForEntity(uriComponentsBuilder.build().encode().toUri(), JsonNode.class);
-        }
-        catch (HttpClientErrorException | HttpServerErrorException e) {
-            // FIXME figure out how to handle this
-            logger.error("A request for Jawbone data failed.", e);
-            throw e;
-        }
+        // the OAuth2 rest template adds the access token itself, and later pages are found by following links
+        URI firstPageUri = requestEntityAssemblerChain.createRequestEntity(request).getUrl();
+
+        PageFetcher pageFetcher = (pageUri) -> {
+            try {
+                return restTemplate.getForEntity(pageUri, JsonNode.class).getBody();
+            }
+            catch (HttpClientErrorException | HttpServerErrorException e) {
+                // FIXME figure out how to handle this
+                logger.error("A request for Jawbone data failed.", e);
+                throw e;
+            }
+        };
 
         if (shimDataRequest.getNormalize()) {
 
-            JawboneDataPointMapper mapper;
-            switch (jawboneDataType) {
-                case BODY_MASS_INDEX:
-                    mapper = new JawboneBodyMassIndexDataPointMapper();
-                    break;
-                case BODY_WEIGHT:
-                    mapper = new JawboneBodyWeightDataPointMapper();
-                    break;
-                case HEART_RATE:
-                    mapper = new JawboneHeartRateDataPointMapper();
-                    break;
-                case PHYSICAL_ACTIVITY:
-                    mapper = new JawbonePhysicalActivityDataPointMapper();
-                    break;
-                case SLEEP_DURATION:
-                    mapper = new JawboneSleepDurationDataPointMapper();
-                    break;
-                case STEP_COUNT:
-                    mapper = new JawboneStepCountDataPointMapper();
-                    break;
-                default:
-                    throw new UnsupportedOperationException();
-            }
+            JawboneDataPointMapper<?> mapper = getDataPointMapper(jawboneDataType);
+
+            List<DataPoint<?>> dataPoints = paginatedResponseReader.readPages(firstPageUri, pageFetcher,
+                    NEXT_PAGE_URI_RESOLVER, page -> asDataPoints(mapper, singletonList(page)));
 
-            return ResponseEntity.ok().body(ShimDataResponse
-                    .result(JawboneShim.SHIM_KEY, mapper.asDataPoints(singletonList(responseEntity.getBody()))));
+            return ResponseEntity.ok().body(ShimDataResponse.result(JawboneShim.SHIM_KEY, dataPoints));
         }
         else {
+            // a response spanning several pages is returned as a list of pages, while a single page keeps returning
+            // the page itself
+            List<JsonNode> pages = paginatedResponseReader.readPages(firstPageUri, pageFetcher,
+                    NEXT_PAGE_URI_RESOLVER, Collections::singletonList);
+
+            if (pages.size() == 1) {
+                return ResponseEntity.ok().body(ShimDataResponse.result(JawboneShim.SHIM_KEY, pages.get(0)));
+            }
+
+            return ResponseEntity.ok().body(ShimDataResponse.result(JawboneShim.SHIM_KEY, pages));
+        }
+    }
 
-            return ResponseEntity.ok().body(ShimDataResponse.result(JawboneShim.SHIM_KEY, responseEntity.getBody()));
+    private JawboneDataPointMapper<?> getDataPointMapper(JawboneDataTypes jawboneDataType) {
+
+        switch (jawboneDataType) {
+            case BODY_MASS_INDEX:
+                return new JawboneBodyMassIndexDataPointMapper();
+            case BODY_WEIGHT:
+                return new JawboneBodyWeightDataPointMapper();
+            case HEART_RATE:
+                return new JawboneHeartRateDataPointMapper();
+            case PHYSICAL_ACTIVITY:
+                return new JawbonePhysicalActivityDataPointMapper();
+            case SLEEP_DURATION:
+                return new JawboneSleepDurationDataPointMapper();
+            case STEP_COUNT:
+                return new JawboneStepCountDataPointMapper();
+            default:
+                throw new UnsupportedOperationException();
         }
     }
 
@@ -17,6 +17,8 @@
 package org.openmhealth.shim.jawbone.mapper;
 
 import com.fasterxml.jackson.databind.JsonNode;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import org.openmhealth.schema.domain.omh.*;
 import org.openmhealth.shim.common.mapper.JsonNodeDataPointMapper;
 
@@ -45,8 +47,9 @@ import static org.openmhealth.shim.common.mapper.JsonNodeMappingSupport.*;
 public abstract class JawboneDataPointMapper<T extends Measure> implements JsonNodeDataPointMapper<T> {
 
     public static final String RESOURCE_API_SOURCE_NAME = "Jawbone UP API";
-    private static final int TIMEZONE_ENUM_INDEX_TZ = 1;
-    private static final int TIMEZONE_ENUM_INDEX_START = 0;
+
+    // parsed time zones are shared by all entries and responses, since the same few time zones recur across them
+    private static final Cache<String, ZoneId> parsedZones = CacheBuilder.newBuilder().maximumSize(1_000).build();
 
     /**
      * Generates a {@link Measure} of the appropriate type from an individual list entry node with the correct values
@@ -137,8 +140,10 @@ public abstract class JawboneDataPointMapper<T extends Measure> implements JsonN
         if (optionalStartTime.isPresent() && optionalStartTime.get() != null && optionalEndTime.isPresent() &&
                 optionalEndTime.get() != null) {
 
-            ZoneId timeZoneForStartTime = getTimeZoneForTimestamp(listEntryNode, optionalStartTime.get());
-            ZoneId timeZoneForEndTime = getTimeZoneForTimestamp(listEntryNode, optionalEndTime.get());
+            JawboneTimeZoneIndex timeZoneIndex = JawboneTimeZoneIndex.of(listEntryNode);
+
+            ZoneId timeZoneForStartTime = timeZoneIndex.getTimeZone(optionalStartTime.get());
+            ZoneId timeZoneForEndTime = timeZoneIndex.getTimeZone(optionalEndTime.get());
 
             OffsetDateTime startTime = OffsetDateTime.ofInstant(Instant.ofEpochSecond(optionalStartTime.get()),
                     timeZoneForStartTime);
@@ -163,43 +168,7 @@ public abstract class JawboneDataPointMapper<T extends Measure> implements JsonN
      */
     static ZoneId getTimeZoneForTimestamp(JsonNode listEntryNode, Long unixEpochTimestamp) {
 
-        Optional<JsonNode> optionalTimeZonesNode = asOptionalNode(listEntryNode, "details.tzs");
-        Optional<JsonNode> optionalTimeZoneNode = asOptionalNode(listEntryNode, "details.tz");
-
-        ZoneId zoneIdForTimestamp = ZoneOffset.UTC; // set default to Z in case problems with getting timezone
-
-        if (optionalTimeZonesNode.isPresent() && optionalTimeZonesNode.get().size() > 0) {
-
-            JsonNode timeZonesNode = optionalTimeZonesNode.get();
-
-            if (timeZonesNode.size() == 1) {
-                zoneIdForTimestamp = parseZone(timeZonesNode.get(0).get(TIMEZONE_ENUM_INDEX_TZ));
-            }
-            else {
-
-                long currentLatestTimeZoneStart = 0;
-                for (JsonNode timeZoneNodesEntry : timeZonesNode) {
-
-                    long timeZoneStartTime = timeZoneNodesEntry.get(TIMEZONE_ENUM_INDEX_START).asLong();
-
-                    if (unixEpochTimestamp >= timeZoneStartTime) {
-
-                        if (timeZoneStartTime > currentLatestTimeZoneStart) { // we cannot guarantee the order of the
-                            // "tzs" array and we need to find the latest timezone that started before our time
-
-                            zoneIdForTimestamp = parseZone(timeZoneNodesEntry.get(TIMEZONE_ENUM_INDEX_TZ));
-                            currentLatestTimeZoneStart = timeZoneStartTime;
-                        }
-                    }
-                }
-            }
-        }
-        else if (optionalTimeZoneNode.isPresent() && !optionalTimeZoneNode.get().isNull()) {
-
-            zoneIdForTimestamp = parseZone(optionalTimeZoneNode.get());
-        }
-
-        return zoneIdForTimestamp;
+        return JawboneTimeZoneIndex.of(listEntryNode).getTimeZone(unixEpochTimestamp);
     }
 
     // TODO clarify
@@ -229,6 +198,20 @@ public abstract class JawboneDataPointMapper<T extends Measure> implements JsonN
             return ZoneOffset.UTC;
         }
 
+        // the text of a node determines how it's parsed, so it identifies the time zone
+        String timeZoneText = timeZoneValueNode.asText();
+        ZoneId zoneId = parsedZones.getIfPresent(timeZoneText);
+
+        if (zoneId == null) {
+            zoneId = parseUncachedZone(timeZoneValueNode);
+            parsedZones.put(timeZoneText, zoneId);
+        }
+
+        return zoneId;
+    }
+
+    private static ZoneId parseUncachedZone(JsonNode timeZoneValueNode) {
+
         // "-25200"
         if (timeZoneValueNode.asInt() != 0) {
             ZoneOffset zoneOffset = ZoneOffset.ofTotalSeconds(timeZoneValueNode.asInt());
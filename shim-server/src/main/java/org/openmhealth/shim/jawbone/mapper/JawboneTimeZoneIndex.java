@@ -0,0 +1,150 @@
+/*
+ * Copyright 2017 Open mHealth
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.openmhealth.shim.jawbone.mapper;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.Arrays;
+import java.util.Optional;
+
+import static org.openmhealth.shim.common.mapper.JsonNodeMappingSupport.asOptionalNode;
+
+
+/**
+ * The time zones of a Jawbone list entry, indexed by the times they took effect. An entry lists its time zones in a
+ * "details.tzs" array of [start time, time zone] pairs, in no guaranteed order, or a single time zone in "details.tz".
+ * The index is built once per entry, sorts the pairs by start time and finds the time zone in effect at a timestamp by
+ * binary search. Time zones are parsed the first time they're looked up.
+ */
+final class JawboneTimeZoneIndex {
+
+    private static final int TIMEZONE_ENUM_INDEX_START = 0;
+    private static final int TIMEZONE_ENUM_INDEX_TZ = 1;
+
+    private static final JawboneTimeZoneIndex UTC_INDEX = new JawboneTimeZoneIndex(ZoneOffset.UTC);
+
+    // the time zone that applies regardless of the timestamp, if any
+    private final ZoneId fixedTimeZone;
+
+    // the start times of the time zones, sorted, with the time zone nodes and their parsed time zones at the same index
+    private final long[] startTimes;
+    private final JsonNode[] timeZoneNodes;
+    private final ZoneId[] timeZones;
+
+
+    private JawboneTimeZoneIndex(ZoneId fixedTimeZone) {
+
+        this.fixedTimeZone = fixedTimeZone;
+        this.startTimes = new long[0];
+        this.timeZoneNodes = new JsonNode[0];
+        this.timeZones = new ZoneId[0];
+    }
+
+    private JawboneTimeZoneIndex(JsonNode timeZonesNode) {
+
+        Integer[] order = new Integer[timeZonesNode.size()];
+        long[] unsortedStartTimes = new long[timeZonesNode.size()];
+
+        for (int i = 0; i < order.length; i++) {
+            order[i] = i;
+            unsortedStartTimes[i] = timeZonesNode.get(i).get(TIMEZONE_ENUM_INDEX_START).asLong();
+        }
+
+        // a stable sort keeps the first of several time zones with the same start time first
+        Arrays.sort(order, (a, b) -> Long.compare(unsortedStartTimes[a], unsortedStartTimes[b]));
+
+        long[] sortedStartTimes = new long[order.length];
+        JsonNode[] sortedTimeZoneNodes = new JsonNode[order.length];
+        int count = 0;
+
+        for (Integer index : order) {
+            long startTime = unsortedStartTimes[index];
+
+            // time zones that don't start after the epoch are never in effect, and only the first of several time
+            // zones with the same start time is
+            if (startTime <= 0 || (count > 0 && sortedStartTimes[count - 1] == startTime)) {
+                continue;
+            }
+
+            sortedStartTimes[count] = startTime;
+            sortedTimeZoneNodes[count] = timeZonesNode.get(index).get(TIMEZONE_ENUM_INDEX_TZ);
+            count++;
+        }
+
+        this.fixedTimeZone = null;
+        this.startTimes = Arrays.copyOf(sortedStartTimes, count);
+        this.timeZoneNodes = Arrays.copyOf(sortedTimeZoneNodes, count);
+        this.timeZones = new ZoneId[count];
+    }
+
+    /**
+     * @param listEntryNode an individual entry node from the "items" array of a Jawbone endpoint response
+     * @return the time zone index of the entry
+     */
+    static JawboneTimeZoneIndex of(JsonNode listEntryNode) {
+
+        Optional<JsonNode> timeZonesNode = asOptionalNode(listEntryNode, "details.tzs");
+
+        if (timeZonesNode.isPresent() && timeZonesNode.get().size() > 0) {
+
+            if (timeZonesNode.get().size() == 1) {
+                return new JawboneTimeZoneIndex(
+                        JawboneDataPointMapper.parseZone(timeZonesNode.get().get(0).get(TIMEZONE_ENUM_INDEX_TZ)));
+            }
+
+            return new JawboneTimeZoneIndex(timeZonesNode.get());
+        }
+
+        Optional<JsonNode> timeZoneNode = asOptionalNode(listEntryNode, "details.tz");
+
+        if (timeZoneNode.isPresent() && !timeZoneNode.get().isNull()) {
+            return new JawboneTimeZoneIndex(JawboneDataPointMapper.parseZone(timeZoneNode.get()));
+        }
+
+        return UTC_INDEX;
+    }
+
+    /**
+     * @param unixEpochTimestamp unix epoch seconds timestamp
+     * @return the time zone in effect at the timestamp, or UTC if no time zone was in effect
+     */
+    ZoneId getTimeZone(long unixEpochTimestamp) {
+
+        if (fixedTimeZone != null) {
+            return fixedTimeZone;
+        }
+
+        int index = Arrays.binarySearch(startTimes, unixEpochTimestamp);
+
+        // if the timestamp isn't a start time, the time zone in effect started before the insertion point
+        if (index < 0) {
+            index = -index - 2;
+        }
+
+        if (index < 0) {
+            return ZoneOffset.UTC;
+        }
+
+        if (timeZones[index] == null) {
+            timeZones[index] = JawboneDataPointMapper.parseZone(timeZoneNodes[index]);
+        }
+
+        return timeZones[index];
+    }
+}
@@ -17,6 +17,7 @@
 
 package org.openmhealth.shim.misfit;
 
+import org.openmhealth.shim.ConditionalOnClientId;
 import org.openmhealth.shim.OAuth2ClientSettings;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.stereotype.Component;
@@ -29,6 +30,7 @@ import java.util.List;
  * @author Emerson Farrugia
  */
 @Component
+@ConditionalOnClientId("openmhealth.shim.misfit")
 @ConfigurationProperties("openmhealth.shim.misfit")
 public class MisfitClientSettings extends OAuth2ClientSettings {
 
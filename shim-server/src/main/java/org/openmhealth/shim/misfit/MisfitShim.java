@@ -19,9 +19,19 @@ package org.openmhealth.shim.misfit;
 
 import com.fasterxml.jackson.databind.JsonNode;
 import com.google.common.base.Joiner;
-import com.google.common.base.Splitter;
+import com.google.common.collect.Range;
+import org.openmhealth.schema.domain.omh.DataPoint;
 import org.openmhealth.shim.*;
 import org.openmhealth.shim.misfit.mapper.*;
+import org.openmhealth.shimmer.common.configuration.DateTimeQuerySettings;
+import org.openmhealth.shimmer.common.configuration.DefaultDateTimeQuerySettings;
+import org.openmhealth.shimmer.common.configuration.DefaultEndpointSettings;
+import org.openmhealth.shimmer.common.configuration.EndpointSettings;
+import org.openmhealth.shimmer.common.domain.DataPointRequest;
+import org.openmhealth.shimmer.common.domain.parameters.DateTimeRequestParameter;
+import org.openmhealth.shimmer.common.service.DateTimeQueryExecutor;
+import org.openmhealth.shimmer.common.service.DateTimeQueryPlanner;
+import org.openmhealth.shimmer.common.service.RequestEntityAssemblerChain;
 import org.slf4j.Logger;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpHeaders;
@@ -37,12 +47,22 @@ import org.springframework.util.MultiValueMap;
 import org.springframework.web.client.HttpClientErrorException;
 import org.springframework.web.client.HttpServerErrorException;
 import org.springframework.web.util.UriComponentsBuilder;
+import org.springframework.web.util.UriTemplate;
 
+import java.net.URI;
 import java.time.Duration;
 import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Optional;
 
+import static java.time.ZoneOffset.UTC;
+import static java.time.format.DateTimeFormatter.ISO_LOCAL_DATE;
 import static java.util.Collections.singletonList;
+import static org.openmhealth.shim.common.mapper.DataPointMapperInstrumentation.asDataPoints;
+import static org.openmhealth.shimmer.common.domain.parameters.RequestParameterLocation.QUERY;
 import static org.slf4j.LoggerFactory.getLogger;
 import static org.springframework.http.ResponseEntity.ok;
 
@@ -52,6 +72,7 @@ import static org.springframework.http.ResponseEntity.ok;
  * @author Emerson Farrugia
  */
 @Component
+@ConditionalOnClientId("openmhealth.shim.misfit")
 public class MisfitShim extends OAuth2Shim {
 
     private static final Logger logger = getLogger(MisfitShim.class);
@@ -60,17 +81,81 @@ public class MisfitShim extends OAuth2Shim {
     private static final String DATA_URL = "https://api.misfitwearables.com/move/resource/v1/user/me";
     private static final String USER_AUTHORIZATION_URL = "https://api.misfitwearables.com/auth/dialog/authorize";
     private static final String ACCESS_TOKEN_URL = "https://api.misfitwearables.com/auth/tokens/exchange";
+    private static final String AUTHORIZATION_CHECK_URL = DATA_URL + "/profile";
 
     private static final long MAX_DURATION_IN_DAYS = 31;
+    private static final DateTimeQuerySettings DATE_TIME_QUERY_SETTINGS = newDateTimeQuerySettings();
+    private static final Map<MisfitDataTypes, EndpointSettings> ENDPOINT_SETTINGS = newEndpointSettings();
 
     @Autowired
     private MisfitClientSettings clientSettings;
 
+    @Autowired
+    private DateTimeQueryPlanner dateTimeQueryPlanner;
+
+    @Autowired
+    private DateTimeQueryExecutor dateTimeQueryExecutor;
+
+    @Autowired
+    private RequestEntityAssemblerChain requestEntityAssemblerChain;
+
     private MisfitPhysicalActivityDataPointMapper physicalActivityMapper = new MisfitPhysicalActivityDataPointMapper();
     private MisfitSleepDurationDataPointMapper sleepDurationMapper = new MisfitSleepDurationDataPointMapper();
     private MisfitSleepEpisodeDataPointMapper sleepEpisodeMapper = new MisfitSleepEpisodeDataPointMapper();
     private MisfitStepCountDataPointMapper stepCountMapper = new MisfitStepCountDataPointMapper();
 
+    private static DateTimeQuerySettings newDateTimeQuerySettings() {
+
+        DefaultDateTimeQuerySettings settings = new DefaultDateTimeQuerySettings();
+
+        settings.setFixedTimeZone(UTC);
+        settings.setMaximumDuration(Duration.ofDays(MAX_DURATION_IN_DAYS));
+
+        return settings;
+    }
+
+    private static Map<MisfitDataTypes, EndpointSettings> newEndpointSettings() {
+
+        Map<MisfitDataTypes, EndpointSettings> settingsByDataType = new EnumMap<>(MisfitDataTypes.class);
+
+        for (MisfitDataTypes dataType : MisfitDataTypes.values()) {
+            settingsByDataType.put(dataType, newEndpointSettings(dataType));
+        }
+
+        return settingsByDataType;
+    }
+
+    static EndpointSettings newEndpointSettings(MisfitDataTypes dataType) {
+
+        DefaultEndpointSettings settings = new DefaultEndpointSettings();
+
+        settings.setId(dataType.name().toLowerCase());
+
+        // detail is added to all endpoints to support summaries
+        settings.setUriTemplate(new UriTemplate(DATA_URL + "/" + dataType.getEndPoint() + "?detail=true"));
+        settings.setEffectiveDateTimeQuerySettings(DATE_TIME_QUERY_SETTINGS);
+        settings.setEffectiveStartDateTimeParameter(newDateRequestParameter("start_date"));
+
+        // the Misfit end date is inclusive
+        DateTimeRequestParameter endDateParameter = newDateRequestParameter("end_date");
+        endDateParameter.setInclusiveUpperBound(true);
+        settings.setEffectiveEndDateTimeParameter(endDateParameter);
+
+        return settings;
+    }
+
+    private static DateTimeRequestParameter newDateRequestParameter(String parameterName) {
+
+        DateTimeRequestParameter parameter = new DateTimeRequestParameter();
+
+        parameter.setParameterName(parameterName);
+        parameter.setRequestParameterLocation(QUERY);
+        parameter.setDateTimeFormat(ISO_LOCAL_DATE);
+        parameter.setRequired(true);
+
+        return parameter;
+    }
+
     @Override
     public String getLabel() {
 
@@ -95,6 +180,12 @@ public class MisfitShim extends OAuth2Shim {
         return ACCESS_TOKEN_URL;
     }
 
+    @Override
+    protected Optional<URI> getAuthorizationCheckUri() {
+
+        return Optional.of(URI.create(AUTHORIZATION_CHECK_URL));
+    }
+
     @Override
     protected OAuth2ClientSettings getClientSettings() {
 
@@ -148,7 +239,6 @@ public class MisfitShim extends OAuth2Shim {
                     + " in shimDataRequest, cannot retrieve data.");
         }
 
-        // TODO don't truncate dates
         OffsetDateTime now = OffsetDateTime.now();
 
         OffsetDateTime startDateTime = shimDataRequest.getStartDateTime() == null ?
@@ -157,32 +247,16 @@ public class MisfitShim extends OAuth2Shim {
         OffsetDateTime endDateTime = shimDataRequest.getEndDateTime() == null ?
                 now.plusDays(1) : shimDataRequest.getEndDateTime();
 
-        if (Duration.between(startDateTime, endDateTime).toDays() > MAX_DURATION_IN_DAYS) {
-            endDateTime =
-                    startDateTime.plusDays(MAX_DURATION_IN_DAYS - 1);  // TODO when refactoring, break apart queries
-        }
-
-        UriComponentsBuilder uriBuilder = UriComponentsBuilder
-                .fromUriString(DATA_URL);
+        // the Misfit date range is inclusive, so it's treated as a range of whole days ending at the start of the day
+        // after the end date
+        Range<OffsetDateTime> dateRange = Range.closedOpen(
+                startDateTime.toLocalDate().atStartOfDay().atOffset(UTC), // TODO convert ODT to LocalDate properly
+                endDateTime.toLocalDate().plusDays(1).atStartOfDay().atOffset(UTC));
 
-        for (String pathSegment : Splitter.on("/").split(misfitDataType.getEndPoint())) {
-            uriBuilder.pathSegment(pathSegment);
-        }
+        List<Range<OffsetDateTime>> windows = dateTimeQueryPlanner.planQueries(dateRange, DATE_TIME_QUERY_SETTINGS);
 
-        uriBuilder
-                .queryParam("start_date", startDateTime.toLocalDate()) // TODO convert ODT to LocalDate properly
-                .queryParam("end_date", endDateTime.toLocalDate())
-                .queryParam("detail", true); // added to all endpoints to support summaries
-
-        ResponseEntity<JsonNode> responseEntity;
-        try {
-            responseEntity = restTemplate.getForEntity(uriBuilder.build().encode().toUri(), JsonNode.class);
-        }
-        catch (HttpClientErrorException | HttpServerErrorException e) {
-            // FIXME figure out how to handle this
-            logger.error("A request for Misfit data failed.", e);
-            throw e;
-        }
+        List<JsonNode> responseBodies = dateTimeQueryExecutor.execute(windows,
+                window -> getResponseBody(restTemplate, misfitDataType, window));
 
         if (shimDataRequest.getNormalize()) {
 
@@ -205,11 +279,41 @@ public class MisfitShim extends OAuth2Shim {
                     throw new UnsupportedOperationException();
             }
 
-            return ok().body(ShimDataResponse.result(SHIM_KEY,
-                    dataPointMapper.asDataPoints(singletonList(responseEntity.getBody()))));
+            List<DataPoint<?>> dataPoints = new ArrayList<>();
+
+            for (JsonNode responseBody : responseBodies) {
+                dataPoints.addAll(asDataPoints(dataPointMapper, singletonList(responseBody)));
+            }
+
+            return ok().body(ShimDataResponse.result(SHIM_KEY, dataPoints));
         }
         else {
-            return ok().body(ShimDataResponse.result(SHIM_KEY, responseEntity.getBody()));
+            // a response can't be merged without knowing its structure, so a range split into several windows is
+            // returned as a list of responses, while a single window keeps returning the response itself
+            if (responseBodies.size() == 1) {
+                return ok().body(ShimDataResponse.result(SHIM_KEY, responseBodies.get(0)));
+            }
+
+            return ok().body(ShimDataResponse.result(SHIM_KEY, responseBodies));
+        }
+    }
+
+    private JsonNode getResponseBody(OAuth2RestOperations restTemplate, MisfitDataTypes misfitDataType,
+            Range<OffsetDateTime> window) {
+
+        DataPointRequest request = new DataPointRequest(ENDPOINT_SETTINGS.get(misfitDataType));
+        request.setEffectiveDateTimeRange(window);
+
+        // the OAuth2 rest template adds the access token itself, so it isn't set on the request
+        try {
+            return restTemplate
+                    .exchange(requestEntityAssemblerChain.createRequestEntity(request), JsonNode.class)
+                    .getBody();
+        }
+        catch (HttpClientErrorException | HttpServerErrorException e) {
+            // FIXME figure out how to handle this
+            logger.error("A request for Misfit data failed.", e);
+            throw e;
         }
     }
 
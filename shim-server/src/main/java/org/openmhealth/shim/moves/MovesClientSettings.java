@@ -17,6 +17,7 @@
 
 package org.openmhealth.shim.moves;
 
+import org.openmhealth.shim.ConditionalOnClientId;
 import org.openmhealth.shim.OAuth2ClientSettings;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.stereotype.Component;
@@ -29,6 +30,7 @@ import java.util.List;
  * @author Emerson Farrugia
  */
 @Component
+@ConditionalOnClientId("openmhealth.shim.moves")
 @ConfigurationProperties("openmhealth.shim.moves")
 public class MovesClientSettings extends OAuth2ClientSettings {
 
@@ -39,6 +41,10 @@ public class MovesClientSettings extends OAuth2ClientSettings {
 
     private boolean authorizationInitiatedFromBrowser = true;
 
+    // 0 keeps every track point of a geoposition trace
+    private double trackPointDistanceToleranceInMeters = 0;
+    private long trackPointTimeToleranceInSeconds = 0;
+
     @Override
     public List<String> getScopes() {
 
@@ -57,4 +63,28 @@ public class MovesClientSettings extends OAuth2ClientSettings {
     public void setAuthorizationInitiatedFromBrowser(boolean authorizationInitiatedFromBrowser) {
         this.authorizationInitiatedFromBrowser = authorizationInitiatedFromBrowser;
     }
+
+    /**
+     * @return the distance within which a track point is dropped from a geoposition trace, relative to the last track
+     * point that was kept, or 0 to not thin traces by distance
+     */
+    public double getTrackPointDistanceToleranceInMeters() {
+        return trackPointDistanceToleranceInMeters;
+    }
+
+    public void setTrackPointDistanceToleranceInMeters(double trackPointDistanceToleranceInMeters) {
+        this.trackPointDistanceToleranceInMeters = trackPointDistanceToleranceInMeters;
+    }
+
+    /**
+     * @return the time within which a track point is dropped from a geoposition trace, relative to the last track
+     * point that was kept, or 0 to not thin traces by time
+     */
+    public long getTrackPointTimeToleranceInSeconds() {
+        return trackPointTimeToleranceInSeconds;
+    }
+
+    public void setTrackPointTimeToleranceInSeconds(long trackPointTimeToleranceInSeconds) {
+        this.trackPointTimeToleranceInSeconds = trackPointTimeToleranceInSeconds;
+    }
 }
@@ -18,15 +18,25 @@
 package org.openmhealth.shim.moves;
 
 import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
 import com.google.common.base.Joiner;
+import com.google.common.collect.Range;
 import org.openmhealth.schema.domain.omh.DataPoint;
+import org.openmhealth.schema.domain.omh.Geoposition;
 import org.openmhealth.shim.*;
+import org.openmhealth.shim.moves.mapper.MovesGeopositionDataPointMapper;
 import org.openmhealth.shim.moves.mapper.MovesPhysicalActivityDataPointMapper;
 import org.openmhealth.shim.moves.mapper.MovesStepCountDataPointMapper;
+import org.openmhealth.shimmer.common.configuration.DateTimeQuerySettings;
+import org.openmhealth.shimmer.common.configuration.DefaultDateTimeQuerySettings;
+import org.openmhealth.shimmer.common.service.DateTimeQueryExecutor;
+import org.openmhealth.shimmer.common.service.DateTimeQueryPlanner;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.oauth2.client.OAuth2RestOperations;
 import org.springframework.security.oauth2.client.resource.OAuth2ProtectedResourceDetails;
@@ -40,11 +50,18 @@ import org.springframework.web.client.HttpClientErrorException;
 import org.springframework.web.client.HttpServerErrorException;
 import org.springframework.web.util.UriComponentsBuilder;
 
+import java.net.URI;
+import java.time.Duration;
 import java.time.LocalDate;
-import java.time.Period;
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
 
+import static java.time.ZoneOffset.UTC;
+import static java.util.Collections.singletonList;
+import static org.openmhealth.shim.common.mapper.DataPointMapperInstrumentation.asDataPoints;
 import static org.springframework.http.ResponseEntity.ok;
 
 
@@ -53,6 +70,7 @@ import static org.springframework.http.ResponseEntity.ok;
  * @author Emerson Farrugia
  */
 @Component
+@ConditionalOnClientId("openmhealth.shim.moves")
 public class MovesShim extends OAuth2Shim {
 
     private static final Logger logger = LoggerFactory.getLogger(MovesShim.class);
@@ -62,10 +80,17 @@ public class MovesShim extends OAuth2Shim {
     private static final String WEB_BASED_USER_AUTHORIZATION_URL = "https://api.moves-app.com/oauth/v1/authorize";
     private static final String APP_BASED_USER_AUTHORIZATION_URL = "moves://app/authorize";
     private static final String ACCESS_TOKEN_URL = "https://api.moves-app.com/oauth/v1/access_token";
+    private static final String AUTHORIZATION_CHECK_URL = DATA_URL + "/user/profile";
 
     @Autowired
     private MovesClientSettings clientSettings;
 
+    @Autowired
+    private DateTimeQueryPlanner dateTimeQueryPlanner;
+
+    @Autowired
+    private DateTimeQueryExecutor dateTimeQueryExecutor;
+
     private MovesPhysicalActivityDataPointMapper physicalActivityMapper = new MovesPhysicalActivityDataPointMapper();
 
     private MovesStepCountDataPointMapper stepCountMapper = new MovesStepCountDataPointMapper();
@@ -96,6 +121,12 @@ public class MovesShim extends OAuth2Shim {
         return ACCESS_TOKEN_URL;
     }
 
+    @Override
+    protected Optional<URI> getAuthorizationCheckUri() {
+
+        return Optional.of(URI.create(AUTHORIZATION_CHECK_URL));
+    }
+
     @Override
     protected OAuth2ClientSettings getClientSettings() {
 
@@ -104,11 +135,14 @@ public class MovesShim extends OAuth2Shim {
 
     public enum MovesDataType implements ShimDataType {
 
+        // storyline requests that include track points can only span a week
+        GEOPOSITION("/user/storyline/daily", 7, true),
         PHYSICAL_ACTIVITY("/user/storyline/daily"),
         STEP_COUNT("/user/storyline/daily");
 
         private String endpoint;
         private int maximumRetrievalPeriodInDays = 31;
+        private boolean trackPointsIncluded = false;
 
         MovesDataType(String endpoint) {
 
@@ -121,6 +155,13 @@ public class MovesShim extends OAuth2Shim {
             this.maximumRetrievalPeriodInDays = maximumRetrievalPeriodInDays;
         }
 
+        MovesDataType(String endpoint, int maximumRetrievalPeriodInDays, boolean trackPointsIncluded) {
+
+            this.endpoint = endpoint;
+            this.maximumRetrievalPeriodInDays = maximumRetrievalPeriodInDays;
+            this.trackPointsIncluded = trackPointsIncluded;
+        }
+
         public String getEndPoint() {
 
             return endpoint;
@@ -130,6 +171,11 @@ public class MovesShim extends OAuth2Shim {
 
             return maximumRetrievalPeriodInDays;
         }
+
+        public boolean isTrackPointsIncluded() {
+
+            return trackPointsIncluded;
+        }
     }
 
 
@@ -173,49 +219,120 @@ public class MovesShim extends OAuth2Shim {
                 ? today
                 : shimDataRequest.getEndDateTime().toLocalDate();
 
-        if (Period.between(startDate, endDate).getDays() > movesDataType.getMaximumRetrievalPeriodInDays()) {
-            endDate = startDate.plusDays(movesDataType.getMaximumRetrievalPeriodInDays());
+        // the Moves date range is inclusive, so it's treated as a range of whole days ending at the start of the day
+        // after the end date
+        Range<OffsetDateTime> dateRange = Range.closedOpen(
+                startDate.atStartOfDay().atOffset(UTC),
+                endDate.plusDays(1).atStartOfDay().atOffset(UTC));
+
+        List<Range<OffsetDateTime>> windows =
+                dateTimeQueryPlanner.planQueries(dateRange, getDateTimeQuerySettings(movesDataType));
+
+        // responses with track points can be large, so they're mapped as they're read instead of as trees
+        if (shimDataRequest.getNormalize() && movesDataType == MovesDataType.GEOPOSITION) {
+
+            List<DataPoint<?>> dataPoints = new ArrayList<>();
+
+            for (List<DataPoint<Geoposition>> windowDataPoints : dateTimeQueryExecutor.execute(windows,
+                    window -> getGeopositionDataPoints(restTemplate, window))) {
+                dataPoints.addAll(windowDataPoints);
+            }
+
+            return ok().body(ShimDataResponse.result(SHIM_KEY, dataPoints));
         }
 
-        UriComponentsBuilder uriBuilder = UriComponentsBuilder.fromUriString(DATA_URL)
+        List<JsonNode> responseBodies = dateTimeQueryExecutor.execute(windows,
+                window -> getResponseBody(restTemplate, movesDataType, window));
+
+        if (shimDataRequest.getNormalize()) {
+
+            List<DataPoint<?>> dataPoints = new ArrayList<>();
+
+            for (JsonNode responseBody : responseBodies) {
+                switch (movesDataType) {
+                    case PHYSICAL_ACTIVITY:
+                        dataPoints.addAll(asDataPoints(physicalActivityMapper, singletonList(responseBody)));
+                        break;
+
+                    case STEP_COUNT:
+                        dataPoints.addAll(asDataPoints(stepCountMapper, singletonList(responseBody)));
+                        break;
+
+                    default:
+                        throw new UnsupportedOperationException();
+                }
+            }
+
+            return ok().body(ShimDataResponse.result(SHIM_KEY, dataPoints));
+        }
+        else {
+            // each response is an array of days, so the responses are always concatenated into a single array of days
+            ArrayNode days = JsonNodeFactory.instance.arrayNode();
+
+            for (JsonNode responseBody : responseBodies) {
+                if (!responseBody.isArray()) {
+                    throw new ShimException("A Moves response isn't an array of days: " + responseBody);
+                }
+
+                days.addAll((ArrayNode) responseBody);
+            }
+
+            return ok().body(ShimDataResponse.result(SHIM_KEY, days));
+        }
+    }
+
+    private DateTimeQuerySettings getDateTimeQuerySettings(MovesDataType movesDataType) {
+
+        DefaultDateTimeQuerySettings settings = new DefaultDateTimeQuerySettings();
+
+        settings.setFixedTimeZone(UTC);
+        settings.setMaximumDuration(Duration.ofDays(movesDataType.getMaximumRetrievalPeriodInDays()));
+
+        return settings;
+    }
+
+    private URI getDataUri(MovesDataType movesDataType, Range<OffsetDateTime> window) {
+
+        return UriComponentsBuilder.fromUriString(DATA_URL)
                 .path(movesDataType.getEndPoint())
-                .queryParam("from", startDate)
-                .queryParam("to", endDate)
-                .queryParam("trackPoints", false); // TODO make dynamic
+                .queryParam("from", window.lowerEndpoint().toLocalDate())
+                .queryParam("to", window.upperEndpoint().minusDays(1).toLocalDate())
+                .queryParam("trackPoints", movesDataType.isTrackPointsIncluded())
+                .build()
+                .encode()
+                .toUri();
+    }
 
-        ResponseEntity<JsonNode> responseEntity;
+    private JsonNode getResponseBody(OAuth2RestOperations restTemplate, MovesDataType movesDataType,
+            Range<OffsetDateTime> window) {
 
         try {
-            responseEntity = restTemplate.getForEntity(uriBuilder.build().encode().toUri(), JsonNode.class);
+            return restTemplate.getForEntity(getDataUri(movesDataType, window), JsonNode.class).getBody();
         }
         catch (HttpClientErrorException | HttpServerErrorException e) {
             // TODO figure out how to handle this
             logger.error("A request for Moves data failed.", e);
             throw e;
         }
+    }
 
+    /**
+     * Maps track points while the response is being read, so that the response is never held in memory as a whole.
+     */
+    private List<DataPoint<Geoposition>> getGeopositionDataPoints(OAuth2RestOperations restTemplate,
+            Range<OffsetDateTime> window) {
 
-        List<? extends DataPoint<?>> dataPoints;
-
-        if (shimDataRequest.getNormalize()) {
-
-            switch (movesDataType) {
-                case PHYSICAL_ACTIVITY:
-                    dataPoints = physicalActivityMapper.asDataPoints(responseEntity.getBody());
-                    break;
-
-                case STEP_COUNT:
-                    dataPoints = stepCountMapper.asDataPoints(responseEntity.getBody());
-                    break;
+        MovesGeopositionDataPointMapper mapper = new MovesGeopositionDataPointMapper(
+                clientSettings.getTrackPointDistanceToleranceInMeters(),
+                clientSettings.getTrackPointTimeToleranceInSeconds());
 
-                default:
-                    throw new UnsupportedOperationException();
-            }
-
-            return ok().body(ShimDataResponse.result(SHIM_KEY, dataPoints));
+        try {
+            return restTemplate.execute(getDataUri(MovesDataType.GEOPOSITION, window), HttpMethod.GET, null,
+                    response -> asDataPoints(mapper, 1, () -> mapper.asDataPoints(response.getBody())));
         }
-        else {
-            return ok().body(ShimDataResponse.result(SHIM_KEY, responseEntity.getBody()));
+        catch (HttpClientErrorException | HttpServerErrorException e) {
+            logger.error("A request for Moves data failed.", e);
+            throw e;
         }
     }
 
@@ -50,14 +50,14 @@ public abstract class MovesActivityNodeDataPointMapper<T extends SchemaSupport>
         checkNotNull(responseNodes);
         checkArgument(responseNodes.size() == 1, "A single response node is allowed per call.");
 
-        return StreamSupport.stream(responseNodes.get(0).spliterator(), false)
+        return withResponseDateTimeCache(() -> StreamSupport.stream(responseNodes.get(0).spliterator(), false)
                 .flatMap(dayNode -> asStream(asOptionalNode(dayNode, "segments")))
                 .flatMap(segmentsNode -> StreamSupport.stream(segmentsNode.spliterator(), false))
                 .flatMap(segmentNode -> asStream(asOptionalNode(segmentNode, "activities")))
                 .flatMap(activitiesNode -> StreamSupport.stream(activitiesNode.spliterator(), false))
                 .map(this::asDataPoint)
                 .flatMap(OptionalStreamSupport::asStream)
-                .collect(Collectors.toList());
+                .collect(Collectors.toList()));
     }
 
     /**
@@ -19,10 +19,12 @@ package org.openmhealth.shim.moves.mapper;
 import com.fasterxml.jackson.databind.JsonNode;
 import org.openmhealth.schema.domain.omh.*;
 import org.openmhealth.shim.common.mapper.JsonNodeDataPointMapper;
+import org.openmhealth.shim.common.mapper.ParsedTemporalCache;
 
 import java.time.OffsetDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.Optional;
+import java.util.function.Supplier;
 
 import static java.util.Optional.empty;
 import static java.util.UUID.randomUUID;
@@ -30,7 +32,7 @@ import static org.openmhealth.schema.domain.omh.DataPointModality.SELF_REPORTED;
 import static org.openmhealth.schema.domain.omh.DataPointModality.SENSED;
 import static org.openmhealth.schema.domain.omh.TimeInterval.ofStartDateTimeAndEndDateTime;
 import static org.openmhealth.shim.common.mapper.JsonNodeMappingSupport.asOptionalBoolean;
-import static org.openmhealth.shim.common.mapper.JsonNodeMappingSupport.asOptionalOffsetDateTime;
+import static org.openmhealth.shim.common.mapper.JsonNodeMappingSupport.asOptionalTemporal;
 
 
 /**
@@ -46,6 +48,9 @@ public abstract class MovesDataPointMapper<T extends SchemaSupport> implements J
     protected static final DateTimeFormatter OFFSET_DATE_TIME_FORMATTER =
             DateTimeFormatter.ofPattern("yyyyMMdd'T'HHmmssx");
 
+    // a mapper instance maps responses on several threads at once, so each thread gets its own cache
+    private final ThreadLocal<ParsedTemporalCache<OffsetDateTime>> responseDateTimeCache = new ThreadLocal<>();
+
 
     /**
      * @param node a node containing optional "startTime" and "endTime" fields
@@ -53,10 +58,10 @@ public abstract class MovesDataPointMapper<T extends SchemaSupport> implements J
      */
     public Optional<TimeFrame> getTimeFrame(JsonNode node) {
 
-        Optional<OffsetDateTime> startDateTime =
-                asOptionalOffsetDateTime(node, "startTime", OFFSET_DATE_TIME_FORMATTER);
+        ParsedTemporalCache<OffsetDateTime> dateTimeCache = getResponseDateTimeCache();
 
-        Optional<OffsetDateTime> endDateTime = asOptionalOffsetDateTime(node, "endTime", OFFSET_DATE_TIME_FORMATTER);
+        Optional<OffsetDateTime> startDateTime = asOptionalTemporal(node, "startTime", dateTimeCache);
+        Optional<OffsetDateTime> endDateTime = asOptionalTemporal(node, "endTime", dateTimeCache);
 
         if (!startDateTime.isPresent() || !endDateTime.isPresent()) {
             return empty();
@@ -65,6 +70,41 @@ public abstract class MovesDataPointMapper<T extends SchemaSupport> implements J
         return Optional.of(new TimeFrame(ofStartDateTimeAndEndDateTime(startDateTime.get(), endDateTime.get())));
     }
 
+    /**
+     * Maps a response while sharing a cache of parsed date times, since the end time of each segment or activity is
+     * usually the start time of the next one, and the time frame of a node is needed more than once.
+     *
+     * @param mapping the mapping of the response
+     * @param <R> the type of the result
+     * @return the result of the mapping
+     */
+    protected <R> R withResponseDateTimeCache(Supplier<R> mapping) {
+
+        if (responseDateTimeCache.get() != null) {
+            return mapping.get();
+        }
+
+        responseDateTimeCache.set(newDateTimeCache());
+
+        try {
+            return mapping.get();
+        }
+        finally {
+            responseDateTimeCache.remove();
+        }
+    }
+
+    private ParsedTemporalCache<OffsetDateTime> getResponseDateTimeCache() {
+
+        ParsedTemporalCache<OffsetDateTime> dateTimeCache = responseDateTimeCache.get();
+
+        return dateTimeCache != null ? dateTimeCache : newDateTimeCache();
+    }
+
+    private static ParsedTemporalCache<OffsetDateTime> newDateTimeCache() {
+        return new ParsedTemporalCache<>(OFFSET_DATE_TIME_FORMATTER, OffsetDateTime::parse);
+    }
+
     /**
      * @param node a node containing an optional "manual" field
      * @return the equivalent modality, if any
@@ -83,10 +123,22 @@ public abstract class MovesDataPointMapper<T extends SchemaSupport> implements J
      */
     protected DataPoint<T> asDataPoint(JsonNode node, T measure, String externalId) {
 
+        return asDataPoint(measure, externalId, getModality(node));
+    }
+
+    /**
+     * Creates a data point.
+     *
+     * @param measure the measure of the data point
+     * @param externalId the identifier of the data point in the Moves API
+     * @param modality the modality of the data point, if known
+     * @return a data point
+     */
+    protected DataPoint<T> asDataPoint(T measure, String externalId, Optional<DataPointModality> modality) {
+
         DataPointAcquisitionProvenance.Builder acquisitionProvenanceBuilder =
                 new DataPointAcquisitionProvenance.Builder(RESOURCE_API_SOURCE_NAME);
 
-        Optional<DataPointModality> modality = getModality(node);
         modality.ifPresent(acquisitionProvenanceBuilder::setModality);
 
         DataPointAcquisitionProvenance acquisitionProvenance = acquisitionProvenanceBuilder.build();
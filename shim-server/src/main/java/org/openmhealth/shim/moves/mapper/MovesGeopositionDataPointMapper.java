@@ -0,0 +1,325 @@
+/*
+ * Copyright 2017 Open mHealth
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.openmhealth.shim.moves.mapper;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonNode;
+import org.openmhealth.schema.domain.omh.DataPoint;
+import org.openmhealth.schema.domain.omh.Geoposition;
+import org.openmhealth.schema.domain.omh.TimeFrame;
+import org.openmhealth.shim.common.mapper.JsonNodeMappingException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.OffsetDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+import static com.fasterxml.jackson.core.JsonToken.*;
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static org.openmhealth.schema.domain.omh.DataPointModality.SENSED;
+import static org.openmhealth.schema.domain.omh.PlaneAngleUnit.DEGREE_OF_ARC;
+
+
+/**
+ * A mapper from track points in Moves Resource API <code>/user/storyline/daily</code> responses to geoposition data
+ * points. Responses that include track points can be large, so they're mapped as they're read, one track point at a
+ * time, instead of being read into a tree first.
+ * <p>
+ * Dense traces can optionally be thinned. A track point is dropped if it's closer than the distance tolerance to the
+ * last point that was kept, or if it's sooner than the time tolerance after it. The first and last track points of an
+ * activity are always kept, so every activity keeps its start and end.
+ * <p>
+ * Moves repeats the track point where one activity ends as the first track point of the next activity. Since data
+ * points are identified by the time of their track point, a track point at the same time as the previous data point is
+ * only mapped once.
+ *
+ * @see <a href="https://dev.moves-app.com/docs/api_storyline">API documentation</a>
+ */
+public class MovesGeopositionDataPointMapper extends MovesDataPointMapper<Geoposition> {
+
+    private static final Logger logger = LoggerFactory.getLogger(MovesGeopositionDataPointMapper.class);
+
+    private static final JsonFactory jsonFactory = new JsonFactory();
+
+    // the fields leading from a day to its track points, i.e. segments[].activities[].trackPoints[]
+    private static final String[] TRACK_POINT_PATH = {"segments", "activities", "trackPoints"};
+
+    private static final double MEAN_EARTH_RADIUS_IN_M = 6_371_008.8;
+
+    private final double distanceToleranceInM;
+    private final long timeToleranceInSeconds;
+
+
+    /**
+     * Creates a mapper that keeps every track point.
+     */
+    public MovesGeopositionDataPointMapper() {
+
+        this(0, 0);
+    }
+
+    /**
+     * @param distanceToleranceInM the distance within which track points are dropped, or 0 to not thin by distance
+     * @param timeToleranceInSeconds the time within which track points are dropped, or 0 to not thin by time
+     */
+    public MovesGeopositionDataPointMapper(double distanceToleranceInM, long timeToleranceInSeconds) {
+
+        checkArgument(distanceToleranceInM >= 0, "The distance tolerance can't be negative.");
+        checkArgument(timeToleranceInSeconds >= 0, "The time tolerance can't be negative.");
+
+        this.distanceToleranceInM = distanceToleranceInM;
+        this.timeToleranceInSeconds = timeToleranceInSeconds;
+    }
+
+    @Override
+    public List<DataPoint<Geoposition>> asDataPoints(List<JsonNode> responseNodes) {
+
+        checkNotNull(responseNodes);
+        checkArgument(responseNodes.size() == 1, "A single response node is allowed per call.");
+
+        try (JsonParser parser = responseNodes.get(0).traverse()) {
+            return asDataPoints(parser);
+        }
+        catch (IOException e) {
+            throw new JsonNodeMappingException("The response node couldn't be traversed.", e);
+        }
+    }
+
+    /**
+     * @param responseBody the body of a storyline response
+     * @return the data points mapped from the track points in the response
+     * @throws IOException if the response body can't be read or parsed
+     */
+    public List<DataPoint<Geoposition>> asDataPoints(InputStream responseBody) throws IOException {
+
+        checkNotNull(responseBody);
+
+        try (JsonParser parser = jsonFactory.createParser(responseBody)) {
+            return asDataPoints(parser);
+        }
+    }
+
+    private List<DataPoint<Geoposition>> asDataPoints(JsonParser parser) throws IOException {
+
+        List<DataPoint<Geoposition>> dataPoints = new ArrayList<>();
+
+        if (parser.nextToken() == START_ARRAY) {
+            readArray(parser, 0, dataPoints);
+        }
+
+        return dataPoints;
+    }
+
+    /**
+     * Reads an array of objects, descending into the field of each object that leads to track points.
+     *
+     * @param parser a parser positioned at the start of the array
+     * @param depth the index of the field in {@link #TRACK_POINT_PATH} to descend into
+     */
+    private void readArray(JsonParser parser, int depth, List<DataPoint<Geoposition>> dataPoints) throws IOException {
+
+        for (JsonToken token = parser.nextToken(); token != null && token != END_ARRAY; token = parser.nextToken()) {
+
+            if (token != START_OBJECT) {
+                parser.skipChildren();
+                continue;
+            }
+
+            while (parser.nextToken() == FIELD_NAME) {
+
+                String fieldName = parser.getCurrentName();
+                JsonToken valueToken = parser.nextToken();
+
+                if (valueToken != START_ARRAY || !fieldName.equals(TRACK_POINT_PATH[depth])) {
+                    parser.skipChildren();
+                }
+                else if (depth < TRACK_POINT_PATH.length - 1) {
+                    readArray(parser, depth + 1, dataPoints);
+                }
+                else {
+                    readTrackPoints(parser, dataPoints);
+                }
+            }
+        }
+    }
+
+    /**
+     * Reads the track points of an activity, thinning them if tolerances are set.
+     *
+     * @param parser a parser positioned at the start of the track point array
+     */
+    private void readTrackPoints(JsonParser parser, List<DataPoint<Geoposition>> dataPoints) throws IOException {
+
+        TrackPoint lastKeptTrackPoint = null;
+        TrackPoint lastDroppedTrackPoint = null;
+
+        for (JsonToken token = parser.nextToken(); token != null && token != END_ARRAY; token = parser.nextToken()) {
+
+            if (token != START_OBJECT) {
+                parser.skipChildren();
+                continue;
+            }
+
+            Optional<TrackPoint> trackPoint = readTrackPoint(parser);
+
+            if (!trackPoint.isPresent()) {
+                continue;
+            }
+
+            if (lastKeptTrackPoint != null && isWithinTolerance(lastKeptTrackPoint, trackPoint.get())) {
+                lastDroppedTrackPoint = trackPoint.get();
+            }
+            else {
+                addDataPoint(dataPoints, trackPoint.get());
+                lastKeptTrackPoint = trackPoint.get();
+                lastDroppedTrackPoint = null;
+            }
+        }
+
+        if (lastDroppedTrackPoint != null) {
+            addDataPoint(dataPoints, lastDroppedTrackPoint);
+        }
+    }
+
+    /**
+     * Adds the data point of a track point, unless the previous data point is at the same time.
+     */
+    private void addDataPoint(List<DataPoint<Geoposition>> dataPoints, TrackPoint trackPoint) {
+
+        if (!dataPoints.isEmpty()) {
+            DataPoint<Geoposition> previousDataPoint = dataPoints.get(dataPoints.size() - 1);
+            OffsetDateTime previousDateTime = previousDataPoint.getBody().getEffectiveTimeFrame().getDateTime();
+
+            if (previousDateTime.toEpochSecond() == trackPoint.getEpochSecond()) {
+                return;
+            }
+        }
+
+        dataPoints.add(asDataPoint(trackPoint));
+    }
+
+    /**
+     * @param parser a parser positioned at the start of a track point object
+     * @return the track point, or an empty optional if the object is missing a coordinate or a valid time
+     */
+    private Optional<TrackPoint> readTrackPoint(JsonParser parser) throws IOException {
+
+        Double latitude = null;
+        Double longitude = null;
+        String time = null;
+
+        while (parser.nextToken() == FIELD_NAME) {
+
+            String fieldName = parser.getCurrentName();
+            JsonToken valueToken = parser.nextToken();
+
+            if (fieldName.equals("lat") && valueToken.isNumeric()) {
+                latitude = parser.getDoubleValue();
+            }
+            else if (fieldName.equals("lon") && valueToken.isNumeric()) {
+                longitude = parser.getDoubleValue();
+            }
+            else if (fieldName.equals("time") && valueToken == VALUE_STRING) {
+                time = parser.getText();
+            }
+            else {
+                parser.skipChildren();
+            }
+        }
+
+        if (latitude == null || longitude == null || time == null) {
+            return Optional.empty();
+        }
+
+        try {
+            OffsetDateTime dateTime = OffsetDateTime.parse(time, OFFSET_DATE_TIME_FORMATTER);
+
+            return Optional.of(new TrackPoint(latitude, longitude, dateTime));
+        }
+        catch (DateTimeParseException e) {
+            logger.warn("The track point time '{}' isn't a valid date time.", time, e);
+            return Optional.empty();
+        }
+    }
+
+    private boolean isWithinTolerance(TrackPoint keptTrackPoint, TrackPoint trackPoint) {
+
+        if (timeToleranceInSeconds > 0
+                && trackPoint.getEpochSecond() - keptTrackPoint.getEpochSecond() < timeToleranceInSeconds) {
+            return true;
+        }
+
+        return distanceToleranceInM > 0 && getDistanceInM(keptTrackPoint, trackPoint) < distanceToleranceInM;
+    }
+
+    /**
+     * @return the great-circle distance between two track points, using the haversine formula
+     */
+    private static double getDistanceInM(TrackPoint first, TrackPoint second) {
+
+        double firstLatitudeInRadians = Math.toRadians(first.latitude);
+        double secondLatitudeInRadians = Math.toRadians(second.latitude);
+
+        double halfLatitudeDelta = (secondLatitudeInRadians - firstLatitudeInRadians) / 2;
+        double halfLongitudeDelta = Math.toRadians(second.longitude - first.longitude) / 2;
+
+        double haversine = Math.sin(halfLatitudeDelta) * Math.sin(halfLatitudeDelta)
+                + Math.cos(firstLatitudeInRadians) * Math.cos(secondLatitudeInRadians)
+                * Math.sin(halfLongitudeDelta) * Math.sin(halfLongitudeDelta);
+
+        return 2 * MEAN_EARTH_RADIUS_IN_M * Math.asin(Math.min(1, Math.sqrt(haversine)));
+    }
+
+    private DataPoint<Geoposition> asDataPoint(TrackPoint trackPoint) {
+
+        Geoposition geoposition = new Geoposition.Builder(
+                DEGREE_OF_ARC.newUnitValue(trackPoint.latitude),
+                DEGREE_OF_ARC.newUnitValue(trackPoint.longitude),
+                new TimeFrame(trackPoint.dateTime))
+                .build();
+
+        // track points are always recorded by the phone, since manually entered activities don't have any
+        return asDataPoint(geoposition, String.format("trackPoint-%d", trackPoint.getEpochSecond()),
+                Optional.of(SENSED));
+    }
+
+    private static class TrackPoint {
+
+        private final double latitude;
+        private final double longitude;
+        private final OffsetDateTime dateTime;
+
+        TrackPoint(double latitude, double longitude, OffsetDateTime dateTime) {
+
+            this.latitude = latitude;
+            this.longitude = longitude;
+            this.dateTime = dateTime;
+        }
+
+        long getEpochSecond() {
+            return dateTime.toEpochSecond();
+        }
+    }
+}
@@ -18,10 +18,22 @@
 package org.openmhealth.shim.runkeeper;
 
 import com.fasterxml.jackson.databind.JsonNode;
+import com.google.common.collect.Range;
+import org.openmhealth.schema.domain.omh.DataPoint;
 import org.openmhealth.shim.*;
 import org.openmhealth.shim.runkeeper.mapper.RunkeeperCaloriesBurnedDataPointMapper;
 import org.openmhealth.shim.runkeeper.mapper.RunkeeperDataPointMapper;
 import org.openmhealth.shim.runkeeper.mapper.RunkeeperPhysicalActivityDataPointMapper;
+import org.openmhealth.shimmer.common.configuration.DefaultEndpointSettings;
+import org.openmhealth.shimmer.common.configuration.EndpointSettings;
+import org.openmhealth.shimmer.common.domain.DataPointRequest;
+import org.openmhealth.shimmer.common.domain.parameters.DateTimeRequestParameter;
+import org.openmhealth.shimmer.common.domain.parameters.NumberRequestParameter;
+import org.openmhealth.shimmer.common.pagination.NextLinkPageUriResolver;
+import org.openmhealth.shimmer.common.pagination.NextPageUriResolver;
+import org.openmhealth.shimmer.common.service.PaginatedResponseReader;
+import org.openmhealth.shimmer.common.service.PaginatedResponseReader.PageFetcher;
+import org.openmhealth.shimmer.common.service.RequestEntityAssemblerChain;
 import org.slf4j.Logger;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpEntity;
@@ -38,11 +50,19 @@ import org.springframework.util.MultiValueMap;
 import org.springframework.web.client.HttpClientErrorException;
 import org.springframework.web.client.HttpServerErrorException;
 import org.springframework.web.util.UriComponentsBuilder;
+import org.springframework.web.util.UriTemplate;
 
+import java.net.URI;
 import java.time.OffsetDateTime;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
 import java.util.Map;
 
+import static java.time.format.DateTimeFormatter.ISO_LOCAL_DATE;
 import static java.util.Collections.singletonList;
+import static org.openmhealth.shim.common.mapper.DataPointMapperInstrumentation.asDataPoints;
+import static org.openmhealth.shimmer.common.domain.parameters.RequestParameterLocation.QUERY;
 import static org.slf4j.LoggerFactory.getLogger;
 import static org.springframework.http.HttpMethod.GET;
 import static org.springframework.http.ResponseEntity.ok;
@@ -54,6 +74,7 @@ import static org.springframework.http.ResponseEntity.ok;
  * @author Chris Schaefbauer
  */
 @Component
+@ConditionalOnClientId("openmhealth.shim.runkeeper")
 public class RunkeeperShim extends OAuth2Shim {
 
     private static final Logger logger = getLogger(RunkeeperShim.class);
@@ -63,9 +84,70 @@ public class RunkeeperShim extends OAuth2Shim {
     private static final String USER_AUTHORIZATION_URL = "https://runkeeper.com/apps/authorize";
     private static final String ACCESS_TOKEN_URL = "https://runkeeper.com/apps/token";
 
+    /*
+        Runkeeper defaults to returning a maximum of 25 entries per request (pageSize = 25 by default), so we ask for
+        larger pages and follow the link to the next page that each page carries.
+     */
+    private static final double PAGE_SIZE = 100;
+    private static final NextPageUriResolver NEXT_PAGE_URI_RESOLVER = new NextLinkPageUriResolver("next");
+    private static final Map<RunkeeperDataType, EndpointSettings> ENDPOINT_SETTINGS = newEndpointSettings();
+
     @Autowired
     private RunkeeperClientSettings clientSettings;
 
+    @Autowired
+    private PaginatedResponseReader paginatedResponseReader;
+
+    @Autowired
+    private RequestEntityAssemblerChain requestEntityAssemblerChain;
+
+    private static Map<RunkeeperDataType, EndpointSettings> newEndpointSettings() {
+
+        Map<RunkeeperDataType, EndpointSettings> settingsByDataType = new EnumMap<>(RunkeeperDataType.class);
+
+        for (RunkeeperDataType dataType : RunkeeperDataType.values()) {
+            settingsByDataType.put(dataType, newEndpointSettings(dataType));
+        }
+
+        return settingsByDataType;
+    }
+
+    static EndpointSettings newEndpointSettings(RunkeeperDataType dataType) {
+
+        DefaultEndpointSettings settings = new DefaultEndpointSettings();
+
+        settings.setId(dataType.name().toLowerCase());
+
+        // detail is added to all endpoints to support summaries
+        settings.setUriTemplate(new UriTemplate(DATA_URL + "/" + dataType.getEndPointUrl() + "?detail=true"));
+        settings.setEffectiveStartDateTimeParameter(newDateRequestParameter("noEarlierThan"));
+
+        // the Runkeeper end date is inclusive
+        DateTimeRequestParameter endDateParameter = newDateRequestParameter("noLaterThan");
+        endDateParameter.setInclusiveUpperBound(true);
+        settings.setEffectiveEndDateTimeParameter(endDateParameter);
+
+        NumberRequestParameter pageSizeParameter = new NumberRequestParameter();
+        pageSizeParameter.setParameterName("pageSize");
+        pageSizeParameter.setRequestParameterLocation(QUERY);
+        pageSizeParameter.setDefaultValue(PAGE_SIZE);
+        settings.setPageSizeParameter(pageSizeParameter);
+
+        return settings;
+    }
+
+    private static DateTimeRequestParameter newDateRequestParameter(String parameterName) {
+
+        DateTimeRequestParameter parameter = new DateTimeRequestParameter();
+
+        parameter.setParameterName(parameterName);
+        parameter.setRequestParameterLocation(QUERY);
+        parameter.setDateTimeFormat(ISO_LOCAL_DATE);
+        parameter.setRequired(true);
+
+        return parameter;
+    }
+
     @Override
     public String getLabel() {
 
@@ -162,53 +244,62 @@ public class RunkeeperShim extends OAuth2Shim {
         OffsetDateTime endDateTime = shimDataRequest.getEndDateTime() == null ?
                 now.plusDays(1) : shimDataRequest.getEndDateTime();
 
-        /*
-            Runkeeper defaults to returning a maximum of 25 entries per request (pageSize = 25 by default), so
-            we override the default by specifying an arbitrarily large number as the pageSize.
-         */
-        long numToReturn = 100_000;
-
-        UriComponentsBuilder uriBuilder = UriComponentsBuilder
-                .fromUriString(DATA_URL)
-                .pathSegment(runkeeperDataType.getEndPointUrl())
-                .queryParam("noEarlierThan", startDateTime.toLocalDate())
-                .queryParam("noLaterThan", endDateTime.toLocalDate())
-                .queryParam("pageSize", numToReturn)
-                .queryParam("detail", true); // added to all endpoints to support summaries
+        // the Runkeeper date range is inclusive, so it's treated as a range of whole days ending at the start of the
+        // day after the end date
+        DataPointRequest request = new DataPointRequest(ENDPOINT_SETTINGS.get(runkeeperDataType));
+        request.setEffectiveDateTimeRange(Range.closedOpen(
+                startDateTime.toLocalDate().atStartOfDay().atOffset(startDateTime.getOffset()),
+                endDateTime.toLocalDate().plusDays(1).atStartOfDay().atOffset(endDateTime.getOffset())));
 
+        // the OAuth2 rest template adds the access token itself, and later pages are found by following links
+        URI firstPageUri = requestEntityAssemblerChain.createRequestEntity(request).getUrl();
 
         HttpHeaders headers = new HttpHeaders();
         headers.set("Accept", runkeeperDataType.getDataTypeHeader());
 
-        ResponseEntity<JsonNode> responseEntity;
-        try {
-            responseEntity = restTemplate.exchange(uriBuilder.build().encode().toUri(), GET,
-                    new HttpEntity<JsonNode>(headers), JsonNode.class);
-        }
-        catch (HttpClientErrorException | HttpServerErrorException e) {
-            // FIXME figure out how to handle this
-            logger.error("A request for RunKeeper data failed.", e);
-            throw e;
-        }
+        PageFetcher pageFetcher = (pageUri) -> {
+            try {
+                return restTemplate.exchange(pageUri, GET, new HttpEntity<JsonNode>(headers), JsonNode.class)
+                        .getBody();
+            }
+            catch (HttpClientErrorException | HttpServerErrorException e) {
+                // FIXME figure out how to handle this
+                logger.error("A request for RunKeeper data failed.", e);
+                throw e;
+            }
+        };
 
         if (shimDataRequest.getNormalize()) {
-            RunkeeperDataPointMapper<?> dataPointMapper;
-            switch (runkeeperDataType) {
-                case CALORIES_BURNED:
-                    dataPointMapper = new RunkeeperCaloriesBurnedDataPointMapper();
-                    break;
-                case PHYSICAL_ACTIVITY:
-                    dataPointMapper = new RunkeeperPhysicalActivityDataPointMapper();
-                    break;
-                default:
-                    throw new UnsupportedOperationException();
-            }
+            RunkeeperDataPointMapper<?> dataPointMapper = getDataPointMapper(runkeeperDataType);
+
+            List<DataPoint<?>> dataPoints = paginatedResponseReader.readPages(firstPageUri, pageFetcher,
+                    NEXT_PAGE_URI_RESOLVER, page -> asDataPoints(dataPointMapper, singletonList(page)));
 
-            return ok().body(ShimDataResponse.result(SHIM_KEY,
-                    dataPointMapper.asDataPoints(singletonList(responseEntity.getBody()))));
+            return ok().body(ShimDataResponse.result(SHIM_KEY, dataPoints));
         }
         else {
-            return ok().body(ShimDataResponse.result(SHIM_KEY, responseEntity.getBody()));
+            // a response spanning several pages is returned as a list of pages, while a single page keeps returning
+            // the page itself
+            List<JsonNode> pages = paginatedResponseReader.readPages(firstPageUri, pageFetcher,
+                    NEXT_PAGE_URI_RESOLVER, Collections::singletonList);
+
+            if (pages.size() == 1) {
+                return ok().body(ShimDataResponse.result(SHIM_KEY, pages.get(0)));
+            }
+
+            return ok().body(ShimDataResponse.result(SHIM_KEY, pages));
+        }
+    }
+
+    private RunkeeperDataPointMapper<?> getDataPointMapper(RunkeeperDataType runkeeperDataType) {
+
+        switch (runkeeperDataType) {
+            case CALORIES_BURNED:
+                return new RunkeeperCaloriesBurnedDataPointMapper();
+            case PHYSICAL_ACTIVITY:
+                return new RunkeeperPhysicalActivityDataPointMapper();
+            default:
+                throw new UnsupportedOperationException();
         }
     }
 
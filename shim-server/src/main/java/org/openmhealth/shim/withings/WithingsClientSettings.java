@@ -17,6 +17,7 @@
 
 package org.openmhealth.shim.withings;
 
+import org.openmhealth.shim.ConditionalOnClientId;
 import org.openmhealth.shim.OAuth1ClientSettings;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.stereotype.Component;
@@ -26,6 +27,7 @@ import org.springframework.stereotype.Component;
  * @author Emerson Farrugia
  */
 @Component
+@ConditionalOnClientId("openmhealth.shim.withings")
 @ConfigurationProperties("openmhealth.shim.withings")
 public class WithingsClientSettings extends OAuth1ClientSettings {
 
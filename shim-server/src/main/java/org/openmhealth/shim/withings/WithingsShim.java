@@ -19,13 +19,20 @@ package org.openmhealth.shim.withings;
 
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.collect.Range;
 import org.apache.http.HttpEntity;
 import org.apache.http.HttpResponse;
 import org.apache.http.client.methods.HttpGet;
+import org.apache.http.util.EntityUtils;
 import org.openmhealth.schema.domain.omh.DataPoint;
 import org.openmhealth.shim.*;
+import org.openmhealth.shim.common.mapper.IntradayTimeSeriesMapper;
 import org.openmhealth.shim.withings.domain.WithingsBodyMeasureType;
 import org.openmhealth.shim.withings.mapper.*;
+import org.openmhealth.shimmer.common.configuration.DateTimeQuerySettings;
+import org.openmhealth.shimmer.common.configuration.DefaultDateTimeQuerySettings;
+import org.openmhealth.shimmer.common.service.DateTimeQueryExecutor;
+import org.openmhealth.shimmer.common.service.DateTimeQueryPlanner;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 import org.springframework.util.LinkedMultiValueMap;
@@ -34,14 +41,20 @@ import org.springframework.web.util.UriComponentsBuilder;
 
 import javax.servlet.http.HttpServletRequest;
 import java.io.IOException;
-import java.io.InputStream;
 import java.net.URI;
 import java.net.URL;
+import java.time.Duration;
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 
+import static java.util.Collections.emptyList;
+import static java.util.Collections.singletonList;
+import static org.openmhealth.shim.common.mapper.DataPointMapperInstrumentation.asDataPoints;
 import static org.openmhealth.shim.withings.WithingsShim.WithingsDataType.*;
 
 
@@ -51,6 +64,7 @@ import static org.openmhealth.shim.withings.WithingsShim.WithingsDataType.*;
  * @author Emerson Farrugia
  */
 @Component
+@ConditionalOnClientId("openmhealth.shim.withings")
 public class WithingsShim extends OAuth1Shim {
 
     public static final String SHIM_KEY = "withings";
@@ -59,10 +73,20 @@ public class WithingsShim extends OAuth1Shim {
     private static final String USER_AUTHORIZATION_URL = "https://developer.health.nokia.com/account/authorize";
     private static final String ACCESS_TOKEN_URL = "https://developer.health.nokia.com/account/access_token";
     private static final String INTRADAY_ACTIVITY_ENDPOINT = "getintradayactivity";
+    private static final Duration INTRADAY_ACTIVITY_MAXIMUM_DURATION = Duration.ofDays(1);
 
     @Autowired
     private WithingsClientSettings clientSettings;
 
+    @Autowired
+    private DateTimeQueryPlanner dateTimeQueryPlanner;
+
+    @Autowired
+    private DateTimeQueryExecutor dateTimeQueryExecutor;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
     @Override
     public String getLabel() {
 
@@ -103,7 +127,7 @@ public class WithingsShim extends OAuth1Shim {
     public ShimDataType[] getShimDataTypes() {
 
         return new ShimDataType[] {
-                BLOOD_PRESSURE, // order important for trigger call
+                BLOOD_PRESSURE,
                 BODY_HEIGHT,
                 BODY_TEMPERATURE,
                 BODY_WEIGHT,
@@ -166,51 +190,169 @@ public class WithingsShim extends OAuth1Shim {
     @Override
     public ShimDataResponse getData(ShimDataRequest shimDataRequest) throws ShimException {
 
-        AccessParameters accessParameters = shimDataRequest.getAccessParameters();
-        String accessToken = accessParameters.getAccessToken();
-        String tokenSecret = accessParameters.getTokenSecret();
+        WithingsDataType withingsDataType = getWithingsDataType(shimDataRequest);
 
-        // userid is a unique id associated with each user and returned by Withings in the authorization, this id is
-        // used as a parameter in the request
-        final String userid = accessParameters.getAdditionalParameters().get("userid").toString();
+        if (shimDataRequest.getNormalize()) {
 
-        final WithingsDataType withingsDataType;
-        try {
+            List<JsonNode> responseBodies = getResponseBodies(shimDataRequest, withingsDataType,
+                    (entity) -> objectMapper.readTree(entity.getContent()));
+
+            WithingsDataPointMapper<?> dataPointMapper = getDataPointMapper(withingsDataType);
+
+            if (shimDataRequest.requiresIntradayTimeSeries() && dataPointMapper instanceof IntradayTimeSeriesMapper) {
+
+                IntradayTimeSeriesMapper<?> timeSeriesMapper = (IntradayTimeSeriesMapper<?>) dataPointMapper;
+                List<Object> body = new ArrayList<>();
+
+                for (JsonNode responseBody : responseBodies) {
+                    body.addAll(asDataPoints(timeSeriesMapper, 1,
+                            () -> timeSeriesMapper.asRequestedRepresentation(responseBody, shimDataRequest)));
+                }
+
+                return ShimDataResponse.result(WithingsShim.SHIM_KEY, body);
+            }
+
+            List<DataPoint<?>> dataPoints = new ArrayList<>();
+
+            for (JsonNode responseBody : responseBodies) {
+                dataPoints.addAll(asDataPoints(dataPointMapper, singletonList(responseBody)));
+            }
+
+            return ShimDataResponse.result(WithingsShim.SHIM_KEY, dataPoints);
+        }
+        else {
+            // responses are passed through without being parsed
+            List<RawJson> responseBodies = getResponseBodies(shimDataRequest, withingsDataType,
+                    (entity) -> new RawJson(EntityUtils.toByteArray(entity)));
+
+            // a response can't be merged without knowing its structure, so a range split into several windows is
+            // returned as a list of responses, while a single window keeps returning the response itself
+            if (responseBodies.size() == 1) {
+                return ShimDataResponse.result(WithingsShim.SHIM_KEY, responseBodies.get(0));
+            }
+
+            return ShimDataResponse.result(WithingsShim.SHIM_KEY, responseBodies);
+        }
+    }
+
+    /**
+     * Fulfils several requests, fetching all the normalized body measure types with a single request for all measure
+     * groups, whose groups are then routed to the right mappers in a single pass.
+     */
+    @Override
+    public Map<String, ShimDataResponse> getData(List<ShimDataRequest> shimDataRequests) throws ShimException {
+
+        Map<String, ShimDataResponse> shimDataResponses = new LinkedHashMap<>();
+        Map<String, WithingsBodyMeasureDataPointMapper<?>> bodyMeasureMappers = new LinkedHashMap<>();
+        ShimDataRequest bodyMeasureRequest = null;
+
+        for (ShimDataRequest shimDataRequest : shimDataRequests) {
+
+            WithingsDataType withingsDataType = getWithingsDataType(shimDataRequest);
+
+            if (shimDataRequest.getNormalize() && isBodyMeasure(withingsDataType)) {
+                bodyMeasureMappers.put(shimDataRequest.getDataTypeKey(),
+                        (WithingsBodyMeasureDataPointMapper<?>) getDataPointMapper(withingsDataType));
+                bodyMeasureRequest = shimDataRequest;
+
+                // reserves the position of the response
+                shimDataResponses.put(shimDataRequest.getDataTypeKey(), null);
+            }
+            else {
+                shimDataResponses.put(shimDataRequest.getDataTypeKey(), getData(shimDataRequest));
+            }
+        }
+
+        if (bodyMeasureRequest == null) {
+            return shimDataResponses;
+        }
+
+        // a single body measure type is cheaper to fetch on its own, since the request can be filtered by type
+        if (bodyMeasureMappers.size() == 1) {
+            shimDataResponses.put(bodyMeasureRequest.getDataTypeKey(), getData(bodyMeasureRequest));
+            return shimDataResponses;
+        }
+
+        // a blood pressure request asks for all body measures, since blood pressure spans two measure types
+        List<JsonNode> responseBodies = getResponseBodies(bodyMeasureRequest, BLOOD_PRESSURE,
+                (entity) -> objectMapper.readTree(entity.getContent()));
+
+        WithingsBodyMeasureDemultiplexer demultiplexer =
+                new WithingsBodyMeasureDemultiplexer(bodyMeasureMappers.values());
+
+        Map<WithingsBodyMeasureDataPointMapper<?>, List<DataPoint<?>>> dataPointsByMapper = new HashMap<>();
+
+        for (JsonNode responseBody : responseBodies) {
+            asDataPoints(demultiplexer, 1, () -> {
+                List<DataPoint<?>> dataPointsOfResponse = new ArrayList<>();
 
-            withingsDataType = WithingsDataType.valueOf(
-                    shimDataRequest.getDataTypeKey().trim().toUpperCase());
+                demultiplexer.asDataPoints(responseBody).forEach((mapper, dataPoints) -> {
+                    dataPointsByMapper.computeIfAbsent(mapper, key -> new ArrayList<>()).addAll(dataPoints);
+                    dataPointsOfResponse.addAll(dataPoints);
+                });
+
+                return dataPointsOfResponse;
+            });
+        }
+
+        bodyMeasureMappers.forEach((dataTypeKey, mapper) -> shimDataResponses.put(dataTypeKey,
+                ShimDataResponse.result(WithingsShim.SHIM_KEY, dataPointsByMapper.getOrDefault(mapper, emptyList()))));
+
+        return shimDataResponses;
+    }
+
+    private WithingsDataType getWithingsDataType(ShimDataRequest shimDataRequest) throws ShimException {
+
+        try {
+            return WithingsDataType.valueOf(shimDataRequest.getDataTypeKey().trim().toUpperCase());
         }
         catch (NullPointerException | IllegalArgumentException e) {
             throw new ShimException("Null or Invalid data type parameter: "
                     + shimDataRequest.getDataTypeKey()
                     + " in shimDataRequest, cannot retrieve data.");
         }
+    }
 
-        ObjectMapper objectMapper = new ObjectMapper();
-        URI uri = createWithingsRequestUri(shimDataRequest, userid, withingsDataType);
-        URL url = signUrl(uri.toString(), accessToken, tokenSecret, null);
+    /**
+     * @param responseBodyReader reads a response body, e.g. into a tree
+     * @return the response bodies of the data type, one per window of the requested date range
+     */
+    private <T> List<T> getResponseBodies(ShimDataRequest shimDataRequest, WithingsDataType withingsDataType,
+            ResponseBodyReader<T> responseBodyReader)
+            throws ShimException {
 
-        // TODO: Handle requests for a number of days greater than what Withings supports
-        HttpGet get = new HttpGet(url.toString());
-        HttpResponse response;
-        try {
-            response = httpClient.execute(get);
-            HttpEntity responseEntity = response.getEntity();
+        AccessParameters accessParameters = shimDataRequest.getAccessParameters();
+        String accessToken = accessParameters.getAccessToken();
+        String tokenSecret = accessParameters.getTokenSecret();
 
-            if (shimDataRequest.getNormalize()) {
+        // userid is a unique id associated with each user and returned by Withings in the authorization, this id is
+        // used as a parameter in the request
+        final String userid = accessParameters.getAdditionalParameters().get("userid").toString();
 
-                WithingsDataPointMapper<?> dataPointMapper = getDataPointMapper(withingsDataType);
+        // the Withings date range is inclusive of the end date
+        Range<OffsetDateTime> dateRange = Range.closedOpen(
+                shimDataRequest.getStartDateTime(),
+                shimDataRequest.getEndDateTime().plusDays(1));
 
-                InputStream content = responseEntity.getContent();
-                JsonNode jsonNode = objectMapper.readValue(content, JsonNode.class);
-                List<? extends DataPoint<?>> dataPoints = dataPointMapper.asDataPoints(jsonNode);
+        List<Range<OffsetDateTime>> windows =
+                dateTimeQueryPlanner.planQueries(dateRange, getDateTimeQuerySettings(withingsDataType));
 
-                return ShimDataResponse.result(WithingsShim.SHIM_KEY, dataPoints);
-            }
-            else {
-                return ShimDataResponse
-                        .result(WithingsShim.SHIM_KEY, objectMapper.readTree(responseEntity.getContent()));
-            }
+        return dateTimeQueryExecutor.execute(windows,
+                window -> getResponseBody(window, userid, withingsDataType, accessToken, tokenSecret,
+                        responseBodyReader));
+    }
+
+    private <T> T getResponseBody(Range<OffsetDateTime> window, String userid, WithingsDataType withingsDataType,
+            String accessToken, String tokenSecret, ResponseBodyReader<T> responseBodyReader) throws ShimException {
+
+        URI uri = createWithingsRequestUri(window, userid, withingsDataType);
+        URL url = signUrl(uri.toString(), accessToken, tokenSecret, null);
+
+        HttpGet get = new HttpGet(url.toString());
+        try {
+            HttpResponse response = executeUpstreamRequest(get);
+
+            return responseBodyReader.read(response.getEntity());
         }
         catch (IOException e) {
             throw new ShimException("Could not fetch data", e);
@@ -220,6 +362,21 @@ public class WithingsShim extends OAuth1Shim {
         }
     }
 
+    /**
+     * @return the date time query settings of the endpoint that serves the data type
+     */
+    private DateTimeQuerySettings getDateTimeQuerySettings(WithingsDataType withingsDataType) {
+
+        DefaultDateTimeQuerySettings settings = new DefaultDateTimeQuerySettings();
+
+        // the intraday activity endpoint only returns the first 24 hours of a longer range
+        if (isIntradayActivityMeasure(withingsDataType)) {
+            settings.setMaximumDuration(INTRADAY_ACTIVITY_MAXIMUM_DURATION);
+        }
+
+        return settings;
+    }
+
     private WithingsDataPointMapper getDataPointMapper(WithingsDataType withingsDataType) {
 
         switch (withingsDataType) {
@@ -264,19 +421,18 @@ public class WithingsShim extends OAuth1Shim {
         }
     }
 
-    URI createWithingsRequestUri(ShimDataRequest shimDataRequest, String userid,
-            WithingsDataType withingsDataType) {
+    URI createWithingsRequestUri(Range<OffsetDateTime> window, String userid, WithingsDataType withingsDataType) {
 
         MultiValueMap<String, String> dateTimeMap = new LinkedMultiValueMap<>();
         if (withingsDataType.usesUnixEpochSecondsDate || isIntradayActivityMeasure(withingsDataType)) {
             //the intraday endpoints for activity also use epoch secs
 
-            dateTimeMap.add("startdate", String.valueOf(shimDataRequest.getStartDateTime().toEpochSecond()));
-            dateTimeMap.add("enddate", String.valueOf(shimDataRequest.getEndDateTime().plusDays(1).toEpochSecond()));
+            dateTimeMap.add("startdate", String.valueOf(window.lowerEndpoint().toEpochSecond()));
+            dateTimeMap.add("enddate", String.valueOf(window.upperEndpoint().toEpochSecond()));
         }
         else {
-            dateTimeMap.add("startdateymd", shimDataRequest.getStartDateTime().toLocalDate().toString());
-            dateTimeMap.add("enddateymd", shimDataRequest.getEndDateTime().toLocalDate().toString());
+            dateTimeMap.add("startdateymd", window.lowerEndpoint().toLocalDate().toString());
+            dateTimeMap.add("enddateymd", window.upperEndpoint().minusDays(1).toLocalDate().toString());
         }
 
         UriComponentsBuilder uriComponentsBuilder = UriComponentsBuilder
@@ -296,8 +452,7 @@ public class WithingsShim extends OAuth1Shim {
                 .queryParam("userid", userid)
                 .queryParams(dateTimeMap);
 
-        // if it's a body measure
-        if (Objects.equals(withingsDataType.getMeasureParameter(), "getmeas")) {
+        if (isBodyMeasure(withingsDataType)) {
 
             /*
                 The Withings API allows us to query for single body measures, which we take advantage of to reduce
@@ -329,4 +484,22 @@ public class WithingsShim extends OAuth1Shim {
         return clientSettings.isIntradayDataAvailable() && (withingsDataType == STEP_COUNT || withingsDataType ==
                 CALORIES_BURNED);
     }
+
+    /**
+     * @return true if the data type is served by the body measure endpoint, or false otherwise
+     */
+    private boolean isBodyMeasure(WithingsDataType withingsDataType) {
+
+        return Objects.equals(withingsDataType.getMeasureParameter(), "getmeas");
+    }
+
+
+    /**
+     * Reads the body of a data provider response.
+     */
+    @FunctionalInterface
+    private interface ResponseBodyReader<T> {
+
+        T read(HttpEntity entity) throws IOException;
+    }
 }
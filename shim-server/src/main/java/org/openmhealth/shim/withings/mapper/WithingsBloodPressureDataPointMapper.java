@@ -21,10 +21,13 @@ import org.openmhealth.schema.domain.omh.BloodPressure;
 import org.openmhealth.schema.domain.omh.DiastolicBloodPressure;
 import org.openmhealth.schema.domain.omh.Measure;
 import org.openmhealth.schema.domain.omh.SystolicBloodPressure;
+import org.openmhealth.shim.withings.domain.WithingsBodyMeasureType;
 import org.slf4j.Logger;
 
 import java.math.BigDecimal;
+import java.util.EnumSet;
 import java.util.Optional;
+import java.util.Set;
 
 import static java.util.Optional.empty;
 import static org.openmhealth.schema.domain.omh.BloodPressureUnit.MM_OF_MERCURY;
@@ -63,4 +66,10 @@ public class WithingsBloodPressureDataPointMapper extends WithingsBodyMeasureDat
                 new DiastolicBloodPressure(MM_OF_MERCURY, diastolicValue.get())
         ));
     }
+
+    @Override
+    public Set<WithingsBodyMeasureType> getBodyMeasureTypes() {
+
+        return EnumSet.of(SYSTOLIC_BLOOD_PRESSURE, DIASTOLIC_BLOOD_PRESSURE);
+    }
 }
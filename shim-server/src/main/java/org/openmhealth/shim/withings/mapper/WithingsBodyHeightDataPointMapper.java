@@ -20,9 +20,12 @@ import com.fasterxml.jackson.databind.JsonNode;
 import org.openmhealth.schema.domain.omh.BodyHeight;
 import org.openmhealth.schema.domain.omh.LengthUnitValue;
 import org.openmhealth.schema.domain.omh.Measure;
+import org.openmhealth.shim.withings.domain.WithingsBodyMeasureType;
 
 import java.math.BigDecimal;
+import java.util.EnumSet;
 import java.util.Optional;
+import java.util.Set;
 
 import static org.openmhealth.schema.domain.omh.LengthUnit.METER;
 import static org.openmhealth.shim.withings.domain.WithingsBodyMeasureType.BODY_HEIGHT;
@@ -42,4 +45,10 @@ public class WithingsBodyHeightDataPointMapper extends WithingsBodyMeasureDataPo
 
         return value.map(heightInM -> new BodyHeight.Builder(new LengthUnitValue(METER, heightInM)));
     }
+
+    @Override
+    public Set<WithingsBodyMeasureType> getBodyMeasureTypes() {
+
+        return EnumSet.of(BODY_HEIGHT);
+    }
 }
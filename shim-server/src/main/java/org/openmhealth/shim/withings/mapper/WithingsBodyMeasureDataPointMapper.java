@@ -30,6 +30,7 @@ import java.time.Instant;
 import java.time.OffsetDateTime;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
 import java.util.stream.Collectors;
 import java.util.stream.StreamSupport;
 
@@ -75,30 +76,41 @@ public abstract class WithingsBodyMeasureDataPointMapper<T extends Measure> exte
                 continue;
             }
 
-            JsonNode measuresNode = asRequiredNode(measureGroupNode, "measures");
-
-            Measure.Builder<T, ?> measureBuilder = newMeasureBuilder(measuresNode).orElse(null);
-            if (measureBuilder == null) {
-                continue;
-            }
+            asDataPoint(measureGroupNode).ifPresent(dataPoints::add);
+        }
 
-            Optional<Long> dateTimeInEpochSeconds = asOptionalLong(measureGroupNode, "date");
-            if (dateTimeInEpochSeconds.isPresent()) {
+        return dataPoints;
+    }
 
-                Instant dateTimeInstant = Instant.ofEpochSecond(dateTimeInEpochSeconds.get());
-                measureBuilder.setEffectiveTimeFrame(OffsetDateTime.ofInstant(dateTimeInstant, UTC));
-            }
+    /**
+     * Maps a measure group that is neither a goal nor of ambiguous ownership.
+     *
+     * @param measureGroupNode a node from the "measuregrps" list of a response
+     * @return the data point, or an empty optional if the group doesn't contain the measures this mapper maps
+     */
+    Optional<DataPoint<T>> asDataPoint(JsonNode measureGroupNode) {
 
-            asOptionalString(measureGroupNode, "comment").ifPresent(measureBuilder::setUserNotes);
+        JsonNode measuresNode = asRequiredNode(measureGroupNode, "measures");
 
-            T measure = measureBuilder.build();
+        Measure.Builder<T, ?> measureBuilder = newMeasureBuilder(measuresNode).orElse(null);
+        if (measureBuilder == null) {
+            return Optional.empty();
+        }
 
-            Optional<String> externalId = asOptionalLong(measureGroupNode, "grpid").map(Object::toString);
+        Optional<Long> dateTimeInEpochSeconds = asOptionalLong(measureGroupNode, "date");
+        if (dateTimeInEpochSeconds.isPresent()) {
 
-            dataPoints.add(newDataPoint(measure, externalId.orElse(null), isSensed(measureGroupNode), null));
+            Instant dateTimeInstant = Instant.ofEpochSecond(dateTimeInEpochSeconds.get());
+            measureBuilder.setEffectiveTimeFrame(OffsetDateTime.ofInstant(dateTimeInstant, UTC));
         }
 
-        return dataPoints;
+        asOptionalString(measureGroupNode, "comment").ifPresent(measureBuilder::setUserNotes);
+
+        T measure = measureBuilder.build();
+
+        Optional<String> externalId = asOptionalLong(measureGroupNode, "grpid").map(Object::toString);
+
+        return Optional.of(newDataPoint(measure, externalId.orElse(null), isSensed(measureGroupNode), null));
     }
 
     /**
@@ -174,6 +186,11 @@ public abstract class WithingsBodyMeasureDataPointMapper<T extends Measure> exte
      */
     abstract Optional<Measure.Builder<T, ?>> newMeasureBuilder(JsonNode measuresNode);
 
+    /**
+     * @return the body measure types this mapper maps from
+     */
+    public abstract Set<WithingsBodyMeasureType> getBodyMeasureTypes();
+
     /**
      * @return a {@link BigDecimal} corresponding to the specified measure node
      */
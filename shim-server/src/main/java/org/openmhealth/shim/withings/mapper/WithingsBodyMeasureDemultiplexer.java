@@ -0,0 +1,131 @@
+/*
+ * Copyright 2017 Open mHealth
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.openmhealth.shim.withings.mapper;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import org.openmhealth.schema.domain.omh.DataPoint;
+import org.openmhealth.shim.withings.domain.WithingsBodyMeasureType;
+import org.slf4j.Logger;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static java.util.Collections.emptyList;
+import static org.openmhealth.shim.common.mapper.JsonNodeMappingSupport.asRequiredLong;
+import static org.openmhealth.shim.common.mapper.JsonNodeMappingSupport.asRequiredNode;
+import static org.openmhealth.shim.withings.mapper.WithingsDataPointMapper.BODY_NODE_PROPERTY;
+import static org.slf4j.LoggerFactory.getLogger;
+
+
+/**
+ * Maps a single Withings body measure endpoint response that contains all measure types to the data points of several
+ * body measure mappers in a single pass. Each measure group is routed only to the mappers that map one of the measure
+ * types it contains.
+ *
+ * @see <a href="http://oauth.withings.com/api/doc#api-Measure-get_measure">Body Measures API documentation</a>
+ */
+public class WithingsBodyMeasureDemultiplexer {
+
+    private static final Logger logger = getLogger(WithingsBodyMeasureDemultiplexer.class);
+
+    private final List<WithingsBodyMeasureDataPointMapper<?>> mappers;
+    private final Map<Long, List<WithingsBodyMeasureDataPointMapper<?>>> mappersByMagicNumber = new HashMap<>();
+
+
+    /**
+     * @param mappers the mappers to route measure groups to
+     */
+    public WithingsBodyMeasureDemultiplexer(Collection<? extends WithingsBodyMeasureDataPointMapper<?>> mappers) {
+
+        checkNotNull(mappers);
+        checkArgument(!mappers.isEmpty(), "No mappers have been specified.");
+
+        this.mappers = new ArrayList<>(mappers);
+
+        for (WithingsBodyMeasureDataPointMapper<?> mapper : mappers) {
+            for (WithingsBodyMeasureType measureType : mapper.getBodyMeasureTypes()) {
+                mappersByMagicNumber
+                        .computeIfAbsent((long) measureType.getMagicNumber(), magicNumber -> new ArrayList<>())
+                        .add(mapper);
+            }
+        }
+    }
+
+    /**
+     * @param responseNode a response from the body measure endpoint
+     * @return the data points of each mapper, in the order the mappers were specified
+     */
+    public Map<WithingsBodyMeasureDataPointMapper<?>, List<DataPoint<?>>> asDataPoints(JsonNode responseNode) {
+
+        checkNotNull(responseNode);
+
+        Map<WithingsBodyMeasureDataPointMapper<?>, List<DataPoint<?>>> dataPointsByMapper = new LinkedHashMap<>();
+
+        for (WithingsBodyMeasureDataPointMapper<?> mapper : mappers) {
+            dataPointsByMapper.put(mapper, new ArrayList<>());
+        }
+
+        JsonNode responseNodeBody = asRequiredNode(responseNode, BODY_NODE_PROPERTY);
+
+        // the goal and ownership checks don't depend on the mapper, so any mapper can make them
+        WithingsBodyMeasureDataPointMapper<?> groupChecker = mappers.get(0);
+
+        for (JsonNode measureGroupNode : asRequiredNode(responseNodeBody, "measuregrps")) {
+
+            if (groupChecker.isGoal(measureGroupNode)) {
+                continue;
+            }
+
+            if (groupChecker.isOwnerAmbiguous(measureGroupNode)) {
+                logger.warn("The following Withings measure group is being ignored because its owner is ambiguous.\n{}",
+                        measureGroupNode);
+                continue;
+            }
+
+            for (WithingsBodyMeasureDataPointMapper<?> mapper : getMappers(measureGroupNode)) {
+                mapper.asDataPoint(measureGroupNode).ifPresent(dataPointsByMapper.get(mapper)::add);
+            }
+        }
+
+        return dataPointsByMapper;
+    }
+
+    /**
+     * @return the mappers that map at least one of the measure types in the measure group
+     */
+    private Collection<WithingsBodyMeasureDataPointMapper<?>> getMappers(JsonNode measureGroupNode) {
+
+        // a linked set keeps the routing order stable and maps a group once per mapper, e.g. for blood pressure
+        Collection<WithingsBodyMeasureDataPointMapper<?>> groupMappers = new LinkedHashSet<>();
+
+        for (JsonNode measureNode : asRequiredNode(measureGroupNode, "measures")) {
+
+            long magicNumber = asRequiredLong(measureNode, "type");
+
+            groupMappers.addAll(mappersByMagicNumber.getOrDefault(magicNumber, emptyList()));
+        }
+
+        return groupMappers;
+    }
+}
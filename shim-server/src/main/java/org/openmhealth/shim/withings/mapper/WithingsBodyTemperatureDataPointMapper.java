@@ -20,9 +20,12 @@ import com.fasterxml.jackson.databind.JsonNode;
 import org.openmhealth.schema.domain.omh.BodyTemperature;
 import org.openmhealth.schema.domain.omh.Measure;
 import org.openmhealth.schema.domain.omh.TemperatureUnitValue;
+import org.openmhealth.shim.withings.domain.WithingsBodyMeasureType;
 
 import java.math.BigDecimal;
+import java.util.EnumSet;
 import java.util.Optional;
+import java.util.Set;
 
 import static org.openmhealth.schema.domain.omh.TemperatureUnit.CELSIUS;
 import static org.openmhealth.shim.withings.domain.WithingsBodyMeasureType.BODY_TEMPERATURE;
@@ -43,4 +46,10 @@ public class WithingsBodyTemperatureDataPointMapper extends WithingsBodyMeasureD
         return value
                 .map(temperatureInC -> new BodyTemperature.Builder(new TemperatureUnitValue(CELSIUS, temperatureInC)));
     }
+
+    @Override
+    public Set<WithingsBodyMeasureType> getBodyMeasureTypes() {
+
+        return EnumSet.of(BODY_TEMPERATURE);
+    }
 }
@@ -20,9 +20,12 @@ import com.fasterxml.jackson.databind.JsonNode;
 import org.openmhealth.schema.domain.omh.BodyWeight;
 import org.openmhealth.schema.domain.omh.MassUnitValue;
 import org.openmhealth.schema.domain.omh.Measure;
+import org.openmhealth.shim.withings.domain.WithingsBodyMeasureType;
 
 import java.math.BigDecimal;
+import java.util.EnumSet;
 import java.util.Optional;
+import java.util.Set;
 
 import static org.openmhealth.schema.domain.omh.MassUnit.KILOGRAM;
 import static org.openmhealth.shim.withings.domain.WithingsBodyMeasureType.BODY_WEIGHT;
@@ -42,4 +45,10 @@ public class WithingsBodyWeightDataPointMapper extends WithingsBodyMeasureDataPo
 
         return value.map(weightInKg -> new BodyWeight.Builder(new MassUnitValue(KILOGRAM, weightInKg)));
     }
+
+    @Override
+    public Set<WithingsBodyMeasureType> getBodyMeasureTypes() {
+
+        return EnumSet.of(BODY_WEIGHT);
+    }
 }
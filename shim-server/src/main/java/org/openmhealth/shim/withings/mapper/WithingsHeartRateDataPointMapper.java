@@ -19,9 +19,12 @@ package org.openmhealth.shim.withings.mapper;
 import com.fasterxml.jackson.databind.JsonNode;
 import org.openmhealth.schema.domain.omh.HeartRate;
 import org.openmhealth.schema.domain.omh.Measure;
+import org.openmhealth.shim.withings.domain.WithingsBodyMeasureType;
 
 import java.math.BigDecimal;
+import java.util.EnumSet;
 import java.util.Optional;
+import java.util.Set;
 
 import static org.openmhealth.shim.withings.domain.WithingsBodyMeasureType.HEART_RATE;
 
@@ -40,4 +43,10 @@ public class WithingsHeartRateDataPointMapper extends WithingsBodyMeasureDataPoi
 
         return value.map(HeartRate.Builder::new);
     }
+
+    @Override
+    public Set<WithingsBodyMeasureType> getBodyMeasureTypes() {
+
+        return EnumSet.of(HEART_RATE);
+    }
 }
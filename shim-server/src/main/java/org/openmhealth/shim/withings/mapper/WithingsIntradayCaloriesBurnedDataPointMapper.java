@@ -46,4 +46,9 @@ public class WithingsIntradayCaloriesBurnedDataPointMapper extends WithingsIntra
 
         return new CaloriesBurned2.Builder(KILOCALORIE.newUnitValue(measureValue), effectiveTimeFrame).build();
     }
+
+    @Override
+    protected String getTimeSeriesUnit() {
+        return KILOCALORIE.getSchemaValue();
+    }
 }
@@ -19,18 +19,23 @@ package org.openmhealth.shim.withings.mapper;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.google.common.collect.Streams;
 import org.openmhealth.schema.domain.omh.DataPoint;
+import org.openmhealth.schema.domain.omh.DataPointAcquisitionProvenance;
 import org.openmhealth.schema.domain.omh.Measure;
 import org.openmhealth.schema.domain.omh.TimeFrame;
 import org.openmhealth.schema.domain.omh.TimeInterval;
+import org.openmhealth.shim.common.mapper.IntradayTimeSeries;
+import org.openmhealth.shim.common.mapper.IntradayTimeSeriesMapper;
 
 import java.time.Instant;
 import java.time.OffsetDateTime;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.stream.Collectors;
 
 import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkNotNull;
 import static java.time.ZoneOffset.UTC;
+import static org.openmhealth.schema.domain.omh.DataPointModality.SENSED;
 import static org.openmhealth.schema.domain.omh.DurationUnit.SECOND;
 import static org.openmhealth.shim.common.mapper.JsonNodeMappingSupport.asRequiredLong;
 import static org.openmhealth.shim.common.mapper.JsonNodeMappingSupport.asRequiredNode;
@@ -49,7 +54,8 @@ import static org.openmhealth.shim.common.mapper.JsonNodeMappingSupport.asRequir
  * @see <a href="http://oauth.withings.com/api/doc#api-Measure-get_intraday_measure">Intrday Activity Measures API
  * documentation</a>
  */
-public abstract class WithingsIntradayDataPointMapper<T extends Measure> extends WithingsDataPointMapper<T> {
+public abstract class WithingsIntradayDataPointMapper<T extends Measure> extends WithingsDataPointMapper<T>
+        implements IntradayTimeSeriesMapper<T> {
 
     /**
      * Maps JSON response nodes from the intraday activities endpoint (measure?action=getintradayactivity) in the
@@ -64,7 +70,76 @@ public abstract class WithingsIntradayDataPointMapper<T extends Measure> extends
         checkNotNull(responseNodes);
         checkArgument(responseNodes.size() == 1, "A single response node is allowed per call.");
 
-        JsonNode bodyNode = asRequiredNode(responseNodes.get(0), "body");
+        return getMeasureTuples(responseNodes.get(0)).stream()
+                .map(p -> newMeasure(p.measureValue, p.getTimeFrame()))
+                .map(m -> {
+                    String externalId = String.valueOf(
+                            m.getEffectiveTimeFrame().getTimeInterval().getStartDateTime().toEpochSecond());
+
+                    return newDataPoint(m, externalId, true, null);
+                })
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Maps a JSON response node from the intraday activities endpoint into a time series. The interval of the time
+     * series is the duration of its first entry, which is a minute in practice.
+     *
+     * @param responseNode a JSON node containing the entire response from the intraday activities endpoint
+     */
+    @Override
+    public IntradayTimeSeries asTimeSeries(JsonNode responseNode) {
+
+        checkNotNull(responseNode);
+
+        List<MeasureTuple> tuples = getMeasureTuples(responseNode);
+
+        DataPointAcquisitionProvenance acquisitionProvenance =
+                new DataPointAcquisitionProvenance.Builder(RESOURCE_API_SOURCE_NAME).setModality(SENSED).build();
+
+        // an interval must be positive, even if the time series is empty or starts with an instantaneous entry
+        long intervalInSeconds = tuples.isEmpty() ? 60 : Math.max(tuples.get(0).durationInSeconds, 1);
+
+        IntradayTimeSeries.Builder builder =
+                new IntradayTimeSeries.Builder(getBodySchemaId(), acquisitionProvenance, intervalInSeconds)
+                        .setUnit(getTimeSeriesUnit());
+
+        for (MeasureTuple tuple : tuples) {
+            builder.addEntry(tuple.startDateTime, tuple.durationInSeconds, tuple.measureValue);
+        }
+
+        return builder.build();
+    }
+
+    @Override
+    public List<DataPoint<T>> asDataPoints(IntradayTimeSeries timeSeries) {
+
+        checkNotNull(timeSeries);
+
+        List<DataPoint<T>> dataPoints = new ArrayList<>(timeSeries.size());
+
+        for (int i = 0; i < timeSeries.size(); i++) {
+
+            MeasureTuple tuple = new MeasureTuple();
+
+            tuple.startDateTime = timeSeries.getStartDateTime(i);
+            tuple.durationInSeconds = timeSeries.getDurationInSeconds(i);
+            tuple.measureValue = timeSeries.getValue(i);
+
+            String externalId = String.valueOf(tuple.startDateTime.toEpochSecond());
+
+            dataPoints.add(newDataPoint(newMeasure(tuple.measureValue, tuple.getTimeFrame()), externalId, true, null));
+        }
+
+        return dataPoints;
+    }
+
+    /**
+     * @return the entries of a response that have a measure value, in chronological order
+     */
+    private List<MeasureTuple> getMeasureTuples(JsonNode responseNode) {
+
+        JsonNode bodyNode = asRequiredNode(responseNode, "body");
         JsonNode seriesNode = asRequiredNode(bodyNode, "series");
 
         return Streams.stream(seriesNode.fields())
@@ -80,13 +155,6 @@ public abstract class WithingsIntradayDataPointMapper<T extends Measure> extends
                 })
                 .filter(p -> p.measureValue >= 0)
                 .sorted()
-                .map(p -> newMeasure(p.measureValue, p.getTimeFrame()))
-                .map(m -> {
-                    String externalId = String.valueOf(
-                            m.getEffectiveTimeFrame().getTimeInterval().getStartDateTime().toEpochSecond());
-
-                    return newDataPoint(m, externalId, true, null);
-                })
                 .collect(Collectors.toList());
     }
 
@@ -95,6 +163,13 @@ public abstract class WithingsIntradayDataPointMapper<T extends Measure> extends
      */
     public abstract String getMeasureValuePath();
 
+    /**
+     * @return the unit of time series values, or null if the measure has no unit
+     */
+    protected String getTimeSeriesUnit() {
+        return null;
+    }
+
 
     class MeasureTuple implements Comparable<MeasureTuple> {
 
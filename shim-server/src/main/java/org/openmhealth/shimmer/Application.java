@@ -16,25 +16,21 @@
 
 package org.openmhealth.shimmer;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 import org.springframework.boot.builder.SpringApplicationBuilder;
 import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.boot.web.support.SpringBootServletInitializer;
-import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.ComponentScan;
 import org.springframework.data.mongodb.repository.config.EnableMongoRepositories;
 
-import static org.openmhealth.schema.configuration.JacksonConfiguration.newObjectMapper;
-
 
 /**
  * @author Emerson Farrugia
  */
 @SpringBootApplication
 @EnableConfigurationProperties
-@EnableMongoRepositories("org.openmhealth.shim")
+@EnableMongoRepositories({"org.openmhealth.shim", "org.openmhealth.shimmer"})
 @ComponentScan(basePackages = {"org.openmhealth.shim", "org.openmhealth.shimmer"})
 public class Application extends SpringBootServletInitializer {
 
@@ -46,10 +42,4 @@ public class Application extends SpringBootServletInitializer {
     public static void main(String[] args) {
         SpringApplication.run(Application.class, args);
     }
-
-    // TODO look into Jackson2ObjectMapperBuilder to support Spring Boot configuration, e.g. for indentation
-    @Bean
-    public ObjectMapper objectMapper() {
-        return newObjectMapper();
-    }
 }
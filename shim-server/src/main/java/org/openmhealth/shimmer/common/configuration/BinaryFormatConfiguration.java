@@ -0,0 +1,99 @@
+/*
+ * Copyright 2017 Open mHealth
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.openmhealth.shimmer.common.configuration;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.deser.DefaultDeserializationContext;
+import com.fasterxml.jackson.databind.ser.DefaultSerializerProvider;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.http.converter.json.AbstractJackson2HttpMessageConverter;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurerAdapter;
+
+import java.util.List;
+
+
+/**
+ * A configuration that lets clients request data responses in the binary Smile and CBOR formats instead of JSON, by
+ * listing the corresponding media type in their <code>Accept</code> header. The binary formats serialize the same
+ * model as JSON, using the same Jackson configuration, but are smaller and cheaper to generate and parse.
+ */
+@Configuration
+public class BinaryFormatConfiguration extends WebMvcConfigurerAdapter {
+
+    public static final String APPLICATION_SMILE_VALUE = "application/x-jackson-smile";
+    public static final MediaType APPLICATION_SMILE = MediaType.valueOf(APPLICATION_SMILE_VALUE);
+
+    public static final String APPLICATION_CBOR_VALUE = "application/cbor";
+    public static final MediaType APPLICATION_CBOR = MediaType.valueOf(APPLICATION_CBOR_VALUE);
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+
+    /**
+     * The binary converters are added after the JSON converter, so that JSON remains the default format.
+     */
+    @Override
+    public void extendMessageConverters(List<HttpMessageConverter<?>> converters) {
+
+        converters.add(new BinaryJackson2HttpMessageConverter(
+                newObjectMapper(objectMapper, new SmileFactory()), APPLICATION_SMILE));
+
+        converters.add(new BinaryJackson2HttpMessageConverter(
+                newObjectMapper(objectMapper, new CBORFactory()), APPLICATION_CBOR));
+    }
+
+    /**
+     * Creates an object mapper that writes and reads a different format, but is otherwise configured like an existing
+     * object mapper, including any modules registered with it.
+     *
+     * @param objectMapper the object mapper to copy the configuration of
+     * @param factory the factory of the format
+     * @return the new object mapper
+     */
+    static ObjectMapper newObjectMapper(ObjectMapper objectMapper, JsonFactory factory) {
+
+        // modules add their serializers and deserializers to these, and their other settings to the configs
+        ObjectMapper formatObjectMapper = new ObjectMapper(factory,
+                ((DefaultSerializerProvider) objectMapper.getSerializerProvider()).copy(),
+                ((DefaultDeserializationContext) objectMapper.getDeserializationContext()).copy());
+
+        formatObjectMapper.setSerializerFactory(objectMapper.getSerializerFactory());
+        formatObjectMapper.setConfig(objectMapper.getSerializationConfig());
+        formatObjectMapper.setConfig(objectMapper.getDeserializationConfig());
+
+        return formatObjectMapper;
+    }
+
+
+    /**
+     * A converter for a binary Jackson format. Spring only includes such converters from version 5.
+     */
+    public static class BinaryJackson2HttpMessageConverter extends AbstractJackson2HttpMessageConverter {
+
+        public BinaryJackson2HttpMessageConverter(ObjectMapper objectMapper, MediaType mediaType) {
+            super(objectMapper, mediaType);
+        }
+    }
+}
@@ -16,6 +16,9 @@
 
 package org.openmhealth.shimmer.common.configuration;
 
+import org.openmhealth.shimmer.common.domain.parameters.DateTimeRequestParameter;
+import org.openmhealth.shimmer.common.domain.parameters.NumberRequestParameter;
+import org.openmhealth.shimmer.common.domain.parameters.PaginationOffsetNumberRequestParameter;
 import org.springframework.web.util.UriTemplate;
 
 import java.util.Optional;
@@ -31,6 +34,10 @@ public class DefaultEndpointSettings implements EndpointSettings {
     private DateTimeQuerySettings effectiveDateTimeQuerySettings;
     private DateTimeQuerySettings creationDateTimeQuerySettings;
     private DateTimeQuerySettings modificationDateTimeQuerySettings;
+    private DateTimeRequestParameter effectiveStartDateTimeParameter;
+    private DateTimeRequestParameter effectiveEndDateTimeParameter;
+    private PaginationOffsetNumberRequestParameter paginationOffsetParameter;
+    private NumberRequestParameter pageSizeParameter;
 
     @Override
     public String getId() {
@@ -76,4 +83,40 @@ public class DefaultEndpointSettings implements EndpointSettings {
     public void setModificationDateTimeQuerySettings(DateTimeQuerySettings settings) {
         this.modificationDateTimeQuerySettings = settings;
     }
+
+    @Override
+    public Optional<DateTimeRequestParameter> getEffectiveStartDateTimeParameter() {
+        return Optional.ofNullable(effectiveStartDateTimeParameter);
+    }
+
+    public void setEffectiveStartDateTimeParameter(DateTimeRequestParameter parameter) {
+        this.effectiveStartDateTimeParameter = parameter;
+    }
+
+    @Override
+    public Optional<DateTimeRequestParameter> getEffectiveEndDateTimeParameter() {
+        return Optional.ofNullable(effectiveEndDateTimeParameter);
+    }
+
+    public void setEffectiveEndDateTimeParameter(DateTimeRequestParameter parameter) {
+        this.effectiveEndDateTimeParameter = parameter;
+    }
+
+    @Override
+    public Optional<PaginationOffsetNumberRequestParameter> getPaginationOffsetParameter() {
+        return Optional.ofNullable(paginationOffsetParameter);
+    }
+
+    public void setPaginationOffsetParameter(PaginationOffsetNumberRequestParameter parameter) {
+        this.paginationOffsetParameter = parameter;
+    }
+
+    @Override
+    public Optional<NumberRequestParameter> getPageSizeParameter() {
+        return Optional.ofNullable(pageSizeParameter);
+    }
+
+    public void setPageSizeParameter(NumberRequestParameter parameter) {
+        this.pageSizeParameter = parameter;
+    }
 }
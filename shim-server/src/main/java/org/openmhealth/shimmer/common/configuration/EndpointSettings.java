@@ -16,6 +16,9 @@
 
 package org.openmhealth.shimmer.common.configuration;
 
+import org.openmhealth.shimmer.common.domain.parameters.DateTimeRequestParameter;
+import org.openmhealth.shimmer.common.domain.parameters.NumberRequestParameter;
+import org.openmhealth.shimmer.common.domain.parameters.PaginationOffsetNumberRequestParameter;
 import org.springframework.web.util.UriTemplate;
 
 import java.util.Optional;
@@ -71,4 +74,24 @@ public interface EndpointSettings {
     default boolean supportsModificationDateTimeQueries() {
         return getModificationDateTimeQuerySettings().isPresent();
     }
+
+    /**
+     * @return the parameter used to set the lower bound of effective date time range queries
+     */
+    Optional<DateTimeRequestParameter> getEffectiveStartDateTimeParameter();
+
+    /**
+     * @return the parameter used to set the upper bound of effective date time range queries
+     */
+    Optional<DateTimeRequestParameter> getEffectiveEndDateTimeParameter();
+
+    /**
+     * @return the parameter used to request a specific page of results
+     */
+    Optional<PaginationOffsetNumberRequestParameter> getPaginationOffsetParameter();
+
+    /**
+     * @return the parameter used to set the number of results per page
+     */
+    Optional<NumberRequestParameter> getPageSizeParameter();
 }
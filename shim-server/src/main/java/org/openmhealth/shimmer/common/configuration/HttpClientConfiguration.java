@@ -19,28 +19,50 @@ package org.openmhealth.shimmer.common.configuration;
 
 import org.apache.http.client.HttpClient;
 import org.apache.http.impl.client.HttpClientBuilder;
+import org.openmhealth.shimmer.configuration.ProviderSimulatorSettings;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.http.client.ClientHttpRequestFactory;
 import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
 
+import java.net.URI;
+
 
 /**
  * A configuration for an Apache HttpComponents request factory that enables connection pooling, timeouts, and
- * potentially request logging.
+ * potentially request logging. The client also negotiates gzip and deflate content encodings with data providers and
+ * decompresses responses as they are read, so compressed responses are never buffered. If a provider simulator is
+ * configured, the client connects to the simulator instead of data providers.
  *
  * @author Emerson Farrugia
  */
 @Configuration
 public class HttpClientConfiguration {
 
+    private static final Logger logger = LoggerFactory.getLogger(HttpClientConfiguration.class);
+
+    @Autowired
+    private ProviderSimulatorSettings providerSimulatorSettings;
+
     @Bean
     public HttpClient httpClient() {
 
-        return HttpClientBuilder.create()
+        // content compression is enabled by default, i.e. disableContentCompression() mustn't be called
+        HttpClientBuilder builder = HttpClientBuilder.create()
                 .setMaxConnPerRoute(20) // chosen without much thought, refine at will
-                .setMaxConnTotal(100)
-                .build();
+                .setMaxConnTotal(100);
+
+        if (providerSimulatorSettings.isEnabled()) {
+            logger.warn("All data provider requests will be sent to the provider simulator at {}.",
+                    providerSimulatorSettings.getUrl());
+
+            builder.setRoutePlanner(new ProviderSimulatorRoutePlanner(URI.create(providerSimulatorSettings.getUrl())));
+        }
+
+        return builder.build();
     }
 
     @Bean
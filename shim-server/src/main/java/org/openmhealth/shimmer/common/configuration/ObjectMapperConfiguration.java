@@ -0,0 +1,55 @@
+/*
+ * Copyright 2017 Open mHealth
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.openmhealth.shimmer.common.configuration;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.module.afterburner.AfterburnerModule;
+import org.springframework.boot.autoconfigure.jackson.JacksonProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import static org.openmhealth.schema.configuration.JacksonConfiguration.newObjectMapper;
+
+
+/**
+ * A configuration for the single object mapper shared by the whole server. Object mappers are expensive to create and
+ * cache their serializers and deserializers, so they mustn't be created per request. Components that need to read or
+ * write JSON have this mapper injected instead.
+ */
+@Configuration
+public class ObjectMapperConfiguration {
+
+    /**
+     * Creates the schema SDK object mapper, which already includes the JSR-310 and JDK 8 modules, and applies the
+     * <code>spring.jackson.serialization</code> and <code>spring.jackson.deserialization</code> features to it, e.g.
+     * to indent output during development. The Afterburner module replaces reflection with generated bytecode when
+     * data points and other beans are serialized and deserialized.
+     */
+    @Bean
+    public ObjectMapper objectMapper(JacksonProperties jacksonProperties) {
+
+        ObjectMapper objectMapper = newObjectMapper();
+
+        objectMapper.registerModule(new AfterburnerModule());
+
+        jacksonProperties.getSerialization().forEach(objectMapper::configure);
+        jacksonProperties.getDeserialization().forEach(objectMapper::configure);
+
+        return objectMapper;
+    }
+}
@@ -0,0 +1,56 @@
+/*
+ * Copyright 2017 Open mHealth
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.openmhealth.shimmer.common.configuration;
+
+import org.apache.http.HttpException;
+import org.apache.http.HttpHost;
+import org.apache.http.HttpRequest;
+import org.apache.http.conn.routing.HttpRoute;
+import org.apache.http.conn.routing.HttpRoutePlanner;
+import org.apache.http.protocol.HttpContext;
+
+import java.net.URI;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+
+/**
+ * A route planner that connects to a provider simulator over plain HTTP regardless of the data provider a request is
+ * addressed to. Since the route planner only changes the connection, the request line and the {@code Host} header
+ * still identify the data provider, which is what the simulator uses to decide how to respond.
+ */
+public class ProviderSimulatorRoutePlanner implements HttpRoutePlanner {
+
+    private final HttpRoute simulatorRoute;
+
+    public ProviderSimulatorRoutePlanner(URI simulatorUri) {
+
+        checkNotNull(simulatorUri);
+        checkArgument("http".equals(simulatorUri.getScheme()), "The provider simulator must be served over HTTP.");
+        checkArgument(simulatorUri.getPort() != -1, "The port of the provider simulator hasn't been specified.");
+
+        this.simulatorRoute = new HttpRoute(new HttpHost(simulatorUri.getHost(), simulatorUri.getPort(), "http"));
+    }
+
+    @Override
+    public HttpRoute determineRoute(HttpHost target, HttpRequest request, HttpContext context)
+            throws HttpException {
+
+        return simulatorRoute;
+    }
+}
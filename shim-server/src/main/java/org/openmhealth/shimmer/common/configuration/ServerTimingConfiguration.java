@@ -0,0 +1,60 @@
+/*
+ * Copyright 2017 Open mHealth
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.openmhealth.shimmer.common.configuration;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openmhealth.shimmer.common.timing.RequestTimingFilter;
+import org.openmhealth.shimmer.common.timing.ServerTimingMappingJackson2HttpMessageConverter;
+import org.openmhealth.shimmer.common.timing.StartupTimingRecorder;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+
+/**
+ * A configuration that collects per-request phase timings on data requests and reports them to clients in a
+ * <code>Server-Timing</code> response header. It also records the time it took the server to become ready.
+ */
+@Configuration
+public class ServerTimingConfiguration {
+
+    @Bean
+    public StartupTimingRecorder startupTimingRecorder() {
+
+        return new StartupTimingRecorder();
+    }
+
+    @Bean
+    public FilterRegistrationBean requestTimingFilterRegistration() {
+
+        FilterRegistrationBean registration = new FilterRegistrationBean(new RequestTimingFilter());
+
+        registration.addUrlPatterns("/data/*");
+
+        return registration;
+    }
+
+    /**
+     * This converter replaces the default JSON converter registered by Spring Boot.
+     */
+    @Bean
+    public ServerTimingMappingJackson2HttpMessageConverter mappingJackson2HttpMessageConverter(
+            ObjectMapper objectMapper) {
+
+        return new ServerTimingMappingJackson2HttpMessageConverter(objectMapper);
+    }
+}
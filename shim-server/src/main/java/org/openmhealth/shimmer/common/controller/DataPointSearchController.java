@@ -33,6 +33,8 @@ import org.springframework.web.bind.annotation.RestController;
 import javax.validation.Validator;
 import java.time.OffsetDateTime;
 
+import static org.openmhealth.shimmer.common.configuration.BinaryFormatConfiguration.APPLICATION_CBOR_VALUE;
+import static org.openmhealth.shimmer.common.configuration.BinaryFormatConfiguration.APPLICATION_SMILE_VALUE;
 import static org.springframework.format.annotation.DateTimeFormat.ISO.DATE_TIME;
 import static org.springframework.http.MediaType.APPLICATION_JSON_VALUE;
 import static org.springframework.http.ResponseEntity.badRequest;
@@ -81,7 +83,8 @@ public class DataPointSearchController {
      * @param createdBefore the latest creation timestamp of the data points to return, exclusive
      * @return a list of matching data points
      */
-    @RequestMapping(value = "/dataPoints", method = GET, produces = APPLICATION_JSON_VALUE)
+    @RequestMapping(value = "/dataPoints", method = GET,
+            produces = {APPLICATION_JSON_VALUE, APPLICATION_SMILE_VALUE, APPLICATION_CBOR_VALUE})
     public ResponseEntity<DataPointSearchResult> findDataPoints(
             @RequestParam(value = SCHEMA_NAMESPACE_PARAMETER) final String schemaNamespace,
             @RequestParam(value = SCHEMA_NAME_PARAMETER) final String schemaName,
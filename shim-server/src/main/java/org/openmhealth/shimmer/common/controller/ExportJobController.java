@@ -0,0 +1,159 @@
+/*
+ * Copyright 2017 Open mHealth
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.openmhealth.shimmer.common.controller;
+
+import org.openmhealth.shimmer.common.domain.ExportJob;
+import org.openmhealth.shimmer.common.service.ExportFileStore;
+import org.openmhealth.shimmer.common.service.ExportJobService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.IOException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Optional;
+
+import static org.openmhealth.shimmer.common.domain.ExportJobStatus.COMPLETED;
+import static org.springframework.format.annotation.DateTimeFormat.ISO.DATE;
+import static org.springframework.http.HttpHeaders.CONTENT_DISPOSITION;
+import static org.springframework.http.HttpStatus.CONFLICT;
+import static org.springframework.http.MediaType.APPLICATION_JSON_VALUE;
+import static org.springframework.http.ResponseEntity.notFound;
+import static org.springframework.http.ResponseEntity.ok;
+import static org.springframework.http.ResponseEntity.status;
+import static org.springframework.web.bind.annotation.RequestMethod.DELETE;
+import static org.springframework.web.bind.annotation.RequestMethod.GET;
+import static org.springframework.web.bind.annotation.RequestMethod.POST;
+
+
+/**
+ * Endpoints for bulk export jobs, which export the data of many users of a shim to a single gzip-compressed
+ * newline-delimited JSON file.
+ */
+@RestController
+public class ExportJobController {
+
+    public static final MediaType EXPORT_FILE_MEDIA_TYPE = MediaType.valueOf("application/gzip");
+
+    @Autowired
+    private ExportJobService exportJobService;
+
+    @Autowired
+    private ExportFileStore exportFileStore;
+
+
+    /**
+     * Submits an export job.
+     *
+     * @param shim the key of the shim
+     * @param dataTypeKeys the keys of the data types to export
+     * @param usernames the users to export, or every user that has authorized the shim if not specified
+     * @return the submitted job
+     */
+    @RequestMapping(value = "/exports", method = POST, produces = APPLICATION_JSON_VALUE)
+    public ExportJob submitJob(
+            @RequestParam(value = "shim") String shim,
+            @RequestParam(value = "dataTypes") List<String> dataTypeKeys,
+            @RequestParam(value = "usernames", required = false) List<String> usernames,
+            @RequestParam(value = "normalize", defaultValue = "true") boolean normalize,
+            @RequestParam(value = "dateStart", required = false) @DateTimeFormat(iso = DATE) LocalDate dateStart,
+            @RequestParam(value = "dateEnd", required = false) @DateTimeFormat(iso = DATE) LocalDate dateEnd) {
+
+        ExportJob job = new ExportJob();
+
+        job.setShimKey(shim);
+        job.setDataTypeKeys(new ArrayList<>(new LinkedHashSet<>(dataTypeKeys)));
+        job.setNormalize(normalize);
+        job.setStartDate(dateStart);
+        job.setEndDate(dateEnd);
+
+        if (usernames != null) {
+            job.setUsernames(new ArrayList<>(new LinkedHashSet<>(usernames)));
+        }
+
+        return exportJobService.submit(job);
+    }
+
+    /**
+     * @param jobId the identifier of the job
+     * @return the job, including its progress
+     */
+    @RequestMapping(value = "/exports/{jobId}", method = GET, produces = APPLICATION_JSON_VALUE)
+    public ResponseEntity<ExportJob> findJob(@PathVariable("jobId") String jobId) {
+
+        return asResponseEntity(exportJobService.findJob(jobId));
+    }
+
+    /**
+     * Cancels a job that hasn't completed yet.
+     *
+     * @param jobId the identifier of the job
+     * @return the job
+     */
+    @RequestMapping(value = "/exports/{jobId}", method = DELETE, produces = APPLICATION_JSON_VALUE)
+    public ResponseEntity<ExportJob> cancelJob(@PathVariable("jobId") String jobId) {
+
+        return asResponseEntity(exportJobService.cancel(jobId));
+    }
+
+    /**
+     * Downloads the export file of a completed job. If any of the part files of the job is missing, e.g. because the
+     * export directory isn't shared by the instance that wrote it, the export file is reported as not found instead of
+     * being downloaded partially.
+     *
+     * @param jobId the identifier of the job
+     * @return the export file
+     */
+    @RequestMapping(value = "/exports/{jobId}/file", method = GET)
+    public ResponseEntity<StreamingResponseBody> downloadFile(@PathVariable("jobId") String jobId)
+            throws IOException {
+
+        Optional<ExportJob> job = exportJobService.findJob(jobId);
+
+        if (!job.isPresent()) {
+            return notFound().build();
+        }
+
+        if (job.get().getStatus() != COMPLETED) {
+            return status(CONFLICT).build();
+        }
+
+        if (!exportJobService.hasAllParts(jobId)) {
+            return notFound().build();
+        }
+
+        return ok()
+                .contentType(EXPORT_FILE_MEDIA_TYPE)
+                .header(CONTENT_DISPOSITION, "attachment; filename=\"" + jobId + ".ndjson.gz\"")
+                .body(outputStream -> exportFileStore.writeExportFile(jobId, outputStream));
+    }
+
+    private ResponseEntity<ExportJob> asResponseEntity(Optional<ExportJob> job) {
+
+        return job.map(ResponseEntity::ok).orElseGet(() -> notFound().build());
+    }
+}
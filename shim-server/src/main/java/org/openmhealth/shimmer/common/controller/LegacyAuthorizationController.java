@@ -58,43 +58,50 @@ public class LegacyAuthorizationController {
 
     private static final Logger logger = LoggerFactory.getLogger(LegacyAuthorizationController.class);
 
+    private static final String DEFAULT_AUTHORIZATIONS_LIMIT = "1000";
+    private static final int MAXIMUM_AUTHORIZATIONS_LIMIT = 10_000;
+
     @Autowired
     private AccessParametersRepo accessParametersRepo;
 
     @Autowired
-    private AuthorizationRequestParametersRepo authorizationRequestParametersRepo;
+    private AuthorizationRequestParametersStore authorizationRequestParametersStore;
 
     @Autowired
     private ShimRegistry shimRegistry;
 
 
     /**
-     * Retrieve access parameters for the given username/fragment.
+     * Retrieve the authorizations of users whose usernames start with, or contain, the given username, sorted by
+     * username.
      *
-     * @param username username fragment to search.
-     * @return List of access parameters.
+     * @param username username prefix or substring to search.
+     * @param match 'prefix' to find usernames that start with the given username, which is fast on large collections,
+     * or 'substring' to find usernames that contain it.
+     * @param after the last username of the previous page, if any.
+     * @param limit the maximum number of users to return.
+     * @return List of user authorizations.
      */
     @RequestMapping(value = "authorizations", produces = APPLICATION_JSON_VALUE)
-    public List<Map<String, Object>> authorizations(@RequestParam(value = "username") String username)
+    public ResponseEntity<List<UserAuthorizations>> authorizations(
+            @RequestParam(value = "username") String username,
+            @RequestParam(value = "match", defaultValue = "prefix") String match,
+            @RequestParam(value = "after", required = false) String afterUsername,
+            @RequestParam(value = "limit", defaultValue = DEFAULT_AUTHORIZATIONS_LIMIT) int limit)
             throws ShimException {
 
-        List<AccessParameters> accessParameters = accessParametersRepo.findAllByUsernameLike(username);
-
-        List<Map<String, Object>> results = new ArrayList<>();
-        Map<String, Set<String>> auths = new HashMap<>();
-        for (AccessParameters accessParameter : accessParameters) {
-            if (!auths.containsKey(accessParameter.getUsername())) {
-                auths.put(accessParameter.getUsername(), new HashSet<>());
-            }
-            auths.get(accessParameter.getUsername()).add(accessParameter.getShimKey());
+        if (limit <= 0 || limit > MAXIMUM_AUTHORIZATIONS_LIMIT) {
+            return badRequest().build();
         }
-        for (final String uid : auths.keySet()) {
-            Map<String, Object> row = new HashMap<>();
-            row.put("username", uid);
-            row.put("auths", auths.get(uid));
-            results.add(row);
+
+        switch (match) {
+            case "prefix":
+                return ok(accessParametersRepo.findAuthorizationsByUsernamePrefix(username, afterUsername, limit));
+            case "substring":
+                return ok(accessParametersRepo.findAuthorizationsByUsernameSubstring(username, afterUsername, limit));
+            default:
+                return badRequest().build();
         }
-        return results;
     }
 
     /**
@@ -126,7 +133,7 @@ public class LegacyAuthorizationController {
 
         authorizationRequestParameters.setUsername(username);
 
-        return authorizationRequestParametersRepo.save(authorizationRequestParameters);
+        return authorizationRequestParametersStore.save(authorizationRequestParameters);
     }
 
     /**
@@ -167,7 +174,7 @@ public class LegacyAuthorizationController {
 
         logger.debug("A redirect has been received for shim '{}' with state key '{}'.", shimKey, stateKey);
 
-        AuthorizationRequestParameters authParams = authorizationRequestParametersRepo.findByStateKey(stateKey);
+        AuthorizationRequestParameters authParams = authorizationRequestParametersStore.findByStateKey(stateKey);
 
         if (authParams == null) {
             logger.warn(
@@ -17,18 +17,31 @@
 package org.openmhealth.shimmer.common.controller;
 
 import org.openmhealth.shim.*;
+import org.openmhealth.shim.common.mapper.IntradayTimeSeriesRollup;
+import org.openmhealth.shim.common.timing.RequestTimingContext;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.data.domain.Sort;
 import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.web.bind.ServletRequestBindingException;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
+import java.time.Duration;
 import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
 
 import static java.time.ZoneOffset.UTC;
+import static org.openmhealth.shim.common.timing.RequestTimingPhase.ACCESS_PARAMETER_LOOKUP;
+import static org.openmhealth.shimmer.common.configuration.BinaryFormatConfiguration.APPLICATION_CBOR_VALUE;
+import static org.openmhealth.shimmer.common.configuration.BinaryFormatConfiguration.APPLICATION_SMILE_VALUE;
 import static org.springframework.http.MediaType.APPLICATION_JSON_VALUE;
 
 
@@ -54,22 +67,139 @@ public class LegacyDataPointSearchController {
      * TODO: finish javadoc!
      * @return The shim data response wrapper with data from the shim.
      */
-    @RequestMapping(value = "/data/{shim}/{dataType}", produces = APPLICATION_JSON_VALUE)
+    @RequestMapping(value = "/data/{shim}/{dataType}",
+            produces = {APPLICATION_JSON_VALUE, APPLICATION_SMILE_VALUE, APPLICATION_CBOR_VALUE})
     public ShimDataResponse data(
             @RequestParam(value = "username") String username,
             @PathVariable("shim") String shim,
             @PathVariable("dataType") String dataTypeKey,
             @RequestParam(value = "normalize", defaultValue = "true") boolean normalize,
+            @RequestParam(value = "columnar", defaultValue = "false") boolean columnarTimeSeries,
+            @RequestParam(value = "granularity", defaultValue = "") String rollupGranularity,
+            @RequestParam(value = "aggregate", defaultValue = "sum") String rollupAggregate,
             @RequestParam(value = "dateStart", defaultValue = "") String dateStart,
             @RequestParam(value = "dateEnd", defaultValue = "") String dateEnd)
-            throws ShimException {
+            throws ShimException, ServletRequestBindingException {
 
         setPassThroughAuthentication(username, shim);
 
+        AccessParameters accessParameters = findAccessParameters(username, shim);
+
+        return shimRegistry.getShim(shim).getData(newShimDataRequest(dataTypeKey, normalize, columnarTimeSeries,
+                newRollup(rollupGranularity, rollupAggregate), dateStart, dateEnd, accessParameters));
+    }
+
+    /**
+     * Endpoint for retrieving several data types from a shim in a single request. Data types that are served by the
+     * same data provider endpoint share a single call to that endpoint, whose response is mapped once per data type.
+     *
+     * @param username the user to retrieve data for
+     * @param shim the key of the shim
+     * @param dataTypeKeys the keys of the data types to retrieve
+     * @param columnarTimeSeries whether intraday time series are returned in a compact columnar representation
+     * @param rollupGranularity the granularity to roll intraday time series up to, e.g. PT1H, if any
+     * @param rollupAggregate the aggregate function used to roll intraday time series up
+     * @return the shim data responses, keyed by data type, in the order the data types were requested
+     */
+    @RequestMapping(value = "/data/{shim}",
+            produces = {APPLICATION_JSON_VALUE, APPLICATION_SMILE_VALUE, APPLICATION_CBOR_VALUE})
+    public Map<String, ShimDataResponse> data(
+            @RequestParam(value = "username") String username,
+            @PathVariable("shim") String shim,
+            @RequestParam(value = "dataTypes") List<String> dataTypeKeys,
+            @RequestParam(value = "normalize", defaultValue = "true") boolean normalize,
+            @RequestParam(value = "columnar", defaultValue = "false") boolean columnarTimeSeries,
+            @RequestParam(value = "granularity", defaultValue = "") String rollupGranularity,
+            @RequestParam(value = "aggregate", defaultValue = "sum") String rollupAggregate,
+            @RequestParam(value = "dateStart", defaultValue = "") String dateStart,
+            @RequestParam(value = "dateEnd", defaultValue = "") String dateEnd)
+            throws ShimException, ServletRequestBindingException {
+
+        setPassThroughAuthentication(username, shim);
+
+        AccessParameters accessParameters = findAccessParameters(username, shim);
+        Shim dataShim = shimRegistry.getShim(shim);
+
+        IntradayTimeSeriesRollup rollup = newRollup(rollupGranularity, rollupAggregate);
+        List<ShimDataRequest> shimDataRequests = new ArrayList<>();
+
+        for (String dataTypeKey : new LinkedHashSet<>(dataTypeKeys)) {
+            shimDataRequests.add(newShimDataRequest(
+                    dataTypeKey, normalize, columnarTimeSeries, rollup, dateStart, dateEnd, accessParameters));
+        }
+
+        UpstreamResponseSharingContext.start();
+
+        try {
+            return dataShim.getData(shimDataRequests);
+        }
+        finally {
+            UpstreamResponseSharingContext.clear();
+        }
+    }
+
+    private AccessParameters findAccessParameters(String username, String shim) throws ShimException {
+
+        AccessParameters accessParameters = RequestTimingContext.time(ACCESS_PARAMETER_LOOKUP,
+                () -> accessParametersRepo.findByUsernameAndShimKey(
+                        username, shim, new Sort(Sort.Direction.DESC, "dateCreated")));
+
+        if (accessParameters == null) {
+            throw new ShimException("User '" + username + "' has not authorized shim: '" + shim + "'");
+        }
+
+        return accessParameters;
+    }
+
+    /**
+     * @param granularity the granularity of a rollup as an ISO 8601 duration, e.g. PT15M or PT1H, or an empty string
+     * if no rollup is requested
+     * @param aggregate the aggregate function of the rollup, i.e. sum, min, max or mean
+     * @throws ServletRequestBindingException if either parameter is invalid, which is answered with a 400 response
+     */
+    private IntradayTimeSeriesRollup newRollup(String granularity, String aggregate)
+            throws ServletRequestBindingException {
+
+        if (granularity.isEmpty()) {
+            return null;
+        }
+
+        Duration rollupGranularity;
+        IntradayTimeSeriesRollup.Aggregate rollupAggregate;
+
+        try {
+            rollupGranularity = Duration.parse(granularity);
+        }
+        catch (DateTimeParseException e) {
+            throw new ServletRequestBindingException(String.format(
+                    "The granularity '%s' isn't an ISO 8601 duration, e.g. PT15M or PT1H.", granularity));
+        }
+
+        try {
+            rollupAggregate = IntradayTimeSeriesRollup.Aggregate.valueOf(aggregate.toUpperCase(Locale.ROOT));
+        }
+        catch (IllegalArgumentException e) {
+            throw new ServletRequestBindingException(String.format(
+                    "The aggregate '%s' isn't one of sum, min, max or mean.", aggregate));
+        }
+
+        try {
+            return new IntradayTimeSeriesRollup(rollupGranularity, rollupAggregate);
+        }
+        catch (IllegalArgumentException e) {
+            throw new ServletRequestBindingException(e.getMessage());
+        }
+    }
+
+    private ShimDataRequest newShimDataRequest(String dataTypeKey, boolean normalize, boolean columnarTimeSeries,
+            IntradayTimeSeriesRollup rollup, String dateStart, String dateEnd, AccessParameters accessParameters) {
+
         ShimDataRequest shimDataRequest = new ShimDataRequest();
 
         shimDataRequest.setDataTypeKey(dataTypeKey);
         shimDataRequest.setNormalize(normalize);
+        shimDataRequest.setColumnarTimeSeries(columnarTimeSeries);
+        shimDataRequest.setRollup(rollup);
 
         if (!dateStart.isEmpty()) {
             shimDataRequest.setStartDateTime(LocalDate.parse(dateStart).atStartOfDay().atOffset(UTC));
@@ -78,15 +208,9 @@ public class LegacyDataPointSearchController {
             shimDataRequest.setEndDateTime(LocalDate.parse(dateEnd).atStartOfDay().atOffset(UTC));
         }
 
-        AccessParameters accessParameters = accessParametersRepo.findByUsernameAndShimKey(
-                username, shim, new Sort(Sort.Direction.DESC, "dateCreated"));
-
-        if (accessParameters == null) {
-            throw new ShimException("User '" + username + "' has not authorized shim: '" + shim + "'");
-        }
         shimDataRequest.setAccessParameters(accessParameters);
 
-        return shimRegistry.getShim(shim).getData(shimDataRequest);
+        return shimDataRequest;
     }
 
     /**
@@ -0,0 +1,49 @@
+/*
+ * Copyright 2017 Open mHealth
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.openmhealth.shimmer.common.domain;
+
+import org.springframework.data.annotation.Id;
+
+import java.time.Instant;
+
+
+/**
+ * A Shimmer instance that takes part in background work. An instance is live as long as it keeps sending heartbeats.
+ */
+public class ClusterNode {
+
+    @Id
+    private String id;
+
+    private Instant dateLastHeartbeat;
+
+    public String getId() {
+        return id;
+    }
+
+    public void setId(String id) {
+        this.id = id;
+    }
+
+    public Instant getDateLastHeartbeat() {
+        return dateLastHeartbeat;
+    }
+
+    public void setDateLastHeartbeat(Instant dateLastHeartbeat) {
+        this.dateLastHeartbeat = dateLastHeartbeat;
+    }
+}
@@ -16,11 +16,81 @@
 
 package org.openmhealth.shimmer.common.domain;
 
+import com.google.common.collect.Range;
+import org.openmhealth.shimmer.common.configuration.EndpointSettings;
+
+import java.time.OffsetDateTime;
+import java.util.Optional;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+
 /**
- * FIXME
+ * A request for data points made to a specific endpoint of a third-party API. The request entity that is sent to the
+ * endpoint is assembled from this request by a chain of
+ * {@link org.openmhealth.shimmer.common.service.RequestEntityAssembler} objects.
  *
  * @author Emerson Farrugia
  */
 public class DataPointRequest {
 
+    private EndpointSettings endpointSettings;
+    private Range<OffsetDateTime> effectiveDateTimeRange = Range.all();
+    private String accessToken;
+    private Long paginationOffset;
+
+
+    /**
+     * @param endpointSettings the settings of the endpoint to send the request to
+     */
+    public DataPointRequest(EndpointSettings endpointSettings) {
+
+        checkNotNull(endpointSettings);
+
+        this.endpointSettings = endpointSettings;
+    }
+
+    /**
+     * @return the settings of the endpoint to send the request to
+     */
+    public EndpointSettings getEndpointSettings() {
+        return endpointSettings;
+    }
+
+    /**
+     * @return the effective date time range of the requested data points, assumed to be left-closed, right-open
+     */
+    public Range<OffsetDateTime> getEffectiveDateTimeRange() {
+        return effectiveDateTimeRange;
+    }
+
+    public void setEffectiveDateTimeRange(Range<OffsetDateTime> effectiveDateTimeRange) {
+
+        checkNotNull(effectiveDateTimeRange);
+
+        this.effectiveDateTimeRange = effectiveDateTimeRange;
+    }
+
+    /**
+     * @return the access token used to authorize the request
+     */
+    public Optional<String> getAccessToken() {
+        return Optional.ofNullable(accessToken);
+    }
+
+    public void setAccessToken(String accessToken) {
+        this.accessToken = accessToken;
+    }
+
+    /**
+     * @return the pagination offset of the requested page, interpreted according to the pagination offset parameter
+     * of the endpoint
+     */
+    public Optional<Long> getPaginationOffset() {
+        return Optional.ofNullable(paginationOffset);
+    }
+
+    public void setPaginationOffset(Long paginationOffset) {
+        this.paginationOffset = paginationOffset;
+    }
 }
@@ -0,0 +1,116 @@
+/*
+ * Copyright 2017 Open mHealth
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.openmhealth.shimmer.common.domain;
+
+import org.springframework.data.annotation.Id;
+
+import java.time.LocalDateTime;
+import java.util.Optional;
+
+
+/**
+ * The outcome of exporting a single data type of a single user as part of an {@link ExportJob}. A successful
+ * checkpoint means the corresponding part of the export file has been written and won't be exported again if the job
+ * is resumed. A failed checkpoint is retried if the job is resumed.
+ */
+public class ExportCheckpoint {
+
+    @Id
+    private String id;
+
+    private String jobId;
+
+    private String username;
+
+    private String dataTypeKey;
+
+    private boolean successful;
+
+    private long recordCount;
+
+    private String errorMessage;
+
+    private LocalDateTime dateCreated = LocalDateTime.now();
+
+    public String getId() {
+        return id;
+    }
+
+    public void setId(String id) {
+        this.id = id;
+    }
+
+    public String getJobId() {
+        return jobId;
+    }
+
+    public void setJobId(String jobId) {
+        this.jobId = jobId;
+    }
+
+    public String getUsername() {
+        return username;
+    }
+
+    public void setUsername(String username) {
+        this.username = username;
+    }
+
+    public String getDataTypeKey() {
+        return dataTypeKey;
+    }
+
+    public void setDataTypeKey(String dataTypeKey) {
+        this.dataTypeKey = dataTypeKey;
+    }
+
+    public boolean isSuccessful() {
+        return successful;
+    }
+
+    public void setSuccessful(boolean successful) {
+        this.successful = successful;
+    }
+
+    /**
+     * @return the number of records written to the export file
+     */
+    public long getRecordCount() {
+        return recordCount;
+    }
+
+    public void setRecordCount(long recordCount) {
+        this.recordCount = recordCount;
+    }
+
+    public Optional<String> getErrorMessage() {
+        return Optional.ofNullable(errorMessage);
+    }
+
+    public void setErrorMessage(String errorMessage) {
+        this.errorMessage = errorMessage;
+    }
+
+    public LocalDateTime getDateCreated() {
+        return dateCreated;
+    }
+
+    public void setDateCreated(LocalDateTime dateCreated) {
+        this.dateCreated = dateCreated;
+    }
+}
@@ -0,0 +1,190 @@
+/*
+ * Copyright 2017 Open mHealth
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.openmhealth.shimmer.common.domain;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.annotation.Transient;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+
+/**
+ * A job that exports the data of many users of a shim to a file. The progress of a job is recorded in
+ * {@link ExportCheckpoint} documents, one per user and data type, so that a job can resume where it left off.
+ */
+public class ExportJob {
+
+    @Id
+    private String id;
+
+    private String shimKey;
+
+    private List<String> dataTypeKeys = new ArrayList<>();
+
+    private boolean normalize = true;
+
+    private LocalDate startDate;
+
+    private LocalDate endDate;
+
+    private List<String> usernames;
+
+    private ExportJobStatus status = ExportJobStatus.PENDING;
+
+    private Integer userCount;
+
+    private String errorMessage;
+
+    private LocalDateTime dateCreated = LocalDateTime.now();
+
+    private LocalDateTime dateCompleted;
+
+    @Transient
+    private Long exportedItemCount;
+
+    @Transient
+    private Long failedItemCount;
+
+    public String getId() {
+        return id;
+    }
+
+    public void setId(String id) {
+        this.id = id;
+    }
+
+    public String getShimKey() {
+        return shimKey;
+    }
+
+    public void setShimKey(String shimKey) {
+        this.shimKey = shimKey;
+    }
+
+    public List<String> getDataTypeKeys() {
+        return dataTypeKeys;
+    }
+
+    public void setDataTypeKeys(List<String> dataTypeKeys) {
+        this.dataTypeKeys = dataTypeKeys;
+    }
+
+    public boolean isNormalize() {
+        return normalize;
+    }
+
+    public void setNormalize(boolean normalize) {
+        this.normalize = normalize;
+    }
+
+    public Optional<LocalDate> getStartDate() {
+        return Optional.ofNullable(startDate);
+    }
+
+    public void setStartDate(LocalDate startDate) {
+        this.startDate = startDate;
+    }
+
+    public Optional<LocalDate> getEndDate() {
+        return Optional.ofNullable(endDate);
+    }
+
+    public void setEndDate(LocalDate endDate) {
+        this.endDate = endDate;
+    }
+
+    /**
+     * @return the users to export, or an empty optional to export every user that has authorized the shim
+     */
+    public Optional<List<String>> getUsernames() {
+        return Optional.ofNullable(usernames);
+    }
+
+    public void setUsernames(List<String> usernames) {
+        this.usernames = usernames;
+    }
+
+    public ExportJobStatus getStatus() {
+        return status;
+    }
+
+    public void setStatus(ExportJobStatus status) {
+        this.status = status;
+    }
+
+    /**
+     * @return the number of users the job visits, once they have been enumerated
+     */
+    public Optional<Integer> getUserCount() {
+        return Optional.ofNullable(userCount);
+    }
+
+    public void setUserCount(Integer userCount) {
+        this.userCount = userCount;
+    }
+
+    public Optional<String> getErrorMessage() {
+        return Optional.ofNullable(errorMessage);
+    }
+
+    public void setErrorMessage(String errorMessage) {
+        this.errorMessage = errorMessage;
+    }
+
+    public LocalDateTime getDateCreated() {
+        return dateCreated;
+    }
+
+    public void setDateCreated(LocalDateTime dateCreated) {
+        this.dateCreated = dateCreated;
+    }
+
+    public Optional<LocalDateTime> getDateCompleted() {
+        return Optional.ofNullable(dateCompleted);
+    }
+
+    public void setDateCompleted(LocalDateTime dateCompleted) {
+        this.dateCompleted = dateCompleted;
+    }
+
+    /**
+     * @return the number of user and data type pairs that have been exported, if known
+     */
+    public Optional<Long> getExportedItemCount() {
+        return Optional.ofNullable(exportedItemCount);
+    }
+
+    public void setExportedItemCount(Long exportedItemCount) {
+        this.exportedItemCount = exportedItemCount;
+    }
+
+    /**
+     * @return the number of user and data type pairs whose export failed, if known
+     */
+    public Optional<Long> getFailedItemCount() {
+        return Optional.ofNullable(failedItemCount);
+    }
+
+    public void setFailedItemCount(Long failedItemCount) {
+        this.failedItemCount = failedItemCount;
+    }
+}
@@ -0,0 +1,53 @@
+/*
+ * Copyright 2017 Open mHealth
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.openmhealth.shimmer.common.domain;
+
+/**
+ * The lifecycle states of an export job.
+ */
+public enum ExportJobStatus {
+
+    /**
+     * The job has been submitted but hasn't started yet.
+     */
+    PENDING,
+
+    /**
+     * The job is exporting data.
+     */
+    RUNNING,
+
+    /**
+     * The job has visited every user. Some data types of some users may still have failed, see the job's checkpoints.
+     */
+    COMPLETED,
+
+    /**
+     * The job was cancelled before it completed.
+     */
+    CANCELLED,
+
+    /**
+     * The job stopped because of an error that isn't specific to a user or data type.
+     */
+    FAILED;
+
+    public boolean isTerminal() {
+        return this == COMPLETED || this == CANCELLED || this == FAILED;
+    }
+}
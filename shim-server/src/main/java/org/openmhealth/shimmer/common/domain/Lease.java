@@ -0,0 +1,60 @@
+/*
+ * Copyright 2017 Open mHealth
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.openmhealth.shimmer.common.domain;
+
+import org.springframework.data.annotation.Id;
+
+import java.time.Instant;
+
+
+/**
+ * An exclusive, expiring claim of a Shimmer instance on a named piece of work. A lease that isn't renewed before it
+ * expires can be acquired by another instance.
+ */
+public class Lease {
+
+    @Id
+    private String id;
+
+    private String ownerNodeId;
+
+    private Instant dateExpires;
+
+    public String getId() {
+        return id;
+    }
+
+    public void setId(String id) {
+        this.id = id;
+    }
+
+    public String getOwnerNodeId() {
+        return ownerNodeId;
+    }
+
+    public void setOwnerNodeId(String ownerNodeId) {
+        this.ownerNodeId = ownerNodeId;
+    }
+
+    public Instant getDateExpires() {
+        return dateExpires;
+    }
+
+    public void setDateExpires(Instant dateExpires) {
+        this.dateExpires = dateExpires;
+    }
+}
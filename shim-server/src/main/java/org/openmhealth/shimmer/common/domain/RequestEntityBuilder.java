@@ -16,12 +16,19 @@
 
 package org.openmhealth.shimmer.common.domain;
 
+import org.openmhealth.shimmer.common.domain.parameters.RequestParameter;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpMethod;
 import org.springframework.http.RequestEntity;
 import org.springframework.util.LinkedMultiValueMap;
 import org.springframework.util.MultiValueMap;
+import org.springframework.web.util.UriComponentsBuilder;
 import org.springframework.web.util.UriTemplate;
 
+import java.net.URI;
+import java.util.HashMap;
+import java.util.Map;
+
 import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkNotNull;
 
@@ -38,6 +45,7 @@ public class RequestEntityBuilder {
     private HttpMethod httpMethod = HttpMethod.GET;
     private MultiValueMap<String, String> headers = new LinkedMultiValueMap<>();
     private MultiValueMap<String, String> queryParameters = new LinkedMultiValueMap<>();
+    private Map<String, String> pathParameters = new HashMap<>();
 
 
     /**
@@ -89,6 +97,47 @@ public class RequestEntityBuilder {
         addToMultiValueMap(queryParameters, name, value);
     }
 
+    /**
+     * @param name the name of the URI template variable to set
+     * @param value the value of the variable
+     */
+    public void setPathParameter(String name, String value) {
+
+        checkNotNull(name);
+        checkArgument(!name.isEmpty());
+        checkNotNull(value);
+        checkArgument(!value.isEmpty());
+
+        pathParameters.put(name, value);
+    }
+
+    /**
+     * Adds a parameter to the part of the request entity that the parameter is located in.
+     *
+     * @param parameter the parameter to add
+     * @param value the value of the parameter
+     */
+    public void addParameter(RequestParameter<?> parameter, String value) {
+
+        checkNotNull(parameter);
+        checkNotNull(parameter.getRequestParameterLocation());
+
+        switch (parameter.getRequestParameterLocation()) {
+            case QUERY:
+                addQueryParameter(parameter.getParameterName(), value);
+                break;
+            case HEADER:
+                addHeader(parameter.getParameterName(), value);
+                break;
+            case PATH:
+                setPathParameter(parameter.getParameterName(), value);
+                break;
+            default:
+                throw new UnsupportedOperationException(String.format(
+                        "Parameters located in '%s' aren't supported.", parameter.getRequestParameterLocation()));
+        }
+    }
+
     private void addToMultiValueMap(MultiValueMap<String, String> map, String key, String value) {
 
         checkNotNull(key);
@@ -104,7 +153,22 @@ public class RequestEntityBuilder {
      */
     public RequestEntity<?> build() {
 
-        // FIXME implement me
-        return null;
+        URI uri = uriTemplate.expand(pathParameters);
+
+        if (!queryParameters.isEmpty()) {
+            String encodedQuery = UriComponentsBuilder.newInstance()
+                    .queryParams(queryParameters)
+                    .build()
+                    .encode()
+                    .getQuery();
+
+            // the expanded URI is already encoded, so only the query parameters are encoded here
+            uri = UriComponentsBuilder.fromUri(uri).query(encodedQuery).build(true).toUri();
+        }
+
+        HttpHeaders httpHeaders = new HttpHeaders();
+        httpHeaders.putAll(headers);
+
+        return new RequestEntity<>(httpHeaders, httpMethod, uri);
     }
 }
@@ -28,6 +28,7 @@ public class DateTimeRequestParameter extends RequestParameter<OffsetDateTime> {
     // TODO unix time?
     // TODO how do we parse?
     private DateTimeFormatter dateTimeFormat;
+    private boolean inclusiveUpperBound;
 
     public DateTimeFormatter getDateTimeFormat() {
         return dateTimeFormat;
@@ -36,4 +37,16 @@ public class DateTimeRequestParameter extends RequestParameter<OffsetDateTime> {
     public void setDateTimeFormat(DateTimeFormatter dateTimeFormat) {
         this.dateTimeFormat = dateTimeFormat;
     }
+
+    /**
+     * @return true if this parameter sets the upper bound of a range of whole days that the API treats as inclusive,
+     * in which case the parameter is set to the last day in the range instead of the day after it
+     */
+    public boolean isInclusiveUpperBound() {
+        return inclusiveUpperBound;
+    }
+
+    public void setInclusiveUpperBound(boolean inclusiveUpperBound) {
+        this.inclusiveUpperBound = inclusiveUpperBound;
+    }
 }
@@ -0,0 +1,65 @@
+/*
+ * Copyright 2017 Open mHealth
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.openmhealth.shimmer.common.pagination;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.google.common.base.Splitter;
+
+import java.net.URI;
+import java.util.Optional;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+
+/**
+ * Finds the next page by following a link embedded in the current page, e.g. <code>$.data.links.next</code>. Relative
+ * links are resolved against the URI of the current page.
+ */
+public class NextLinkPageUriResolver implements NextPageUriResolver {
+
+    private final Iterable<String> nextLinkPath;
+
+
+    /**
+     * @param nextLinkPath the dot-separated path to the link in a page, e.g. "data.links.next"
+     */
+    public NextLinkPageUriResolver(String nextLinkPath) {
+
+        checkNotNull(nextLinkPath);
+
+        this.nextLinkPath = Splitter.on('.').split(nextLinkPath);
+    }
+
+    @Override
+    public Optional<URI> getNextPageUri(URI pageUri, JsonNode page) {
+
+        checkNotNull(pageUri);
+        checkNotNull(page);
+
+        JsonNode nextLinkNode = page;
+
+        for (String fieldName : nextLinkPath) {
+            nextLinkNode = nextLinkNode.path(fieldName);
+        }
+
+        if (!nextLinkNode.isTextual() || nextLinkNode.textValue().isEmpty()) {
+            return Optional.empty();
+        }
+
+        return Optional.of(pageUri.resolve(nextLinkNode.textValue()));
+    }
+}
@@ -0,0 +1,36 @@
+/*
+ * Copyright 2017 Open mHealth
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.openmhealth.shimmer.common.pagination;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+import java.net.URI;
+import java.util.Optional;
+
+
+/**
+ * A strategy for finding the next page of a paginated endpoint response.
+ */
+public interface NextPageUriResolver {
+
+    /**
+     * @param pageUri the URI the current page was retrieved from
+     * @param page the current page
+     * @return the URI of the next page, or an empty optional if the current page is the last one
+     */
+    Optional<URI> getNextPageUri(URI pageUri, JsonNode page);
+}
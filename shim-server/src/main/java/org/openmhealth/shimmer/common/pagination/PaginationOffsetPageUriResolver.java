@@ -0,0 +1,105 @@
+/*
+ * Copyright 2017 Open mHealth
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.openmhealth.shimmer.common.pagination;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.google.common.base.Splitter;
+import org.openmhealth.shimmer.common.domain.parameters.PaginationOffsetNumberRequestParameter;
+import org.springframework.web.util.UriComponentsBuilder;
+
+import java.net.URI;
+import java.util.Optional;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static org.openmhealth.shimmer.common.domain.parameters.PaginationOffsetNumberRequestParameter.PaginationOffsetType.PAGE;
+
+
+/**
+ * Finds the next page by advancing a pagination offset query parameter. A {@link
+ * PaginationOffsetNumberRequestParameter.PaginationOffsetType#PAGE page} offset is advanced by one, and a {@link
+ * PaginationOffsetNumberRequestParameter.PaginationOffsetType#RAW raw} offset is advanced by the number of items in
+ * the current page. A page with fewer items than the page size is taken to be the last page.
+ */
+public class PaginationOffsetPageUriResolver implements NextPageUriResolver {
+
+    private final PaginationOffsetNumberRequestParameter offsetParameter;
+    private final long pageSize;
+    private final Iterable<String> itemsPath;
+
+
+    /**
+     * @param offsetParameter the query parameter that holds the offset
+     * @param pageSize the number of items requested per page
+     * @param itemsPath the dot-separated path to the array of items in a page, e.g. "data.items"
+     */
+    public PaginationOffsetPageUriResolver(PaginationOffsetNumberRequestParameter offsetParameter, long pageSize,
+            String itemsPath) {
+
+        checkNotNull(offsetParameter);
+        checkNotNull(offsetParameter.getParameterName(), "The offset parameter name hasn't been specified.");
+        checkNotNull(offsetParameter.getPaginationOffsetType(), "The offset type hasn't been specified.");
+        checkArgument(pageSize > 0, "The page size must be positive.");
+        checkNotNull(itemsPath);
+
+        this.offsetParameter = offsetParameter;
+        this.pageSize = pageSize;
+        this.itemsPath = Splitter.on('.').split(itemsPath);
+    }
+
+    @Override
+    public Optional<URI> getNextPageUri(URI pageUri, JsonNode page) {
+
+        checkNotNull(pageUri);
+        checkNotNull(page);
+
+        JsonNode itemsNode = page;
+
+        for (String fieldName : itemsPath) {
+            itemsNode = itemsNode.path(fieldName);
+        }
+
+        if (itemsNode.size() < pageSize) {
+            return Optional.empty();
+        }
+
+        long nextOffset = offsetParameter.getPaginationOffsetType() == PAGE
+                ? getOffset(pageUri) + 1
+                : getOffset(pageUri) + itemsNode.size();
+
+        return Optional.of(UriComponentsBuilder.fromUri(pageUri)
+                .replaceQueryParam(offsetParameter.getParameterName(), nextOffset)
+                .build(true)
+                .toUri());
+    }
+
+    /**
+     * @return the offset of the page at the specified URI, falling back to the default value of the parameter
+     */
+    private long getOffset(URI pageUri) {
+
+        String offset = UriComponentsBuilder.fromUri(pageUri).build()
+                .getQueryParams()
+                .getFirst(offsetParameter.getParameterName());
+
+        if (offset != null) {
+            return Long.parseLong(offset);
+        }
+
+        return offsetParameter.getDefaultValue().map(Double::longValue).orElse(0L);
+    }
+}
@@ -0,0 +1,35 @@
+/*
+ * Copyright 2017 Open mHealth
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.openmhealth.shimmer.common.repository;
+
+import org.openmhealth.shimmer.common.domain.ExportCheckpoint;
+import org.springframework.data.mongodb.repository.MongoRepository;
+
+import java.util.List;
+
+
+public interface ExportCheckpointRepo extends MongoRepository<ExportCheckpoint, String> {
+
+    ExportCheckpoint findByJobIdAndUsernameAndDataTypeKey(String jobId, String username, String dataTypeKey);
+
+    List<ExportCheckpoint> findAllByJobIdAndUsername(String jobId, String username);
+
+    List<ExportCheckpoint> findAllByJobIdAndSuccessful(String jobId, boolean successful);
+
+    long countByJobIdAndSuccessful(String jobId, boolean successful);
+}
@@ -0,0 +1,31 @@
+/*
+ * Copyright 2017 Open mHealth
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.openmhealth.shimmer.common.repository;
+
+import org.openmhealth.shimmer.common.domain.ExportJob;
+import org.openmhealth.shimmer.common.domain.ExportJobStatus;
+import org.springframework.data.mongodb.repository.MongoRepository;
+
+import java.util.Collection;
+import java.util.List;
+
+
+public interface ExportJobRepo extends MongoRepository<ExportJob, String> {
+
+    List<ExportJob> findAllByStatusIn(Collection<ExportJobStatus> statuses);
+}
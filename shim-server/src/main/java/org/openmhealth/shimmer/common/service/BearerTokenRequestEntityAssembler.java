@@ -0,0 +1,39 @@
+/*
+ * Copyright 2017 Open mHealth
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.openmhealth.shimmer.common.service;
+
+import org.openmhealth.shimmer.common.domain.DataPointRequest;
+import org.openmhealth.shimmer.common.domain.RequestEntityBuilder;
+import org.springframework.stereotype.Component;
+
+import static org.springframework.http.HttpHeaders.AUTHORIZATION;
+
+
+/**
+ * Adds the access token of a data point request to the request entity as an OAuth 2.0 bearer token.
+ */
+@Component
+public class BearerTokenRequestEntityAssembler implements RequestEntityAssembler {
+
+    @Override
+    public RequestEntityBuilder assemble(RequestEntityBuilder builder, DataPointRequest request) {
+
+        request.getAccessToken().ifPresent(accessToken -> builder.addHeader(AUTHORIZATION, "Bearer " + accessToken));
+
+        return builder;
+    }
+}
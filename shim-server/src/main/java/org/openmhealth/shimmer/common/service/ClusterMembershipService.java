@@ -0,0 +1,198 @@
+/*
+ * Copyright 2017 Open mHealth
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.openmhealth.shimmer.common.service;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.openmhealth.shimmer.common.domain.ClusterNode;
+import org.openmhealth.shimmer.common.repository.ClusterNodeRepo;
+import org.openmhealth.shimmer.configuration.ClusterSettings;
+import org.slf4j.Logger;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.time.Instant;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static java.util.Collections.singleton;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static org.slf4j.LoggerFactory.getLogger;
+
+
+/**
+ * Tracks the live Shimmer instances that share a database and splits background work between them. Each instance
+ * sends a heartbeat to the database at a fixed interval and considers every instance with a recent heartbeat live.
+ * Keys of work, e.g. usernames or job identifiers, are assigned to live instances by a {@link ConsistentHashRing}, so
+ * that when an instance joins or leaves, only its share of the keys moves. When clustering is disabled, this instance
+ * owns every key.
+ */
+@Component
+public class ClusterMembershipService {
+
+    private static final Logger logger = getLogger(ClusterMembershipService.class);
+
+    private final ClusterSettings settings;
+    private final ClusterNodeRepo clusterNodeRepo;
+    private final LeaseService leaseService;
+    private final List<Runnable> heartbeatListeners = new CopyOnWriteArrayList<>();
+    private final ScheduledExecutorService heartbeatExecutorService;
+
+    private volatile ConsistentHashRing ring;
+
+
+    @Autowired
+    public ClusterMembershipService(ClusterSettings settings, ClusterNodeRepo clusterNodeRepo,
+            LeaseService leaseService) {
+
+        checkNotNull(settings);
+        checkNotNull(clusterNodeRepo);
+        checkNotNull(leaseService);
+        checkNotNull(settings.getNodeId(), "A node identifier hasn't been specified.");
+        checkArgument(settings.getHeartbeatIntervalInMillis() > 0, "The heartbeat interval must be positive.");
+        checkArgument(settings.getTimeToLiveInMillis() > settings.getHeartbeatIntervalInMillis(),
+                "The time to live must be longer than the heartbeat interval.");
+
+        this.settings = settings;
+        this.clusterNodeRepo = clusterNodeRepo;
+        this.leaseService = leaseService;
+        this.ring = new ConsistentHashRing(singleton(settings.getNodeId()), settings.getVirtualNodesPerNode());
+        this.heartbeatExecutorService = Executors.newSingleThreadScheduledExecutor(
+                new ThreadFactoryBuilder().setNameFormat("cluster-heartbeat").setDaemon(true).build());
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+
+        if (!settings.isEnabled()) {
+            return;
+        }
+
+        logger.info("Joining the cluster as node '{}'.", settings.getNodeId());
+
+        heartbeatExecutorService.scheduleWithFixedDelay(this::heartbeat, 0, settings.getHeartbeatIntervalInMillis(),
+                MILLISECONDS);
+    }
+
+    /**
+     * @return the identifier of this instance
+     */
+    public String getLocalNodeId() {
+        return settings.getNodeId();
+    }
+
+    /**
+     * @return the identifiers of the instances that were live at the last heartbeat, sorted
+     */
+    public Set<String> getLiveNodeIds() {
+        return ring.getNodeIds();
+    }
+
+    /**
+     * @param key the key of a piece of work, e.g. a username
+     * @return true if this instance is responsible for the work
+     */
+    public boolean isLocallyOwned(String key) {
+
+        checkNotNull(key);
+
+        return ring.getNodeId(key).equals(settings.getNodeId());
+    }
+
+    /**
+     * Registers a listener that is called after every heartbeat, once the live instances have been updated. Listeners
+     * can use it to pick up work that this instance has become responsible for.
+     *
+     * @param listener the listener, which is called on the heartbeat thread
+     */
+    public void addHeartbeatListener(Runnable listener) {
+
+        checkNotNull(listener);
+
+        heartbeatListeners.add(listener);
+    }
+
+    void heartbeat() {
+
+        try {
+            Instant now = Instant.now();
+
+            ClusterNode localNode = new ClusterNode();
+            localNode.setId(settings.getNodeId());
+            localNode.setDateLastHeartbeat(now);
+            clusterNodeRepo.save(localNode);
+
+            leaseService.renewHeldLeases();
+
+            Set<String> liveNodeIds = new TreeSet<>();
+            liveNodeIds.add(settings.getNodeId());
+
+            for (ClusterNode node : clusterNodeRepo
+                    .findAllByDateLastHeartbeatAfter(now.minusMillis(settings.getTimeToLiveInMillis()))) {
+                liveNodeIds.add(node.getId());
+            }
+
+            if (!liveNodeIds.equals(ring.getNodeIds())) {
+                logger.info("The live nodes have changed from {} to {}.", ring.getNodeIds(), liveNodeIds);
+                ring = new ConsistentHashRing(liveNodeIds, settings.getVirtualNodesPerNode());
+            }
+        }
+        catch (RuntimeException e) {
+            // the previous ring is kept, so work continues to be split the same way until the database is reachable
+            logger.warn("A heartbeat couldn't be sent.", e);
+            return;
+        }
+
+        for (Runnable listener : heartbeatListeners) {
+            try {
+                listener.run();
+            }
+            catch (RuntimeException e) {
+                logger.warn("A heartbeat listener failed.", e);
+            }
+        }
+    }
+
+    /**
+     * Leaves the cluster, so that the other instances take over the work of this instance at their next heartbeat
+     * instead of waiting for it to time out.
+     */
+    @PreDestroy
+    public void shutdown() {
+
+        heartbeatExecutorService.shutdownNow();
+
+        if (!settings.isEnabled()) {
+            return;
+        }
+
+        try {
+            clusterNodeRepo.delete(settings.getNodeId());
+        }
+        catch (RuntimeException e) {
+            logger.warn("Node '{}' couldn't leave the cluster, it will time out instead.", settings.getNodeId(), e);
+        }
+    }
+}
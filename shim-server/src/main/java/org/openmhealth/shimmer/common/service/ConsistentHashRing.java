@@ -0,0 +1,86 @@
+/*
+ * Copyright 2017 Open mHealth
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.openmhealth.shimmer.common.service;
+
+import com.google.common.collect.ImmutableSortedSet;
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hashing;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.SortedSet;
+import java.util.TreeMap;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+
+/**
+ * An immutable consistent hash ring that assigns keys, e.g. usernames, to nodes. Each node is placed on the ring at
+ * several points, and a key belongs to the node of the first point at or after the hash of the key. When a node joins
+ * or leaves, only the keys of the affected ring segments change owners, i.e. roughly 1/n of all keys.
+ */
+public class ConsistentHashRing {
+
+    private static final HashFunction hashFunction = Hashing.murmur3_32();
+
+    private final SortedSet<String> nodeIds;
+    private final NavigableMap<Integer, String> nodeIdsByPoint = new TreeMap<>();
+
+
+    public ConsistentHashRing(Collection<String> nodeIds, int virtualNodesPerNode) {
+
+        checkNotNull(nodeIds);
+        checkArgument(!nodeIds.isEmpty(), "A ring needs at least one node.");
+        checkArgument(virtualNodesPerNode > 0, "The number of virtual nodes per node must be positive.");
+
+        this.nodeIds = ImmutableSortedSet.copyOf(nodeIds);
+
+        // nodes are placed in a fixed order, so all instances resolve the rare colliding points the same way
+        for (String nodeId : this.nodeIds) {
+            for (int i = 0; i < virtualNodesPerNode; i++) {
+                nodeIdsByPoint.putIfAbsent(hash(nodeId + "#" + i), nodeId);
+            }
+        }
+    }
+
+    /**
+     * @return the identifiers of the nodes on the ring, sorted
+     */
+    public SortedSet<String> getNodeIds() {
+        return nodeIds;
+    }
+
+    /**
+     * @param key the key to assign
+     * @return the identifier of the node that owns the key
+     */
+    public String getNodeId(String key) {
+
+        checkNotNull(key);
+
+        Map.Entry<Integer, String> point = nodeIdsByPoint.ceilingEntry(hash(key));
+
+        return point != null ? point.getValue() : nodeIdsByPoint.firstEntry().getValue();
+    }
+
+    private static int hash(String value) {
+        return hashFunction.hashString(value, UTF_8).asInt();
+    }
+}
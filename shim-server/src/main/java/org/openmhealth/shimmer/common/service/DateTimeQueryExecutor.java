@@ -0,0 +1,185 @@
+/*
+ * Copyright 2017 Open mHealth
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.openmhealth.shimmer.common.service;
+
+import com.google.common.collect.Range;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.openmhealth.shim.ShimException;
+import org.openmhealth.shim.UpstreamResponseSharingContext;
+import org.openmhealth.shim.common.timing.RequestTimingContext;
+import org.openmhealth.shimmer.configuration.DateTimeQueryExecutionSettings;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.security.concurrent.DelegatingSecurityContextCallable;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static java.util.Collections.singletonList;
+
+
+/**
+ * Executes the windows planned by a {@link DateTimeQueryPlanner} with bounded parallelism. The windows of all
+ * requests share a fixed thread pool, and no single request keeps more than a configured number of windows in
+ * flight, so that one long backfill can neither starve other requests nor trip provider rate limits.
+ */
+@Component
+@Lazy
+public class DateTimeQueryExecutor {
+
+    private final DateTimeQueryExecutionSettings settings;
+    private final ExecutorService executorService;
+
+
+    @Autowired
+    public DateTimeQueryExecutor(DateTimeQueryExecutionSettings settings) {
+
+        checkNotNull(settings);
+        checkArgument(settings.getThreadPoolSize() > 0, "The thread pool size must be positive.");
+        checkArgument(settings.getMaximumConcurrentWindowsPerRequest() > 0,
+                "The maximum number of concurrent windows per request must be positive.");
+
+        this.settings = settings;
+        this.executorService = Executors.newFixedThreadPool(settings.getThreadPoolSize(),
+                new ThreadFactoryBuilder().setNameFormat("date-time-query-%d").setDaemon(true).build());
+    }
+
+    /**
+     * Queries each window and collects the results. A single window is queried on the calling thread. If any query
+     * fails, the queries that haven't completed are cancelled and the failure is rethrown.
+     *
+     * @param windows the windows to query
+     * @param query the query to execute for each window
+     * @return the results, in the same order as the windows
+     */
+    public <T> List<T> execute(List<Range<OffsetDateTime>> windows, WindowQuery<T> query) throws ShimException {
+
+        checkNotNull(windows);
+        checkNotNull(query);
+
+        if (windows.isEmpty()) {
+            return new ArrayList<>();
+        }
+
+        if (windows.size() == 1) {
+            return singletonList(query.query(windows.get(0)));
+        }
+
+        CompletionService<T> completionService = new ExecutorCompletionService<>(executorService);
+        Map<Future<T>, Integer> windowIndexesByFuture = new HashMap<>();
+
+        List<T> results = new ArrayList<>(windows.size());
+
+        for (int i = 0; i < windows.size(); i++) {
+            results.add(null);
+        }
+
+        int submittedWindowCount = 0;
+
+        try {
+            while (submittedWindowCount < Math.min(windows.size(), settings.getMaximumConcurrentWindowsPerRequest())) {
+                submit(completionService, windowIndexesByFuture, windows, submittedWindowCount++, query);
+            }
+
+            for (int completedWindowCount = 0; completedWindowCount < windows.size(); completedWindowCount++) {
+
+                Future<T> future = completionService.take();
+                results.set(windowIndexesByFuture.remove(future), future.get());
+
+                if (submittedWindowCount < windows.size()) {
+                    submit(completionService, windowIndexesByFuture, windows, submittedWindowCount++, query);
+                }
+            }
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ShimException("The date time query was interrupted.", e);
+        }
+        catch (ExecutionException e) {
+            throw unwrap(e);
+        }
+        finally {
+            for (Future<T> future : windowIndexesByFuture.keySet()) {
+                future.cancel(true);
+            }
+        }
+
+        return results;
+    }
+
+    private <T> void submit(CompletionService<T> completionService, Map<Future<T>, Integer> windowIndexesByFuture,
+            List<Range<OffsetDateTime>> windows, int windowIndex, WindowQuery<T> query) {
+
+        Range<OffsetDateTime> window = windows.get(windowIndex);
+        Callable<T> task = UpstreamResponseSharingContext.propagate(
+                RequestTimingContext.propagate(() -> query.query(window)));
+
+        // the security context carries the authentication that OAuth 2.0 rest templates use to find tokens
+        Future<T> future = completionService.submit(new DelegatingSecurityContextCallable<>(task));
+
+        windowIndexesByFuture.put(future, windowIndex);
+    }
+
+    private ShimException unwrap(ExecutionException exception) {
+
+        Throwable cause = exception.getCause();
+
+        if (cause instanceof ShimException) {
+            return (ShimException) cause;
+        }
+
+        if (cause instanceof RuntimeException) {
+            throw (RuntimeException) cause;
+        }
+
+        if (cause instanceof Error) {
+            throw (Error) cause;
+        }
+
+        return new ShimException("A date time query failed.", cause);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+
+        executorService.shutdownNow();
+    }
+
+
+    /**
+     * A query for the data in a single window.
+     */
+    @FunctionalInterface
+    public interface WindowQuery<T> {
+
+        T query(Range<OffsetDateTime> window) throws ShimException;
+    }
+}
@@ -0,0 +1,114 @@
+/*
+ * Copyright 2017 Open mHealth
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.openmhealth.shimmer.common.service;
+
+import com.google.common.collect.BoundType;
+import com.google.common.collect.Range;
+import org.openmhealth.shimmer.common.configuration.DateTimeQuerySettings;
+import org.openmhealth.shimmer.common.transformer.FixedTimeZoneDateTimeRangeTransformer;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.OffsetDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.collect.BoundType.CLOSED;
+import static com.google.common.collect.BoundType.OPEN;
+import static java.util.Collections.singletonList;
+
+
+/**
+ * Plans the queries needed to retrieve a date time range from an endpoint whose date time queries are constrained by
+ * {@link DateTimeQuerySettings}. The range is moved to the fixed time zone of the endpoint, if any, widened to the
+ * minimum duration, if any, and split into the smallest number of consecutive, non-overlapping windows that don't
+ * exceed the maximum duration, if any.
+ */
+@Component
+public class DateTimeQueryPlanner {
+
+    /**
+     * @param range the requested date time range
+     * @param settings the date time query settings of the endpoint
+     * @return the windows to query, in chronological order, which together cover the requested range
+     */
+    public List<Range<OffsetDateTime>> planQueries(Range<OffsetDateTime> range, DateTimeQuerySettings settings) {
+
+        checkNotNull(range);
+        checkNotNull(settings);
+
+        Optional<ZoneId> fixedTimeZone = settings.getFixedTimeZone();
+
+        if (fixedTimeZone.isPresent()) {
+            range = new FixedTimeZoneDateTimeRangeTransformer(fixedTimeZone.get()).transformRange(range);
+        }
+
+        // an unbounded query can't be split, so it's left to the endpoint to decide what to return
+        if (!range.hasLowerBound() || !range.hasUpperBound()) {
+            return singletonList(range);
+        }
+
+        OffsetDateTime lowerEndpoint = range.lowerEndpoint();
+        OffsetDateTime upperEndpoint = range.upperEndpoint();
+
+        Optional<Duration> minimumDuration = settings.getMinimumDuration();
+
+        if (minimumDuration.isPresent() && Duration.between(lowerEndpoint, upperEndpoint)
+                .compareTo(minimumDuration.get()) < 0) {
+
+            upperEndpoint = lowerEndpoint.plus(minimumDuration.get());
+            range = Range.range(lowerEndpoint, range.lowerBoundType(), upperEndpoint, range.upperBoundType());
+        }
+
+        Optional<Duration> maximumDuration = settings.getMaximumDuration();
+
+        if (!maximumDuration.isPresent()
+                || Duration.between(lowerEndpoint, upperEndpoint).compareTo(maximumDuration.get()) <= 0) {
+            return singletonList(range);
+        }
+
+        checkArgument(!maximumDuration.get().isNegative() && !maximumDuration.get().isZero(),
+                "The maximum duration must be positive.");
+
+        List<Range<OffsetDateTime>> windows = new ArrayList<>();
+
+        OffsetDateTime windowLowerEndpoint = lowerEndpoint;
+        BoundType windowLowerBoundType = range.lowerBoundType();
+
+        while (true) {
+
+            OffsetDateTime windowUpperEndpoint = windowLowerEndpoint.plus(maximumDuration.get());
+
+            if (!windowUpperEndpoint.isBefore(upperEndpoint)) {
+                windows.add(Range.range(windowLowerEndpoint, windowLowerBoundType, upperEndpoint,
+                        range.upperBoundType()));
+                break;
+            }
+
+            windows.add(Range.range(windowLowerEndpoint, windowLowerBoundType, windowUpperEndpoint, OPEN));
+
+            windowLowerEndpoint = windowUpperEndpoint;
+            windowLowerBoundType = CLOSED;
+        }
+
+        return windows;
+    }
+}
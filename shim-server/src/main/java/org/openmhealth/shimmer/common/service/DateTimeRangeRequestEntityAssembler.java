@@ -0,0 +1,104 @@
+/*
+ * Copyright 2017 Open mHealth
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.openmhealth.shimmer.common.service;
+
+import com.google.common.collect.Range;
+import org.openmhealth.shimmer.common.configuration.DateTimeQuerySettings;
+import org.openmhealth.shimmer.common.configuration.EndpointSettings;
+import org.openmhealth.shimmer.common.domain.DataPointRequest;
+import org.openmhealth.shimmer.common.domain.RequestEntityBuilder;
+import org.openmhealth.shimmer.common.domain.parameters.DateTimeRequestParameter;
+import org.openmhealth.shimmer.common.transformer.FixedTimeZoneDateTimeRangeTransformer;
+import org.springframework.stereotype.Component;
+
+import java.time.OffsetDateTime;
+import java.time.ZoneId;
+import java.util.Optional;
+
+
+/**
+ * Adds the bounds of the effective date time range of a data point request to the request entity, using the date time
+ * parameters of the endpoint. If the endpoint requires a fixed time zone, the bounds are first moved to that time zone.
+ */
+@Component
+public class DateTimeRangeRequestEntityAssembler implements RequestEntityAssembler {
+
+    @Override
+    public RequestEntityBuilder assemble(RequestEntityBuilder builder, DataPointRequest request) {
+
+        EndpointSettings endpointSettings = request.getEndpointSettings();
+        Range<OffsetDateTime> range = request.getEffectiveDateTimeRange();
+
+        Optional<ZoneId> fixedTimeZone = endpointSettings.getEffectiveDateTimeQuerySettings()
+                .flatMap(DateTimeQuerySettings::getFixedTimeZone);
+
+        if (fixedTimeZone.isPresent()) {
+            range = new FixedTimeZoneDateTimeRangeTransformer(fixedTimeZone.get()).transformRange(range);
+        }
+
+        if (endpointSettings.getEffectiveStartDateTimeParameter().isPresent()) {
+            addParameter(builder, endpointSettings.getEffectiveStartDateTimeParameter().get(),
+                    range.hasLowerBound() ? range.lowerEndpoint() : null);
+        }
+
+        if (endpointSettings.getEffectiveEndDateTimeParameter().isPresent()) {
+
+            DateTimeRequestParameter endParameter = endpointSettings.getEffectiveEndDateTimeParameter().get();
+            OffsetDateTime upperEndpoint = null;
+
+            if (range.hasUpperBound()) {
+                upperEndpoint = endParameter.isInclusiveUpperBound()
+                        ? range.upperEndpoint().minusDays(1)
+                        : range.upperEndpoint();
+            }
+
+            addParameter(builder, endParameter, upperEndpoint);
+        }
+
+        return builder;
+    }
+
+    private void addParameter(RequestEntityBuilder builder, DateTimeRequestParameter parameter,
+            OffsetDateTime dateTime) {
+
+        OffsetDateTime value = dateTime != null ? dateTime : parameter.getDefaultValue().orElse(null);
+
+        if (value == null) {
+            if (parameter.isRequired()) {
+                throw new IllegalArgumentException(String.format(
+                        "The required date time parameter '%s' has no value.", parameter.getParameterName()));
+            }
+
+            return;
+        }
+
+        builder.addParameter(parameter, format(parameter, value));
+    }
+
+    /**
+     * @return the date time formatted using the format of the parameter, or as seconds since the epoch if the
+     * parameter has no format
+     */
+    private String format(DateTimeRequestParameter parameter, OffsetDateTime dateTime) {
+
+        if (parameter.getDateTimeFormat() == null) {
+            return String.valueOf(dateTime.toEpochSecond());
+        }
+
+        return dateTime.format(parameter.getDateTimeFormat());
+    }
+}
@@ -0,0 +1,195 @@
+/*
+ * Copyright 2017 Open mHealth
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.openmhealth.shimmer.common.service;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openmhealth.shim.ShimDataResponse;
+import org.openmhealth.shimmer.configuration.ExportSettings;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.io.UnsupportedEncodingException;
+import java.net.URLEncoder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.GZIPOutputStream;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+import static java.util.Collections.emptyList;
+import static java.util.Collections.singletonList;
+
+
+/**
+ * Stores the files written by export jobs on local disk. Each user and data type of a job is written to its own
+ * gzip-compressed newline-delimited JSON part file, which only becomes visible once it has been written completely.
+ * Since concatenated gzip members form a valid gzip stream, the export file of a job is simply the concatenation of
+ * its part files.
+ */
+@Component
+public class ExportFileStore {
+
+    private static final String PART_FILE_SUFFIX = ".ndjson.gz";
+    private static final String TEMPORARY_FILE_SUFFIX = ".tmp";
+
+    private final Path directory;
+    private final ObjectMapper objectMapper;
+
+
+    @Autowired
+    public ExportFileStore(ExportSettings settings, ObjectMapper objectMapper) {
+
+        checkNotNull(settings);
+        checkNotNull(objectMapper);
+
+        this.directory = Paths.get(settings.getDirectory());
+        this.objectMapper = objectMapper;
+    }
+
+    /**
+     * Writes the part file of a user and data type, replacing any earlier version of that part file.
+     *
+     * @param jobId the identifier of the export job
+     * @param username the user whose data is written
+     * @param dataTypeKey the data type that is written
+     * @param response the shim data response to write
+     * @return the number of records written, one per data point or one per raw response
+     */
+    public long writePart(String jobId, String username, String dataTypeKey, ShimDataResponse response)
+            throws IOException {
+
+        checkNotNull(jobId);
+        checkNotNull(username);
+        checkNotNull(dataTypeKey);
+        checkNotNull(response);
+
+        Path jobDirectory = Files.createDirectories(directory.resolve(jobId));
+        Path partFile = jobDirectory.resolve(getPartFileName(username, dataTypeKey));
+        Path temporaryFile = jobDirectory.resolve(partFile.getFileName() + TEMPORARY_FILE_SUFFIX);
+
+        long recordCount = 0;
+
+        try (JsonGenerator generator = objectMapper.getFactory()
+                .createGenerator(new GZIPOutputStream(Files.newOutputStream(temporaryFile)))) {
+
+            // the generator would otherwise indent records if the object mapper is configured to indent output
+            generator.setPrettyPrinter(null);
+
+            for (Object item : asRecordBodies(response.getBody())) {
+
+                // writing the body directly avoids buffering it as a tree
+                generator.writeStartObject();
+                generator.writeStringField("username", username);
+                generator.writeStringField("shim", response.getShim());
+                generator.writeStringField("data_type", dataTypeKey);
+                generator.writeObjectField("body", item);
+                generator.writeEndObject();
+                generator.writeRaw('\n');
+                recordCount++;
+            }
+        }
+
+        Files.move(temporaryFile, partFile, ATOMIC_MOVE, REPLACE_EXISTING);
+
+        return recordCount;
+    }
+
+    /**
+     * @param jobId the identifier of the export job
+     * @param username the user whose data was written
+     * @param dataTypeKey the data type that was written
+     * @return true if the part file of the user and data type has been written completely
+     */
+    public boolean hasPart(String jobId, String username, String dataTypeKey) throws IOException {
+
+        checkNotNull(jobId);
+        checkNotNull(username);
+        checkNotNull(dataTypeKey);
+
+        return Files.isRegularFile(directory.resolve(jobId).resolve(getPartFileName(username, dataTypeKey)));
+    }
+
+    private List<?> asRecordBodies(Object body) {
+
+        if (body == null) {
+            return emptyList();
+        }
+
+        if (body instanceof List) {
+            return (List<?>) body;
+        }
+
+        return singletonList(body);
+    }
+
+    /**
+     * Writes the export file of a job, i.e. all of its part files.
+     *
+     * @param jobId the identifier of the export job
+     * @param outputStream the stream to write to, which is left open
+     */
+    public void writeExportFile(String jobId, OutputStream outputStream) throws IOException {
+
+        checkNotNull(jobId);
+        checkNotNull(outputStream);
+
+        for (Path partFile : getPartFiles(jobId)) {
+            Files.copy(partFile, outputStream);
+        }
+
+        outputStream.flush();
+    }
+
+    /**
+     * @return the part files of a job, in a stable order
+     */
+    List<Path> getPartFiles(String jobId) throws IOException {
+
+        Path jobDirectory = directory.resolve(jobId);
+
+        if (!Files.isDirectory(jobDirectory)) {
+            return emptyList();
+        }
+
+        try (Stream<Path> files = Files.list(jobDirectory)) {
+            return files
+                    .filter(file -> file.getFileName().toString().endsWith(PART_FILE_SUFFIX))
+                    .sorted()
+                    .collect(Collectors.toList());
+        }
+        catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    private String getPartFileName(String username, String dataTypeKey) throws UnsupportedEncodingException {
+
+        // URL encoding keeps file names portable, and since it encodes '@' the separator is unambiguous
+        return URLEncoder.encode(username, "UTF-8") + "@" + URLEncoder.encode(dataTypeKey, "UTF-8")
+                + PART_FILE_SUFFIX;
+    }
+}
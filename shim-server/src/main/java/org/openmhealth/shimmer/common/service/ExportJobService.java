@@ -0,0 +1,534 @@
+/*
+ * Copyright 2017 Open mHealth
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.openmhealth.shimmer.common.service;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.openmhealth.shim.*;
+import org.openmhealth.shimmer.common.domain.ExportCheckpoint;
+import org.openmhealth.shimmer.common.domain.ExportJob;
+import org.openmhealth.shimmer.common.domain.ExportJobStatus;
+import org.openmhealth.shimmer.common.repository.ExportCheckpointRepo;
+import org.openmhealth.shimmer.common.repository.ExportJobRepo;
+import org.openmhealth.shimmer.configuration.ExportSettings;
+import org.slf4j.Logger;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Sort;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static java.time.ZoneOffset.UTC;
+import static java.util.Arrays.asList;
+import static org.openmhealth.shimmer.common.domain.ExportJobStatus.*;
+import static org.slf4j.LoggerFactory.getLogger;
+
+
+/**
+ * Runs bulk export jobs. A job visits each user of a shim, retrieves the requested data types using a single batch
+ * request per user, and writes each data type to its own part file. Every user and data type that is exported is
+ * recorded as a checkpoint, so a job that is interrupted, e.g. by a restart, resumes with the users and data types it
+ * hasn't exported yet. When several instances share a database, each job is run by a single instance, which holds a
+ * lease on the job while it runs and stops running it if the lease is lost.
+ */
+@Component
+public class ExportJobService {
+
+    private static final Logger logger = getLogger(ExportJobService.class);
+
+    private final ExportSettings settings;
+    private final ExportJobRepo exportJobRepo;
+    private final ExportCheckpointRepo exportCheckpointRepo;
+    private final AccessParametersRepo accessParametersRepo;
+    private final ShimRegistry shimRegistry;
+    private final ExportFileStore exportFileStore;
+    private final ClusterMembershipService clusterMembershipService;
+    private final LeaseService leaseService;
+
+    private final ExecutorService jobExecutorService;
+    private final ExecutorService userExecutorService;
+    private final Map<String, Semaphore> shimPermits = new ConcurrentHashMap<>();
+    private final Set<String> cancelledJobIds = ConcurrentHashMap.newKeySet();
+    private final Set<String> runningJobIds = ConcurrentHashMap.newKeySet();
+
+
+    @Autowired
+    public ExportJobService(ExportSettings settings, ExportJobRepo exportJobRepo,
+            ExportCheckpointRepo exportCheckpointRepo, AccessParametersRepo accessParametersRepo,
+            ShimRegistry shimRegistry, ExportFileStore exportFileStore,
+            ClusterMembershipService clusterMembershipService, LeaseService leaseService) {
+
+        checkNotNull(settings);
+        checkNotNull(exportJobRepo);
+        checkNotNull(exportCheckpointRepo);
+        checkNotNull(accessParametersRepo);
+        checkNotNull(shimRegistry);
+        checkNotNull(exportFileStore);
+        checkNotNull(clusterMembershipService);
+        checkNotNull(leaseService);
+        checkArgument(settings.getThreadPoolSize() > 0, "The thread pool size must be positive.");
+        checkArgument(settings.getMaximumConcurrentUsersPerShim() > 0,
+                "The maximum number of concurrent users per shim must be positive.");
+
+        this.settings = settings;
+        this.exportJobRepo = exportJobRepo;
+        this.exportCheckpointRepo = exportCheckpointRepo;
+        this.accessParametersRepo = accessParametersRepo;
+        this.shimRegistry = shimRegistry;
+        this.exportFileStore = exportFileStore;
+        this.clusterMembershipService = clusterMembershipService;
+        this.leaseService = leaseService;
+
+        // job threads mostly wait for user threads, so there's no need to bound them
+        this.jobExecutorService = Executors.newCachedThreadPool(
+                new ThreadFactoryBuilder().setNameFormat("export-job-%d").setDaemon(true).build());
+        this.userExecutorService = Executors.newFixedThreadPool(settings.getThreadPoolSize(),
+                new ThreadFactoryBuilder().setNameFormat("export-user-%d").setDaemon(true).build());
+    }
+
+    /**
+     * Resumes the jobs that were pending or running when the server stopped. In a cluster, this instance only resumes
+     * the jobs it owns, and keeps taking over the jobs of instances that leave the cluster.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void resumeJobs() {
+
+        if (!settings.isResumeOnStartup()) {
+            return;
+        }
+
+        claimJobs();
+        clusterMembershipService.addHeartbeatListener(this::claimJobs);
+    }
+
+    /**
+     * Runs the unfinished jobs that this instance owns and that no other instance is running.
+     */
+    private void claimJobs() {
+
+        for (ExportJob job : exportJobRepo.findAllByStatusIn(asList(PENDING, RUNNING))) {
+
+            if (runningJobIds.contains(job.getId()) || !clusterMembershipService.isLocallyOwned(job.getId())) {
+                continue;
+            }
+
+            if (leaseService.tryAcquire(getLeaseName(job.getId()))) {
+                logger.info("Resuming export job '{}'.", job.getId());
+                schedule(job.getId());
+            }
+        }
+    }
+
+    /**
+     * Saves and schedules a new job.
+     *
+     * @param job the job to submit
+     * @return the saved job
+     */
+    public ExportJob submit(ExportJob job) {
+
+        checkNotNull(job);
+        checkArgument(!job.getDataTypeKeys().isEmpty(), "No data types have been specified.");
+
+        // fails fast if the shim isn't configured
+        shimRegistry.getShim(job.getShimKey());
+
+        job.setStatus(PENDING);
+
+        ExportJob savedJob = exportJobRepo.save(job);
+
+        // if the lease can't be acquired, the job stays pending until its owner claims it
+        if (leaseService.tryAcquire(getLeaseName(savedJob.getId()))) {
+            schedule(savedJob.getId());
+        }
+
+        return savedJob;
+    }
+
+    /**
+     * @param jobId the identifier of a job
+     * @return the job, including its progress, if it exists
+     */
+    public Optional<ExportJob> findJob(String jobId) {
+
+        checkNotNull(jobId);
+
+        ExportJob job = exportJobRepo.findOne(jobId);
+
+        if (job == null) {
+            return Optional.empty();
+        }
+
+        job.setExportedItemCount(exportCheckpointRepo.countByJobIdAndSuccessful(jobId, true));
+        job.setFailedItemCount(exportCheckpointRepo.countByJobIdAndSuccessful(jobId, false));
+
+        return Optional.of(job);
+    }
+
+    /**
+     * @param jobId the identifier of a job
+     * @return true if the part file of every user and data type that the job has exported is present
+     */
+    public boolean hasAllParts(String jobId) throws IOException {
+
+        checkNotNull(jobId);
+
+        for (ExportCheckpoint checkpoint : exportCheckpointRepo.findAllByJobIdAndSuccessful(jobId, true)) {
+            if (!exportFileStore.hasPart(jobId, checkpoint.getUsername(), checkpoint.getDataTypeKey())) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Cancels a job. The users that are being exported when the job is cancelled finish the part file they're writing.
+     *
+     * @param jobId the identifier of a job
+     * @return the job, if it exists
+     */
+    public Optional<ExportJob> cancel(String jobId) {
+
+        checkNotNull(jobId);
+
+        ExportJob job = exportJobRepo.findOne(jobId);
+
+        if (job == null) {
+            return Optional.empty();
+        }
+
+        if (!job.getStatus().isTerminal()) {
+            cancelledJobIds.add(jobId);
+
+            job.setStatus(CANCELLED);
+            job.setDateCompleted(LocalDateTime.now());
+            exportJobRepo.save(job);
+        }
+
+        return findJob(jobId);
+    }
+
+    private void schedule(String jobId) {
+
+        if (!runningJobIds.add(jobId)) {
+            return;
+        }
+
+        jobExecutorService.submit(() -> {
+            try {
+                run(jobId);
+            }
+            finally {
+                runningJobIds.remove(jobId);
+                leaseService.release(getLeaseName(jobId));
+            }
+        });
+    }
+
+    private static String getLeaseName(String jobId) {
+        return "export-job:" + jobId;
+    }
+
+    private void run(String jobId) {
+
+        ExportJob job = exportJobRepo.findOne(jobId);
+
+        if (job == null || job.getStatus().isTerminal()) {
+            return;
+        }
+
+        List<Future<?>> userExports = new ArrayList<>();
+
+        try {
+            Shim shim = shimRegistry.getShim(job.getShimKey());
+
+            List<String> usernames = job.getUsernames().orElseGet(() -> findUsernames(job.getShimKey()));
+
+            // the job may have been cancelled on another instance while its users were being found
+            if (isCancelled(jobId)) {
+                return;
+            }
+
+            job.setStatus(RUNNING);
+            job.setUserCount(usernames.size());
+            exportJobRepo.save(job);
+
+            Semaphore permits = shimPermits.computeIfAbsent(job.getShimKey(),
+                    shimKey -> new Semaphore(settings.getMaximumConcurrentUsersPerShim()));
+
+            for (String username : usernames) {
+
+                if (shouldStop(jobId)) {
+                    break;
+                }
+
+                // acquiring the permit here instead of in the user thread keeps user threads free for other shims
+                permits.acquire();
+
+                try {
+                    userExports.add(userExecutorService.submit(() -> {
+                        try {
+                            exportUser(job, shim, username);
+                        }
+                        finally {
+                            permits.release();
+                        }
+                    }));
+                }
+                catch (RuntimeException e) {
+                    permits.release();
+                    throw e;
+                }
+            }
+
+            for (Future<?> userExport : userExports) {
+                userExport.get();
+            }
+
+            // the instance that now holds the lease completes the job instead
+            if (!leaseService.isHeld(getLeaseName(jobId))) {
+                logger.warn("Export job '{}' was stopped because its lease has been lost to another instance.", jobId);
+                return;
+            }
+
+            complete(jobId, COMPLETED, null);
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            logger.warn("Export job '{}' was interrupted and will resume when the server restarts.", jobId);
+        }
+        catch (ExecutionException | RuntimeException e) {
+            logger.error("Export job '{}' failed.", jobId, e);
+            userExports.forEach(userExport -> userExport.cancel(true));
+            complete(jobId, FAILED, e.getMessage());
+        }
+        finally {
+            cancelledJobIds.remove(jobId);
+        }
+    }
+
+    private List<String> findUsernames(String shimKey) {
+
+        // a sorted set removes users with several authorizations and keeps the export file in a stable order
+        Set<String> usernames = new TreeSet<>();
+
+        for (AccessParameters accessParameters : accessParametersRepo.findAllUsernamesByShimKey(shimKey)) {
+            usernames.add(accessParameters.getUsername());
+        }
+
+        return new ArrayList<>(usernames);
+    }
+
+    /**
+     * @return true if the job has been cancelled, either on this instance or, as recorded in its persisted status, on
+     * another instance
+     */
+    private boolean isCancelled(String jobId) {
+
+        if (cancelledJobIds.contains(jobId)) {
+            return true;
+        }
+
+        ExportJob job = exportJobRepo.findOne(jobId);
+
+        if (job == null || job.getStatus() == CANCELLED) {
+            cancelledJobIds.add(jobId);
+            return true;
+        }
+
+        return false;
+    }
+
+    /**
+     * @return true if this instance should stop running a job, either because the job has been cancelled or because
+     * its lease has been lost to another instance
+     */
+    private boolean shouldStop(String jobId) {
+        return isCancelled(jobId) || !leaseService.isHeld(getLeaseName(jobId));
+    }
+
+    private void complete(String jobId, ExportJobStatus status, String errorMessage) {
+
+        ExportJob job = exportJobRepo.findOne(jobId);
+
+        // the job may have been cancelled in the meantime
+        if (job == null || job.getStatus().isTerminal()) {
+            return;
+        }
+
+        job.setStatus(status);
+        job.setErrorMessage(errorMessage);
+        job.setDateCompleted(LocalDateTime.now());
+        exportJobRepo.save(job);
+    }
+
+    private void exportUser(ExportJob job, Shim shim, String username) {
+
+        Set<String> exportedDataTypeKeys = new HashSet<>();
+
+        try {
+            for (ExportCheckpoint checkpoint : exportCheckpointRepo.findAllByJobIdAndUsername(job.getId(), username)) {
+
+                // a job taken over from another instance can only skip the part files this instance can read
+                if (checkpoint.isSuccessful()
+                        && exportFileStore.hasPart(job.getId(), username, checkpoint.getDataTypeKey())) {
+                    exportedDataTypeKeys.add(checkpoint.getDataTypeKey());
+                }
+            }
+        }
+        catch (IOException e) {
+            logger.warn("The part files of user '{}' couldn't be checked for export job '{}', so they're rewritten.",
+                    username, job.getId(), e);
+
+            exportedDataTypeKeys.clear();
+        }
+
+        List<String> dataTypeKeys = new ArrayList<>(new LinkedHashSet<>(job.getDataTypeKeys()));
+        dataTypeKeys.removeAll(exportedDataTypeKeys);
+
+        if (dataTypeKeys.isEmpty() || shouldStop(job.getId())) {
+            return;
+        }
+
+        AccessParameters accessParameters = accessParametersRepo.findByUsernameAndShimKey(
+                username, job.getShimKey(), new Sort(Sort.Direction.DESC, "dateCreated"));
+
+        if (accessParameters == null) {
+            for (String dataTypeKey : dataTypeKeys) {
+                saveCheckpoint(job.getId(), username, dataTypeKey, null, "The user hasn't authorized the shim.");
+            }
+            return;
+        }
+
+        List<ShimDataRequest> shimDataRequests = new ArrayList<>();
+
+        for (String dataTypeKey : dataTypeKeys) {
+            shimDataRequests.add(newShimDataRequest(job, dataTypeKey, accessParameters));
+        }
+
+        Map<String, ShimDataResponse> shimDataResponses;
+
+        SecurityContextHolder.getContext().setAuthentication(new ShimAuthentication(username, job.getShimKey()));
+        UpstreamResponseSharingContext.start();
+
+        try {
+            shimDataResponses = shim.getData(shimDataRequests);
+        }
+        catch (ShimException | RuntimeException e) {
+            logger.warn("The data of user '{}' couldn't be retrieved for export job '{}'.", username, job.getId(), e);
+
+            for (String dataTypeKey : dataTypeKeys) {
+                saveCheckpoint(job.getId(), username, dataTypeKey, null, e.getMessage());
+            }
+            return;
+        }
+        finally {
+            UpstreamResponseSharingContext.clear();
+            SecurityContextHolder.clearContext();
+        }
+
+        for (String dataTypeKey : dataTypeKeys) {
+
+            if (shouldStop(job.getId())) {
+                return;
+            }
+
+            try {
+                long recordCount = exportFileStore.writePart(job.getId(), username, dataTypeKey,
+                        shimDataResponses.get(dataTypeKey));
+
+                saveCheckpoint(job.getId(), username, dataTypeKey, recordCount, null);
+            }
+            catch (IOException e) {
+                logger.warn("The '{}' data of user '{}' couldn't be written for export job '{}'.", dataTypeKey,
+                        username, job.getId(), e);
+
+                saveCheckpoint(job.getId(), username, dataTypeKey, null, e.getMessage());
+            }
+        }
+    }
+
+    private ShimDataRequest newShimDataRequest(ExportJob job, String dataTypeKey, AccessParameters accessParameters) {
+
+        ShimDataRequest shimDataRequest = new ShimDataRequest();
+
+        shimDataRequest.setDataTypeKey(dataTypeKey);
+        shimDataRequest.setNormalize(job.isNormalize());
+        shimDataRequest.setAccessParameters(accessParameters);
+
+        job.getStartDate().ifPresent(date -> shimDataRequest.setStartDateTime(date.atStartOfDay().atOffset(UTC)));
+        job.getEndDate().ifPresent(date -> shimDataRequest.setEndDateTime(date.atStartOfDay().atOffset(UTC)));
+
+        return shimDataRequest;
+    }
+
+    /**
+     * Records the outcome of a user and data type, replacing any earlier outcome.
+     *
+     * @param recordCount the number of records written, or null if the export failed
+     * @param errorMessage the reason the export failed, or null if it succeeded
+     */
+    private void saveCheckpoint(String jobId, String username, String dataTypeKey, Long recordCount,
+            String errorMessage) {
+
+        ExportCheckpoint checkpoint =
+                exportCheckpointRepo.findByJobIdAndUsernameAndDataTypeKey(jobId, username, dataTypeKey);
+
+        if (checkpoint == null) {
+            checkpoint = new ExportCheckpoint();
+            checkpoint.setJobId(jobId);
+            checkpoint.setUsername(username);
+            checkpoint.setDataTypeKey(dataTypeKey);
+        }
+
+        checkpoint.setSuccessful(recordCount != null);
+        checkpoint.setRecordCount(recordCount == null ? 0 : recordCount);
+        checkpoint.setErrorMessage(errorMessage);
+        checkpoint.setDateCreated(LocalDateTime.now());
+
+        exportCheckpointRepo.save(checkpoint);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+
+        jobExecutorService.shutdownNow();
+        userExecutorService.shutdownNow();
+    }
+}
@@ -0,0 +1,162 @@
+/*
+ * Copyright 2017 Open mHealth
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.openmhealth.shimmer.common.service;
+
+import org.openmhealth.shimmer.common.domain.Lease;
+import org.openmhealth.shimmer.configuration.ClusterSettings;
+import org.slf4j.Logger;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.mongodb.core.MongoOperations;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Component;
+
+import java.util.Date;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static org.slf4j.LoggerFactory.getLogger;
+import static org.springframework.data.mongodb.core.FindAndModifyOptions.options;
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+import static org.springframework.data.mongodb.core.query.Query.query;
+
+
+/**
+ * Grants leases, i.e. exclusive, expiring claims on named pieces of work, to this instance. A lease is a document that
+ * is acquired with a single atomic upsert, which only matches if the lease has expired or is already held by this
+ * instance, so at most one instance holds a lease at a time. Leases held by this instance are renewed on every
+ * heartbeat until they're released, and expire if the instance stops. When clustering is disabled, every lease is
+ * granted without touching the database.
+ */
+@Component
+public class LeaseService {
+
+    private static final Logger logger = getLogger(LeaseService.class);
+
+    private final ClusterSettings settings;
+    private final MongoOperations mongoOperations;
+    private final Set<String> heldLeaseNames = ConcurrentHashMap.newKeySet();
+
+
+    @Autowired
+    public LeaseService(ClusterSettings settings, MongoOperations mongoOperations) {
+
+        checkNotNull(settings);
+        checkNotNull(mongoOperations);
+        checkArgument(settings.getTimeToLiveInMillis() > 0, "The time to live must be positive.");
+
+        this.settings = settings;
+        this.mongoOperations = mongoOperations;
+    }
+
+    /**
+     * Acquires or renews a lease, which is then renewed automatically until it's released.
+     *
+     * @param leaseName the name of the lease
+     * @return true if this instance holds the lease
+     */
+    public boolean tryAcquire(String leaseName) {
+
+        checkNotNull(leaseName);
+
+        if (!settings.isEnabled()) {
+            return true;
+        }
+
+        if (extend(leaseName)) {
+            heldLeaseNames.add(leaseName);
+            return true;
+        }
+
+        heldLeaseNames.remove(leaseName);
+        return false;
+    }
+
+    /**
+     * Releases a lease held by this instance, so that another instance can acquire it immediately.
+     *
+     * @param leaseName the name of the lease
+     */
+    public void release(String leaseName) {
+
+        checkNotNull(leaseName);
+
+        if (!settings.isEnabled()) {
+            return;
+        }
+
+        heldLeaseNames.remove(leaseName);
+
+        try {
+            mongoOperations.remove(query(where("_id").is(leaseName).and("ownerNodeId").is(settings.getNodeId())),
+                    Lease.class);
+        }
+        catch (RuntimeException e) {
+            logger.warn("Lease '{}' couldn't be released, it will expire instead.", leaseName, e);
+        }
+    }
+
+    /**
+     * Renews the leases held by this instance. Leases that have been lost, e.g. because this instance was paused for
+     * longer than their time to live, are forgotten.
+     */
+    public void renewHeldLeases() {
+
+        for (String leaseName : heldLeaseNames) {
+            try {
+                if (!extend(leaseName)) {
+                    logger.warn("Lease '{}' has been lost to another instance.", leaseName);
+                    heldLeaseNames.remove(leaseName);
+                }
+            }
+            catch (RuntimeException e) {
+                logger.warn("Lease '{}' couldn't be renewed.", leaseName, e);
+            }
+        }
+    }
+
+    /**
+     * @return true if this instance holds the lease
+     */
+    public boolean isHeld(String leaseName) {
+        return !settings.isEnabled() || heldLeaseNames.contains(leaseName);
+    }
+
+    private boolean extend(String leaseName) {
+
+        Date now = new Date();
+
+        Query query = query(where("_id").is(leaseName)
+                .orOperator(where("dateExpires").lt(now), where("ownerNodeId").is(settings.getNodeId())));
+
+        Update update = new Update()
+                .set("ownerNodeId", settings.getNodeId())
+                .set("dateExpires", new Date(now.getTime() + settings.getTimeToLiveInMillis()));
+
+        try {
+            return mongoOperations.findAndModify(query, update, options().upsert(true).returnNew(true), Lease.class)
+                    != null;
+        }
+        catch (DuplicateKeyException e) {
+            // the upsert tried to insert a lease that another instance holds
+            return false;
+        }
+    }
+}
@@ -0,0 +1,200 @@
+/*
+ * Copyright 2017 Open mHealth
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.openmhealth.shimmer.common.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.openmhealth.shim.ShimException;
+import org.openmhealth.shim.UpstreamResponseSharingContext;
+import org.openmhealth.shim.common.timing.RequestTimingContext;
+import org.openmhealth.shimmer.common.pagination.NextPageUriResolver;
+import org.openmhealth.shimmer.configuration.PaginationSettings;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.security.concurrent.DelegatingSecurityContextCallable;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+
+/**
+ * Reads every page of a paginated endpoint response. Each page is handed to a page handler, typically a mapper, as
+ * soon as it arrives, while the next page is prefetched in the background. Only the current page and the next page
+ * are held in memory at any time, apart from whatever the page handler retains.
+ */
+@Component
+@Lazy
+public class PaginatedResponseReader {
+
+    private final PaginationSettings settings;
+    private final ExecutorService prefetchExecutorService;
+
+
+    @Autowired
+    public PaginatedResponseReader(PaginationSettings settings) {
+
+        checkNotNull(settings);
+        checkArgument(settings.getPrefetchThreadPoolSize() > 0, "The prefetch thread pool size must be positive.");
+        checkArgument(settings.getMaximumPageCount() > 0, "The maximum page count must be positive.");
+
+        this.settings = settings;
+        this.prefetchExecutorService = Executors.newFixedThreadPool(settings.getPrefetchThreadPoolSize(),
+                new ThreadFactoryBuilder().setNameFormat("page-prefetch-%d").setDaemon(true).build());
+    }
+
+    /**
+     * @param firstPageUri the URI of the first page
+     * @param pageFetcher retrieves a page
+     * @param nextPageUriResolver finds the URI of the page after a given page
+     * @param pageHandler turns a page into results
+     * @return the results of all pages, in page order
+     * @throws ShimException if the response has more pages than the maximum page count, or if it links back to a page
+     * that has already been read, since returning only some of its pages would silently drop data
+     */
+    public <T> List<T> readPages(URI firstPageUri, PageFetcher pageFetcher, NextPageUriResolver nextPageUriResolver,
+            PageHandler<T> pageHandler) throws ShimException {
+
+        checkNotNull(firstPageUri);
+        checkNotNull(pageFetcher);
+        checkNotNull(nextPageUriResolver);
+        checkNotNull(pageHandler);
+
+        List<T> results = new ArrayList<>();
+        Set<URI> pageUris = new HashSet<>();
+
+        URI pageUri = firstPageUri;
+        JsonNode page = pageFetcher.fetchPage(pageUri);
+        pageUris.add(pageUri);
+
+        while (true) {
+
+            Optional<URI> nextPageUri = nextPageUriResolver.getNextPageUri(pageUri, page);
+            Future<JsonNode> nextPage = null;
+
+            if (nextPageUri.isPresent()) {
+                if (pageUris.size() >= settings.getMaximumPageCount()) {
+                    throw new ShimException(String.format(
+                            "The response has more than the maximum of %d pages, so the requested range should be "
+                                    + "narrowed.", settings.getMaximumPageCount()));
+                }
+
+                if (!pageUris.add(nextPageUri.get())) {
+                    throw new ShimException(String.format(
+                            "The response links back to page %s, which has already been read.", nextPageUri.get()));
+                }
+
+                nextPage = prefetch(pageFetcher, nextPageUri.get());
+            }
+
+            try {
+                results.addAll(pageHandler.handlePage(page));
+            }
+            catch (RuntimeException e) {
+                if (nextPage != null) {
+                    nextPage.cancel(true);
+                }
+
+                throw e;
+            }
+
+            if (nextPage == null) {
+                return results;
+            }
+
+            pageUri = nextPageUri.get();
+            page = await(nextPage);
+        }
+    }
+
+    private Future<JsonNode> prefetch(PageFetcher pageFetcher, URI pageUri) {
+
+        Callable<JsonNode> task = UpstreamResponseSharingContext.propagate(
+                RequestTimingContext.propagate(() -> pageFetcher.fetchPage(pageUri)));
+
+        return prefetchExecutorService.submit(new DelegatingSecurityContextCallable<>(task));
+    }
+
+    private JsonNode await(Future<JsonNode> page) throws ShimException {
+
+        try {
+            return page.get();
+        }
+        catch (InterruptedException e) {
+            page.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new ShimException("Reading a page was interrupted.", e);
+        }
+        catch (ExecutionException e) {
+
+            Throwable cause = e.getCause();
+
+            if (cause instanceof ShimException) {
+                throw (ShimException) cause;
+            }
+
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+
+            throw new ShimException("Reading a page failed.", cause);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+
+        prefetchExecutorService.shutdownNow();
+    }
+
+
+    /**
+     * Retrieves a single page.
+     */
+    @FunctionalInterface
+    public interface PageFetcher {
+
+        JsonNode fetchPage(URI pageUri) throws ShimException;
+    }
+
+
+    /**
+     * Turns a single page into results, e.g. data points.
+     */
+    @FunctionalInterface
+    public interface PageHandler<T> {
+
+        List<? extends T> handlePage(JsonNode page);
+    }
+}
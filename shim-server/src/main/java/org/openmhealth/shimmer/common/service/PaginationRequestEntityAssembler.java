@@ -0,0 +1,73 @@
+/*
+ * Copyright 2017 Open mHealth
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.openmhealth.shimmer.common.service;
+
+import org.openmhealth.shimmer.common.configuration.EndpointSettings;
+import org.openmhealth.shimmer.common.domain.DataPointRequest;
+import org.openmhealth.shimmer.common.domain.RequestEntityBuilder;
+import org.openmhealth.shimmer.common.domain.parameters.NumberRequestParameter;
+import org.openmhealth.shimmer.common.domain.parameters.PaginationOffsetNumberRequestParameter;
+import org.springframework.stereotype.Component;
+
+import java.util.Optional;
+
+
+/**
+ * Adds the page size and pagination offset of a data point request to the request entity, using the pagination
+ * parameters of the endpoint.
+ */
+@Component
+public class PaginationRequestEntityAssembler implements RequestEntityAssembler {
+
+    @Override
+    public RequestEntityBuilder assemble(RequestEntityBuilder builder, DataPointRequest request) {
+
+        EndpointSettings endpointSettings = request.getEndpointSettings();
+
+        Optional<NumberRequestParameter> pageSizeParameter = endpointSettings.getPageSizeParameter();
+
+        if (pageSizeParameter.isPresent() && pageSizeParameter.get().getDefaultValue().isPresent()) {
+            builder.addParameter(pageSizeParameter.get(), format(pageSizeParameter.get().getDefaultValue().get()));
+        }
+
+        Optional<PaginationOffsetNumberRequestParameter> offsetParameter =
+                endpointSettings.getPaginationOffsetParameter();
+
+        if (offsetParameter.isPresent()) {
+            if (request.getPaginationOffset().isPresent()) {
+                builder.addParameter(offsetParameter.get(), String.valueOf(request.getPaginationOffset().get()));
+            }
+            else if (offsetParameter.get().getDefaultValue().isPresent()) {
+                builder.addParameter(offsetParameter.get(), format(offsetParameter.get().getDefaultValue().get()));
+            }
+        }
+
+        return builder;
+    }
+
+    /**
+     * @return the number formatted without a fractional part if it's a whole number
+     */
+    private String format(Double value) {
+
+        if (value == Math.rint(value) && !Double.isInfinite(value)) {
+            return String.valueOf(value.longValue());
+        }
+
+        return value.toString();
+    }
+}
@@ -21,16 +21,20 @@ import org.openmhealth.shimmer.common.domain.RequestEntityBuilder;
 
 
 /**
- * FIXME
+ * An assembler that adds the parts of a request entity that it's responsible for, e.g. pagination or authorization
+ * parameters, to a request entity builder. Assemblers read what they need from the data point request and the
+ * settings of the endpoint it targets, and are expected to be stateless so that they can be shared.
  *
  * @author Emerson Farrugia
+ * @see RequestEntityAssemblerChain
  */
 public interface RequestEntityAssembler {
 
     /**
-     * FIXME Assembles a request entity builder.
+     * Assembles a request entity builder.
      *
      * @param builder the request entity builder to assemble
+     * @param request the data point request the request entity is being assembled for
      * @return the builder
      */
     RequestEntityBuilder assemble(RequestEntityBuilder builder, DataPointRequest request);
@@ -0,0 +1,58 @@
+/*
+ * Copyright 2017 Open mHealth
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.openmhealth.shimmer.common.service;
+
+import org.openmhealth.shimmer.common.domain.DataPointRequest;
+import org.openmhealth.shimmer.common.domain.RequestEntityBuilder;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.RequestEntity;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+
+
+/**
+ * A service that creates request entities by passing a builder for the URI template of the endpoint through every
+ * {@link RequestEntityAssembler} in turn.
+ */
+@Service
+public class RequestEntityAssemblerChain {
+
+    private final List<RequestEntityAssembler> assemblers;
+
+
+    @Autowired
+    public RequestEntityAssemblerChain(List<RequestEntityAssembler> assemblers) {
+
+        this.assemblers = assemblers;
+    }
+
+    /**
+     * @param request the data point request
+     * @return the request entity to send to the endpoint
+     */
+    public RequestEntity<?> createRequestEntity(DataPointRequest request) {
+
+        RequestEntityBuilder builder = new RequestEntityBuilder(request.getEndpointSettings().getUriTemplate());
+
+        for (RequestEntityAssembler assembler : assemblers) {
+            builder = assembler.assemble(builder, request);
+        }
+
+        return builder.build();
+    }
+}
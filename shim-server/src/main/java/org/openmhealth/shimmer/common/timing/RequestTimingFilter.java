@@ -0,0 +1,49 @@
+/*
+ * Copyright 2017 Open mHealth
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.openmhealth.shimmer.common.timing;
+
+import org.openmhealth.shim.common.timing.RequestTimingContext;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+
+
+/**
+ * A filter that binds a {@link RequestTimingContext} to the request thread for the duration of the request. The
+ * timings collected in the context are written to the <code>Server-Timing</code> header by
+ * {@link ServerTimingMappingJackson2HttpMessageConverter} once the response body has been serialized.
+ */
+public class RequestTimingFilter extends OncePerRequestFilter {
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+
+        RequestTimingContext.start();
+
+        try {
+            filterChain.doFilter(request, response);
+        }
+        finally {
+            RequestTimingContext.clear();
+        }
+    }
+}
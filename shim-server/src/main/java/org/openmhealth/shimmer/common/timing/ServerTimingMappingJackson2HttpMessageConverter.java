@@ -0,0 +1,84 @@
+/*
+ * Copyright 2017 Open mHealth
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.openmhealth.shimmer.common.timing;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openmhealth.shim.common.timing.RequestTimingContext;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpOutputMessage;
+import org.springframework.http.converter.HttpMessageNotWritableException;
+import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.reflect.Type;
+import java.util.Optional;
+
+import static org.openmhealth.shim.common.timing.RequestTimingPhase.SERIALIZATION;
+
+
+/**
+ * A JSON message converter that, when a {@link RequestTimingContext} is bound to the current thread, times the
+ * serialization of the response body and adds the collected timings to the response as a <code>Server-Timing</code>
+ * header. Since headers can't be changed once the body starts being written, the body is serialized to a buffer
+ * first.
+ */
+public class ServerTimingMappingJackson2HttpMessageConverter extends MappingJackson2HttpMessageConverter {
+
+    public static final String SERVER_TIMING_HEADER_NAME = "Server-Timing";
+
+
+    public ServerTimingMappingJackson2HttpMessageConverter(ObjectMapper objectMapper) {
+        super(objectMapper);
+    }
+
+    @Override
+    protected void writeInternal(Object object, Type type, HttpOutputMessage outputMessage)
+            throws IOException, HttpMessageNotWritableException {
+
+        Optional<RequestTimingContext> context = RequestTimingContext.current();
+
+        if (!context.isPresent()) {
+            super.writeInternal(object, type, outputMessage);
+            return;
+        }
+
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+
+        RequestTimingContext.time(SERIALIZATION, () -> {
+            super.writeInternal(object, type, new HttpOutputMessage() {
+
+                @Override
+                public OutputStream getBody() {
+                    return buffer;
+                }
+
+                @Override
+                public HttpHeaders getHeaders() {
+                    return outputMessage.getHeaders();
+                }
+            });
+
+            return null;
+        });
+
+        outputMessage.getHeaders().add(SERVER_TIMING_HEADER_NAME, context.get().toServerTimingHeaderValue());
+
+        buffer.writeTo(outputMessage.getBody());
+    }
+}
@@ -0,0 +1,80 @@
+/*
+ * Copyright 2017 Open mHealth
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.openmhealth.shimmer.common.timing;
+
+import org.slf4j.Logger;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+
+import java.lang.management.ManagementFactory;
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.slf4j.LoggerFactory.getLogger;
+
+
+/**
+ * Records how long after the JVM started the application became ready, i.e. had started its embedded server and could
+ * serve data requests. The duration is logged once, so that the startup time of a deployment can be benchmarked from
+ * its logs, e.g. when tuning the server for autoscaling. Unlike the time until a first request is served, it doesn't
+ * depend on when traffic arrives.
+ */
+public class StartupTimingRecorder {
+
+    private static final Logger logger = getLogger(StartupTimingRecorder.class);
+
+    private final long jvmStartTimeInMillis;
+    private final AtomicReference<Duration> timeToReady = new AtomicReference<>();
+
+
+    public StartupTimingRecorder() {
+
+        this(ManagementFactory.getRuntimeMXBean().getStartTime());
+    }
+
+    /**
+     * @param jvmStartTimeInMillis the time the JVM started, in milliseconds since the epoch
+     */
+    public StartupTimingRecorder(long jvmStartTimeInMillis) {
+
+        this.jvmStartTimeInMillis = jvmStartTimeInMillis;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void recordReady() {
+
+        Duration duration = getTimeSinceJvmStart();
+
+        if (timeToReady.compareAndSet(null, duration)) {
+            logger.info("The application was ready {} ms after the JVM started.", duration.toMillis());
+        }
+    }
+
+    /**
+     * @return the time from the start of the JVM until the application was ready, if it is ready
+     */
+    public Optional<Duration> getTimeToReady() {
+        return Optional.ofNullable(timeToReady.get());
+    }
+
+    private Duration getTimeSinceJvmStart() {
+
+        return Duration.ofMillis(System.currentTimeMillis() - jvmStartTimeInMillis);
+    }
+}
@@ -0,0 +1,71 @@
+/*
+ * Copyright 2017 Open mHealth
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.openmhealth.shimmer.configuration;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+
+/**
+ * Settings that control how pending authorization requests are kept while users authorize access with data providers.
+ */
+@Component
+@ConfigurationProperties("openmhealth.shimmer.authorization-request-store")
+public class AuthorizationRequestStoreSettings {
+
+    /**
+     * The time after which a pending authorization request is evicted from memory. Authorization requests that are
+     * completed later are read back from the database.
+     */
+    private int timeToLiveInMinutes = 60;
+
+    /**
+     * The maximum number of pending authorization requests kept in memory.
+     */
+    private int maximumSize = 100_000;
+
+    /**
+     * The delay before authorization requests are written to the database, during which repeated saves of the same
+     * request are coalesced into a single write. When clustering is enabled, requests are written immediately instead,
+     * since the redirect may reach another instance before a delayed write.
+     */
+    private int writeBehindDelayInMillis = 500;
+
+    public int getTimeToLiveInMinutes() {
+        return timeToLiveInMinutes;
+    }
+
+    public void setTimeToLiveInMinutes(int timeToLiveInMinutes) {
+        this.timeToLiveInMinutes = timeToLiveInMinutes;
+    }
+
+    public int getMaximumSize() {
+        return maximumSize;
+    }
+
+    public void setMaximumSize(int maximumSize) {
+        this.maximumSize = maximumSize;
+    }
+
+    public int getWriteBehindDelayInMillis() {
+        return writeBehindDelayInMillis;
+    }
+
+    public void setWriteBehindDelayInMillis(int writeBehindDelayInMillis) {
+        this.writeBehindDelayInMillis = writeBehindDelayInMillis;
+    }
+}
@@ -0,0 +1,98 @@
+/*
+ * Copyright 2017 Open mHealth
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.openmhealth.shimmer.configuration;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.util.UUID;
+
+
+/**
+ * Settings that control how Shimmer instances that share a database coordinate background work. When clustering is
+ * disabled, an instance assumes it's the only one and does all background work itself.
+ */
+@Component
+@ConfigurationProperties("openmhealth.shimmer.cluster")
+public class ClusterSettings {
+
+    /**
+     * Whether instances register themselves in the database and split background work between live instances.
+     */
+    private boolean enabled = false;
+
+    /**
+     * The identifier of this instance, which defaults to a random identifier that changes on every restart.
+     */
+    private String nodeId = UUID.randomUUID().toString();
+
+    /**
+     * How often an instance announces that it's alive and renews the leases it holds.
+     */
+    private long heartbeatIntervalInMillis = 10_000;
+
+    /**
+     * How long an instance is considered alive after its last heartbeat, and how long a lease lasts unless it's
+     * renewed. This should be a few heartbeat intervals, so that a missed heartbeat doesn't trigger a rebalance.
+     */
+    private long timeToLiveInMillis = 30_000;
+
+    /**
+     * The number of points each instance is assigned on the consistent hash ring. More points spread work more evenly.
+     */
+    private int virtualNodesPerNode = 128;
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public String getNodeId() {
+        return nodeId;
+    }
+
+    public void setNodeId(String nodeId) {
+        this.nodeId = nodeId;
+    }
+
+    public long getHeartbeatIntervalInMillis() {
+        return heartbeatIntervalInMillis;
+    }
+
+    public void setHeartbeatIntervalInMillis(long heartbeatIntervalInMillis) {
+        this.heartbeatIntervalInMillis = heartbeatIntervalInMillis;
+    }
+
+    public long getTimeToLiveInMillis() {
+        return timeToLiveInMillis;
+    }
+
+    public void setTimeToLiveInMillis(long timeToLiveInMillis) {
+        this.timeToLiveInMillis = timeToLiveInMillis;
+    }
+
+    public int getVirtualNodesPerNode() {
+        return virtualNodesPerNode;
+    }
+
+    public void setVirtualNodesPerNode(int virtualNodesPerNode) {
+        this.virtualNodesPerNode = virtualNodesPerNode;
+    }
+}
@@ -0,0 +1,55 @@
+/*
+ * Copyright 2017 Open mHealth
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.openmhealth.shimmer.configuration;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+
+/**
+ * Settings that control how the windows of a split date time range query are executed.
+ */
+@Component
+@ConfigurationProperties("openmhealth.shimmer.date-time-queries")
+public class DateTimeQueryExecutionSettings {
+
+    /**
+     * The number of threads shared by all requests to execute windowed queries.
+     */
+    private int threadPoolSize = 16;
+
+    /**
+     * The maximum number of windows of a single request that are queried at the same time.
+     */
+    private int maximumConcurrentWindowsPerRequest = 4;
+
+    public int getThreadPoolSize() {
+        return threadPoolSize;
+    }
+
+    public void setThreadPoolSize(int threadPoolSize) {
+        this.threadPoolSize = threadPoolSize;
+    }
+
+    public int getMaximumConcurrentWindowsPerRequest() {
+        return maximumConcurrentWindowsPerRequest;
+    }
+
+    public void setMaximumConcurrentWindowsPerRequest(int maximumConcurrentWindowsPerRequest) {
+        this.maximumConcurrentWindowsPerRequest = maximumConcurrentWindowsPerRequest;
+    }
+}
@@ -0,0 +1,83 @@
+/*
+ * Copyright 2017 Open mHealth
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.openmhealth.shimmer.configuration;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+
+/**
+ * Settings that control how bulk export jobs are run and where their files are written.
+ */
+@Component
+@ConfigurationProperties("openmhealth.shimmer.exports")
+public class ExportSettings {
+
+    /**
+     * The directory export files are written to. When clustering is enabled, this should be shared by all instances,
+     * so that a job taken over from an instance that left the cluster continues writing the same files.
+     */
+    private String directory = "exports";
+
+    /**
+     * The number of threads shared by all jobs to export the data of individual users.
+     */
+    private int threadPoolSize = 8;
+
+    /**
+     * The maximum number of users of the same shim that are exported at the same time, across all jobs.
+     */
+    private int maximumConcurrentUsersPerShim = 4;
+
+    /**
+     * Whether jobs that were pending or running when the server stopped are resumed when it starts.
+     */
+    private boolean resumeOnStartup = true;
+
+    public String getDirectory() {
+        return directory;
+    }
+
+    public void setDirectory(String directory) {
+        this.directory = directory;
+    }
+
+    public int getThreadPoolSize() {
+        return threadPoolSize;
+    }
+
+    public void setThreadPoolSize(int threadPoolSize) {
+        this.threadPoolSize = threadPoolSize;
+    }
+
+    public int getMaximumConcurrentUsersPerShim() {
+        return maximumConcurrentUsersPerShim;
+    }
+
+    public void setMaximumConcurrentUsersPerShim(int maximumConcurrentUsersPerShim) {
+        this.maximumConcurrentUsersPerShim = maximumConcurrentUsersPerShim;
+    }
+
+    public boolean isResumeOnStartup() {
+        return resumeOnStartup;
+    }
+
+    public void setResumeOnStartup(boolean resumeOnStartup) {
+        this.resumeOnStartup = resumeOnStartup;
+    }
+}
@@ -0,0 +1,56 @@
+/*
+ * Copyright 2017 Open mHealth
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.openmhealth.shimmer.configuration;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+
+/**
+ * Settings that control how paginated endpoint responses are read.
+ */
+@Component
+@ConfigurationProperties("openmhealth.shimmer.pagination")
+public class PaginationSettings {
+
+    /**
+     * The number of threads shared by all requests to prefetch pages.
+     */
+    private int prefetchThreadPoolSize = 8;
+
+    /**
+     * The maximum number of pages read per request, which guards against endpoints that never stop paginating. A
+     * request whose response has more pages fails rather than returning only some of them.
+     */
+    private int maximumPageCount = 1000;
+
+    public int getPrefetchThreadPoolSize() {
+        return prefetchThreadPoolSize;
+    }
+
+    public void setPrefetchThreadPoolSize(int prefetchThreadPoolSize) {
+        this.prefetchThreadPoolSize = prefetchThreadPoolSize;
+    }
+
+    public int getMaximumPageCount() {
+        return maximumPageCount;
+    }
+
+    public void setMaximumPageCount(int maximumPageCount) {
+        this.maximumPageCount = maximumPageCount;
+    }
+}
@@ -0,0 +1,48 @@
+/*
+ * Copyright 2017 Open mHealth
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.openmhealth.shimmer.configuration;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+
+/**
+ * Settings that send every data provider request to a local provider simulator instead of the data provider, which
+ * lets Shimmer be load tested without calling real data providers. These settings must never be set in production.
+ */
+@Component
+@ConfigurationProperties("openmhealth.shimmer.provider-simulator")
+public class ProviderSimulatorSettings {
+
+    /**
+     * The base URL of the provider simulator, e.g. http://localhost:8090, or null if data provider requests are sent
+     * to data providers.
+     */
+    private String url;
+
+    public String getUrl() {
+        return url;
+    }
+
+    public void setUrl(String url) {
+        this.url = url;
+    }
+
+    public boolean isEnabled() {
+        return url != null && !url.isEmpty();
+    }
+}
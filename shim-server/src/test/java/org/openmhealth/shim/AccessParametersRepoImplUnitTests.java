@@ -0,0 +1,127 @@
+/*
+ * Copyright 2017 Open mHealth
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.openmhealth.shim;
+
+import com.mongodb.BasicDBObject;
+import com.mongodb.DBObject;
+import org.springframework.data.mongodb.core.query.Query;
+import org.testng.annotations.Test;
+
+import java.util.List;
+import java.util.regex.Pattern;
+
+import static java.util.Arrays.asList;
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.openmhealth.shim.AccessParametersRepoImpl.escapeRegex;
+import static org.openmhealth.shim.AccessParametersRepoImpl.newAuthorizationsAggregation;
+import static org.openmhealth.shim.AccessParametersRepoImpl.newUnmodifiedQuery;
+import static org.openmhealth.shim.AccessParametersRepoImpl.newUsernamesQuery;
+import static org.springframework.data.mongodb.core.aggregation.Aggregation.DEFAULT_CONTEXT;
+
+
+public class AccessParametersRepoImplUnitTests {
+
+    @Test
+    public void escapeRegexShouldEscapeMetacharacters() {
+
+        assertThat(escapeRegex("jane.doe+1@example.com"), equalTo("jane\\.doe\\+1@example\\.com"));
+        assertThat(escapeRegex("a(b)[c]{d}^$|?*\\"), equalTo("a\\(b\\)\\[c\\]\\{d\\}\\^\\$\\|\\?\\*\\\\"));
+        assertThat(escapeRegex("joe_1-2"), equalTo("joe_1-2"));
+    }
+
+    @Test
+    public void newUsernamesQueryShouldMatchRegex() {
+
+        DBObject queryObject = newUsernamesQuery("^jane\\.", null, 100).getQueryObject();
+
+        assertThat(getRegex(queryObject), equalTo("^jane\\."));
+    }
+
+    @Test
+    public void newUsernamesQueryShouldStartAfterCursor() {
+
+        DBObject queryObject = newUsernamesQuery("^jane", "jane42", 100).getQueryObject();
+        List<?> conditions = (List<?>) queryObject.get("$and");
+
+        assertThat(getRegex((DBObject) conditions.get(0)), equalTo("^jane"));
+        assertThat(conditions.get(1), equalTo(new BasicDBObject("username", new BasicDBObject("$gt", "jane42"))));
+    }
+
+    @Test
+    public void newUsernamesQueryShouldOnlyReadSortedUsernames() {
+
+        Query query = newUsernamesQuery("^jane", null, 100);
+
+        assertThat(query.getSortObject(), equalTo(new BasicDBObject("username", 1)));
+        assertThat(query.getLimit(), equalTo(100));
+        assertThat(query.getFieldsObject(), equalTo(new BasicDBObject("username", 1).append("_id", 0)));
+    }
+
+    @Test
+    public void newAuthorizationsAggregationShouldOnlyGroupPageOfUsers() {
+
+        List<DBObject> pipeline = getPipeline(asList("jane", "joe"));
+
+        assertThat(pipeline.size(), equalTo(5));
+        assertThat(pipeline.get(0).get("$match"), equalTo(new BasicDBObject("username",
+                new BasicDBObject("$in", asList("jane", "joe")))));
+        assertThat(pipeline.get(1).get("$project"),
+                equalTo(new BasicDBObject("username", 1).append("shimKey", 1).append("_id", 0)));
+        assertThat(pipeline.get(2).get("$group"), equalTo(new BasicDBObject("_id", "$username")
+                .append("auths", new BasicDBObject("$addToSet", "$shimKey"))));
+        assertThat(pipeline.get(3).get("$sort"), equalTo(new BasicDBObject("_id", 1)));
+    }
+
+    private String getRegex(DBObject criteria) {
+
+        return ((Pattern) criteria.get("username")).pattern();
+    }
+
+    @Test
+    public void newUnmodifiedQueryShouldMatchVersion() {
+
+        AccessParameters accessParameters = new AccessParameters();
+        accessParameters.setId("id");
+        accessParameters.setVersion(3);
+
+        List<?> conditions = (List<?>) newUnmodifiedQuery(accessParameters).getQueryObject().get("$and");
+
+        assertThat(conditions.get(0), equalTo(new BasicDBObject("_id", "id")));
+        assertThat(conditions.get(1), equalTo(new BasicDBObject("version", 3L)));
+    }
+
+    @Test
+    public void newUnmodifiedQueryShouldMatchMissingVersion() {
+
+        AccessParameters accessParameters = new AccessParameters();
+        accessParameters.setId("id");
+
+        List<?> conditions = (List<?>) newUnmodifiedQuery(accessParameters).getQueryObject().get("$and");
+
+        assertThat(conditions.get(1), equalTo(new BasicDBObject("$or", asList(new BasicDBObject("version", 0L),
+                new BasicDBObject("version", new BasicDBObject("$exists", false))))));
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<DBObject> getPipeline(List<String> usernames) {
+
+        return (List<DBObject>) newAuthorizationsAggregation(usernames)
+                .toDbObject("accessParameters", DEFAULT_CONTEXT)
+                .get("pipeline");
+    }
+}
@@ -0,0 +1,248 @@
+/*
+ * Copyright 2017 Open mHealth
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.openmhealth.shim;
+
+import org.openmhealth.shimmer.common.service.LeaseService;
+import org.openmhealth.shimmer.configuration.ClusterSettings;
+import org.springframework.data.domain.Sort;
+import org.springframework.security.oauth2.client.resource.UserRedirectRequiredException;
+import org.springframework.security.oauth2.common.DefaultOAuth2AccessToken;
+import org.springframework.security.oauth2.common.DefaultOAuth2RefreshToken;
+import org.springframework.security.oauth2.common.OAuth2AccessToken;
+import org.springframework.security.oauth2.common.exceptions.InvalidGrantException;
+import org.springframework.security.oauth2.common.util.SerializationUtils;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.util.Date;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static java.util.Collections.emptyMap;
+import static java.util.concurrent.TimeUnit.SECONDS;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.testng.Assert.fail;
+
+
+public class AccessTokenRefreshCoordinatorUnitTests {
+
+    private AccessParametersRepo accessParametersRepo;
+    private LeaseService leaseService;
+    private AccessTokenRefreshCoordinator refreshCoordinator;
+
+
+    @BeforeMethod
+    public void initializeRefreshCoordinator() {
+
+        accessParametersRepo = mock(AccessParametersRepo.class);
+        leaseService = mock(LeaseService.class);
+
+        when(leaseService.tryAcquire(anyString())).thenReturn(true);
+        when(accessParametersRepo.replaceSerializedToken(any(AccessParameters.class), any(byte[].class)))
+                .thenReturn(true);
+
+        refreshCoordinator = new AccessTokenRefreshCoordinator(accessParametersRepo, leaseService,
+                new ClusterSettings());
+    }
+
+    @Test
+    public void refreshShouldStoreRefreshedTokenIfUnmodified() {
+
+        AccessParameters accessParameters = givenStoredToken(newToken("expired", -60));
+
+        OAuth2AccessToken refreshedToken = refreshCoordinator.refresh("jane", "fitbit", () -> newToken("fresh", 3600));
+
+        assertThat(refreshedToken.getValue(), equalTo("fresh"));
+        verify(accessParametersRepo).replaceSerializedToken(eq(accessParameters), any(byte[].class));
+        verify(leaseService).release("token-refresh:fitbit:jane");
+    }
+
+    @Test
+    public void refreshShouldShareRefreshBetweenConcurrentRequests() throws Exception {
+
+        givenStoredToken(newToken("expired", -60));
+
+        AtomicInteger refreshCallCount = new AtomicInteger();
+        CountDownLatch refreshStarted = new CountDownLatch(1);
+        CountDownLatch refreshReleased = new CountDownLatch(1);
+
+        ExecutorService executorService = Executors.newFixedThreadPool(2);
+
+        try {
+            Future<OAuth2AccessToken> winner = executorService.submit(() ->
+                    refreshCoordinator.refresh("jane", "fitbit", () -> {
+                        refreshCallCount.incrementAndGet();
+                        refreshStarted.countDown();
+                        awaitUninterruptibly(refreshReleased);
+                        return newToken("fresh", 3600);
+                    }));
+
+            refreshStarted.await(5, SECONDS);
+
+            Future<OAuth2AccessToken> loser = executorService.submit(() ->
+                    refreshCoordinator.refresh("jane", "fitbit", () -> {
+                        refreshCallCount.incrementAndGet();
+                        return newToken("other", 3600);
+                    }));
+
+            // gives the second request time to join the refresh in flight
+            Thread.sleep(100);
+            refreshReleased.countDown();
+
+            assertThat(winner.get(5, SECONDS).getValue(), equalTo("fresh"));
+            assertThat(loser.get(5, SECONDS).getValue(), equalTo("fresh"));
+            assertThat(refreshCallCount.get(), equalTo(1));
+        }
+        finally {
+            executorService.shutdownNow();
+        }
+    }
+
+    @Test
+    public void refreshShouldReuseTokenRefreshedByAnotherInstance() {
+
+        AccessParameters expiredParameters = newAccessParameters(newToken("expired", -60));
+        AccessParameters refreshedParameters = newAccessParameters(newToken("fresh", 3600));
+
+        when(accessParametersRepo.findByUsernameAndShimKey(eq("jane"), eq("fitbit"), any(Sort.class)))
+                .thenReturn(expiredParameters, refreshedParameters);
+        when(leaseService.tryAcquire(anyString())).thenReturn(false);
+
+        AtomicInteger refreshCallCount = new AtomicInteger();
+
+        OAuth2AccessToken refreshedToken = refreshCoordinator.refresh("jane", "fitbit", () -> {
+            refreshCallCount.incrementAndGet();
+            return newToken("other", 3600);
+        });
+
+        assertThat(refreshedToken.getValue(), equalTo("fresh"));
+        assertThat(refreshCallCount.get(), equalTo(0));
+    }
+
+    @Test
+    public void refreshShouldNotCallDataProviderIfTokenWasRefreshedBeforeLeaseWasAcquired() {
+
+        when(accessParametersRepo.findByUsernameAndShimKey(eq("jane"), eq("fitbit"), any(Sort.class)))
+                .thenReturn(newAccessParameters(newToken("expired", -60)),
+                        newAccessParameters(newToken("fresh", 3600)));
+
+        OAuth2AccessToken refreshedToken = refreshCoordinator.refresh("jane", "fitbit", () -> {
+            throw new IllegalStateException("The data provider shouldn't be called.");
+        });
+
+        assertThat(refreshedToken.getValue(), equalTo("fresh"));
+        verify(accessParametersRepo, never()).replaceSerializedToken(any(AccessParameters.class), any(byte[].class));
+    }
+
+    @Test
+    public void refreshShouldRemoveAccessParametersWhenRefreshTokenIsRejected() {
+
+        AccessParameters accessParameters = givenStoredToken(newToken("expired", -60));
+        UserRedirectRequiredException exception = new UserRedirectRequiredException("https://example.com", emptyMap());
+
+        try {
+            refreshCoordinator.refresh("jane", "fitbit", () -> {
+                throw exception;
+            });
+
+            fail("The rejected refresh should have been rethrown.");
+        }
+        catch (UserRedirectRequiredException e) {
+            assertThat(e, equalTo(exception));
+        }
+
+        verify(accessParametersRepo).deleteIfUnmodified(accessParameters);
+        verify(leaseService).release("token-refresh:fitbit:jane");
+    }
+
+    @Test
+    public void refreshShouldNotCallDataProviderIfAccessParametersWereRemoved() {
+
+        when(accessParametersRepo.findByUsernameAndShimKey(eq("jane"), eq("fitbit"), any(Sort.class)))
+                .thenReturn(null);
+        when(leaseService.tryAcquire(anyString())).thenReturn(false);
+
+        AtomicInteger refreshCallCount = new AtomicInteger();
+
+        try {
+            refreshCoordinator.refresh("jane", "fitbit", () -> {
+                refreshCallCount.incrementAndGet();
+                return newToken("other", 3600);
+            });
+
+            fail("The refresh of removed access parameters should have failed.");
+        }
+        catch (InvalidGrantException e) {
+            assertThat(refreshCallCount.get(), equalTo(0));
+        }
+
+        verify(leaseService, never()).tryAcquire(anyString());
+    }
+
+    private AccessParameters givenStoredToken(OAuth2AccessToken token) {
+
+        AccessParameters accessParameters = newAccessParameters(token);
+
+        when(accessParametersRepo.findByUsernameAndShimKey(eq("jane"), eq("fitbit"), any(Sort.class)))
+                .thenReturn(accessParameters);
+
+        return accessParameters;
+    }
+
+    private static AccessParameters newAccessParameters(OAuth2AccessToken token) {
+
+        AccessParameters accessParameters = new AccessParameters();
+
+        accessParameters.setId("id");
+        accessParameters.setUsername("jane");
+        accessParameters.setShimKey("fitbit");
+        accessParameters.setSerializedToken(SerializationUtils.serialize(token));
+
+        return accessParameters;
+    }
+
+    private static OAuth2AccessToken newToken(String value, int expiresInSeconds) {
+
+        DefaultOAuth2AccessToken token = new DefaultOAuth2AccessToken(value);
+
+        token.setExpiration(new Date(System.currentTimeMillis() + expiresInSeconds * 1000L));
+        token.setRefreshToken(new DefaultOAuth2RefreshToken("refresh-" + value));
+
+        return token;
+    }
+
+    private static void awaitUninterruptibly(CountDownLatch latch) {
+
+        try {
+            latch.await(5, SECONDS);
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,186 @@
+/*
+ * Copyright 2017 Open mHealth
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.openmhealth.shim;
+
+import com.google.common.collect.Iterables;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Captor;
+import org.openmhealth.shimmer.configuration.AuthorizationRequestStoreSettings;
+import org.openmhealth.shimmer.configuration.ClusterSettings;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.util.HashMap;
+import java.util.List;
+
+import static java.util.Collections.singletonMap;
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.not;
+import static org.hamcrest.CoreMatchers.notNullValue;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.mockito.Matchers.anyListOf;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.mockito.MockitoAnnotations.initMocks;
+
+
+public class AuthorizationRequestParametersStoreUnitTests {
+
+    private AuthorizationRequestParametersRepo repository;
+    private ClusterSettings clusterSettings;
+    private AuthorizationRequestParametersStore store;
+
+    @Captor
+    private ArgumentCaptor<List<AuthorizationRequestParameters>> batchCaptor;
+
+
+    @BeforeMethod
+    public void initializeStore() {
+
+        initMocks(this);
+
+        AuthorizationRequestStoreSettings settings = new AuthorizationRequestStoreSettings();
+
+        // keeps background writes out of the way, since the tests write explicitly
+        settings.setWriteBehindDelayInMillis(60_000);
+
+        clusterSettings = new ClusterSettings();
+
+        repository = mock(AuthorizationRequestParametersRepo.class);
+        store = new AuthorizationRequestParametersStore(repository, settings, clusterSettings);
+    }
+
+    @AfterMethod
+    public void shutdownStore() {
+
+        store.shutdown();
+    }
+
+    @Test
+    public void findByStateKeyShouldNotReadDatabaseAfterSave() {
+
+        AuthorizationRequestParameters parameters = newParameters("state");
+
+        store.save(parameters);
+
+        assertThat(parameters.getId(), notNullValue());
+        assertThat(store.findByStateKey("state"), sameInstance(parameters));
+        verify(repository, never()).findByStateKey("state");
+    }
+
+    @Test
+    public void findByStateKeyShouldReadDatabaseOnceWhenNotInMemory() {
+
+        AuthorizationRequestParameters parameters = newParameters("stored-state");
+        when(repository.findByStateKey("stored-state")).thenReturn(parameters);
+
+        assertThat(store.findByStateKey("stored-state"), sameInstance(parameters));
+        assertThat(store.findByStateKey("stored-state"), sameInstance(parameters));
+        verify(repository, times(1)).findByStateKey("stored-state");
+    }
+
+    @Test
+    public void writePendingRequestsShouldCoalesceRepeatedSaves() {
+
+        AuthorizationRequestParameters parameters = newParameters("state");
+
+        store.save(parameters);
+        parameters.setUsername("user");
+        store.save(parameters);
+
+        store.writePendingRequests();
+
+        verify(repository, times(1)).save(batchCaptor.capture());
+
+        assertThat(Iterables.size(batchCaptor.getValue()), equalTo(1));
+        assertThat(Iterables.getOnlyElement(batchCaptor.getValue()).getUsername(), equalTo("user"));
+    }
+
+    @Test
+    public void writePendingRequestsShouldWriteRequestAsSaved() {
+
+        AuthorizationRequestParameters parameters = newParameters("state");
+        parameters.setRequestParams(new HashMap<>(singletonMap("scope", "activity")));
+        parameters.setSerializedRequest(new byte[] {1, 2, 3});
+
+        store.save(parameters);
+
+        parameters.setUsername("user");
+        parameters.getRequestParams().put("scope", "sleep");
+        parameters.getSerializedRequest()[0] = 0;
+
+        store.writePendingRequests();
+
+        verify(repository, times(1)).save(batchCaptor.capture());
+
+        AuthorizationRequestParameters writtenParameters = Iterables.getOnlyElement(batchCaptor.getValue());
+
+        assertThat(writtenParameters, not(sameInstance(parameters)));
+        assertThat(writtenParameters.getId(), equalTo(parameters.getId()));
+        assertThat(writtenParameters.getStateKey(), equalTo("state"));
+        assertThat(writtenParameters.getUsername(), nullValue());
+        assertThat(writtenParameters.getRequestParams(), equalTo(singletonMap("scope", "activity")));
+        assertThat(writtenParameters.getSerializedRequest(), equalTo(new byte[] {1, 2, 3}));
+        assertThat(store.findByStateKey("state"), sameInstance(parameters));
+    }
+
+    @Test
+    public void writePendingRequestsShouldRetryFailedWrites() {
+
+        when(repository.save(anyListOf(AuthorizationRequestParameters.class)))
+                .thenThrow(new IllegalStateException("database unavailable"))
+                .thenReturn(null);
+
+        store.save(newParameters("state"));
+
+        store.writePendingRequests();
+        store.writePendingRequests();
+        store.writePendingRequests();
+
+        verify(repository, times(2)).save(anyListOf(AuthorizationRequestParameters.class));
+    }
+
+    @Test
+    public void saveShouldWriteThroughWhenClusteringIsEnabled() {
+
+        clusterSettings.setEnabled(true);
+
+        AuthorizationRequestParameters parameters = newParameters("state");
+
+        store.save(parameters);
+
+        verify(repository, times(1)).save(parameters);
+
+        store.writePendingRequests();
+
+        verify(repository, never()).save(anyListOf(AuthorizationRequestParameters.class));
+    }
+
+    private AuthorizationRequestParameters newParameters(String stateKey) {
+
+        AuthorizationRequestParameters parameters = new AuthorizationRequestParameters();
+        parameters.setStateKey(stateKey);
+
+        return parameters;
+    }
+}
@@ -0,0 +1,126 @@
+/*
+ * Copyright 2017 Open mHealth
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.openmhealth.shim;
+
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpVersion;
+import org.apache.http.client.HttpClient;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.client.methods.HttpUriRequest;
+import org.apache.http.entity.ByteArrayEntity;
+import org.apache.http.message.BasicHttpResponse;
+import org.apache.http.util.EntityUtils;
+import org.openmhealth.shim.withings.WithingsShim;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.openmhealth.shim.UpstreamResponseSharingContext.MAXIMUM_SHARED_BODY_SIZE_IN_BYTES;
+
+
+public class OAuth1ShimUnitTests {
+
+    private static final String MEASURES_URL = "https://api.health.nokia.com/measure?action=getmeas";
+
+    private OAuth1Shim shim;
+
+
+    @BeforeMethod
+    public void initializeShim() {
+
+        shim = new WithingsShim();
+        shim.httpClient = mock(HttpClient.class);
+    }
+
+    @AfterMethod
+    public void clearContext() {
+
+        UpstreamResponseSharingContext.clear();
+    }
+
+    @Test
+    public void executeUpstreamRequestShouldShareResponsesOfRequestsSignedDifferently() throws IOException {
+
+        UpstreamResponseSharingContext.start();
+        givenResponses(newResponse(200, "{\"status\":0}".getBytes(UTF_8)), newResponse(200, new byte[0]));
+
+        HttpResponse firstResponse = shim.executeUpstreamRequest(
+                new HttpGet(MEASURES_URL + "&oauth_nonce=1&oauth_signature=a"));
+        HttpResponse secondResponse = shim.executeUpstreamRequest(
+                new HttpGet(MEASURES_URL + "&oauth_nonce=2&oauth_signature=b"));
+
+        assertThat(EntityUtils.toString(firstResponse.getEntity()), equalTo("{\"status\":0}"));
+        assertThat(EntityUtils.toString(secondResponse.getEntity()), equalTo("{\"status\":0}"));
+        verify(shim.httpClient, times(1)).execute(any(HttpUriRequest.class));
+    }
+
+    @Test
+    public void executeUpstreamRequestShouldNotShareErrorResponses() throws IOException {
+
+        UpstreamResponseSharingContext.start();
+        givenResponses(newResponse(503, new byte[0]), newResponse(200, new byte[0]));
+
+        HttpResponse firstResponse = shim.executeUpstreamRequest(new HttpGet(MEASURES_URL));
+        HttpResponse secondResponse = shim.executeUpstreamRequest(new HttpGet(MEASURES_URL));
+
+        assertThat(firstResponse.getStatusLine().getStatusCode(), equalTo(503));
+        assertThat(secondResponse.getStatusLine().getStatusCode(), equalTo(200));
+        verify(shim.httpClient, times(2)).execute(any(HttpUriRequest.class));
+    }
+
+    @Test
+    public void executeUpstreamRequestShouldStreamLargeResponsesWithoutSharingThem() throws IOException {
+
+        UpstreamResponseSharingContext.start();
+
+        byte[] largeBody = new byte[MAXIMUM_SHARED_BODY_SIZE_IN_BYTES + 10];
+        Arrays.fill(largeBody, (byte) 'a');
+
+        givenResponses(newResponse(200, largeBody), newResponse(200, largeBody));
+
+        HttpResponse firstResponse = shim.executeUpstreamRequest(new HttpGet(MEASURES_URL));
+        HttpResponse secondResponse = shim.executeUpstreamRequest(new HttpGet(MEASURES_URL));
+
+        assertThat(EntityUtils.toByteArray(firstResponse.getEntity()), equalTo(largeBody));
+        assertThat(EntityUtils.toByteArray(secondResponse.getEntity()), equalTo(largeBody));
+        verify(shim.httpClient, times(2)).execute(any(HttpUriRequest.class));
+    }
+
+    private void givenResponses(HttpResponse firstResponse, HttpResponse secondResponse) throws IOException {
+
+        when(shim.httpClient.execute(any(HttpUriRequest.class))).thenReturn(firstResponse, secondResponse);
+    }
+
+    private static HttpResponse newResponse(int statusCode, byte[] body) {
+
+        HttpResponse response = new BasicHttpResponse(HttpVersion.HTTP_1_1, statusCode, null);
+        response.setEntity(new ByteArrayEntity(body));
+
+        return response;
+    }
+}
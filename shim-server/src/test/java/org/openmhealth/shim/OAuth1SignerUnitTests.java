@@ -0,0 +1,172 @@
+/*
+ * Copyright 2017 Open mHealth
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.openmhealth.shim;
+
+import oauth.signpost.OAuthConsumer;
+import oauth.signpost.basic.DefaultOAuthConsumer;
+import oauth.signpost.basic.UrlStringRequestAdapter;
+import oauth.signpost.commonshttp.CommonsHttpOAuthConsumer;
+import oauth.signpost.http.HttpParameters;
+import oauth.signpost.signature.QueryStringSigningStrategy;
+import org.apache.http.client.methods.HttpPost;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.hamcrest.CoreMatchers.containsString;
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.not;
+import static org.hamcrest.CoreMatchers.startsWith;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+
+public class OAuth1SignerUnitTests {
+
+    private static final String CONSUMER_KEY = "consumer-key";
+    private static final String CONSUMER_SECRET = "consumer secret&";
+
+
+    @DataProvider
+    public Object[][] requestProvider() {
+
+        return new Object[][] {
+                {"https://api.example.com/request_token", null, null, parameters("oauth_callback",
+                        "https%3A%2F%2Fshimmer.example.com%2Fauthorize%2Fexample%2Fcallback%3Fstate%3Dabc")},
+                {"https://api.example.com/measure?action=getmeas&userid=42&startdate=1400000000", "access-token",
+                        "token secret", parameters()},
+                {"http://API.Example.com:80/v2/data?name=J%C3%BCrgen+M%C3%BCller&tags=a%2Cb&tags=c*d~e", "token",
+                        "secret", parameters("userid", "42")},
+                {"https://api.example.com:443/data?flag&limit=10&userid=7", "token", null, parameters("userid", "42")},
+                {"https://api.example.com:8443", "", "ignored", parameters()},
+        };
+    }
+
+    @Test(dataProvider = "requestProvider")
+    public void signUrlShouldMatchSignpost(String url, String token, String tokenSecret,
+            Map<String, String> additionalParameters) throws Exception {
+
+        OAuthConsumer consumer = new DefaultOAuthConsumer(CONSUMER_KEY, CONSUMER_SECRET);
+        consumer.setSigningStrategy(new QueryStringSigningStrategy());
+        consumer.setAdditionalParameters(toHttpParameters(additionalParameters));
+
+        if (token != null) {
+            consumer.setTokenWithSecret(token, tokenSecret);
+        }
+
+        UrlStringRequestAdapter request = new UrlStringRequestAdapter(url);
+        consumer.sign(request);
+
+        String signedUrl = new OAuth1Signer(CONSUMER_KEY, CONSUMER_SECRET)
+                .signUrl(url, token, tokenSecret, additionalParameters);
+
+        assertThat(signedUrl, equalTo(request.getRequestUrl()));
+    }
+
+    @Test(dataProvider = "requestProvider")
+    public void getAuthorizationHeaderShouldMatchSignpost(String url, String token, String tokenSecret,
+            Map<String, String> additionalParameters) throws Exception {
+
+        CommonsHttpOAuthConsumer consumer = new CommonsHttpOAuthConsumer(CONSUMER_KEY, CONSUMER_SECRET);
+        consumer.setAdditionalParameters(toHttpParameters(additionalParameters));
+
+        if (token != null) {
+            consumer.setTokenWithSecret(token, tokenSecret);
+        }
+
+        HttpPost request = new HttpPost(url);
+        consumer.sign(request);
+
+        String authorizationHeader = new OAuth1Signer(CONSUMER_KEY, CONSUMER_SECRET)
+                .getAuthorizationHeader("POST", url, token, tokenSecret, additionalParameters);
+
+        assertThat(authorizationHeader, equalTo(request.getFirstHeader("Authorization").getValue()));
+    }
+
+    @Test
+    public void signUrlShouldGenerateOAuthParameters() throws ShimException {
+
+        String signedUrl = new OAuth1Signer(CONSUMER_KEY, CONSUMER_SECRET)
+                .signUrl("https://api.example.com/data", "token", "secret", null);
+
+        assertThat(signedUrl, startsWith("https://api.example.com/data?oauth_consumer_key=consumer-key&oauth_nonce="));
+        assertThat(signedUrl.matches(".*&oauth_signature=[^&]+&oauth_signature_method=HMAC-SHA1&oauth_timestamp=\\d+"
+                + "&oauth_token=token&oauth_version=1.0"), equalTo(true));
+    }
+
+    @Test
+    public void signUrlShouldReuseMacsAcrossConsumers() throws ShimException {
+
+        Map<String, String> fixedParameters = parameters();
+        String url = "https://api.example.com/data?userid=42";
+
+        String firstSignedUrl = new OAuth1Signer(CONSUMER_KEY, CONSUMER_SECRET)
+                .signUrl(url, "token", "secret", fixedParameters);
+
+        new OAuth1Signer(CONSUMER_KEY, "another secret").signUrl(url, "token", "secret", fixedParameters);
+
+        String secondSignedUrl = new OAuth1Signer(CONSUMER_KEY, CONSUMER_SECRET)
+                .signUrl(url, "token", "secret", fixedParameters);
+
+        assertThat(secondSignedUrl, equalTo(firstSignedUrl));
+    }
+
+    @Test
+    public void getAuthorizationHeaderShouldSkipParametersWithoutValue() throws ShimException {
+
+        String authorizationHeader = new OAuth1Signer(CONSUMER_KEY, CONSUMER_SECRET).getAuthorizationHeader("POST",
+                "https://api.example.com/access_token", "token", "secret", parameters("oauth_verifier", null));
+
+        assertThat(authorizationHeader, startsWith("OAuth oauth_consumer_key=\"consumer-key\", oauth_nonce="));
+        assertThat(authorizationHeader, not(containsString("oauth_verifier")));
+        assertThat(authorizationHeader, not(containsString("null")));
+    }
+
+    @Test
+    public void percentEncodeShouldEncodeReservedCharacters() {
+
+        assertThat(OAuth1Signer.percentEncode(null), equalTo(""));
+        assertThat(OAuth1Signer.percentEncode("aZ09-._~"), equalTo("aZ09-._~"));
+        assertThat(OAuth1Signer.percentEncode("a b+c*d/é😀"), equalTo("a%20b%2Bc%2Ad%2F%C3%A9%F0%9F%98%80"));
+    }
+
+    /**
+     * @return additional parameters with a fixed nonce and timestamp, so that signatures are reproducible
+     */
+    private static Map<String, String> parameters(String... keysAndValues) {
+
+        Map<String, String> parameters = new HashMap<>();
+
+        parameters.put("oauth_nonce", "4572616e48616d6d65724c61686176");
+        parameters.put("oauth_timestamp", "1500000000");
+
+        for (int i = 0; i < keysAndValues.length; i += 2) {
+            parameters.put(keysAndValues[i], keysAndValues[i + 1]);
+        }
+
+        return parameters;
+    }
+
+    private static HttpParameters toHttpParameters(Map<String, String> parameters) {
+
+        HttpParameters httpParameters = new HttpParameters();
+        parameters.forEach(httpParameters::put);
+
+        return httpParameters;
+    }
+}
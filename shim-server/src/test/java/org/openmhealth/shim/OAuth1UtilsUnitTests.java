@@ -0,0 +1,65 @@
+/*
+ * Copyright 2017 Open mHealth
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.openmhealth.shim;
+
+import org.apache.http.client.methods.HttpRequestBase;
+import org.testng.annotations.Test;
+
+import java.net.URL;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.hamcrest.CoreMatchers.containsString;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.springframework.http.HttpMethod.POST;
+
+
+public class OAuth1UtilsUnitTests {
+
+    private static final String CALLBACK_URL = "https://shimmer.example.com/authorize/example/callback?state=abc";
+    private static final String ENCODED_CALLBACK_URL =
+            "https%3A%2F%2Fshimmer.example.com%2Fauthorize%2Fexample%2Fcallback%3Fstate%3Dabc";
+
+
+    @Test
+    public void buildSignedUrlShouldEncodeCallbackUrl() throws ShimException {
+
+        URL signedUrl = OAuth1Utils.buildSignedUrl("https://api.example.com/request_token", "client-id",
+                "client-secret", null, null, callbackParameters());
+
+        assertThat(signedUrl.toString(), containsString("oauth_callback=" + ENCODED_CALLBACK_URL));
+    }
+
+    @Test
+    public void getSignedRequestShouldEncodeCallbackUrl() throws ShimException {
+
+        HttpRequestBase request = OAuth1Utils.getSignedRequest(POST, "https://api.example.com/request_token",
+                "client-id", "client-secret", null, null, callbackParameters());
+
+        assertThat(request.getFirstHeader("Authorization").getValue(),
+                containsString("oauth_callback=\"" + ENCODED_CALLBACK_URL + "\""));
+    }
+
+    private static Map<String, String> callbackParameters() {
+
+        Map<String, String> parameters = new HashMap<>();
+
+        parameters.put("oauth_callback", CALLBACK_URL);
+
+        return parameters;
+    }
+}
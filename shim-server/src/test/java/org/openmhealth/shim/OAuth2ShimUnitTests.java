@@ -0,0 +1,276 @@
+/*
+ * Copyright 2017 Open mHealth
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.openmhealth.shim;
+
+import org.openmhealth.shim.misfit.MisfitClientSettings;
+import org.openmhealth.shim.misfit.MisfitShim;
+import org.openmhealth.shimmer.configuration.DeploymentSettings;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.client.ClientHttpRequestFactory;
+import org.springframework.security.oauth2.client.DefaultOAuth2ClientContext;
+import org.springframework.security.oauth2.client.OAuth2RestOperations;
+import org.springframework.security.oauth2.client.resource.UserRedirectRequiredException;
+import org.springframework.security.oauth2.client.token.DefaultAccessTokenRequest;
+import org.springframework.security.oauth2.client.token.grant.code.AuthorizationCodeAccessTokenProvider;
+import org.springframework.security.oauth2.common.DefaultOAuth2AccessToken;
+import org.springframework.web.client.HttpClientErrorException;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.net.URI;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import static java.util.Collections.emptyMap;
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.hasSize;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.springframework.http.HttpStatus.TOO_MANY_REQUESTS;
+import static org.springframework.http.HttpStatus.UNAUTHORIZED;
+import static org.springframework.test.util.ReflectionTestUtils.getField;
+import static org.springframework.test.util.ReflectionTestUtils.setField;
+
+
+public class OAuth2ShimUnitTests {
+
+    private static final URI AUTHORIZATION_CHECK_URI = URI.create("https://api.example.com/profile");
+
+    private TestOAuth2Shim shim;
+    private AccessParametersRepo accessParametersRepo;
+    private AuthorizationRequestParametersStore authorizationRequestParametersStore;
+
+
+    @BeforeMethod
+    public void initializeShim() {
+
+        accessParametersRepo = mock(AccessParametersRepo.class);
+        authorizationRequestParametersStore = mock(AuthorizationRequestParametersStore.class);
+        when(authorizationRequestParametersStore.save(any(AuthorizationRequestParameters.class)))
+                .then(invocation -> invocation.getArguments()[0]);
+
+        shim = new TestOAuth2Shim();
+        setField(shim, "accessParametersRepo", accessParametersRepo);
+        setField(shim, "authorizationRequestParametersStore", authorizationRequestParametersStore);
+        setField(shim, "deploymentSettings", new DeploymentSettings());
+    }
+
+    @Test
+    public void getAuthorizationRequestParametersShouldNotRequestDataWhenTokenIsStored() throws ShimException {
+
+        OAuth2RestOperations restTemplate = newAuthorizedRestTemplate("token");
+        shim.restTemplates.add(restTemplate);
+
+        AuthorizationRequestParameters parameters = shim.getAuthorizationRequestParameters("user", emptyMap());
+
+        assertThat(parameters.getIsAuthorized(), equalTo(true));
+        assertThat(shim.dataRequestCount, equalTo(0));
+        verify(restTemplate, never()).getForEntity(any(URI.class), any());
+    }
+
+    @Test
+    public void getAuthorizationRequestParametersShouldRedirectWithoutStoredToken() throws ShimException {
+
+        shim.restTemplates.add(newUnauthorizedRestTemplate());
+
+        AuthorizationRequestParameters parameters = shim.getAuthorizationRequestParameters("user", emptyMap());
+
+        assertThat(parameters.getIsAuthorized(), equalTo(false));
+        assertThat(parameters.getAuthorizationUrl(), equalTo("https://example.com/authorize"));
+        assertThat(shim.dataRequestCount, equalTo(0));
+    }
+
+    @Test
+    public void getAuthorizationRequestParametersShouldCacheAcceptedAuthorizationChecks() throws ShimException {
+
+        shim.authorizationCheckUri = AUTHORIZATION_CHECK_URI;
+
+        OAuth2RestOperations restTemplate = newAuthorizedRestTemplate("token");
+        shim.restTemplates.add(restTemplate);
+        shim.restTemplates.add(restTemplate);
+
+        assertThat(shim.getAuthorizationRequestParameters("user", emptyMap()).getIsAuthorized(), equalTo(true));
+        assertThat(shim.getAuthorizationRequestParameters("user", emptyMap()).getIsAuthorized(), equalTo(true));
+
+        verify(restTemplate, times(1)).getForEntity(AUTHORIZATION_CHECK_URI, byte[].class);
+    }
+
+    @Test
+    public void getAuthorizationRequestParametersShouldRedirectWhenAuthorizationCheckRejectsToken()
+            throws ShimException {
+
+        shim.authorizationCheckUri = AUTHORIZATION_CHECK_URI;
+
+        OAuth2RestOperations restTemplate = newAuthorizedRestTemplate("revoked-token");
+        when(restTemplate.getForEntity(AUTHORIZATION_CHECK_URI, byte[].class))
+                .thenThrow(new HttpClientErrorException(UNAUTHORIZED));
+
+        shim.restTemplates.add(restTemplate);
+        shim.restTemplates.add(newUnauthorizedRestTemplate());
+
+        AuthorizationRequestParameters parameters = shim.getAuthorizationRequestParameters("user", emptyMap());
+
+        assertThat(parameters.getIsAuthorized(), equalTo(false));
+        verify(accessParametersRepo).findAllByUsernameAndShimKey("user", TestOAuth2Shim.SHIM_KEY);
+    }
+
+    @Test
+    public void getAuthorizationRequestParametersShouldNotCacheInconclusiveAuthorizationChecks()
+            throws ShimException {
+
+        shim.authorizationCheckUri = AUTHORIZATION_CHECK_URI;
+
+        OAuth2RestOperations restTemplate = newAuthorizedRestTemplate("token");
+        when(restTemplate.getForEntity(AUTHORIZATION_CHECK_URI, byte[].class))
+                .thenThrow(new HttpClientErrorException(TOO_MANY_REQUESTS));
+
+        shim.restTemplates.add(restTemplate);
+        shim.restTemplates.add(restTemplate);
+
+        assertThat(shim.getAuthorizationRequestParameters("user", emptyMap()).getIsAuthorized(), equalTo(true));
+        assertThat(shim.getAuthorizationRequestParameters("user", emptyMap()).getIsAuthorized(), equalTo(true));
+
+        verify(restTemplate, times(2)).getForEntity(AUTHORIZATION_CHECK_URI, byte[].class);
+    }
+
+    @Test
+    public void restTemplateShouldUseSharedRequestFactory() {
+
+        ClientHttpRequestFactory requestFactory = mock(ClientHttpRequestFactory.class);
+
+        MisfitClientSettings clientSettings = new MisfitClientSettings();
+        clientSettings.setClientId("client-id");
+        clientSettings.setClientSecret("client-secret");
+
+        MisfitShim misfitShim = new MisfitShim();
+        setField(misfitShim, "clientSettings", clientSettings);
+        setField(misfitShim, "accessParametersRepo", accessParametersRepo);
+        setField(misfitShim, "accessTokenRefreshCoordinator", mock(AccessTokenRefreshCoordinator.class));
+        setField(misfitShim, "clientHttpRequestFactory", requestFactory);
+
+        OAuth2RestOperations restTemplate = misfitShim.restTemplate();
+
+        assertThat(getField(restTemplate, "requestFactory"), sameInstance(requestFactory));
+
+        List<?> tokenProviders = (List<?>) getField(getField(restTemplate, "accessTokenProvider"), "chain");
+
+        assertThat(tokenProviders, hasSize(1));
+        assertThat(getField(tokenProviders.get(0), "requestFactory"), sameInstance(requestFactory));
+    }
+
+    private OAuth2RestOperations newAuthorizedRestTemplate(String tokenValue) {
+
+        OAuth2RestOperations restTemplate = mock(OAuth2RestOperations.class);
+        when(restTemplate.getAccessToken()).thenReturn(new DefaultOAuth2AccessToken(tokenValue));
+
+        return restTemplate;
+    }
+
+    private OAuth2RestOperations newUnauthorizedRestTemplate() {
+
+        DefaultOAuth2ClientContext context = new DefaultOAuth2ClientContext(new DefaultAccessTokenRequest());
+        context.getAccessTokenRequest().setStateKey("state");
+
+        OAuth2RestOperations restTemplate = mock(OAuth2RestOperations.class);
+        when(restTemplate.getOAuth2ClientContext()).thenReturn(context);
+        when(restTemplate.getAccessToken())
+                .thenThrow(new UserRedirectRequiredException("https://example.com/authorize", new HashMap<>()));
+
+        return restTemplate;
+    }
+
+
+    static class TestOAuth2Shim extends OAuth2Shim {
+
+        static final String SHIM_KEY = "test";
+
+        private final Deque<OAuth2RestOperations> restTemplates = new ArrayDeque<>();
+        private URI authorizationCheckUri;
+        private int dataRequestCount;
+
+        @Override
+        protected OAuth2RestOperations restTemplate() {
+            return restTemplates.removeFirst();
+        }
+
+        @Override
+        protected Optional<URI> getAuthorizationCheckUri() {
+            return Optional.ofNullable(authorizationCheckUri);
+        }
+
+        @Override
+        protected ResponseEntity<ShimDataResponse> getData(OAuth2RestOperations restTemplate,
+                ShimDataRequest shimDataRequest) {
+
+            dataRequestCount++;
+
+            return ResponseEntity.ok(ShimDataResponse.empty(SHIM_KEY));
+        }
+
+        @Override
+        protected String getAuthorizationUrl(UserRedirectRequiredException exception,
+                Map<String, String> addlParameters) {
+
+            return exception.getRedirectUri();
+        }
+
+        @Override
+        protected OAuth2ClientSettings getClientSettings() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        protected AuthorizationCodeAccessTokenProvider getAuthorizationCodeAccessTokenProvider() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public String getShimKey() {
+            return SHIM_KEY;
+        }
+
+        @Override
+        public String getLabel() {
+            return "Test";
+        }
+
+        @Override
+        public String getUserAuthorizationUrl() {
+            return "https://example.com/authorize";
+        }
+
+        @Override
+        public String getAccessTokenUrl() {
+            return "https://example.com/token";
+        }
+
+        @Override
+        public ShimDataType[] getShimDataTypes() {
+            return new ShimDataType[0];
+        }
+    }
+}
@@ -0,0 +1,78 @@
+/*
+ * Copyright 2017 Open mHealth
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.openmhealth.shim;
+
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.mock.env.MockEnvironment;
+import org.testng.annotations.Test;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+
+public class OnClientIdConditionUnitTests {
+
+    @Test
+    public void componentShouldNotBeRegisteredWithoutClientId() {
+
+        assertThat(isRegistered(new MockEnvironment()), equalTo(false));
+    }
+
+    @Test
+    public void componentShouldNotBeRegisteredWithEmptyClientId() {
+
+        assertThat(isRegistered(new MockEnvironment().withProperty("openmhealth.shim.test.client-id", "")),
+                equalTo(false));
+    }
+
+    @Test
+    public void componentShouldBeRegisteredWithClientId() {
+
+        assertThat(isRegistered(new MockEnvironment().withProperty("openmhealth.shim.test.client-id", "foo")),
+                equalTo(true));
+    }
+
+    @Test
+    public void componentShouldBeRegisteredWithRelaxedClientIdName() {
+
+        assertThat(isRegistered(new MockEnvironment().withProperty("openmhealth.shim.test.clientId", "foo")),
+                equalTo(true));
+    }
+
+    private boolean isRegistered(MockEnvironment environment) {
+
+        AnnotationConfigApplicationContext context = new AnnotationConfigApplicationContext();
+
+        try {
+            context.setEnvironment(environment);
+            context.register(TestComponent.class);
+            context.refresh();
+
+            return !context.getBeansOfType(TestComponent.class).isEmpty();
+        }
+        finally {
+            context.close();
+        }
+    }
+
+
+    @ConditionalOnClientId("openmhealth.shim.test")
+    static class TestComponent {
+
+    }
+}
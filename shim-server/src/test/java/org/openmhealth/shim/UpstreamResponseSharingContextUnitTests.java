@@ -0,0 +1,119 @@
+/*
+ * Copyright 2017 Open mHealth
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.openmhealth.shim;
+
+import org.openmhealth.shim.UpstreamResponseSharingContext.SharedResponse;
+import org.testng.annotations.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static java.util.Collections.emptyMap;
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.openmhealth.shim.UpstreamResponseSharingContext.MAXIMUM_SHARED_BODY_SIZE_IN_BYTES;
+import static org.openmhealth.shim.UpstreamResponseSharingContext.isWholeBody;
+import static org.openmhealth.shim.UpstreamResponseSharingContext.readBodyPrefix;
+
+
+public class UpstreamResponseSharingContextUnitTests {
+
+    private final UpstreamResponseSharingContext context = new UpstreamResponseSharingContext();
+
+
+    @Test
+    public void getOrCallShouldShareResponsesWithTheSameKey() throws IOException {
+
+        AtomicInteger callCount = new AtomicInteger();
+
+        Optional<SharedResponse> firstResponse = context.getOrCall("a", () -> newResponse(callCount));
+        Optional<SharedResponse> secondResponse = context.getOrCall("a", () -> newResponse(callCount));
+
+        assertThat(secondResponse.get(), sameInstance(firstResponse.get()));
+        assertThat(callCount.get(), equalTo(1));
+    }
+
+    @Test
+    public void getOrCallShouldNotShareResponsesWithDifferentKeys() throws IOException {
+
+        AtomicInteger callCount = new AtomicInteger();
+
+        context.getOrCall("b", () -> newResponse(callCount));
+        context.getOrCall("c", () -> newResponse(callCount));
+
+        assertThat(callCount.get(), equalTo(2));
+    }
+
+    @Test
+    public void getOrCallShouldNotShareFailures() throws IOException {
+
+        AtomicInteger callCount = new AtomicInteger();
+
+        try {
+            context.getOrCall("d", () -> {
+                throw new IOException("upstream failure");
+            });
+        }
+        catch (IOException e) {
+            // expected
+        }
+
+        context.getOrCall("d", () -> newResponse(callCount));
+
+        assertThat(callCount.get(), equalTo(1));
+    }
+
+    @Test
+    public void getOrCallShouldNotShareUnshareableResponses() throws IOException {
+
+        AtomicInteger callCount = new AtomicInteger();
+
+        Optional<SharedResponse> firstResponse = context.getOrCall("e", () -> {
+            callCount.incrementAndGet();
+            return Optional.empty();
+        });
+
+        Optional<SharedResponse> secondResponse = context.getOrCall("e", () -> newResponse(callCount));
+
+        assertThat(firstResponse.isPresent(), equalTo(false));
+        assertThat(secondResponse.isPresent(), equalTo(true));
+        assertThat(callCount.get(), equalTo(2));
+    }
+
+    @Test
+    public void readBodyPrefixShouldStopAfterMaximumSharedBodySize() throws IOException {
+
+        byte[] smallBodyPrefix = readBodyPrefix(new ByteArrayInputStream(new byte[10]));
+        byte[] largeBodyPrefix =
+                readBodyPrefix(new ByteArrayInputStream(new byte[MAXIMUM_SHARED_BODY_SIZE_IN_BYTES * 2]));
+
+        assertThat(smallBodyPrefix.length, equalTo(10));
+        assertThat(isWholeBody(smallBodyPrefix), equalTo(true));
+        assertThat(largeBodyPrefix.length, equalTo(MAXIMUM_SHARED_BODY_SIZE_IN_BYTES + 1));
+        assertThat(isWholeBody(largeBodyPrefix), equalTo(false));
+    }
+
+    private Optional<SharedResponse> newResponse(AtomicInteger callCount) {
+
+        callCount.incrementAndGet();
+
+        return Optional.of(new SharedResponse(200, "OK", emptyMap(), new byte[0]));
+    }
+}
@@ -0,0 +1,157 @@
+/*
+ * Copyright 2017 Open mHealth
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.openmhealth.shim;
+
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.client.ClientHttpRequestExecution;
+import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.mock.http.client.MockClientHttpRequest;
+import org.springframework.mock.http.client.MockClientHttpResponse;
+import org.springframework.util.StreamUtils;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.net.URI;
+import java.util.Arrays;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.openmhealth.shim.UpstreamResponseSharingContext.MAXIMUM_SHARED_BODY_SIZE_IN_BYTES;
+import static org.springframework.http.HttpStatus.OK;
+import static org.springframework.http.HttpStatus.TOO_MANY_REQUESTS;
+
+
+public class UpstreamResponseSharingInterceptorUnitTests {
+
+    private final UpstreamResponseSharingInterceptor interceptor = new UpstreamResponseSharingInterceptor();
+    private final MockClientHttpRequest request =
+            new MockClientHttpRequest(HttpMethod.GET, URI.create("https://example.com/activities"));
+
+    private ClientHttpRequestExecution execution;
+
+
+    @BeforeMethod
+    public void initializeExecution() {
+
+        execution = mock(ClientHttpRequestExecution.class);
+    }
+
+    @AfterMethod
+    public void clearContext() {
+
+        UpstreamResponseSharingContext.clear();
+    }
+
+    @Test
+    public void interceptShouldNotShareResponsesWithoutContext() throws IOException {
+
+        givenResponses(newResponse(OK, "{}"), newResponse(OK, "{}"));
+
+        interceptor.intercept(request, new byte[0], execution);
+        interceptor.intercept(request, new byte[0], execution);
+
+        verify(execution, times(2)).execute(any(), any());
+    }
+
+    @Test
+    public void interceptShouldShareSuccessfulResponses() throws IOException {
+
+        UpstreamResponseSharingContext.start();
+        givenResponses(newResponse(OK, "{\"steps\":1}"), newResponse(OK, "{\"steps\":2}"));
+
+        ClientHttpResponse firstResponse = interceptor.intercept(request, new byte[0], execution);
+        ClientHttpResponse secondResponse = interceptor.intercept(request, new byte[0], execution);
+
+        assertThat(getBody(firstResponse), equalTo("{\"steps\":1}"));
+        assertThat(getBody(secondResponse), equalTo("{\"steps\":1}"));
+        verify(execution, times(1)).execute(any(), any());
+    }
+
+    @Test
+    public void interceptShouldNotShareErrorResponses() throws IOException {
+
+        UpstreamResponseSharingContext.start();
+        givenResponses(newResponse(TOO_MANY_REQUESTS, "slow down"), newResponse(OK, "{}"));
+
+        ClientHttpResponse firstResponse = interceptor.intercept(request, new byte[0], execution);
+        ClientHttpResponse secondResponse = interceptor.intercept(request, new byte[0], execution);
+
+        assertThat(firstResponse.getStatusCode(), equalTo(TOO_MANY_REQUESTS));
+        assertThat(getBody(firstResponse), equalTo("slow down"));
+        assertThat(secondResponse.getStatusCode(), equalTo(OK));
+        verify(execution, times(2)).execute(any(), any());
+    }
+
+    @Test
+    public void interceptShouldStreamLargeResponsesWithoutSharingThem() throws IOException {
+
+        UpstreamResponseSharingContext.start();
+
+        byte[] largeBody = new byte[MAXIMUM_SHARED_BODY_SIZE_IN_BYTES + 10];
+        Arrays.fill(largeBody, (byte) 'a');
+
+        when(execution.execute(any(), any())).thenReturn(
+                new MockClientHttpResponse(largeBody, OK), new MockClientHttpResponse(largeBody, OK));
+
+        ClientHttpResponse firstResponse = interceptor.intercept(request, new byte[0], execution);
+        ClientHttpResponse secondResponse = interceptor.intercept(request, new byte[0], execution);
+
+        assertThat(StreamUtils.copyToByteArray(firstResponse.getBody()), equalTo(largeBody));
+        assertThat(StreamUtils.copyToByteArray(secondResponse.getBody()), equalTo(largeBody));
+        verify(execution, times(2)).execute(any(), any());
+    }
+
+    @Test
+    public void interceptShouldNotShareResponsesToOtherMethods() throws IOException {
+
+        UpstreamResponseSharingContext.start();
+        givenResponses(newResponse(OK, "{}"), newResponse(OK, "{}"));
+
+        MockClientHttpRequest postRequest =
+                new MockClientHttpRequest(HttpMethod.POST, URI.create("https://example.com/activities"));
+
+        interceptor.intercept(postRequest, new byte[0], execution);
+        interceptor.intercept(postRequest, new byte[0], execution);
+
+        verify(execution, times(2)).execute(any(), any());
+    }
+
+    private void givenResponses(ClientHttpResponse firstResponse, ClientHttpResponse secondResponse)
+            throws IOException {
+
+        when(execution.execute(any(), any())).thenReturn(firstResponse, secondResponse);
+    }
+
+    private static ClientHttpResponse newResponse(HttpStatus status, String body) {
+
+        return new MockClientHttpResponse(body.getBytes(UTF_8), status);
+    }
+
+    private static String getBody(ClientHttpResponse response) throws IOException {
+
+        return StreamUtils.copyToString(response.getBody(), UTF_8);
+    }
+}
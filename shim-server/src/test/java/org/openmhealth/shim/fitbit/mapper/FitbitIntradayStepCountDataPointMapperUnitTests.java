@@ -22,10 +22,13 @@ import org.openmhealth.schema.domain.omh.DurationUnit;
 import org.openmhealth.schema.domain.omh.DurationUnitValue;
 import org.openmhealth.schema.domain.omh.StepCount2;
 import org.openmhealth.shim.common.mapper.DataPointMapperUnitTests;
+import org.openmhealth.shim.common.mapper.IntradayTimeSeries;
+import org.openmhealth.shim.common.mapper.IntradayTimeSeriesRollup;
 import org.testng.annotations.BeforeTest;
 import org.testng.annotations.Test;
 
 import java.io.IOException;
+import java.time.Duration;
 import java.time.OffsetDateTime;
 import java.util.List;
 
@@ -33,6 +36,7 @@ import static java.util.Collections.singletonList;
 import static org.hamcrest.CoreMatchers.*;
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.openmhealth.schema.domain.omh.TimeInterval.ofStartDateTimeAndDuration;
+import static org.openmhealth.shim.common.mapper.IntradayTimeSeriesRollup.Aggregate.MIN;
 import static org.openmhealth.shim.fitbit.mapper.FitbitDataPointMapper.RESOURCE_API_SOURCE_NAME;
 
 
@@ -56,6 +60,54 @@ public class FitbitIntradayStepCountDataPointMapperUnitTests extends DataPointMa
         assertThat(mapper.asDataPoints(singletonList(responseNode)).size(), equalTo(2));
     }
 
+    @Test
+    public void asDataPointsShouldReturnEmptyListForResponseWithoutDateSummary() throws IOException {
+
+        JsonNode emptyResponseNode = objectMapper.readTree("{\"activities-steps\":[],"
+                + "\"activities-steps-intraday\":{\"dataset\":[],\"datasetInterval\":1,\"datasetType\":\"minute\"}}");
+
+        assertThat(mapper.asDataPoints(singletonList(emptyResponseNode)).isEmpty(), equalTo(true));
+        assertThat(mapper.asTimeSeries(emptyResponseNode).size(), equalTo(0));
+    }
+
+    @Test
+    public void asTimeSeriesShouldKeepZeroValues() {
+
+        IntradayTimeSeries timeSeries = mapper.asTimeSeries(responseNode);
+
+        assertThat(timeSeries.size(), equalTo(3));
+        assertThat(timeSeries.getValue(1), equalTo(0L));
+        assertThat(timeSeries.getIntervalInSeconds(), equalTo(60L));
+        assertThat(timeSeries.getDurationsInSeconds().isPresent(), equalTo(false));
+    }
+
+    @Test
+    public void asDataPointsShouldExpandTimeSeriesIntoSameDataPoints() {
+
+        List<DataPoint<StepCount2>> expectedDataPoints = mapper.asDataPoints(singletonList(responseNode));
+        List<DataPoint<StepCount2>> dataPoints = mapper.asDataPoints(mapper.asTimeSeries(responseNode));
+
+        assertThat(dataPoints.size(), equalTo(expectedDataPoints.size()));
+
+        for (int i = 0; i < dataPoints.size(); i++) {
+            assertThat(dataPoints.get(i).getBody(), equalTo(expectedDataPoints.get(i).getBody()));
+            assertThat(dataPoints.get(i).getHeader().getAcquisitionProvenance().getAdditionalProperties(),
+                    equalTo(expectedDataPoints.get(i).getHeader().getAcquisitionProvenance()
+                            .getAdditionalProperties()));
+        }
+    }
+
+    @Test
+    public void rollUpShouldAccountForZeroValues() {
+
+        IntradayTimeSeries timeSeries = new IntradayTimeSeriesRollup(Duration.ofHours(1), MIN)
+                .rollUp(mapper.asTimeSeries(responseNode));
+
+        assertThat(timeSeries.size(), equalTo(2));
+        assertThat(timeSeries.getValue(0), equalTo(7L));
+        assertThat(timeSeries.getValue(1), equalTo(0L));
+    }
+
     @Test
     public void asDataPointsShouldSetExternalId() {
 
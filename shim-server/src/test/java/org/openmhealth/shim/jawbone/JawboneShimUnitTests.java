@@ -0,0 +1,136 @@
+/*
+ * Copyright 2017 Open mHealth
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.openmhealth.shim.jawbone;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.collect.Range;
+import org.openmhealth.shim.ShimDataRequest;
+import org.openmhealth.shimmer.common.domain.DataPointRequest;
+import org.openmhealth.shimmer.common.service.BearerTokenRequestEntityAssembler;
+import org.openmhealth.shimmer.common.service.DateTimeRangeRequestEntityAssembler;
+import org.openmhealth.shimmer.common.service.PaginatedResponseReader;
+import org.openmhealth.shimmer.common.service.PaginationRequestEntityAssembler;
+import org.openmhealth.shimmer.common.service.RequestEntityAssemblerChain;
+import org.openmhealth.shimmer.configuration.PaginationSettings;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.oauth2.client.OAuth2RestOperations;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.net.URI;
+import java.time.OffsetDateTime;
+import java.util.List;
+
+import static java.util.Arrays.asList;
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.instanceOf;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.hasSize;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.openmhealth.shim.jawbone.JawboneShim.JawboneDataTypes.STEP_COUNT;
+import static org.springframework.test.util.ReflectionTestUtils.setField;
+
+
+public class JawboneShimUnitTests {
+
+    private static final String FIRST_PAGE =
+            "{\"data\":{\"items\":[],\"links\":{\"next\":\"/nudge/api/v.1.1/users/@me/moves?page_token=1\"}}}";
+    private static final String LAST_PAGE = "{\"data\":{\"items\":[]}}";
+
+    private final RequestEntityAssemblerChain assemblerChain = new RequestEntityAssemblerChain(asList(
+            new DateTimeRangeRequestEntityAssembler(),
+            new PaginationRequestEntityAssembler(),
+            new BearerTokenRequestEntityAssembler()));
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private PaginatedResponseReader paginatedResponseReader;
+    private OAuth2RestOperations restTemplate;
+    private JawboneShim shim;
+
+
+    @BeforeMethod
+    public void initializeShim() {
+
+        paginatedResponseReader = new PaginatedResponseReader(new PaginationSettings());
+        restTemplate = mock(OAuth2RestOperations.class);
+
+        shim = new JawboneShim();
+        setField(shim, "paginatedResponseReader", paginatedResponseReader);
+        setField(shim, "requestEntityAssemblerChain", assemblerChain);
+    }
+
+    @AfterMethod
+    public void shutdownReader() {
+
+        paginatedResponseReader.shutdown();
+    }
+
+    @Test
+    public void endpointSettingsShouldProduceEpochSecondRangeRequestsWithPageSize() {
+
+        DataPointRequest request = new DataPointRequest(JawboneShim.newEndpointSettings(STEP_COUNT));
+        request.setEffectiveDateTimeRange(Range.closedOpen(
+                OffsetDateTime.parse("2017-03-01T00:00:00Z"),
+                OffsetDateTime.parse("2017-03-02T00:00:00Z")));
+
+        assertThat(assemblerChain.createRequestEntity(request).getUrl(), equalTo(URI.create(
+                "https://jawbone.com/nudge/api/v.1.1/users/@me/moves"
+                        + "?start_time=1488326400&end_time=1488412800&limit=100")));
+    }
+
+    @Test
+    public void getDataShouldReturnSingleRawPage() throws Exception {
+
+        when(restTemplate.getForEntity(any(URI.class), eq(JsonNode.class)))
+                .thenReturn(ResponseEntity.ok(objectMapper.readTree(LAST_PAGE)));
+
+        Object body = shim.getData(restTemplate, newRawShimDataRequest()).getBody().getBody();
+
+        assertThat(body, instanceOf(JsonNode.class));
+    }
+
+    @Test
+    public void getDataShouldReturnSeveralRawPagesAsList() throws Exception {
+
+        when(restTemplate.getForEntity(any(URI.class), eq(JsonNode.class)))
+                .thenReturn(ResponseEntity.ok(objectMapper.readTree(FIRST_PAGE)))
+                .thenReturn(ResponseEntity.ok(objectMapper.readTree(LAST_PAGE)));
+
+        Object body = shim.getData(restTemplate, newRawShimDataRequest()).getBody().getBody();
+
+        assertThat(body, instanceOf(List.class));
+        assertThat((List<?>) body, hasSize(2));
+    }
+
+    private ShimDataRequest newRawShimDataRequest() {
+
+        ShimDataRequest shimDataRequest = new ShimDataRequest();
+
+        shimDataRequest.setDataTypeKey(STEP_COUNT.name());
+        shimDataRequest.setNormalize(false);
+        shimDataRequest.setStartDateTime(OffsetDateTime.parse("2017-03-01T00:00:00Z"));
+        shimDataRequest.setEndDateTime(OffsetDateTime.parse("2017-03-02T00:00:00Z"));
+
+        return shimDataRequest;
+    }
+}
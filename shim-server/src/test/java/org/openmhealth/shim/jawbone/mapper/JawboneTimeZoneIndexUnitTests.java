@@ -0,0 +1,133 @@
+/*
+ * Copyright 2017 Open mHealth
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.openmhealth.shim.jawbone.mapper;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.sameInstance;
+
+
+public class JawboneTimeZoneIndexUnitTests {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private JawboneTimeZoneIndex index;
+
+
+    @BeforeClass
+    public void initializeIndex() throws IOException {
+
+        // listed out of order, with a duplicate start time and a start time that isn't after the epoch
+        index = JawboneTimeZoneIndex.of(objectMapper.readTree("{\"details\": {\"tz\": null, \"tzs\": [" +
+                "[1439994003, \"Pacific/Honolulu\"], " +
+                "[1439219760, \"America/Denver\"], " +
+                "[0, \"Europe/Berlin\"], " +
+                "[1439494003, \"America/Los_Angeles\"], " +
+                "[1439494003, \"America/Chicago\"]" +
+                "]}}"));
+    }
+
+    @Test
+    public void getTimeZoneShouldReturnUtcBeforeFirstTimeZone() {
+
+        assertThat(index.getTimeZone(1439219759L), equalTo(ZoneOffset.UTC));
+    }
+
+    @Test
+    public void getTimeZoneShouldReturnTimeZoneStartingAtTimestamp() {
+
+        assertThat(index.getTimeZone(1439219760L), equalTo(ZoneId.of("America/Denver")));
+        assertThat(index.getTimeZone(1439994003L), equalTo(ZoneId.of("Pacific/Honolulu")));
+    }
+
+    @Test
+    public void getTimeZoneShouldReturnLatestTimeZoneStartingBeforeTimestamp() {
+
+        assertThat(index.getTimeZone(1439494002L), equalTo(ZoneId.of("America/Denver")));
+        assertThat(index.getTimeZone(1439994002L), equalTo(ZoneId.of("America/Los_Angeles")));
+        assertThat(index.getTimeZone(1500000000L), equalTo(ZoneId.of("Pacific/Honolulu")));
+    }
+
+    @Test
+    public void getTimeZoneShouldMatchLinearSearch() throws IOException {
+
+        JsonNode listEntryNode = objectMapper.readTree("{\"details\": {\"tzs\": [" +
+                "[1439494003, \"America/Los_Angeles\"], [1439994003, -36000], [1439219760, \"GMT-0600\"]]}}");
+
+        JawboneTimeZoneIndex entryIndex = JawboneTimeZoneIndex.of(listEntryNode);
+
+        for (long timestamp = 1439219000L; timestamp < 1440000000L; timestamp += 3_601) {
+            assertThat(entryIndex.getTimeZone(timestamp), equalTo(getTimeZoneByLinearSearch(listEntryNode, timestamp)));
+        }
+    }
+
+    @Test
+    public void ofShouldUseSingleTimeZoneForAllTimestamps() throws IOException {
+
+        JawboneTimeZoneIndex singleTimeZoneIndex = JawboneTimeZoneIndex.of(
+                objectMapper.readTree("{\"details\": {\"tzs\": [[1439219760, \"America/Denver\"]]}}"));
+
+        assertThat(singleTimeZoneIndex.getTimeZone(0L), equalTo(ZoneId.of("America/Denver")));
+    }
+
+    @Test
+    public void ofShouldFallBackToTimeZoneProperty() throws IOException {
+
+        JawboneTimeZoneIndex fallbackIndex =
+                JawboneTimeZoneIndex.of(objectMapper.readTree("{\"details\": {\"tz\": \"Asia/Kathmandu\"}}"));
+
+        assertThat(fallbackIndex.getTimeZone(1439219760L), equalTo(ZoneId.of("Asia/Kathmandu")));
+    }
+
+    @Test
+    public void parseZoneShouldReturnSameInstanceForSameTimeZone() throws IOException {
+
+        ZoneId zoneId = JawboneDataPointMapper.parseZone(objectMapper.readTree("\"America/Denver\""));
+
+        assertThat(JawboneDataPointMapper.parseZone(objectMapper.readTree("\"America/Denver\"")), sameInstance(zoneId));
+    }
+
+    /**
+     * @return the time zone of the latest entry that started after the epoch and before the timestamp, as the mapper
+     * used to find it
+     */
+    private static ZoneId getTimeZoneByLinearSearch(JsonNode listEntryNode, long timestamp) {
+
+        ZoneId zoneId = ZoneOffset.UTC;
+        long latestStartTime = 0;
+
+        for (JsonNode timeZoneNode : listEntryNode.path("details").path("tzs")) {
+            long startTime = timeZoneNode.get(0).asLong();
+
+            if (timestamp >= startTime && startTime > latestStartTime) {
+                zoneId = JawboneDataPointMapper.parseZone(timeZoneNode.get(1));
+                latestStartTime = startTime;
+            }
+        }
+
+        return zoneId;
+    }
+}
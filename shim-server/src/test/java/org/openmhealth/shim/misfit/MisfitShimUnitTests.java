@@ -0,0 +1,131 @@
+/*
+ * Copyright 2017 Open mHealth
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.openmhealth.shim.misfit;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.collect.Range;
+import org.openmhealth.shim.ShimDataRequest;
+import org.openmhealth.shimmer.common.domain.DataPointRequest;
+import org.openmhealth.shimmer.common.service.BearerTokenRequestEntityAssembler;
+import org.openmhealth.shimmer.common.service.DateTimeQueryExecutor;
+import org.openmhealth.shimmer.common.service.DateTimeQueryPlanner;
+import org.openmhealth.shimmer.common.service.DateTimeRangeRequestEntityAssembler;
+import org.openmhealth.shimmer.common.service.PaginationRequestEntityAssembler;
+import org.openmhealth.shimmer.common.service.RequestEntityAssemblerChain;
+import org.openmhealth.shimmer.configuration.DateTimeQueryExecutionSettings;
+import org.springframework.http.RequestEntity;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.oauth2.client.OAuth2RestOperations;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.net.URI;
+import java.time.OffsetDateTime;
+import java.util.List;
+
+import static java.util.Arrays.asList;
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.instanceOf;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.hasSize;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.openmhealth.shim.misfit.MisfitShim.MisfitDataTypes.STEP_COUNT;
+import static org.springframework.test.util.ReflectionTestUtils.setField;
+
+
+public class MisfitShimUnitTests {
+
+    private final RequestEntityAssemblerChain assemblerChain = new RequestEntityAssemblerChain(asList(
+            new DateTimeRangeRequestEntityAssembler(),
+            new PaginationRequestEntityAssembler(),
+            new BearerTokenRequestEntityAssembler()));
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private DateTimeQueryExecutor dateTimeQueryExecutor;
+    private OAuth2RestOperations restTemplate;
+    private MisfitShim shim;
+
+
+    @BeforeMethod
+    public void initializeShim() throws Exception {
+
+        dateTimeQueryExecutor = new DateTimeQueryExecutor(new DateTimeQueryExecutionSettings());
+
+        restTemplate = mock(OAuth2RestOperations.class);
+        when(restTemplate.exchange(any(RequestEntity.class), eq(JsonNode.class)))
+                .thenReturn(ResponseEntity.ok(objectMapper.readTree("{\"summary\":[]}")));
+
+        shim = new MisfitShim();
+        setField(shim, "dateTimeQueryPlanner", new DateTimeQueryPlanner());
+        setField(shim, "dateTimeQueryExecutor", dateTimeQueryExecutor);
+        setField(shim, "requestEntityAssemblerChain", assemblerChain);
+    }
+
+    @AfterMethod
+    public void shutdownExecutor() {
+
+        dateTimeQueryExecutor.shutdown();
+    }
+
+    @Test
+    public void endpointSettingsShouldProduceInclusiveDateRangeRequests() {
+
+        DataPointRequest request = new DataPointRequest(MisfitShim.newEndpointSettings(STEP_COUNT));
+        request.setEffectiveDateTimeRange(Range.closedOpen(
+                OffsetDateTime.parse("2017-03-01T00:00:00Z"),
+                OffsetDateTime.parse("2017-04-01T00:00:00Z")));
+
+        assertThat(assemblerChain.createRequestEntity(request).getUrl(), equalTo(URI.create(
+                "https://api.misfitwearables.com/move/resource/v1/user/me/activity/summary"
+                        + "?detail=true&start_date=2017-03-01&end_date=2017-03-31")));
+    }
+
+    @Test
+    public void getDataShouldReturnRawResponseOfSingleWindow() throws Exception {
+
+        Object body = shim.getData(restTemplate, newRawShimDataRequest("2017-03-01", "2017-03-31")).getBody().getBody();
+
+        assertThat(body, instanceOf(JsonNode.class));
+    }
+
+    @Test
+    public void getDataShouldReturnRawResponsesOfSeveralWindowsAsList() throws Exception {
+
+        Object body = shim.getData(restTemplate, newRawShimDataRequest("2017-03-01", "2017-04-30")).getBody().getBody();
+
+        assertThat(body, instanceOf(List.class));
+        assertThat((List<?>) body, hasSize(2));
+    }
+
+    private ShimDataRequest newRawShimDataRequest(String startDate, String endDate) {
+
+        ShimDataRequest shimDataRequest = new ShimDataRequest();
+
+        shimDataRequest.setDataTypeKey(STEP_COUNT.name());
+        shimDataRequest.setNormalize(false);
+        shimDataRequest.setStartDateTime(OffsetDateTime.parse(startDate + "T00:00:00Z"));
+        shimDataRequest.setEndDateTime(OffsetDateTime.parse(endDate + "T00:00:00Z"));
+
+        return shimDataRequest;
+    }
+}
@@ -0,0 +1,190 @@
+/*
+ * Copyright 2017 Open mHealth
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.openmhealth.shim.moves.mapper;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import org.openmhealth.schema.domain.omh.DataPoint;
+import org.openmhealth.schema.domain.omh.DataPointAcquisitionProvenance;
+import org.openmhealth.schema.domain.omh.Geoposition;
+import org.openmhealth.schema.domain.omh.TimeFrame;
+import org.openmhealth.shim.common.mapper.DataPointMapperUnitTests;
+import org.springframework.core.io.ClassPathResource;
+import org.testng.annotations.BeforeTest;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.List;
+
+import static java.util.Arrays.asList;
+import static java.util.stream.Collectors.toList;
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.empty;
+import static org.openmhealth.schema.domain.omh.DataPointModality.SENSED;
+import static org.openmhealth.schema.domain.omh.PlaneAngleUnit.DEGREE_OF_ARC;
+import static org.openmhealth.shim.moves.mapper.MovesDataPointMapper.RESOURCE_API_SOURCE_NAME;
+
+
+public class MovesGeopositionDataPointMapperUnitTests extends DataPointMapperUnitTests {
+
+    private static final String STORYLINE_RESOURCE_NAME =
+            "/org/openmhealth/shim/moves/mapper/moves-user-storyline-daily.json";
+
+    private final MovesGeopositionDataPointMapper mapper = new MovesGeopositionDataPointMapper();
+    private JsonNode storylineResponseNode;
+    private JsonNode storylineNoSegmentsResponseNode;
+    private JsonNode storylineNoTrackPointsResponseNode;
+
+    @BeforeTest
+    public void initializeResponseNodes() throws IOException {
+
+        storylineResponseNode = asJsonNode(STORYLINE_RESOURCE_NAME);
+        storylineNoSegmentsResponseNode =
+                asJsonNode("/org/openmhealth/shim/moves/mapper/moves-user-storyline-daily-no-segments.json");
+        storylineNoTrackPointsResponseNode =
+                asJsonNode("/org/openmhealth/shim/moves/mapper/moves-user-storyline-daily-no-track-points.json");
+    }
+
+    @Test
+    public void asDataPointsShouldReturnCorrectNumberOfDataPoints() {
+
+        assertThat(mapper.asDataPoints(storylineResponseNode).size(), equalTo(17));
+    }
+
+    @Test
+    public void asDataPointsShouldReturnEmptyListIfResponseHasNoSegments() {
+
+        assertThat(mapper.asDataPoints(storylineNoSegmentsResponseNode), empty());
+    }
+
+    @Test
+    public void asDataPointsShouldReturnEmptyListIfResponseHasNoTrackPoints() {
+
+        assertThat(mapper.asDataPoints(storylineNoTrackPointsResponseNode), empty());
+    }
+
+    @Test
+    public void asDataPointsShouldReturnCorrectDataPoints() {
+
+        List<DataPoint<Geoposition>> dataPoints = mapper.asDataPoints(storylineResponseNode);
+
+        OffsetDateTime effectiveDateTime = OffsetDateTime.of(2012, 12, 12, 7, 14, 30, 0, ZoneOffset.ofHours(2));
+
+        Geoposition geoposition = new Geoposition.Builder(
+                DEGREE_OF_ARC.newUnitValue(55.55555),
+                DEGREE_OF_ARC.newUnitValue(33.33333),
+                new TimeFrame(effectiveDateTime))
+                .build();
+
+        DataPoint<Geoposition> firstDataPoint = dataPoints.get(0);
+
+        assertThat(firstDataPoint.getBody(), equalTo(geoposition));
+
+        DataPointAcquisitionProvenance acquisitionProvenance = firstDataPoint.getHeader().getAcquisitionProvenance();
+
+        assertThat(acquisitionProvenance.getSourceName(), equalTo(RESOURCE_API_SOURCE_NAME));
+        assertThat(acquisitionProvenance.getModality(), equalTo(SENSED));
+        assertThat(acquisitionProvenance.getAdditionalProperty("external_id").get(),
+                equalTo("trackPoint-" + effectiveDateTime.toEpochSecond()));
+    }
+
+    @Test
+    public void asDataPointsShouldMapResponseBodyLikeResponseNode() throws IOException {
+
+        List<DataPoint<Geoposition>> dataPoints;
+
+        try (InputStream responseBody = new ClassPathResource(STORYLINE_RESOURCE_NAME).getInputStream()) {
+            dataPoints = mapper.asDataPoints(responseBody);
+        }
+
+        assertThat(getBodies(dataPoints), equalTo(getBodies(mapper.asDataPoints(storylineResponseNode))));
+    }
+
+    @Test
+    public void asDataPointsShouldThinTrackPointsByTime() {
+
+        List<DataPoint<Geoposition>> dataPoints =
+                new MovesGeopositionDataPointMapper(0, 60).asDataPoints(storylineResponseNode);
+
+        // points less than a minute after the last kept point are dropped, unless they end their activity
+        assertThat(dataPoints.size(), equalTo(14));
+    }
+
+    @Test
+    public void asDataPointsShouldMapTrackPointsSharedByActivitiesOnce() throws IOException {
+
+        JsonNode responseNode = objectMapper.readTree("[{\"segments\": [{\"activities\": [" +
+                "{\"trackPoints\": [" +
+                "{\"lat\": 0.0, \"lon\": 0.0, \"time\": \"20121212T100000+0200\"}, " +
+                "{\"lat\": 0.001, \"lon\": 0.0, \"time\": \"20121212T100100+0200\"}]}, " +
+                "{\"trackPoints\": [" +
+                "{\"lat\": 0.001, \"lon\": 0.0, \"time\": \"20121212T100100+0200\"}, " +
+                "{\"lat\": 0.002, \"lon\": 0.0, \"time\": \"20121212T100200+0200\"}]}" +
+                "]}]}]");
+
+        List<String> externalIds = mapper.asDataPoints(responseNode).stream()
+                .map(dataPoint -> dataPoint.getHeader().getAcquisitionProvenance()
+                        .getAdditionalProperty("external_id").get().toString())
+                .collect(toList());
+
+        OffsetDateTime startDateTime = OffsetDateTime.of(2012, 12, 12, 10, 0, 0, 0, ZoneOffset.ofHours(2));
+
+        assertThat(externalIds, equalTo(asList(
+                "trackPoint-" + startDateTime.toEpochSecond(),
+                "trackPoint-" + startDateTime.plusMinutes(1).toEpochSecond(),
+                "trackPoint-" + startDateTime.plusMinutes(2).toEpochSecond())));
+    }
+
+    @Test
+    public void asDataPointsShouldThinTrackPointsByDistance() throws IOException {
+
+        JsonNode responseNode = objectMapper.readTree("[{\"segments\": [{\"activities\": [{\"trackPoints\": [" +
+                "{\"lat\": 0.0, \"lon\": 0.0, \"time\": \"20121212T100000+0200\"}, " +
+                "{\"lat\": 0.0001, \"lon\": 0.0, \"time\": \"20121212T100010+0200\"}, " +
+                "{\"lat\": 0.0002, \"lon\": 0.0, \"time\": \"20121212T100020+0200\"}, " +
+                "{\"lat\": 0.001, \"lon\": 0.0, \"time\": \"20121212T100030+0200\"}, " +
+                "{\"lat\": 0.0011, \"lon\": 0.0, \"time\": \"20121212T100040+0200\"}" +
+                "]}]}]}]");
+
+        List<Double> latitudes = getBodies(new MovesGeopositionDataPointMapper(50, 0).asDataPoints(responseNode))
+                .stream()
+                .map(geoposition -> geoposition.getLatitude().getValue().doubleValue())
+                .collect(toList());
+
+        // a ten-thousandth of a degree of latitude is about 11 meters
+        assertThat(latitudes, equalTo(asList(0.0, 0.001, 0.0011)));
+    }
+
+    @Test
+    public void asDataPointsShouldSkipTrackPointsWithoutCoordinates() throws IOException {
+
+        JsonNode responseNode = objectMapper.readTree("[{\"segments\": [{\"activities\": [{\"trackPoints\": [" +
+                "{\"lon\": 0.0, \"time\": \"20121212T100000+0200\"}, " +
+                "{\"lat\": 0.0, \"lon\": 0.0, \"time\": \"20121212T100010+0200\"}" +
+                "]}]}]}]");
+
+        assertThat(mapper.asDataPoints(responseNode).size(), equalTo(1));
+    }
+
+    private List<Geoposition> getBodies(List<DataPoint<Geoposition>> dataPoints) {
+
+        return dataPoints.stream().map(DataPoint::getBody).collect(toList());
+    }
+}
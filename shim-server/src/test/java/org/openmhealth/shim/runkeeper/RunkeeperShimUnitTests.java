@@ -0,0 +1,137 @@
+/*
+ * Copyright 2017 Open mHealth
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.openmhealth.shim.runkeeper;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.collect.Range;
+import org.openmhealth.shim.ShimDataRequest;
+import org.openmhealth.shimmer.common.domain.DataPointRequest;
+import org.openmhealth.shimmer.common.service.BearerTokenRequestEntityAssembler;
+import org.openmhealth.shimmer.common.service.DateTimeRangeRequestEntityAssembler;
+import org.openmhealth.shimmer.common.service.PaginatedResponseReader;
+import org.openmhealth.shimmer.common.service.PaginationRequestEntityAssembler;
+import org.openmhealth.shimmer.common.service.RequestEntityAssemblerChain;
+import org.openmhealth.shimmer.configuration.PaginationSettings;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.oauth2.client.OAuth2RestOperations;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.net.URI;
+import java.time.OffsetDateTime;
+import java.util.List;
+
+import static java.util.Arrays.asList;
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.instanceOf;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.hasSize;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.openmhealth.shim.runkeeper.RunkeeperShim.RunkeeperDataType.PHYSICAL_ACTIVITY;
+import static org.springframework.http.HttpMethod.GET;
+import static org.springframework.test.util.ReflectionTestUtils.setField;
+
+
+public class RunkeeperShimUnitTests {
+
+    private static final String FIRST_PAGE = "{\"items\":[],\"next\":\"/fitnessActivities?page=1\"}";
+    private static final String LAST_PAGE = "{\"items\":[]}";
+
+    private final RequestEntityAssemblerChain assemblerChain = new RequestEntityAssemblerChain(asList(
+            new DateTimeRangeRequestEntityAssembler(),
+            new PaginationRequestEntityAssembler(),
+            new BearerTokenRequestEntityAssembler()));
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private PaginatedResponseReader paginatedResponseReader;
+    private OAuth2RestOperations restTemplate;
+    private RunkeeperShim shim;
+
+
+    @BeforeMethod
+    public void initializeShim() {
+
+        paginatedResponseReader = new PaginatedResponseReader(new PaginationSettings());
+        restTemplate = mock(OAuth2RestOperations.class);
+
+        shim = new RunkeeperShim();
+        setField(shim, "paginatedResponseReader", paginatedResponseReader);
+        setField(shim, "requestEntityAssemblerChain", assemblerChain);
+    }
+
+    @AfterMethod
+    public void shutdownReader() {
+
+        paginatedResponseReader.shutdown();
+    }
+
+    @Test
+    public void endpointSettingsShouldProduceInclusiveDateRangeRequestsWithPageSize() {
+
+        DataPointRequest request = new DataPointRequest(RunkeeperShim.newEndpointSettings(PHYSICAL_ACTIVITY));
+        request.setEffectiveDateTimeRange(Range.closedOpen(
+                OffsetDateTime.parse("2017-03-01T00:00:00+02:00"),
+                OffsetDateTime.parse("2017-04-01T00:00:00+02:00")));
+
+        assertThat(assemblerChain.createRequestEntity(request).getUrl(), equalTo(URI.create(
+                "https://api.runkeeper.com/fitnessActivities"
+                        + "?detail=true&noEarlierThan=2017-03-01&noLaterThan=2017-03-31&pageSize=100")));
+    }
+
+    @Test
+    public void getDataShouldReturnSingleRawPage() throws Exception {
+
+        when(restTemplate.exchange(any(URI.class), eq(GET), any(HttpEntity.class), eq(JsonNode.class)))
+                .thenReturn(ResponseEntity.ok(objectMapper.readTree(LAST_PAGE)));
+
+        Object body = shim.getData(restTemplate, newRawShimDataRequest()).getBody().getBody();
+
+        assertThat(body, instanceOf(JsonNode.class));
+    }
+
+    @Test
+    public void getDataShouldReturnSeveralRawPagesAsList() throws Exception {
+
+        when(restTemplate.exchange(any(URI.class), eq(GET), any(HttpEntity.class), eq(JsonNode.class)))
+                .thenReturn(ResponseEntity.ok(objectMapper.readTree(FIRST_PAGE)))
+                .thenReturn(ResponseEntity.ok(objectMapper.readTree(LAST_PAGE)));
+
+        Object body = shim.getData(restTemplate, newRawShimDataRequest()).getBody().getBody();
+
+        assertThat(body, instanceOf(List.class));
+        assertThat((List<?>) body, hasSize(2));
+    }
+
+    private ShimDataRequest newRawShimDataRequest() {
+
+        ShimDataRequest shimDataRequest = new ShimDataRequest();
+
+        shimDataRequest.setDataTypeKey(PHYSICAL_ACTIVITY.name());
+        shimDataRequest.setNormalize(false);
+        shimDataRequest.setStartDateTime(OffsetDateTime.parse("2017-03-01T00:00:00Z"));
+        shimDataRequest.setEndDateTime(OffsetDateTime.parse("2017-03-02T00:00:00Z"));
+
+        return shimDataRequest;
+    }
+}
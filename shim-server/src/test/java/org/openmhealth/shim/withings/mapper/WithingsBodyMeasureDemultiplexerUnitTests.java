@@ -0,0 +1,95 @@
+/*
+ * Copyright 2017 Open mHealth
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.openmhealth.shim.withings.mapper;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import org.openmhealth.schema.domain.omh.DataPoint;
+import org.openmhealth.shim.common.mapper.DataPointMapperUnitTests;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.util.List;
+import java.util.Map;
+
+import static java.util.Arrays.asList;
+import static java.util.stream.Collectors.toList;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.equalTo;
+
+
+public class WithingsBodyMeasureDemultiplexerUnitTests extends DataPointMapperUnitTests {
+
+    private final List<WithingsBodyMeasureDataPointMapper<?>> mappers = asList(
+            new WithingsBloodPressureDataPointMapper(),
+            new WithingsBodyHeightDataPointMapper(),
+            new WithingsBodyTemperatureDataPointMapper(),
+            new WithingsBodyWeightDataPointMapper(),
+            new WithingsHeartRateDataPointMapper());
+
+    private final WithingsBodyMeasureDemultiplexer demultiplexer = new WithingsBodyMeasureDemultiplexer(mappers);
+
+    private JsonNode responseNode;
+
+    @BeforeMethod
+    public void initializeResponseNode() {
+
+        responseNode = asJsonNode("org/openmhealth/shim/withings/mapper/withings-body-measures.json");
+    }
+
+    @Test
+    public void asDataPointsShouldReturnDataPointsOfEachMapperInOrder() {
+
+        Map<WithingsBodyMeasureDataPointMapper<?>, List<DataPoint<?>>> dataPointsByMapper =
+                demultiplexer.asDataPoints(responseNode);
+
+        assertThat(dataPointsByMapper.keySet(), contains(mappers.toArray()));
+    }
+
+    @Test
+    public void asDataPointsShouldReturnSameDataPointsAsIndividualMappers() {
+
+        Map<WithingsBodyMeasureDataPointMapper<?>, List<DataPoint<?>>> dataPointsByMapper =
+                demultiplexer.asDataPoints(responseNode);
+
+        for (WithingsBodyMeasureDataPointMapper<?> mapper : mappers) {
+
+            List<?> expectedBodies = mapper.asDataPoints(responseNode).stream()
+                    .map(DataPoint::getBody)
+                    .collect(toList());
+
+            List<?> actualBodies = dataPointsByMapper.get(mapper).stream()
+                    .map(DataPoint::getBody)
+                    .collect(toList());
+
+            assertThat(actualBodies, equalTo(expectedBodies));
+        }
+    }
+
+    @Test
+    public void asDataPointsShouldSkipGoals() {
+
+        JsonNode responseNodeWithGoal =
+                asJsonNode("org/openmhealth/shim/withings/mapper/withings-body-measures-only-goal.json");
+
+        for (List<DataPoint<?>> dataPoints : demultiplexer.asDataPoints(responseNodeWithGoal).values()) {
+            assertThat(dataPoints, empty());
+        }
+    }
+}
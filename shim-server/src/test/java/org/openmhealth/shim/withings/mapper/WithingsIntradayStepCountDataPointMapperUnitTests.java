@@ -20,6 +20,7 @@ import com.fasterxml.jackson.databind.JsonNode;
 import org.openmhealth.schema.domain.omh.DataPoint;
 import org.openmhealth.schema.domain.omh.StepCount2;
 import org.openmhealth.shim.common.mapper.DataPointMapperUnitTests;
+import org.openmhealth.shim.common.mapper.IntradayTimeSeries;
 import org.testng.annotations.BeforeTest;
 import org.testng.annotations.Test;
 
@@ -67,6 +68,35 @@ public class WithingsIntradayStepCountDataPointMapperUnitTests extends DataPoint
         testIntradayStepCountDataPoint(dataPoints.get(3), 74, "2015-06-20T00:41:00Z", 60L);
     }
 
+    @Test
+    public void asTimeSeriesShouldReturnCorrectTimeSeries() {
+
+        IntradayTimeSeries timeSeries = mapper.asTimeSeries(responseNode);
+
+        assertThat(timeSeries.getBodySchemaId(), equalTo(StepCount2.SCHEMA_ID));
+        assertThat(timeSeries.getStartDateTime().get(), equalTo(OffsetDateTime.parse("2015-06-20T00:04:00Z")));
+        assertThat(timeSeries.getIntervalInSeconds(), equalTo(60L));
+        assertThat(timeSeries.getOffsetsInSeconds(), equalTo(new int[] {0, 1500, 1560, 2220}));
+        assertThat(timeSeries.getDurationsInSeconds().isPresent(), equalTo(false));
+        assertThat(timeSeries.getValues(), equalTo(new long[] {21, 47, 20, 74}));
+    }
+
+    @Test
+    public void asDataPointsShouldExpandTimeSeriesIntoSameDataPoints() {
+
+        List<DataPoint<StepCount2>> expectedDataPoints = mapper.asDataPoints(responseNode);
+        List<DataPoint<StepCount2>> dataPoints = mapper.asDataPoints(mapper.asTimeSeries(responseNode));
+
+        assertThat(dataPoints.size(), equalTo(expectedDataPoints.size()));
+
+        for (int i = 0; i < dataPoints.size(); i++) {
+            assertThat(dataPoints.get(i).getBody(), equalTo(expectedDataPoints.get(i).getBody()));
+            assertThat(dataPoints.get(i).getHeader().getAcquisitionProvenance().getAdditionalProperties(),
+                    equalTo(expectedDataPoints.get(i).getHeader().getAcquisitionProvenance()
+                            .getAdditionalProperties()));
+        }
+    }
+
     public void testIntradayStepCountDataPoint(
             DataPoint<StepCount2> stepCountDataPoint,
             long expectedStepCountValue,
@@ -0,0 +1,120 @@
+/*
+ * Copyright 2017 Open mHealth
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.openmhealth.shimmer.common.configuration;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import com.fasterxml.jackson.datatype.jdk8.Jdk8Module;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.time.OffsetDateTime;
+import java.util.Optional;
+
+import static com.fasterxml.jackson.databind.PropertyNamingStrategy.SNAKE_CASE;
+import static com.fasterxml.jackson.databind.SerializationFeature.WRITE_DATES_AS_TIMESTAMPS;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.instanceOf;
+
+
+public class BinaryFormatConfigurationUnitTests {
+
+    private final ObjectMapper objectMapper = new ObjectMapper()
+            .registerModule(new JavaTimeModule())
+            .registerModule(new Jdk8Module())
+            .setPropertyNamingStrategy(SNAKE_CASE)
+            .disable(WRITE_DATES_AS_TIMESTAMPS);
+
+    private final Sample sample = new Sample(OffsetDateTime.parse("2017-06-01T10:15:30+02:00"), "walked");
+
+
+    @DataProvider
+    public Object[][] factories() {
+
+        return new Object[][] {
+                {new SmileFactory()},
+                {new CBORFactory()}
+        };
+    }
+
+    @Test(dataProvider = "factories")
+    public void newObjectMapperShouldUseFactory(JsonFactory factory) {
+
+        ObjectMapper formatObjectMapper = BinaryFormatConfiguration.newObjectMapper(objectMapper, factory);
+
+        assertThat(formatObjectMapper.getFactory(), instanceOf(factory.getClass()));
+    }
+
+    @Test(dataProvider = "factories")
+    public void newObjectMapperShouldWriteSameTreeAsObjectMapper(JsonFactory factory) throws IOException {
+
+        ObjectMapper formatObjectMapper = BinaryFormatConfiguration.newObjectMapper(objectMapper, factory);
+
+        byte[] bytes = formatObjectMapper.writeValueAsBytes(sample);
+
+        assertThat(formatObjectMapper.readTree(bytes), equalTo(objectMapper.valueToTree(sample)));
+    }
+
+    @Test(dataProvider = "factories")
+    public void newObjectMapperShouldReadWhatItWrites(JsonFactory factory) throws IOException {
+
+        ObjectMapper formatObjectMapper = BinaryFormatConfiguration.newObjectMapper(objectMapper, factory);
+
+        Sample readSample = formatObjectMapper.readValue(formatObjectMapper.writeValueAsBytes(sample), Sample.class);
+
+        assertThat(readSample.getEffectiveDateTime().isEqual(sample.getEffectiveDateTime()), equalTo(true));
+        assertThat(readSample.getActivityName(), equalTo(sample.getActivityName()));
+    }
+
+
+    public static class Sample {
+
+        private OffsetDateTime effectiveDateTime;
+        private String activityName;
+
+        public Sample() {
+        }
+
+        public Sample(OffsetDateTime effectiveDateTime, String activityName) {
+
+            this.effectiveDateTime = effectiveDateTime;
+            this.activityName = activityName;
+        }
+
+        public OffsetDateTime getEffectiveDateTime() {
+            return effectiveDateTime;
+        }
+
+        public void setEffectiveDateTime(OffsetDateTime effectiveDateTime) {
+            this.effectiveDateTime = effectiveDateTime;
+        }
+
+        public Optional<String> getActivityName() {
+            return Optional.ofNullable(activityName);
+        }
+
+        public void setActivityName(String activityName) {
+            this.activityName = activityName;
+        }
+    }
+}
@@ -0,0 +1,97 @@
+/*
+ * Copyright 2017 Open mHealth
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.openmhealth.shimmer.common.configuration;
+
+import com.sun.net.httpserver.HttpServer;
+import org.openmhealth.shimmer.configuration.ProviderSimulatorSettings;
+import org.springframework.web.client.RestTemplate;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.util.zip.GZIPOutputStream;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.hamcrest.CoreMatchers.containsString;
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.springframework.test.util.ReflectionTestUtils.setField;
+
+
+public class HttpClientConfigurationUnitTests {
+
+    private static final String BODY = "{\"steps\":[1,2,3]}";
+
+    private HttpServer server;
+    private volatile String acceptEncoding;
+
+
+    @BeforeClass
+    public void startServer() throws IOException {
+
+        byte[] compressedBody = gzip(BODY);
+
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/steps", exchange -> {
+            acceptEncoding = exchange.getRequestHeaders().getFirst("Accept-Encoding");
+
+            exchange.getResponseHeaders().set("Content-Type", "application/json");
+            exchange.getResponseHeaders().set("Content-Encoding", "gzip");
+            exchange.sendResponseHeaders(200, compressedBody.length);
+
+            try (OutputStream responseBody = exchange.getResponseBody()) {
+                responseBody.write(compressedBody);
+            }
+        });
+        server.start();
+    }
+
+    @AfterClass
+    public void stopServer() {
+
+        server.stop(0);
+    }
+
+    @Test
+    public void clientHttpRequestFactoryShouldNegotiateAndDecodeGzipResponses() {
+
+        HttpClientConfiguration configuration = new HttpClientConfiguration();
+        setField(configuration, "providerSimulatorSettings", new ProviderSimulatorSettings());
+
+        RestTemplate restTemplate = new RestTemplate(configuration.clientHttpRequestFactory());
+        URI uri = URI.create("http://localhost:" + server.getAddress().getPort() + "/steps");
+
+        assertThat(restTemplate.getForObject(uri, String.class), equalTo(BODY));
+        assertThat(acceptEncoding, containsString("gzip"));
+    }
+
+    private static byte[] gzip(String body) throws IOException {
+
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+
+        try (GZIPOutputStream gzipOutputStream = new GZIPOutputStream(outputStream)) {
+            gzipOutputStream.write(body.getBytes(UTF_8));
+        }
+
+        return outputStream.toByteArray();
+    }
+}
@@ -0,0 +1,151 @@
+/*
+ * Copyright 2017 Open mHealth
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.openmhealth.shimmer.common.configuration;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openmhealth.shim.ShimDataRequest;
+import org.openmhealth.shimmer.Application;
+import org.springframework.asm.ClassReader;
+import org.springframework.asm.ClassVisitor;
+import org.springframework.asm.MethodVisitor;
+import org.springframework.asm.SpringAsmInfo;
+import org.springframework.boot.autoconfigure.jackson.JacksonProperties;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.support.PathMatchingResourcePatternResolver;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.equalTo;
+import static org.springframework.asm.Opcodes.INVOKESPECIAL;
+
+
+public class ObjectMapperConfigurationUnitTests {
+
+    private static final String OBJECT_MAPPER_INTERNAL_NAME = ObjectMapper.class.getName().replace('.', '/');
+
+    // classes that create object mappers once at startup
+    private static final Set<String> PERMITTED_CLASS_NAMES = new LinkedHashSet<>();
+
+    static {
+        PERMITTED_CLASS_NAMES.add(BinaryFormatConfiguration.class.getName());
+    }
+
+
+    @Test
+    public void objectMapperShouldSerializeWithAfterburner() throws Exception {
+
+        ObjectMapper objectMapper = new ObjectMapperConfiguration().objectMapper(new JacksonProperties());
+
+        ShimDataRequest shimDataRequest = new ShimDataRequest();
+        shimDataRequest.setDataTypeKey("steps");
+
+        assertThat(objectMapper.readTree(objectMapper.writeValueAsString(shimDataRequest)).get("dataTypeKey").asText(),
+                equalTo("steps"));
+    }
+
+    /**
+     * Guards against object mappers being created per request again, by looking for object mapper constructor calls in
+     * the compiled production classes.
+     */
+    @Test
+    public void productionClassesShouldNotCreateObjectMappers() throws Exception {
+
+        Set<URL> classRoots = new LinkedHashSet<>();
+        classRoots.add(Application.class.getProtectionDomain().getCodeSource().getLocation());
+        classRoots.add(ShimDataRequest.class.getProtectionDomain().getCodeSource().getLocation());
+
+        List<String> offendingClassNames = new ArrayList<>();
+        PathMatchingResourcePatternResolver resolver = new PathMatchingResourcePatternResolver();
+
+        for (URL classRoot : classRoots) {
+
+            String locationPattern = classRoot.getPath().endsWith(".jar")
+                    ? "jar:" + classRoot + "!/org/openmhealth/shim*/**/*.class"
+                    : classRoot + "org/openmhealth/shim*/**/*.class";
+
+            for (Resource resource : resolver.getResources(locationPattern)) {
+
+                String className = getClassNameIfCreatingObjectMapper(resource);
+
+                if (className != null && !PERMITTED_CLASS_NAMES.contains(className.split("\\$")[0])) {
+                    offendingClassNames.add(className);
+                }
+            }
+        }
+
+        assertThat(offendingClassNames, empty());
+    }
+
+    /**
+     * @return the name of the class if it calls an object mapper constructor, or null otherwise
+     */
+    private String getClassNameIfCreatingObjectMapper(Resource classResource) throws IOException {
+
+        ObjectMapperConstructorCallFinder finder = new ObjectMapperConstructorCallFinder();
+
+        try (InputStream inputStream = classResource.getInputStream()) {
+            new ClassReader(inputStream).accept(finder, ClassReader.SKIP_DEBUG | ClassReader.SKIP_FRAMES);
+        }
+
+        return finder.found ? finder.className : null;
+    }
+
+
+    private static class ObjectMapperConstructorCallFinder extends ClassVisitor {
+
+        private String className;
+        private boolean found;
+
+        ObjectMapperConstructorCallFinder() {
+            super(SpringAsmInfo.ASM_VERSION);
+        }
+
+        @Override
+        public void visit(int version, int access, String name, String signature, String superName,
+                String[] interfaces) {
+
+            className = name.replace('/', '.');
+        }
+
+        @Override
+        public MethodVisitor visitMethod(int access, String name, String desc, String signature,
+                String[] exceptions) {
+
+            return new MethodVisitor(SpringAsmInfo.ASM_VERSION) {
+
+                @Override
+                public void visitMethodInsn(int opcode, String owner, String name, String desc, boolean itf) {
+
+                    if (opcode == INVOKESPECIAL && owner.equals(OBJECT_MAPPER_INTERNAL_NAME)
+                            && name.equals("<init>")) {
+                        found = true;
+                    }
+                }
+            };
+        }
+    }
+}
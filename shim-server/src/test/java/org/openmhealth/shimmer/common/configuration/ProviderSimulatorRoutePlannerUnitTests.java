@@ -0,0 +1,106 @@
+/*
+ * Copyright 2017 Open mHealth
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.openmhealth.shimmer.common.configuration;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.apache.http.HttpResponse;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClientBuilder;
+import org.apache.http.util.EntityUtils;
+import org.openmhealth.shimmer.loadtest.ProviderSimulator;
+import org.openmhealth.shimmer.loadtest.SimulatorProfile;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.net.URI;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+
+public class ProviderSimulatorRoutePlannerUnitTests {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private ProviderSimulator simulator;
+    private CloseableHttpClient httpClient;
+
+
+    @BeforeClass
+    public void startSimulator() throws IOException {
+
+        simulator = new ProviderSimulator(new SimulatorProfile(0, 0, 0, 0, 2));
+        simulator.start(0);
+
+        URI simulatorUri = URI.create("http://localhost:" + simulator.getPort());
+
+        httpClient = HttpClientBuilder.create()
+                .setRoutePlanner(new ProviderSimulatorRoutePlanner(simulatorUri))
+                .build();
+    }
+
+    @AfterClass
+    public void stopSimulator() throws IOException {
+
+        httpClient.close();
+        simulator.stop();
+    }
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void constructorShouldThrowExceptionOnHttpsUri() {
+
+        new ProviderSimulatorRoutePlanner(URI.create("https://localhost:8090"));
+    }
+
+    @Test
+    public void requestsToDataProvidersShouldBeServedBySimulator() throws IOException {
+
+        HttpGet request = new HttpGet("https://jawbone.com/nudge/api/v.1.1/users/@me/heartrates?limit=100");
+        HttpResponse response = httpClient.execute(request);
+
+        assertThat(response.getStatusLine().getStatusCode(), equalTo(200));
+
+        JsonNode body = objectMapper.readTree(EntityUtils.toByteArray(response.getEntity()));
+
+        // the fixture contains a single heart rate, which is scaled by a factor of two
+        assertThat(body.path("data").path("items").size(), equalTo(2));
+        assertThat(body.path("data").path("links").has("next"), equalTo(false));
+    }
+
+    @Test
+    public void tokenRequestsShouldBeServedBySimulator() throws IOException {
+
+        HttpGet request = new HttpGet("https://developer.health.nokia.com/account/request_token?oauth_callback=x");
+        HttpResponse response = httpClient.execute(request);
+
+        assertThat(response.getStatusLine().getStatusCode(), equalTo(200));
+        assertThat(EntityUtils.toString(response.getEntity()).matches(
+                "oauth_token=simulated-token-\\d+&oauth_token_secret=simulated-token-secret-\\d+"), equalTo(true));
+    }
+
+    @Test
+    public void unknownRequestsShouldNotBeFound() throws IOException {
+
+        HttpResponse response = httpClient.execute(new HttpGet("https://api.fitbit.com/1/unknown"));
+        EntityUtils.consume(response.getEntity());
+
+        assertThat(response.getStatusLine().getStatusCode(), equalTo(404));
+    }
+}
@@ -0,0 +1,121 @@
+/*
+ * Copyright 2017 Open mHealth
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.openmhealth.shimmer.common.controller;
+
+import org.openmhealth.shimmer.common.domain.ExportJob;
+import org.openmhealth.shimmer.common.domain.ExportJobStatus;
+import org.openmhealth.shimmer.common.service.ExportFileStore;
+import org.openmhealth.shimmer.common.service.ExportJobService;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Optional;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.openmhealth.shimmer.common.controller.ExportJobController.EXPORT_FILE_MEDIA_TYPE;
+import static org.openmhealth.shimmer.common.domain.ExportJobStatus.COMPLETED;
+import static org.openmhealth.shimmer.common.domain.ExportJobStatus.RUNNING;
+import static org.springframework.http.HttpStatus.CONFLICT;
+import static org.springframework.http.HttpStatus.NOT_FOUND;
+import static org.springframework.http.HttpStatus.OK;
+import static org.springframework.test.util.ReflectionTestUtils.setField;
+
+
+public class ExportJobControllerUnitTests {
+
+    private ExportJobController controller;
+    private ExportJobService exportJobService;
+    private ExportFileStore exportFileStore;
+
+
+    @BeforeMethod
+    public void initializeController() {
+
+        exportJobService = mock(ExportJobService.class);
+        exportFileStore = mock(ExportFileStore.class);
+
+        controller = new ExportJobController();
+        setField(controller, "exportJobService", exportJobService);
+        setField(controller, "exportFileStore", exportFileStore);
+    }
+
+    @Test
+    public void downloadFileShouldReturnNotFoundIfJobDoesNotExist() throws IOException {
+
+        when(exportJobService.findJob("job")).thenReturn(Optional.empty());
+
+        assertThat(controller.downloadFile("job").getStatusCode(), equalTo(NOT_FOUND));
+    }
+
+    @Test
+    public void downloadFileShouldReturnConflictIfJobHasNotCompleted() throws IOException {
+
+        givenJob(RUNNING);
+
+        assertThat(controller.downloadFile("job").getStatusCode(), equalTo(CONFLICT));
+        verify(exportJobService, never()).hasAllParts(anyString());
+    }
+
+    @Test
+    public void downloadFileShouldReturnNotFoundIfPartIsMissing() throws IOException {
+
+        givenJob(COMPLETED);
+        when(exportJobService.hasAllParts("job")).thenReturn(false);
+
+        assertThat(controller.downloadFile("job").getStatusCode(), equalTo(NOT_FOUND));
+    }
+
+    @Test
+    public void downloadFileShouldStreamExportFileOfCompletedJob() throws IOException {
+
+        givenJob(COMPLETED);
+        when(exportJobService.hasAllParts("job")).thenReturn(true);
+
+        ResponseEntity<StreamingResponseBody> response = controller.downloadFile("job");
+
+        assertThat(response.getStatusCode(), equalTo(OK));
+        assertThat(response.getHeaders().getContentType(), equalTo(EXPORT_FILE_MEDIA_TYPE));
+        verify(exportFileStore, never()).writeExportFile(anyString(), any());
+
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        response.getBody().writeTo(outputStream);
+
+        verify(exportFileStore).writeExportFile(eq("job"), eq(outputStream));
+    }
+
+    private void givenJob(ExportJobStatus status) {
+
+        ExportJob job = new ExportJob();
+
+        job.setId("job");
+        job.setStatus(status);
+
+        when(exportJobService.findJob("job")).thenReturn(Optional.of(job));
+    }
+}
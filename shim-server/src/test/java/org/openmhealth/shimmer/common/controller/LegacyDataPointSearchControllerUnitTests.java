@@ -0,0 +1,165 @@
+/*
+ * Copyright 2017 Open mHealth
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.openmhealth.shimmer.common.controller;
+
+import org.openmhealth.shim.AccessParameters;
+import org.openmhealth.shim.AccessParametersRepo;
+import org.openmhealth.shim.Shim;
+import org.openmhealth.shim.ShimDataRequest;
+import org.openmhealth.shim.ShimDataResponse;
+import org.openmhealth.shim.ShimException;
+import org.openmhealth.shim.ShimRegistry;
+import org.openmhealth.shim.UpstreamResponseSharingContext;
+import org.springframework.data.domain.Sort;
+import org.springframework.web.bind.ServletRequestBindingException;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static java.time.ZoneOffset.UTC;
+import static java.util.Arrays.asList;
+import static java.util.stream.Collectors.toList;
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyListOf;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.util.ReflectionTestUtils.setField;
+import static org.testng.Assert.fail;
+
+
+public class LegacyDataPointSearchControllerUnitTests {
+
+    private LegacyDataPointSearchController controller;
+    private AccessParametersRepo accessParametersRepo;
+    private Shim shim;
+
+
+    @BeforeMethod
+    public void initializeController() {
+
+        accessParametersRepo = mock(AccessParametersRepo.class);
+        shim = mock(Shim.class);
+
+        ShimRegistry shimRegistry = mock(ShimRegistry.class);
+        when(shimRegistry.getShim("fitbit")).thenReturn(shim);
+
+        controller = new LegacyDataPointSearchController();
+        setField(controller, "accessParametersRepo", accessParametersRepo);
+        setField(controller, "shimRegistry", shimRegistry);
+    }
+
+    @Test
+    public void dataShouldRequestEachDataTypeOnceWhileSharingUpstreamResponses() throws Exception {
+
+        AccessParameters accessParameters = givenAccessParameters();
+        List<ShimDataRequest> shimDataRequests = new ArrayList<>();
+        List<Boolean> sharingContextsPresent = new ArrayList<>();
+
+        when(shim.getData(anyListOf(ShimDataRequest.class))).thenAnswer(invocation -> {
+
+            @SuppressWarnings("unchecked")
+            List<ShimDataRequest> requests = (List<ShimDataRequest>) invocation.getArguments()[0];
+
+            shimDataRequests.addAll(requests);
+            sharingContextsPresent.add(UpstreamResponseSharingContext.current().isPresent());
+
+            Map<String, ShimDataResponse> responses = new LinkedHashMap<>();
+
+            for (ShimDataRequest request : requests) {
+                responses.put(request.getDataTypeKey(), ShimDataResponse.result("fitbit", request.getDataTypeKey()));
+            }
+
+            return responses;
+        });
+
+        Map<String, ShimDataResponse> responses = controller.data("jane", "fitbit",
+                asList("step_count", "heart_rate", "step_count"), false, false, "", "sum", "2017-03-01", "2017-03-02");
+
+        assertThat(new ArrayList<>(responses.keySet()), equalTo(asList("step_count", "heart_rate")));
+        assertThat(responses.get("heart_rate").getBody(), equalTo("heart_rate"));
+
+        assertThat(shimDataRequests.stream().map(ShimDataRequest::getDataTypeKey).collect(toList()),
+                equalTo(asList("step_count", "heart_rate")));
+
+        for (ShimDataRequest shimDataRequest : shimDataRequests) {
+            assertThat(shimDataRequest.getNormalize(), equalTo(false));
+            assertThat(shimDataRequest.getAccessParameters(), equalTo(accessParameters));
+            assertThat(shimDataRequest.getStartDateTime(), equalTo(OffsetDateTime.of(2017, 3, 1, 0, 0, 0, 0, UTC)));
+            assertThat(shimDataRequest.getEndDateTime(), equalTo(OffsetDateTime.of(2017, 3, 2, 0, 0, 0, 0, UTC)));
+        }
+
+        assertThat(sharingContextsPresent, equalTo(asList(true)));
+        assertThat(UpstreamResponseSharingContext.current().isPresent(), equalTo(false));
+    }
+
+    @Test
+    public void dataShouldReleaseSharingContextWhenShimFails() throws Exception {
+
+        givenAccessParameters();
+        when(shim.getData(anyListOf(ShimDataRequest.class))).thenThrow(new ShimException("failure"));
+
+        try {
+            controller.data("jane", "fitbit", asList("step_count", "heart_rate"), true, false, "", "sum", "", "");
+        }
+        catch (ShimException e) {
+            // expected
+        }
+
+        assertThat(UpstreamResponseSharingContext.current().isPresent(), equalTo(false));
+    }
+
+    @Test(expectedExceptions = ServletRequestBindingException.class)
+    public void dataShouldRejectInvalidRollup() throws Exception {
+
+        givenAccessParameters();
+
+        controller.data("jane", "fitbit", asList("step_count", "heart_rate"), true, false, "PT1H", "median", "", "");
+    }
+
+    @Test
+    public void dataShouldFailIfShimHasNotBeenAuthorized() throws Exception {
+
+        try {
+            controller.data("jane", "fitbit", asList("step_count", "heart_rate"), true, false, "", "sum", "", "");
+
+            fail("A request for an unauthorized shim should have failed.");
+        }
+        catch (ShimException e) {
+            verify(shim, never()).getData(anyListOf(ShimDataRequest.class));
+        }
+    }
+
+    private AccessParameters givenAccessParameters() {
+
+        AccessParameters accessParameters = new AccessParameters();
+
+        when(accessParametersRepo.findByUsernameAndShimKey(eq("jane"), eq("fitbit"), any(Sort.class)))
+                .thenReturn(accessParameters);
+
+        return accessParameters;
+    }
+}
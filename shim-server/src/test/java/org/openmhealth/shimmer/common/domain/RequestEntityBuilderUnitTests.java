@@ -0,0 +1,114 @@
+/*
+ * Copyright 2017 Open mHealth
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.openmhealth.shimmer.common.domain;
+
+import org.openmhealth.shimmer.common.domain.parameters.RequestParameter;
+import org.openmhealth.shimmer.common.domain.parameters.RequestParameterLocation;
+import org.openmhealth.shimmer.common.domain.parameters.StringRequestParameter;
+import org.springframework.http.RequestEntity;
+import org.springframework.web.util.UriTemplate;
+import org.testng.annotations.Test;
+
+import java.net.URI;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.openmhealth.shimmer.common.domain.parameters.RequestParameterLocation.*;
+import static org.springframework.http.HttpMethod.GET;
+import static org.springframework.http.HttpMethod.POST;
+
+
+public class RequestEntityBuilderUnitTests {
+
+    private final UriTemplate uriTemplate = new UriTemplate("https://api.example.com/1/user/{userId}/activities");
+
+
+    @Test
+    public void buildShouldExpandPathParameters() {
+
+        RequestEntityBuilder builder = new RequestEntityBuilder(uriTemplate);
+
+        builder.setPathParameter("userId", "abc def");
+
+        RequestEntity<?> requestEntity = builder.build();
+
+        assertThat(requestEntity.getUrl(), equalTo(URI.create("https://api.example.com/1/user/abc%20def/activities")));
+        assertThat(requestEntity.getMethod(), equalTo(GET));
+    }
+
+    @Test
+    public void buildShouldEncodeQueryParameters() {
+
+        RequestEntityBuilder builder = new RequestEntityBuilder(uriTemplate);
+
+        builder.setPathParameter("userId", "-");
+        builder.addQueryParameter("start", "2017-01-01T00:00:00+01:00");
+        builder.addQueryParameter("type", "a");
+        builder.addQueryParameter("type", "b");
+
+        RequestEntity<?> requestEntity = builder.build();
+
+        assertThat(requestEntity.getUrl(), equalTo(URI.create(
+                "https://api.example.com/1/user/-/activities?start=2017-01-01T00:00:00%2B01:00&type=a&type=b")));
+    }
+
+    @Test
+    public void buildShouldSetHeadersAndMethod() {
+
+        RequestEntityBuilder builder = new RequestEntityBuilder(uriTemplate);
+
+        builder.setPathParameter("userId", "-");
+        builder.setHttpMethod(POST);
+        builder.addHeader("Accept-Language", "en_US");
+
+        RequestEntity<?> requestEntity = builder.build();
+
+        assertThat(requestEntity.getMethod(), equalTo(POST));
+        assertThat(requestEntity.getHeaders().getFirst("Accept-Language"), equalTo("en_US"));
+    }
+
+    @Test
+    public void addParameterShouldUseParameterLocation() {
+
+        RequestEntityBuilder builder = new RequestEntityBuilder(uriTemplate);
+
+        builder.addParameter(newParameter("userId", PATH), "-");
+        builder.addParameter(newParameter("limit", QUERY), "10");
+        builder.addParameter(newParameter("X-Limit", HEADER), "20");
+
+        RequestEntity<?> requestEntity = builder.build();
+
+        assertThat(requestEntity.getUrl(), equalTo(URI.create("https://api.example.com/1/user/-/activities?limit=10")));
+        assertThat(requestEntity.getHeaders().getFirst("X-Limit"), equalTo("20"));
+    }
+
+    @Test(expectedExceptions = UnsupportedOperationException.class)
+    public void addParameterShouldThrowExceptionOnUnsupportedLocation() {
+
+        new RequestEntityBuilder(uriTemplate).addParameter(newParameter("limit", BODY), "10");
+    }
+
+    private RequestParameter<String> newParameter(String name, RequestParameterLocation location) {
+
+        StringRequestParameter parameter = new StringRequestParameter();
+
+        parameter.setParameterName(name);
+        parameter.setRequestParameterLocation(location);
+
+        return parameter;
+    }
+}
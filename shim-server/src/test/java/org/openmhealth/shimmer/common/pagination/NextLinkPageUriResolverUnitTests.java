@@ -0,0 +1,56 @@
+/*
+ * Copyright 2017 Open mHealth
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.openmhealth.shimmer.common.pagination;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.net.URI;
+import java.util.Optional;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+
+public class NextLinkPageUriResolverUnitTests {
+
+    private static final URI PAGE_URI = URI.create("https://jawbone.com/nudge/api/v.1.1/users/@me/moves?limit=100");
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final NextLinkPageUriResolver resolver = new NextLinkPageUriResolver("data.links.next");
+
+
+    @Test
+    public void getNextPageUriShouldResolveRelativeLink() throws IOException {
+
+        JsonNode page = objectMapper.readTree(
+                "{\"data\":{\"links\":{\"next\":\"/nudge/api/v.1.1/users/@me/moves?page_token=1384390680\"}}}");
+
+        assertThat(resolver.getNextPageUri(PAGE_URI, page), equalTo(Optional.of(
+                URI.create("https://jawbone.com/nudge/api/v.1.1/users/@me/moves?page_token=1384390680"))));
+    }
+
+    @Test
+    public void getNextPageUriShouldReturnEmptyWithoutLink() throws IOException {
+
+        JsonNode page = objectMapper.readTree("{\"data\":{\"items\":[]}}");
+
+        assertThat(resolver.getNextPageUri(PAGE_URI, page), equalTo(Optional.empty()));
+    }
+}
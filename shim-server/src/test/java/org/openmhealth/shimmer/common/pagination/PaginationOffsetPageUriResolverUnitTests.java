@@ -0,0 +1,87 @@
+/*
+ * Copyright 2017 Open mHealth
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.openmhealth.shimmer.common.pagination;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openmhealth.shimmer.common.domain.parameters.PaginationOffsetNumberRequestParameter;
+import org.openmhealth.shimmer.common.domain.parameters.PaginationOffsetNumberRequestParameter.PaginationOffsetType;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.net.URI;
+import java.util.Optional;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.openmhealth.shimmer.common.domain.parameters.PaginationOffsetNumberRequestParameter.PaginationOffsetType.PAGE;
+import static org.openmhealth.shimmer.common.domain.parameters.PaginationOffsetNumberRequestParameter.PaginationOffsetType.RAW;
+
+
+public class PaginationOffsetPageUriResolverUnitTests {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+
+    @Test
+    public void getNextPageUriShouldIncrementPageOffset() throws IOException {
+
+        PaginationOffsetPageUriResolver resolver = new PaginationOffsetPageUriResolver(newParameter(PAGE), 2, "items");
+
+        assertThat(resolver.getNextPageUri(URI.create("https://example.com/items?page=3"), newPage(2)),
+                equalTo(Optional.of(URI.create("https://example.com/items?page=4"))));
+    }
+
+    @Test
+    public void getNextPageUriShouldAdvanceRawOffsetByItemCount() throws IOException {
+
+        PaginationOffsetPageUriResolver resolver = new PaginationOffsetPageUriResolver(newParameter(RAW), 2, "items");
+
+        assertThat(resolver.getNextPageUri(URI.create("https://example.com/items?size=2"), newPage(2)),
+                equalTo(Optional.of(URI.create("https://example.com/items?size=2&offset=2"))));
+    }
+
+    @Test
+    public void getNextPageUriShouldReturnEmptyAfterPartialPage() throws IOException {
+
+        PaginationOffsetPageUriResolver resolver = new PaginationOffsetPageUriResolver(newParameter(PAGE), 2, "items");
+
+        assertThat(resolver.getNextPageUri(URI.create("https://example.com/items?page=3"), newPage(1)),
+                equalTo(Optional.empty()));
+    }
+
+    private PaginationOffsetNumberRequestParameter newParameter(PaginationOffsetType offsetType) {
+
+        PaginationOffsetNumberRequestParameter parameter = new PaginationOffsetNumberRequestParameter();
+
+        parameter.setParameterName(offsetType == PAGE ? "page" : "offset");
+        parameter.setPaginationOffsetType(offsetType);
+
+        return parameter;
+    }
+
+    private JsonNode newPage(int itemCount) throws IOException {
+
+        StringBuilder items = new StringBuilder();
+
+        for (int i = 0; i < itemCount; i++) {
+            items.append(i == 0 ? "" : ",").append("{}");
+        }
+
+        return objectMapper.readTree("{\"items\":[" + items + "]}");
+    }
+}
@@ -0,0 +1,128 @@
+/*
+ * Copyright 2017 Open mHealth
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.openmhealth.shimmer.common.service;
+
+import org.openmhealth.shimmer.common.domain.ClusterNode;
+import org.openmhealth.shimmer.common.repository.ClusterNodeRepo;
+import org.openmhealth.shimmer.configuration.ClusterSettings;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.time.Instant;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static java.util.Arrays.asList;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.equalTo;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+
+public class ClusterMembershipServiceUnitTests {
+
+    private ClusterSettings settings;
+    private ClusterNodeRepo clusterNodeRepo;
+    private LeaseService leaseService;
+    private ClusterMembershipService membershipService;
+
+
+    @BeforeMethod
+    public void initializeMembershipService() {
+
+        settings = new ClusterSettings();
+        settings.setEnabled(true);
+        settings.setNodeId("node-a");
+
+        clusterNodeRepo = mock(ClusterNodeRepo.class);
+        leaseService = mock(LeaseService.class);
+        membershipService = new ClusterMembershipService(settings, clusterNodeRepo, leaseService);
+    }
+
+    @Test
+    public void isLocallyOwnedShouldReturnTrueBeforeFirstHeartbeat() {
+
+        assertThat(membershipService.getLiveNodeIds(), contains("node-a"));
+        assertThat(membershipService.isLocallyOwned("jane"), equalTo(true));
+    }
+
+    @Test
+    public void heartbeatShouldRegisterNodeAndRenewLeases() {
+
+        membershipService.heartbeat();
+
+        verify(clusterNodeRepo).save(any(ClusterNode.class));
+        verify(leaseService).renewHeldLeases();
+    }
+
+    @Test
+    public void heartbeatShouldRebalanceOnLiveNodes() {
+
+        when(clusterNodeRepo.findAllByDateLastHeartbeatAfter(any(Instant.class)))
+                .thenReturn(asList(newNode("node-a"), newNode("node-b")));
+
+        membershipService.heartbeat();
+
+        assertThat(membershipService.getLiveNodeIds(), contains("node-a", "node-b"));
+
+        ConsistentHashRing ring = new ConsistentHashRing(asList("node-a", "node-b"), settings.getVirtualNodesPerNode());
+
+        for (int i = 0; i < 100; i++) {
+            String username = "user" + i;
+            assertThat(membershipService.isLocallyOwned(username), equalTo(ring.getNodeId(username).equals("node-a")));
+        }
+    }
+
+    @Test
+    public void heartbeatShouldKeepLiveNodesWhenDatabaseIsUnavailable() {
+
+        when(clusterNodeRepo.findAllByDateLastHeartbeatAfter(any(Instant.class)))
+                .thenReturn(asList(newNode("node-a"), newNode("node-b")));
+
+        membershipService.heartbeat();
+
+        when(clusterNodeRepo.findAllByDateLastHeartbeatAfter(any(Instant.class)))
+                .thenThrow(new IllegalStateException());
+
+        membershipService.heartbeat();
+
+        assertThat(membershipService.getLiveNodeIds(), contains("node-a", "node-b"));
+    }
+
+    @Test
+    public void heartbeatShouldNotifyListeners() {
+
+        AtomicInteger notificationCount = new AtomicInteger();
+
+        membershipService.addHeartbeatListener(notificationCount::incrementAndGet);
+        membershipService.heartbeat();
+
+        assertThat(notificationCount.get(), equalTo(1));
+    }
+
+    private static ClusterNode newNode(String id) {
+
+        ClusterNode node = new ClusterNode();
+
+        node.setId(id);
+        node.setDateLastHeartbeat(Instant.now());
+
+        return node;
+    }
+}
@@ -0,0 +1,132 @@
+/*
+ * Copyright 2017 Open mHealth
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.openmhealth.shimmer.common.service;
+
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static java.util.Arrays.asList;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.isOneOf;
+import static org.hamcrest.Matchers.lessThan;
+
+
+public class ConsistentHashRingUnitTests {
+
+    private static final int KEY_COUNT = 10_000;
+
+
+    @Test(expectedExceptions = IllegalArgumentException.class)
+    public void constructorShouldThrowExceptionOnEmptyNodes() {
+
+        new ConsistentHashRing(new ArrayList<>(), 16);
+    }
+
+    @Test
+    public void getNodeIdShouldReturnOnlyNodeOfSingleNodeRing() {
+
+        ConsistentHashRing ring = new ConsistentHashRing(asList("a"), 16);
+
+        assertThat(ring.getNodeId("jane"), equalTo("a"));
+    }
+
+    @Test
+    public void getNodeIdShouldNotDependOnNodeOrder() {
+
+        ConsistentHashRing ring = new ConsistentHashRing(asList("a", "b", "c"), 128);
+        ConsistentHashRing reorderedRing = new ConsistentHashRing(asList("c", "a", "b"), 128);
+
+        for (String key : getKeys()) {
+            assertThat(reorderedRing.getNodeId(key), equalTo(ring.getNodeId(key)));
+        }
+    }
+
+    @Test
+    public void getNodeIdShouldSpreadKeysEvenly() {
+
+        Map<String, Integer> keyCountsByNodeId =
+                getKeyCountsByNodeId(new ConsistentHashRing(asList("a", "b", "c", "d"), 128));
+
+        for (int keyCount : keyCountsByNodeId.values()) {
+            assertThat(keyCount, greaterThan(KEY_COUNT / 4 * 3 / 4));
+            assertThat(keyCount, lessThan(KEY_COUNT / 4 * 5 / 4));
+        }
+    }
+
+    @Test
+    public void getNodeIdShouldOnlyMoveKeysToJoiningNode() {
+
+        ConsistentHashRing ring = new ConsistentHashRing(asList("a", "b", "c"), 128);
+        ConsistentHashRing grownRing = new ConsistentHashRing(asList("a", "b", "c", "d"), 128);
+
+        int movedKeyCount = 0;
+
+        for (String key : getKeys()) {
+            if (!grownRing.getNodeId(key).equals(ring.getNodeId(key))) {
+                assertThat(grownRing.getNodeId(key), equalTo("d"));
+                movedKeyCount++;
+            }
+        }
+
+        assertThat(movedKeyCount, greaterThan(KEY_COUNT / 4 * 3 / 4));
+        assertThat(movedKeyCount, lessThan(KEY_COUNT / 4 * 5 / 4));
+    }
+
+    @Test
+    public void getNodeIdShouldOnlyMoveKeysOfLeavingNode() {
+
+        ConsistentHashRing ring = new ConsistentHashRing(asList("a", "b", "c"), 128);
+        ConsistentHashRing shrunkRing = new ConsistentHashRing(asList("a", "c"), 128);
+
+        for (String key : getKeys()) {
+            if (ring.getNodeId(key).equals("b")) {
+                assertThat(shrunkRing.getNodeId(key), isOneOf("a", "c"));
+            }
+            else {
+                assertThat(shrunkRing.getNodeId(key), equalTo(ring.getNodeId(key)));
+            }
+        }
+    }
+
+    private static List<String> getKeys() {
+
+        List<String> keys = new ArrayList<>();
+
+        for (int i = 0; i < KEY_COUNT; i++) {
+            keys.add("user" + i);
+        }
+
+        return keys;
+    }
+
+    private static Map<String, Integer> getKeyCountsByNodeId(ConsistentHashRing ring) {
+
+        Map<String, Integer> keyCountsByNodeId = new HashMap<>();
+
+        for (String key : getKeys()) {
+            keyCountsByNodeId.merge(ring.getNodeId(key), 1, Integer::sum);
+        }
+
+        return keyCountsByNodeId;
+    }
+}
@@ -0,0 +1,133 @@
+/*
+ * Copyright 2017 Open mHealth
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.openmhealth.shimmer.common.service;
+
+import com.google.common.collect.Range;
+import org.openmhealth.shimmer.common.configuration.DefaultDateTimeQuerySettings;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.time.Duration;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.util.List;
+
+import static java.time.ZoneOffset.UTC;
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+
+
+public class DateTimeQueryPlannerUnitTests {
+
+    private static final OffsetDateTime START = OffsetDateTime.of(2017, 1, 1, 0, 0, 0, 0, UTC);
+
+    private DateTimeQueryPlanner planner = new DateTimeQueryPlanner();
+    private DefaultDateTimeQuerySettings settings;
+
+
+    @BeforeMethod
+    public void initializeSettings() {
+
+        settings = new DefaultDateTimeQuerySettings();
+    }
+
+    @Test
+    public void planQueriesShouldNotSplitRangeWithoutMaximumDuration() {
+
+        Range<OffsetDateTime> range = Range.closedOpen(START, START.plusDays(365));
+
+        assertThat(planner.planQueries(range, settings), contains(range));
+    }
+
+    @Test
+    public void planQueriesShouldNotSplitUnboundedRange() {
+
+        settings.setMaximumDuration(Duration.ofDays(1));
+
+        Range<OffsetDateTime> range = Range.atLeast(START);
+
+        assertThat(planner.planQueries(range, settings), contains(range));
+    }
+
+    @Test
+    public void planQueriesShouldNotSplitRangeWithinMaximumDuration() {
+
+        settings.setMaximumDuration(Duration.ofDays(31));
+
+        Range<OffsetDateTime> range = Range.closedOpen(START, START.plusDays(31));
+
+        assertThat(planner.planQueries(range, settings), contains(range));
+    }
+
+    @Test
+    public void planQueriesShouldSplitRangeIntoConsecutiveWindows() {
+
+        settings.setMaximumDuration(Duration.ofDays(31));
+
+        List<Range<OffsetDateTime>> windows =
+                planner.planQueries(Range.closedOpen(START, START.plusDays(70)), settings);
+
+        assertThat(windows, contains(
+                Range.closedOpen(START, START.plusDays(31)),
+                Range.closedOpen(START.plusDays(31), START.plusDays(62)),
+                Range.closedOpen(START.plusDays(62), START.plusDays(70))));
+    }
+
+    @Test
+    public void planQueriesShouldPreserveOuterBoundTypes() {
+
+        settings.setMaximumDuration(Duration.ofDays(1));
+
+        List<Range<OffsetDateTime>> windows = planner.planQueries(Range.open(START, START.plusDays(2)), settings);
+
+        assertThat(windows, contains(
+                Range.open(START, START.plusDays(1)),
+                Range.closedOpen(START.plusDays(1), START.plusDays(2))));
+    }
+
+    @Test
+    public void planQueriesShouldWidenRangeToMinimumDuration() {
+
+        settings.setMinimumDuration(Duration.ofDays(1));
+
+        Range<OffsetDateTime> range = Range.closedOpen(START, START.plusHours(1));
+
+        assertThat(planner.planQueries(range, settings), contains(Range.closedOpen(START, START.plusDays(1))));
+    }
+
+    @Test
+    public void planQueriesShouldMoveRangeToFixedTimeZone() {
+
+        ZoneOffset fixedTimeZone = ZoneOffset.ofHours(-5);
+        settings.setFixedTimeZone(fixedTimeZone);
+        settings.setMaximumDuration(Duration.ofDays(1));
+
+        List<Range<OffsetDateTime>> windows =
+                planner.planQueries(Range.closedOpen(START, START.plusDays(2)), settings);
+
+        assertThat(windows.size(), equalTo(2));
+
+        for (Range<OffsetDateTime> window : windows) {
+            assertThat(window.lowerEndpoint().getOffset(), equalTo(fixedTimeZone));
+            assertThat(window.upperEndpoint().getOffset(), equalTo(fixedTimeZone));
+        }
+
+        assertThat(windows.get(0).lowerEndpoint().toInstant(), equalTo(START.toInstant()));
+        assertThat(windows.get(1).upperEndpoint().toInstant(), equalTo(START.plusDays(2).toInstant()));
+    }
+}
@@ -0,0 +1,161 @@
+/*
+ * Copyright 2017 Open mHealth
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.openmhealth.shimmer.common.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openmhealth.shim.ShimDataResponse;
+import org.openmhealth.shimmer.configuration.ExportSettings;
+import org.springframework.util.FileSystemUtils;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.Arrays.asList;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.hasSize;
+import static org.openmhealth.shim.ShimDataResponse.result;
+
+
+public class ExportFileStoreUnitTests {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private Path directory;
+    private ExportFileStore fileStore;
+
+
+    @BeforeMethod
+    public void initializeFileStore() throws IOException {
+
+        directory = Files.createTempDirectory("exports");
+
+        ExportSettings settings = new ExportSettings();
+        settings.setDirectory(directory.toString());
+
+        fileStore = new ExportFileStore(settings, objectMapper);
+    }
+
+    @AfterMethod
+    public void deleteDirectory() {
+
+        FileSystemUtils.deleteRecursively(directory.toFile());
+    }
+
+    @Test
+    public void writePartShouldWriteOneRecordPerListItem() throws IOException {
+
+        long recordCount = fileStore.writePart("job", "alice", "steps", result("fitbit", asList(1, 2, 3)));
+
+        assertThat(recordCount, equalTo(3L));
+        assertThat(readExportFile("job"), hasSize(3));
+    }
+
+    @Test
+    public void writePartShouldWriteOneRecordPerRawResponse() throws IOException {
+
+        JsonNode rawResponse = objectMapper.readTree("{\"steps\":[1,2,3]}");
+
+        long recordCount = fileStore.writePart("job", "alice", "steps", result("fitbit", rawResponse));
+
+        List<JsonNode> records = readExportFile("job");
+
+        assertThat(recordCount, equalTo(1L));
+        assertThat(records, hasSize(1));
+        assertThat(records.get(0).get("username").asText(), equalTo("alice"));
+        assertThat(records.get(0).get("shim").asText(), equalTo("fitbit"));
+        assertThat(records.get(0).get("data_type").asText(), equalTo("steps"));
+        assertThat(records.get(0).get("body"), equalTo(rawResponse));
+    }
+
+    @Test
+    public void writePartShouldReplaceEarlierVersion() throws IOException {
+
+        fileStore.writePart("job", "alice", "steps", result("fitbit", asList(1, 2, 3)));
+        fileStore.writePart("job", "alice", "steps", result("fitbit", asList(4, 5)));
+
+        assertThat(fileStore.getPartFiles("job"), hasSize(1));
+        assertThat(readExportFile("job"), hasSize(2));
+    }
+
+    @Test
+    public void hasPartShouldOnlyFindWrittenParts() throws IOException {
+
+        fileStore.writePart("job", "alice@example.com", "steps", result("fitbit", asList(1, 2)));
+
+        assertThat(fileStore.hasPart("job", "alice@example.com", "steps"), equalTo(true));
+        assertThat(fileStore.hasPart("job", "alice@example.com", "sleep"), equalTo(false));
+        assertThat(fileStore.hasPart("other", "alice@example.com", "steps"), equalTo(false));
+    }
+
+    @Test
+    public void writeExportFileShouldConcatenatePartsInStableOrder() throws IOException {
+
+        fileStore.writePart("job", "bob", "steps", result("fitbit", asList(3)));
+        fileStore.writePart("job", "alice@example.com", "steps", result("fitbit", asList(1, 2)));
+
+        List<JsonNode> records = readExportFile("job");
+
+        assertThat(records, hasSize(3));
+        assertThat(records.get(0).get("username").asText(), equalTo("alice@example.com"));
+        assertThat(records.get(2).get("username").asText(), equalTo("bob"));
+    }
+
+    @Test
+    public void writeExportFileShouldWriteNothingForUnknownJob() throws IOException {
+
+        assertThat(readExportFile("unknown"), hasSize(0));
+    }
+
+    private List<JsonNode> readExportFile(String jobId) throws IOException {
+
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+        fileStore.writeExportFile(jobId, outputStream);
+
+        List<JsonNode> records = new ArrayList<>();
+
+        if (outputStream.size() == 0) {
+            return records;
+        }
+
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+                new GZIPInputStream(new ByteArrayInputStream(outputStream.toByteArray())), UTF_8))) {
+
+            String line;
+
+            while ((line = reader.readLine()) != null) {
+                records.add(objectMapper.readTree(line));
+            }
+        }
+
+        return records;
+    }
+}
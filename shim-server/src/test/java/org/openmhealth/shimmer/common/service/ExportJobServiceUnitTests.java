@@ -0,0 +1,426 @@
+/*
+ * Copyright 2017 Open mHealth
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.openmhealth.shimmer.common.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openmhealth.shim.AccessParameters;
+import org.openmhealth.shim.AccessParametersRepo;
+import org.openmhealth.shim.Shim;
+import org.openmhealth.shim.ShimDataRequest;
+import org.openmhealth.shim.ShimDataResponse;
+import org.openmhealth.shim.ShimRegistry;
+import org.openmhealth.shimmer.common.domain.ExportCheckpoint;
+import org.openmhealth.shimmer.common.domain.ExportJob;
+import org.openmhealth.shimmer.common.domain.ExportJobStatus;
+import org.openmhealth.shimmer.common.repository.ExportCheckpointRepo;
+import org.openmhealth.shimmer.common.repository.ExportJobRepo;
+import org.openmhealth.shimmer.configuration.ExportSettings;
+import org.springframework.data.domain.Sort;
+import org.springframework.util.FileSystemUtils;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static java.util.Arrays.asList;
+import static java.util.Collections.singletonList;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static java.util.stream.Collectors.toList;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.hasSize;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyBoolean;
+import static org.mockito.Matchers.anyListOf;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.openmhealth.shim.ShimDataResponse.result;
+import static org.openmhealth.shimmer.common.domain.ExportJobStatus.CANCELLED;
+import static org.openmhealth.shimmer.common.domain.ExportJobStatus.COMPLETED;
+import static org.openmhealth.shimmer.common.domain.ExportJobStatus.PENDING;
+import static org.openmhealth.shimmer.common.domain.ExportJobStatus.RUNNING;
+import static org.testng.Assert.fail;
+
+
+public class ExportJobServiceUnitTests {
+
+    private static final long TIMEOUT_IN_MILLIS = 5000;
+
+    private final Map<String, ExportJob> jobs = new ConcurrentHashMap<>();
+    private final List<ExportCheckpoint> checkpoints = new CopyOnWriteArrayList<>();
+    private final List<ShimDataRequest> shimDataRequests = new CopyOnWriteArrayList<>();
+    private final AtomicBoolean leaseHeld = new AtomicBoolean();
+
+    private Path directory;
+    private ExportSettings settings;
+    private ExportJobRepo exportJobRepo;
+    private ExportCheckpointRepo exportCheckpointRepo;
+    private AccessParametersRepo accessParametersRepo;
+    private ShimRegistry shimRegistry;
+    private ExportFileStore exportFileStore;
+    private ClusterMembershipService clusterMembershipService;
+    private LeaseService leaseService;
+    private Shim shim;
+    private ExportJobService service;
+
+
+    @BeforeMethod
+    public void initializeCollaborators() throws Exception {
+
+        jobs.clear();
+        checkpoints.clear();
+        shimDataRequests.clear();
+        leaseHeld.set(true);
+
+        directory = Files.createTempDirectory("exports");
+
+        settings = new ExportSettings();
+        settings.setDirectory(directory.toString());
+        settings.setThreadPoolSize(1);
+        settings.setMaximumConcurrentUsersPerShim(1);
+
+        exportFileStore = new ExportFileStore(settings, new ObjectMapper());
+
+        initializeExportJobRepo();
+        initializeExportCheckpointRepo();
+
+        accessParametersRepo = mock(AccessParametersRepo.class);
+        when(accessParametersRepo.findByUsernameAndShimKey(anyString(), eq("fitbit"), any(Sort.class)))
+                .thenAnswer(invocation -> {
+                    AccessParameters accessParameters = new AccessParameters();
+                    accessParameters.setUsername(invocation.getArgumentAt(0, String.class));
+                    accessParameters.setShimKey("fitbit");
+                    return accessParameters;
+                });
+
+        shim = mock(Shim.class);
+        givenShimResponds(requests -> { });
+
+        shimRegistry = mock(ShimRegistry.class);
+        when(shimRegistry.getShim("fitbit")).thenReturn(shim);
+
+        clusterMembershipService = mock(ClusterMembershipService.class);
+        when(clusterMembershipService.isLocallyOwned(anyString())).thenReturn(true);
+
+        leaseService = mock(LeaseService.class);
+        when(leaseService.tryAcquire(anyString())).thenReturn(true);
+        when(leaseService.isHeld(anyString())).thenAnswer(invocation -> leaseHeld.get());
+    }
+
+    private void initializeExportJobRepo() {
+
+        AtomicInteger jobCount = new AtomicInteger();
+
+        exportJobRepo = mock(ExportJobRepo.class);
+
+        when(exportJobRepo.save(any(ExportJob.class))).thenAnswer(invocation -> {
+            ExportJob job = invocation.getArgumentAt(0, ExportJob.class);
+
+            if (job.getId() == null) {
+                job.setId("job-" + jobCount.incrementAndGet());
+            }
+
+            jobs.put(job.getId(), job);
+            return job;
+        });
+
+        when(exportJobRepo.findOne(anyString())).thenAnswer(invocation -> jobs.get(invocation.getArguments()[0]));
+
+        when(exportJobRepo.findAllByStatusIn(anyListOf(ExportJobStatus.class))).thenAnswer(invocation -> {
+            List<?> statuses = invocation.getArgumentAt(0, List.class);
+
+            return jobs.values().stream().filter(job -> statuses.contains(job.getStatus())).collect(toList());
+        });
+    }
+
+    private void initializeExportCheckpointRepo() {
+
+        exportCheckpointRepo = mock(ExportCheckpointRepo.class);
+
+        when(exportCheckpointRepo.save(any(ExportCheckpoint.class))).thenAnswer(invocation -> {
+            ExportCheckpoint checkpoint = invocation.getArgumentAt(0, ExportCheckpoint.class);
+
+            if (!checkpoints.contains(checkpoint)) {
+                checkpoints.add(checkpoint);
+            }
+
+            return checkpoint;
+        });
+
+        when(exportCheckpointRepo.findByJobIdAndUsernameAndDataTypeKey(anyString(), anyString(), anyString()))
+                .thenAnswer(invocation -> checkpoints.stream()
+                        .filter(checkpoint -> checkpoint.getJobId().equals(invocation.getArguments()[0]))
+                        .filter(checkpoint -> checkpoint.getUsername().equals(invocation.getArguments()[1]))
+                        .filter(checkpoint -> checkpoint.getDataTypeKey().equals(invocation.getArguments()[2]))
+                        .findFirst()
+                        .orElse(null));
+
+        when(exportCheckpointRepo.findAllByJobIdAndUsername(anyString(), anyString()))
+                .thenAnswer(invocation -> checkpoints.stream()
+                        .filter(checkpoint -> checkpoint.getJobId().equals(invocation.getArguments()[0]))
+                        .filter(checkpoint -> checkpoint.getUsername().equals(invocation.getArguments()[1]))
+                        .collect(toList()));
+
+        when(exportCheckpointRepo.findAllByJobIdAndSuccessful(anyString(), anyBoolean()))
+                .thenAnswer(invocation -> findCheckpoints(invocation.getArgumentAt(0, String.class),
+                        invocation.getArgumentAt(1, Boolean.class)));
+
+        when(exportCheckpointRepo.countByJobIdAndSuccessful(anyString(), anyBoolean()))
+                .thenAnswer(invocation -> (long) findCheckpoints(invocation.getArgumentAt(0, String.class),
+                        invocation.getArgumentAt(1, Boolean.class)).size());
+    }
+
+    private List<ExportCheckpoint> findCheckpoints(String jobId, boolean successful) {
+
+        return checkpoints.stream()
+                .filter(checkpoint -> checkpoint.getJobId().equals(jobId))
+                .filter(checkpoint -> checkpoint.isSuccessful() == successful)
+                .collect(toList());
+    }
+
+    /**
+     * Makes the shim record each batch of requests, run the specified action, and respond with a single record per
+     * data type.
+     */
+    private void givenShimResponds(ShimAction action) throws Exception {
+
+        when(shim.getData(anyListOf(ShimDataRequest.class))).thenAnswer(invocation -> {
+
+            @SuppressWarnings("unchecked")
+            List<ShimDataRequest> requests = invocation.getArgumentAt(0, List.class);
+
+            shimDataRequests.addAll(requests);
+            action.run(requests);
+
+            Map<String, ShimDataResponse> responses = new LinkedHashMap<>();
+
+            for (ShimDataRequest request : requests) {
+                responses.put(request.getDataTypeKey(), result("fitbit", singletonList(request.getDataTypeKey())));
+            }
+
+            return responses;
+        });
+    }
+
+    private interface ShimAction {
+
+        void run(List<ShimDataRequest> requests) throws Exception;
+    }
+
+    private void initializeService() {
+
+        service = new ExportJobService(settings, exportJobRepo, exportCheckpointRepo, accessParametersRepo,
+                shimRegistry, exportFileStore, clusterMembershipService, leaseService);
+    }
+
+    @AfterMethod
+    public void shutdownService() {
+
+        if (service != null) {
+            service.shutdown();
+            service = null;
+        }
+
+        FileSystemUtils.deleteRecursively(directory.toFile());
+    }
+
+    @Test
+    public void submitShouldRunJobToCompletion() throws Exception {
+
+        initializeService();
+
+        ExportJob job = service.submit(newJob("alice", "bob"));
+
+        awaitRelease(job.getId());
+
+        ExportJob completedJob = service.findJob(job.getId()).orElseThrow(AssertionError::new);
+
+        assertThat(completedJob.getStatus(), equalTo(COMPLETED));
+        assertThat(completedJob.getUserCount().orElse(null), equalTo(2));
+        assertThat(completedJob.getExportedItemCount().orElse(null), equalTo(4L));
+        assertThat(completedJob.getFailedItemCount().orElse(null), equalTo(0L));
+        assertThat(service.hasAllParts(job.getId()), equalTo(true));
+        assertThat(shimDataRequests, hasSize(4));
+    }
+
+    @Test
+    public void resumeJobsShouldSkipPartsThatHaveAlreadyBeenWritten() throws Exception {
+
+        ExportJob job = newJob("alice", "bob");
+        job.setId("job-0");
+        job.setStatus(RUNNING);
+        jobs.put(job.getId(), job);
+
+        // the steps part of alice was written before the restart, but her sleep part was lost
+        exportFileStore.writePart(job.getId(), "alice", "steps", result("fitbit", singletonList("steps")));
+        checkpoints.add(newCheckpoint(job.getId(), "alice", "steps"));
+        checkpoints.add(newCheckpoint(job.getId(), "alice", "sleep"));
+
+        initializeService();
+        service.resumeJobs();
+
+        awaitRelease(job.getId());
+
+        assertThat(jobs.get(job.getId()).getStatus(), equalTo(COMPLETED));
+        assertThat(getRequestedDataTypeKeys(), contains("sleep", "steps", "sleep"));
+        assertThat(findCheckpoints(job.getId(), true), hasSize(4));
+        assertThat(service.hasAllParts(job.getId()), equalTo(true));
+    }
+
+    @Test
+    public void cancelShouldStopRunningJob() throws Exception {
+
+        CountDownLatch dataRequested = new CountDownLatch(1);
+        CountDownLatch jobCancelled = new CountDownLatch(1);
+
+        givenShimResponds(requests -> {
+            dataRequested.countDown();
+
+            if (!jobCancelled.await(TIMEOUT_IN_MILLIS, MILLISECONDS)) {
+                fail("The job wasn't cancelled.");
+            }
+        });
+
+        initializeService();
+
+        ExportJob job = service.submit(newJob("alice", "bob"));
+
+        if (!dataRequested.await(TIMEOUT_IN_MILLIS, MILLISECONDS)) {
+            fail("The data of the first user wasn't requested.");
+        }
+
+        assertThat(service.cancel(job.getId()).map(ExportJob::getStatus).orElse(null), equalTo(CANCELLED));
+        jobCancelled.countDown();
+
+        awaitRelease(job.getId());
+
+        // the data of the first user is discarded, and the second user isn't exported at all
+        assertThat(jobs.get(job.getId()).getStatus(), equalTo(CANCELLED));
+        assertThat(getRequestedDataTypeKeys(), contains("steps", "sleep"));
+        assertThat(checkpoints, empty());
+    }
+
+    @Test
+    public void lostLeaseShouldStopRunningJob() throws Exception {
+
+        givenShimResponds(requests -> leaseHeld.set(false));
+
+        initializeService();
+
+        ExportJob job = service.submit(newJob("alice", "bob"));
+
+        awaitRelease(job.getId());
+
+        // the job is left running for the instance that now holds the lease
+        assertThat(jobs.get(job.getId()).getStatus(), equalTo(RUNNING));
+        assertThat(getRequestedDataTypeKeys(), contains("steps", "sleep"));
+        assertThat(checkpoints, empty());
+    }
+
+    @Test
+    public void jobShouldNotExportMoreUsersOfShimAtOnceThanAllowed() throws Exception {
+
+        settings.setThreadPoolSize(4);
+        settings.setMaximumConcurrentUsersPerShim(2);
+
+        AtomicInteger concurrentUserCount = new AtomicInteger();
+        AtomicInteger maximumConcurrentUserCount = new AtomicInteger();
+
+        givenShimResponds(requests -> {
+            maximumConcurrentUserCount.accumulateAndGet(concurrentUserCount.incrementAndGet(), Math::max);
+            Thread.sleep(100);
+            concurrentUserCount.decrementAndGet();
+        });
+
+        initializeService();
+
+        ExportJob job = service.submit(newJob("alice", "bob", "carol", "dave", "erin", "frank"));
+
+        awaitRelease(job.getId());
+
+        assertThat(jobs.get(job.getId()).getStatus(), equalTo(COMPLETED));
+        assertThat(maximumConcurrentUserCount.get(), equalTo(2));
+        assertThat(findCheckpoints(job.getId(), true), hasSize(12));
+    }
+
+    @Test
+    public void submitShouldLeaveJobPendingIfLeaseIsHeldElsewhere() throws Exception {
+
+        when(leaseService.tryAcquire(anyString())).thenReturn(false);
+
+        initializeService();
+
+        ExportJob job = service.submit(newJob("alice"));
+
+        assertThat(job.getStatus(), equalTo(PENDING));
+        verify(shimRegistry).getShim("fitbit");
+        assertThat(shimDataRequests, empty());
+    }
+
+    private ExportJob newJob(String... usernames) {
+
+        ExportJob job = new ExportJob();
+
+        job.setShimKey("fitbit");
+        job.setDataTypeKeys(asList("steps", "sleep"));
+        job.setUsernames(asList(usernames));
+
+        return job;
+    }
+
+    private ExportCheckpoint newCheckpoint(String jobId, String username, String dataTypeKey) {
+
+        ExportCheckpoint checkpoint = new ExportCheckpoint();
+
+        checkpoint.setJobId(jobId);
+        checkpoint.setUsername(username);
+        checkpoint.setDataTypeKey(dataTypeKey);
+        checkpoint.setSuccessful(true);
+        checkpoint.setRecordCount(1);
+
+        return checkpoint;
+    }
+
+    /**
+     * Waits for the job to stop running, which is when its lease is released.
+     */
+    private void awaitRelease(String jobId) {
+
+        verify(leaseService, timeout(TIMEOUT_IN_MILLIS)).release("export-job:" + jobId);
+    }
+
+    private List<String> getRequestedDataTypeKeys() {
+
+        return shimDataRequests.stream().map(ShimDataRequest::getDataTypeKey).collect(toList());
+    }
+}
@@ -0,0 +1,131 @@
+/*
+ * Copyright 2017 Open mHealth
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.openmhealth.shimmer.common.service;
+
+import org.openmhealth.shimmer.common.domain.Lease;
+import org.openmhealth.shimmer.configuration.ClusterSettings;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoOperations;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.equalTo;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyZeroInteractions;
+import static org.mockito.Mockito.when;
+
+
+public class LeaseServiceUnitTests {
+
+    private ClusterSettings settings;
+    private MongoOperations mongoOperations;
+    private LeaseService leaseService;
+
+
+    @BeforeMethod
+    public void initializeLeaseService() {
+
+        settings = new ClusterSettings();
+        settings.setEnabled(true);
+        settings.setNodeId("node-a");
+
+        mongoOperations = mock(MongoOperations.class);
+        leaseService = new LeaseService(settings, mongoOperations);
+    }
+
+    @Test
+    public void tryAcquireShouldGrantEveryLeaseWhenClusteringIsDisabled() {
+
+        settings.setEnabled(false);
+
+        assertThat(leaseService.tryAcquire("job"), equalTo(true));
+        assertThat(leaseService.isHeld("job"), equalTo(true));
+        verifyZeroInteractions(mongoOperations);
+    }
+
+    @Test
+    public void tryAcquireShouldGrantLeaseWhenUpsertMatches() {
+
+        givenLeaseAvailable(true);
+
+        assertThat(leaseService.tryAcquire("job"), equalTo(true));
+        assertThat(leaseService.isHeld("job"), equalTo(true));
+    }
+
+    @Test
+    public void tryAcquireShouldRefuseLeaseHeldByAnotherNode() {
+
+        givenLeaseAvailable(false);
+
+        assertThat(leaseService.tryAcquire("job"), equalTo(false));
+        assertThat(leaseService.isHeld("job"), equalTo(false));
+    }
+
+    @Test
+    public void renewHeldLeasesShouldRenewUntilLeaseIsLost() {
+
+        givenLeaseAvailable(true);
+        leaseService.tryAcquire("job");
+
+        leaseService.renewHeldLeases();
+        assertThat(leaseService.isHeld("job"), equalTo(true));
+
+        givenLeaseAvailable(false);
+        leaseService.renewHeldLeases();
+        assertThat(leaseService.isHeld("job"), equalTo(false));
+
+        leaseService.renewHeldLeases();
+
+        verify(mongoOperations, times(3)).findAndModify(any(Query.class), any(Update.class),
+                any(FindAndModifyOptions.class), eq(Lease.class));
+    }
+
+    @Test
+    public void releaseShouldStopRenewingLease() {
+
+        givenLeaseAvailable(true);
+        leaseService.tryAcquire("job");
+
+        leaseService.release("job");
+        leaseService.renewHeldLeases();
+
+        assertThat(leaseService.isHeld("job"), equalTo(false));
+        verify(mongoOperations).remove(any(Query.class), eq(Lease.class));
+        verify(mongoOperations, times(1)).findAndModify(any(Query.class), any(Update.class),
+                any(FindAndModifyOptions.class), eq(Lease.class));
+    }
+
+    private void givenLeaseAvailable(boolean available) {
+
+        if (available) {
+            when(mongoOperations.findAndModify(any(Query.class), any(Update.class), any(FindAndModifyOptions.class),
+                    eq(Lease.class))).thenReturn(new Lease());
+        }
+        else {
+            when(mongoOperations.findAndModify(any(Query.class), any(Update.class), any(FindAndModifyOptions.class),
+                    eq(Lease.class))).thenThrow(new DuplicateKeyException("E11000"));
+        }
+    }
+}
@@ -0,0 +1,118 @@
+/*
+ * Copyright 2017 Open mHealth
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.openmhealth.shimmer.common.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openmhealth.shim.ShimException;
+import org.openmhealth.shimmer.common.pagination.NextLinkPageUriResolver;
+import org.openmhealth.shimmer.configuration.PaginationSettings;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+
+
+public class PaginatedResponseReaderUnitTests {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final NextLinkPageUriResolver resolver = new NextLinkPageUriResolver("next");
+
+    private PaginatedResponseReader reader;
+
+
+    @BeforeClass
+    public void initializeReader() {
+
+        PaginationSettings settings = new PaginationSettings();
+        settings.setMaximumPageCount(3);
+
+        reader = new PaginatedResponseReader(settings);
+    }
+
+    @AfterClass
+    public void shutdownReader() {
+
+        reader.shutdown();
+    }
+
+    @Test
+    public void readPagesShouldFollowLinksUntilLastPage() throws Exception {
+
+        List<URI> fetchedPageUris = new ArrayList<>();
+
+        List<Integer> items = reader.readPages(URI.create("https://example.com/items?page=0"),
+                (pageUri) -> {
+                    fetchedPageUris.add(pageUri);
+                    int pageNumber = Integer.parseInt(pageUri.getQuery().substring("page=".length()));
+
+                    return newPage(pageNumber, pageNumber < 1 ? "/items?page=" + (pageNumber + 1) : null);
+                },
+                resolver,
+                (page) -> objectMapper.convertValue(page.get("items"), objectMapper.getTypeFactory()
+                        .constructCollectionType(List.class, Integer.class)));
+
+        assertThat(items, contains(0, 1));
+        assertThat(fetchedPageUris, contains(
+                URI.create("https://example.com/items?page=0"),
+                URI.create("https://example.com/items?page=1")));
+    }
+
+    @Test(expectedExceptions = ShimException.class)
+    public void readPagesShouldFailAfterMaximumPageCount() throws Exception {
+
+        reader.readPages(URI.create("https://example.com/items?page=0"),
+                (pageUri) -> {
+                    int pageNumber = Integer.parseInt(pageUri.getQuery().substring("page=".length()));
+
+                    return newPage(pageNumber, "/items?page=" + (pageNumber + 1));
+                },
+                resolver,
+                (page) -> objectMapper.convertValue(page.get("items"), objectMapper.getTypeFactory()
+                        .constructCollectionType(List.class, Integer.class)));
+    }
+
+    @Test(expectedExceptions = ShimException.class)
+    public void readPagesShouldFailAtRepeatedPage() throws Exception {
+
+        reader.readPages(URI.create("https://example.com/items?page=0"),
+                (pageUri) -> newPage(0, "/items?page=0"),
+                resolver,
+                (page) -> objectMapper.convertValue(page.get("items"), objectMapper.getTypeFactory()
+                        .constructCollectionType(List.class, Integer.class)));
+    }
+
+    private JsonNode newPage(int item, String nextLink) {
+
+        try {
+            return objectMapper.readTree(nextLink == null
+                    ? String.format("{\"items\":[%d]}", item)
+                    : String.format("{\"items\":[%d],\"next\":\"%s\"}", item, nextLink));
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,168 @@
+/*
+ * Copyright 2017 Open mHealth
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.openmhealth.shimmer.common.service;
+
+import com.google.common.collect.Range;
+import org.openmhealth.shimmer.common.configuration.DefaultDateTimeQuerySettings;
+import org.openmhealth.shimmer.common.configuration.DefaultEndpointSettings;
+import org.openmhealth.shimmer.common.domain.DataPointRequest;
+import org.openmhealth.shimmer.common.domain.parameters.DateTimeRequestParameter;
+import org.openmhealth.shimmer.common.domain.parameters.NumberRequestParameter;
+import org.openmhealth.shimmer.common.domain.parameters.PaginationOffsetNumberRequestParameter;
+import org.springframework.http.RequestEntity;
+import org.springframework.web.util.UriTemplate;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.net.URI;
+import java.time.OffsetDateTime;
+import java.time.ZoneId;
+
+import static java.time.format.DateTimeFormatter.ISO_LOCAL_DATE;
+import static java.util.Arrays.asList;
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.openmhealth.shimmer.common.domain.parameters.PaginationOffsetNumberRequestParameter.PaginationOffsetType.PAGE;
+import static org.openmhealth.shimmer.common.domain.parameters.RequestParameterLocation.PATH;
+import static org.openmhealth.shimmer.common.domain.parameters.RequestParameterLocation.QUERY;
+
+
+public class RequestEntityAssemblerChainUnitTests {
+
+    private RequestEntityAssemblerChain assemblerChain;
+    private DefaultEndpointSettings endpointSettings;
+
+
+    @BeforeMethod
+    public void initializeChain() {
+
+        assemblerChain = new RequestEntityAssemblerChain(asList(
+                new DateTimeRangeRequestEntityAssembler(),
+                new PaginationRequestEntityAssembler(),
+                new BearerTokenRequestEntityAssembler()));
+
+        endpointSettings = new DefaultEndpointSettings();
+        endpointSettings.setId("activities");
+        endpointSettings.setUriTemplate(new UriTemplate("https://api.example.com/activities/{date}"));
+    }
+
+    @Test
+    public void createRequestEntityShouldAddDateTimeParameters() {
+
+        DateTimeRequestParameter startParameter = new DateTimeRequestParameter();
+        startParameter.setParameterName("date");
+        startParameter.setRequestParameterLocation(PATH);
+        startParameter.setDateTimeFormat(ISO_LOCAL_DATE);
+
+        DateTimeRequestParameter endParameter = new DateTimeRequestParameter();
+        endParameter.setParameterName("end_time");
+        endParameter.setRequestParameterLocation(QUERY);
+
+        DefaultDateTimeQuerySettings querySettings = new DefaultDateTimeQuerySettings();
+        querySettings.setFixedTimeZone(ZoneId.of("America/New_York"));
+
+        endpointSettings.setEffectiveStartDateTimeParameter(startParameter);
+        endpointSettings.setEffectiveEndDateTimeParameter(endParameter);
+        endpointSettings.setEffectiveDateTimeQuerySettings(querySettings);
+
+        DataPointRequest request = new DataPointRequest(endpointSettings);
+        request.setEffectiveDateTimeRange(Range.closedOpen(
+                OffsetDateTime.parse("2017-03-02T02:00:00Z"),
+                OffsetDateTime.parse("2017-03-03T00:00:00Z")));
+
+        RequestEntity<?> requestEntity = assemblerChain.createRequestEntity(request);
+
+        // the start date is in the fixed time zone, the end time is in seconds since the epoch
+        assertThat(requestEntity.getUrl(),
+                equalTo(URI.create("https://api.example.com/activities/2017-03-01?end_time=1488499200")));
+    }
+
+    @Test
+    public void createRequestEntityShouldAddInclusiveEndDate() {
+
+        endpointSettings.setUriTemplate(new UriTemplate("https://api.example.com/activities"));
+
+        DateTimeRequestParameter startParameter = new DateTimeRequestParameter();
+        startParameter.setParameterName("start_date");
+        startParameter.setRequestParameterLocation(QUERY);
+        startParameter.setDateTimeFormat(ISO_LOCAL_DATE);
+
+        DateTimeRequestParameter endParameter = new DateTimeRequestParameter();
+        endParameter.setParameterName("end_date");
+        endParameter.setRequestParameterLocation(QUERY);
+        endParameter.setDateTimeFormat(ISO_LOCAL_DATE);
+        endParameter.setInclusiveUpperBound(true);
+
+        endpointSettings.setEffectiveStartDateTimeParameter(startParameter);
+        endpointSettings.setEffectiveEndDateTimeParameter(endParameter);
+
+        DataPointRequest request = new DataPointRequest(endpointSettings);
+        request.setEffectiveDateTimeRange(Range.closedOpen(
+                OffsetDateTime.parse("2017-03-01T00:00:00Z"),
+                OffsetDateTime.parse("2017-03-03T00:00:00Z")));
+
+        assertThat(assemblerChain.createRequestEntity(request).getUrl(), equalTo(URI.create(
+                "https://api.example.com/activities?start_date=2017-03-01&end_date=2017-03-02")));
+    }
+
+    @Test
+    public void createRequestEntityShouldAddPaginationParameters() {
+
+        endpointSettings.setUriTemplate(new UriTemplate("https://api.example.com/activities"));
+
+        NumberRequestParameter pageSizeParameter = new NumberRequestParameter();
+        pageSizeParameter.setParameterName("limit");
+        pageSizeParameter.setRequestParameterLocation(QUERY);
+        pageSizeParameter.setDefaultValue(100d);
+
+        PaginationOffsetNumberRequestParameter offsetParameter = new PaginationOffsetNumberRequestParameter();
+        offsetParameter.setParameterName("page");
+        offsetParameter.setRequestParameterLocation(QUERY);
+        offsetParameter.setPaginationOffsetType(PAGE);
+        offsetParameter.setDefaultValue(1d);
+
+        endpointSettings.setPageSizeParameter(pageSizeParameter);
+        endpointSettings.setPaginationOffsetParameter(offsetParameter);
+
+        DataPointRequest request = new DataPointRequest(endpointSettings);
+
+        assertThat(assemblerChain.createRequestEntity(request).getUrl(),
+                equalTo(URI.create("https://api.example.com/activities?limit=100&page=1")));
+
+        request.setPaginationOffset(3L);
+
+        assertThat(assemblerChain.createRequestEntity(request).getUrl(),
+                equalTo(URI.create("https://api.example.com/activities?limit=100&page=3")));
+    }
+
+    @Test
+    public void createRequestEntityShouldAddBearerToken() {
+
+        endpointSettings.setUriTemplate(new UriTemplate("https://api.example.com/activities"));
+
+        DataPointRequest request = new DataPointRequest(endpointSettings);
+
+        assertThat(assemblerChain.createRequestEntity(request).getHeaders().getFirst("Authorization"),
+                nullValue());
+
+        request.setAccessToken("token");
+
+        assertThat(assemblerChain.createRequestEntity(request).getHeaders().getFirst("Authorization"),
+                equalTo("Bearer token"));
+    }
+}
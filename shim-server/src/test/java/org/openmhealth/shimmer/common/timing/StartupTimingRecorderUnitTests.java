@@ -0,0 +1,47 @@
+/*
+ * Copyright 2017 Open mHealth
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.openmhealth.shimmer.common.timing;
+
+import org.testng.annotations.Test;
+
+import java.time.Duration;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.greaterThanOrEqualTo;
+
+
+public class StartupTimingRecorderUnitTests {
+
+    @Test
+    public void recordReadyShouldOnlyRecordFirstEvent() throws Exception {
+
+        StartupTimingRecorder recorder = new StartupTimingRecorder(System.currentTimeMillis() - 5_000);
+
+        assertThat(recorder.getTimeToReady().isPresent(), equalTo(false));
+
+        recorder.recordReady();
+        Duration timeToReady = recorder.getTimeToReady().get();
+
+        Thread.sleep(10);
+        recorder.recordReady();
+
+        assertThat(timeToReady.toMillis(), greaterThanOrEqualTo(5_000L));
+        assertThat(recorder.getTimeToReady().get(), equalTo(timeToReady));
+    }
+}
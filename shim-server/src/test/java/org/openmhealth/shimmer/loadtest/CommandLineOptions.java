@@ -0,0 +1,56 @@
+/*
+ * Copyright 2017 Open mHealth
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.openmhealth.shimmer.loadtest;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+
+/**
+ * The options passed to the provider simulator and the load driver on the command line, each of the form
+ * {@code --name=value}.
+ */
+public class CommandLineOptions {
+
+    private final Map<String, String> values = new HashMap<>();
+
+    public CommandLineOptions(String... arguments) {
+
+        for (String argument : arguments) {
+            checkArgument(argument.startsWith("--") && argument.contains("="),
+                    "The argument '%s' isn't of the form --name=value.", argument);
+
+            int separatorIndex = argument.indexOf('=');
+
+            values.put(argument.substring(2, separatorIndex), argument.substring(separatorIndex + 1));
+        }
+    }
+
+    public String getString(String name, String defaultValue) {
+        return values.getOrDefault(name, defaultValue);
+    }
+
+    public int getInt(String name, int defaultValue) {
+        return values.containsKey(name) ? Integer.parseInt(values.get(name)) : defaultValue;
+    }
+
+    public double getDouble(String name, double defaultValue) {
+        return values.containsKey(name) ? Double.parseDouble(values.get(name)) : defaultValue;
+    }
+}
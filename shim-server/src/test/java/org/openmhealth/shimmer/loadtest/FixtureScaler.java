@@ -0,0 +1,100 @@
+/*
+ * Copyright 2017 Open mHealth
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.openmhealth.shimmer.loadtest;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+
+/**
+ * Synthetically scales data provider responses used as fixtures, so that the simulator can serve responses as large as
+ * those of heavy users.
+ */
+public class FixtureScaler {
+
+    private FixtureScaler() {
+    }
+
+    /**
+     * Replicates the elements of the largest array in a response, which is the array of measurements in every fixture
+     * of interest. Responses without arrays, e.g. responses keyed by timestamp, are returned as is.
+     *
+     * @param response the response to scale, which is left untouched
+     * @param scaleFactor the number of copies of the elements of the largest array
+     * @return the scaled response
+     */
+    public static JsonNode scale(JsonNode response, int scaleFactor) {
+
+        checkArgument(scaleFactor >= 1, "The scale factor must be at least 1.");
+
+        JsonNode scaledResponse = response.deepCopy();
+
+        if (scaleFactor == 1) {
+            return scaledResponse;
+        }
+
+        ArrayNode largestArray = findLargestArray(scaledResponse, null);
+
+        if (largestArray != null) {
+            List<JsonNode> elements = new ArrayList<>();
+            largestArray.forEach(elements::add);
+
+            for (int i = 1; i < scaleFactor; i++) {
+                elements.forEach(element -> largestArray.add(element.deepCopy()));
+            }
+        }
+
+        return scaledResponse;
+    }
+
+    private static ArrayNode findLargestArray(JsonNode node, ArrayNode largestArray) {
+
+        if (node.isArray() && (largestArray == null || node.size() > largestArray.size())) {
+            largestArray = (ArrayNode) node;
+        }
+
+        for (JsonNode child : node) {
+            largestArray = findLargestArray(child, largestArray);
+        }
+
+        return largestArray;
+    }
+
+    /**
+     * Removes the links to further pages from a response, so that paginated endpoints serve a single page.
+     *
+     * @param response the response to modify in place
+     * @param linkFieldName the name of the fields containing links to further pages
+     */
+    public static void removePageLinks(JsonNode response, String linkFieldName) {
+
+        if (response.isObject()) {
+            ((ObjectNode) response).remove(linkFieldName);
+        }
+
+        for (Iterator<JsonNode> children = response.elements(); children.hasNext(); ) {
+            removePageLinks(children.next(), linkFieldName);
+        }
+    }
+}
@@ -0,0 +1,66 @@
+/*
+ * Copyright 2017 Open mHealth
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.openmhealth.shimmer.loadtest;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+
+public class FixtureScalerUnitTests {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+
+    @Test
+    public void scaleShouldReplicateLargestArray() throws IOException {
+
+        JsonNode response =
+                objectMapper.readTree("{\"tags\":[\"a\"],\"data\":{\"items\":[{\"steps\":1},{\"steps\":2}]}}");
+
+        JsonNode scaledResponse = FixtureScaler.scale(response, 3);
+
+        assertThat(scaledResponse.path("data").path("items").size(), equalTo(6));
+        assertThat(scaledResponse.path("data").path("items").get(5).path("steps").asInt(), equalTo(2));
+        assertThat(scaledResponse.path("tags").size(), equalTo(1));
+        assertThat(response.path("data").path("items").size(), equalTo(2));
+    }
+
+    @Test
+    public void scaleShouldReturnResponsesWithoutArraysAsIs() throws IOException {
+
+        JsonNode response = objectMapper.readTree("{\"series\":{\"1435672010\":{\"steps\":10}}}");
+
+        assertThat(FixtureScaler.scale(response, 3), equalTo(response));
+    }
+
+    @Test
+    public void removePageLinksShouldRemoveNestedLinks() throws IOException {
+
+        JsonNode response =
+                objectMapper.readTree("{\"data\":{\"links\":{\"next\":\"/moves?page_token=1\"},\"size\":1}}");
+
+        FixtureScaler.removePageLinks(response, "next");
+
+        assertThat(response, equalTo(objectMapper.readTree("{\"data\":{\"links\":{},\"size\":1}}")));
+    }
+}
@@ -0,0 +1,113 @@
+/*
+ * Copyright 2017 Open mHealth
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.openmhealth.shimmer.loadtest;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+
+/**
+ * Records the latencies of the requests made during a phase of a load test, and summarises them as throughput and
+ * latency percentiles. Recording is thread safe.
+ */
+public class LatencyRecorder {
+
+    private final String name;
+    private final AtomicInteger failureCount = new AtomicInteger();
+    private long[] latenciesInNanos = new long[1024];
+    private int latencyCount;
+    private long startTimeInNanos;
+    private long endTimeInNanos;
+
+
+    public LatencyRecorder(String name) {
+        this.name = name;
+    }
+
+    public void start() {
+        startTimeInNanos = System.nanoTime();
+    }
+
+    public void stop() {
+        endTimeInNanos = System.nanoTime();
+    }
+
+    /**
+     * @param latencyInNanos the time taken by a request
+     * @param successful whether the request succeeded
+     */
+    public synchronized void record(long latencyInNanos, boolean successful) {
+
+        if (latencyCount == latenciesInNanos.length) {
+            latenciesInNanos = Arrays.copyOf(latenciesInNanos, latencyCount * 2);
+        }
+
+        latenciesInNanos[latencyCount++] = latencyInNanos;
+
+        if (!successful) {
+            failureCount.incrementAndGet();
+        }
+    }
+
+    public synchronized int getRequestCount() {
+        return latencyCount;
+    }
+
+    public int getFailureCount() {
+        return failureCount.get();
+    }
+
+    /**
+     * @return the number of requests completed per second between the start and the end of the phase
+     */
+    public double getThroughput() {
+
+        long elapsedTimeInNanos = endTimeInNanos - startTimeInNanos;
+
+        return elapsedTimeInNanos > 0 ? getRequestCount() * 1e9 / elapsedTimeInNanos : 0;
+    }
+
+    /**
+     * @param percentile a percentile between 0 and 100
+     * @return the latency of the given percentile in milliseconds, using the nearest rank method
+     */
+    public synchronized double getLatencyPercentileInMillis(double percentile) {
+
+        checkArgument(percentile > 0 && percentile <= 100, "The percentile must be in (0, 100].");
+
+        if (latencyCount == 0) {
+            return 0;
+        }
+
+        long[] sortedLatencies = Arrays.copyOf(latenciesInNanos, latencyCount);
+        Arrays.sort(sortedLatencies);
+
+        int rank = (int) Math.ceil(percentile / 100 * latencyCount);
+
+        return sortedLatencies[rank - 1] / 1e6;
+    }
+
+    public String getSummary() {
+
+        return String.format("%-10s requests=%d failures=%d throughput=%.1f/s p50=%.1fms p90=%.1fms p99=%.1fms "
+                        + "max=%.1fms",
+                name, getRequestCount(), getFailureCount(), getThroughput(), getLatencyPercentileInMillis(50),
+                getLatencyPercentileInMillis(90), getLatencyPercentileInMillis(99), getLatencyPercentileInMillis(100));
+    }
+}
@@ -0,0 +1,48 @@
+/*
+ * Copyright 2017 Open mHealth
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.openmhealth.shimmer.loadtest;
+
+import org.testng.annotations.Test;
+
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+
+public class LatencyRecorderUnitTests {
+
+    @Test
+    public void getLatencyPercentileInMillisShouldUseNearestRank() {
+
+        LatencyRecorder recorder = new LatencyRecorder("data");
+
+        for (int latencyInMillis = 100; latencyInMillis >= 1; latencyInMillis--) {
+            recorder.record(latencyInMillis * 1_000_000L, latencyInMillis % 10 != 0);
+        }
+
+        assertThat(recorder.getRequestCount(), equalTo(100));
+        assertThat(recorder.getFailureCount(), equalTo(10));
+        assertThat(recorder.getLatencyPercentileInMillis(50), equalTo(50.0));
+        assertThat(recorder.getLatencyPercentileInMillis(99), equalTo(99.0));
+        assertThat(recorder.getLatencyPercentileInMillis(100), equalTo(100.0));
+    }
+
+    @Test
+    public void getLatencyPercentileInMillisShouldReturnZeroWithoutRequests() {
+
+        assertThat(new LatencyRecorder("data").getLatencyPercentileInMillis(99), equalTo(0.0));
+    }
+}
@@ -0,0 +1,251 @@
+/*
+ * Copyright 2017 Open mHealth
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.openmhealth.shimmer.loadtest;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.apache.http.HttpResponse;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClientBuilder;
+import org.apache.http.util.EntityUtils;
+import org.springframework.web.util.UriComponentsBuilder;
+
+import java.io.IOException;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+
+/**
+ * A load driver that exercises the {@code /authorize} and {@code /data} flows of a running Shimmer instance and
+ * reports their throughput and latency percentiles. Shimmer is expected to be connected to a {@link ProviderSimulator}
+ * and to have client credentials set for every shim under test, which can be arbitrary values.
+ * <p>
+ * The authorization phase authorizes every simulated user with every shim under test, completing each flow by calling
+ * the callback endpoint as the data provider would have redirected the user-agent to. The data phase then spreads
+ * data requests evenly across these users and shims.
+ * <p>
+ * Run it with {@code gradle loadTest}, optionally passing options such as
+ * {@code -Pargs="--shimmer-url=http://localhost:8083 --shims=fitbit,jawbone --users=50 --concurrency=32
+ * --data-requests=5000"}.
+ */
+public class LoadDriver {
+
+    private static final List<String> ALL_SHIM_KEYS = Arrays.asList(
+            "fitbit", "googlefit", "ihealth", "jawbone", "misfit", "moves", "runkeeper", "withings");
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final CloseableHttpClient httpClient;
+    private final String shimmerUrl;
+    private final List<String> shimKeys;
+    private final int userCount;
+    private final int concurrency;
+    private final int dataRequestCount;
+    private final String dateStart;
+    private final String dateEnd;
+
+
+    public LoadDriver(CommandLineOptions options) {
+
+        this.shimmerUrl = options.getString("shimmer-url", "http://localhost:8083");
+        this.shimKeys = Arrays.asList(options.getString("shims", String.join(",", ALL_SHIM_KEYS)).split(","));
+        this.userCount = options.getInt("users", 20);
+        this.concurrency = options.getInt("concurrency", 16);
+        this.dataRequestCount = options.getInt("data-requests", 1000);
+        this.dateStart = options.getString("date-start", "2015-05-01");
+        this.dateEnd = options.getString("date-end", "2015-05-08");
+
+        this.httpClient = HttpClientBuilder.create()
+                .setMaxConnPerRoute(concurrency)
+                .setMaxConnTotal(concurrency)
+                .build();
+    }
+
+    public static void main(String[] args) throws Exception {
+
+        LoadDriver loadDriver = new LoadDriver(new CommandLineOptions(args));
+
+        try {
+            List<LatencyRecorder> recorders = loadDriver.run();
+
+            recorders.forEach(recorder -> System.out.println(recorder.getSummary()));
+        }
+        finally {
+            loadDriver.httpClient.close();
+        }
+    }
+
+    public List<LatencyRecorder> run() throws Exception {
+
+        List<Callable<Boolean>> authorizations = new ArrayList<>();
+
+        for (String shimKey : shimKeys) {
+            for (int userNumber = 0; userNumber < userCount; userNumber++) {
+                String username = getUsername(userNumber);
+
+                authorizations.add(() -> authorize(shimKey, username));
+            }
+        }
+
+        List<Callable<Boolean>> dataRequests = new ArrayList<>();
+
+        for (int i = 0; i < dataRequestCount; i++) {
+            String shimKey = shimKeys.get(i % shimKeys.size());
+            String username = getUsername((i / shimKeys.size()) % userCount);
+
+            dataRequests.add(() -> requestData(shimKey, username));
+        }
+
+        return Arrays.asList(execute("authorize", authorizations), execute("data", dataRequests));
+    }
+
+    private String getUsername(int userNumber) {
+        return "load-test-user-" + userNumber;
+    }
+
+    private LatencyRecorder execute(String phaseName, List<Callable<Boolean>> requests) throws Exception {
+
+        LatencyRecorder recorder = new LatencyRecorder(phaseName);
+        ExecutorService executorService = Executors.newFixedThreadPool(concurrency);
+
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+
+            recorder.start();
+
+            for (Callable<Boolean> request : requests) {
+                futures.add(executorService.submit(() -> {
+
+                    long startTime = System.nanoTime();
+                    boolean successful;
+
+                    try {
+                        successful = request.call();
+                    }
+                    catch (Exception e) {
+                        successful = false;
+                    }
+
+                    recorder.record(System.nanoTime() - startTime, successful);
+                }));
+            }
+
+            for (Future<?> future : futures) {
+                future.get();
+            }
+
+            recorder.stop();
+        }
+        finally {
+            executorService.shutdownNow();
+        }
+
+        return recorder;
+    }
+
+    /**
+     * Initiates an authorization and, unless the user is already authorized, completes it with the callback a data
+     * provider would have redirected the user-agent to.
+     *
+     * @return true if the authorization succeeded
+     */
+    private boolean authorize(String shimKey, String username) throws IOException {
+
+        URI initiationUri = UriComponentsBuilder.fromHttpUrl(shimmerUrl)
+                .path("/authorize/{shimKey}")
+                .queryParam("username", username)
+                .buildAndExpand(shimKey)
+                .encode()
+                .toUri();
+
+        JsonNode authorizationRequest = getJson(initiationUri);
+
+        if (authorizationRequest == null) {
+            return false;
+        }
+        if (authorizationRequest.path("isAuthorized").asBoolean()) {
+            return true;
+        }
+
+        // the code is used by OAuth 2.0 shims, the token, verifier and user identifier by OAuth 1.0a shims
+        URI callbackUri = UriComponentsBuilder.fromHttpUrl(shimmerUrl)
+                .path("/authorize/{shimKey}/callback")
+                .queryParam("state", authorizationRequest.path("stateKey").asText())
+                .queryParam("code", "simulated-code")
+                .queryParam("oauth_token", authorizationRequest.path("requestParams").path("oauth_token").asText())
+                .queryParam("oauth_verifier", "simulated-verifier")
+                .queryParam("userid", "simulated-user")
+                .buildAndExpand(shimKey)
+                .encode()
+                .toUri();
+
+        JsonNode authorizationResponse = getJson(callbackUri);
+
+        return authorizationResponse != null && "AUTHORIZED".equals(authorizationResponse.path("type").asText());
+    }
+
+    /**
+     * @return true if the data request succeeded
+     */
+    private boolean requestData(String shimKey, String username) throws IOException {
+
+        URI dataUri = UriComponentsBuilder.fromHttpUrl(shimmerUrl)
+                .path("/data/{shimKey}/{dataType}")
+                .queryParam("username", username)
+                .queryParam("dateStart", dateStart)
+                .queryParam("dateEnd", dateEnd)
+                .buildAndExpand(shimKey, getDataTypeKey(shimKey))
+                .encode()
+                .toUri();
+
+        return getJson(dataUri) != null;
+    }
+
+    private String getDataTypeKey(String shimKey) {
+
+        // Runkeeper doesn't provide step counts
+        return shimKey.equals("runkeeper") ? "physical_activity" : "step_count";
+    }
+
+    /**
+     * @return the JSON body of a successful response, or null if the request failed
+     */
+    private JsonNode getJson(URI uri) throws IOException {
+
+        HttpGet request = new HttpGet(uri);
+
+        try {
+            HttpResponse response = httpClient.execute(request);
+            byte[] body = EntityUtils.toByteArray(response.getEntity());
+
+            if (response.getStatusLine().getStatusCode() != 200) {
+                return null;
+            }
+
+            return objectMapper.readTree(body);
+        }
+        finally {
+            request.releaseConnection();
+        }
+    }
+}
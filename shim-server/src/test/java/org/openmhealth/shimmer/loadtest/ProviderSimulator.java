@@ -0,0 +1,451 @@
+/*
+ * Copyright 2017 Open mHealth
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.openmhealth.shimmer.loadtest;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Pattern;
+
+import static com.google.common.base.Preconditions.checkState;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+
+/**
+ * A local HTTP server that stands in for the data providers supported by Shimmer, so that Shimmer can be load tested
+ * without calling real data providers. The simulator serves the data provider responses used as fixtures by the
+ * mapper tests, optionally scaled, issues tokens from the OAuth 1.0a and OAuth 2.0 endpoints, and accepts every token
+ * at authorization check endpoints. Each response is
+ * delayed and may fail according to a {@link SimulatorProfile}.
+ * <p>
+ * The simulator doesn't pretend to be each data provider on a separate host. Instead, Shimmer is configured with
+ * {@code openmhealth.shimmer.provider-simulator.url} to connect to the simulator for every data provider request, and
+ * the simulator tells data providers apart using the {@code Host} header. Pages are never linked to further pages.
+ * <p>
+ * Run it with {@code gradle runProviderSimulator}, optionally passing options such as
+ * {@code -Pargs="--port=8090 --latency-in-millis=200 --rate-limit-rate=0.01 --scale-factor=10"}.
+ */
+public class ProviderSimulator {
+
+    private static final Logger logger = LoggerFactory.getLogger(ProviderSimulator.class);
+
+    private static final String FIXTURE_PATH = "/org/openmhealth/shim/%1$s/mapper/%1$s-%2$s.json";
+
+    private final SimulatorProfile profile;
+    private final List<SimulatedEndpoint> endpoints = new ArrayList<>();
+    private final Map<String, byte[]> fixtureBodies = new ConcurrentHashMap<>();
+    private final AtomicLong issuedTokenCount = new AtomicLong();
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private HttpServer server;
+    private ExecutorService executorService;
+
+
+    public ProviderSimulator(SimulatorProfile profile) {
+
+        this.profile = profile;
+
+        addOAuth2Endpoints();
+        addOAuth1Endpoints();
+        addAuthorizationCheckEndpoints();
+        addDataEndpoints();
+    }
+
+    public static void main(String[] args) throws IOException {
+
+        CommandLineOptions options = new CommandLineOptions(args);
+
+        ProviderSimulator simulator = new ProviderSimulator(SimulatorProfile.fromOptions(options));
+        simulator.start(options.getInt("port", 8090));
+
+        Runtime.getRuntime().addShutdownHook(new Thread(simulator::stop));
+    }
+
+    private void addOAuth2Endpoints() {
+
+        addExactEndpoint("api.fitbit.com", "/oauth2/token", this::newOAuth2TokenResponse);
+        addExactEndpoint("accounts.google.com", "/o/oauth2/token", this::newOAuth2TokenResponse);
+        addExactEndpoint("jawbone.com", "/auth/oauth2/token", this::newOAuth2TokenResponse);
+        addExactEndpoint("api.misfitwearables.com", "/auth/tokens/exchange", this::newOAuth2TokenResponse);
+        addExactEndpoint("api.moves-app.com", "/oauth/v1/access_token", this::newOAuth2TokenResponse);
+        addExactEndpoint("runkeeper.com", "/apps/token", this::newOAuth2TokenResponse);
+
+        // iHealth uses its own token response format, and the same endpoint path on the sandbox
+        addExactEndpoint("api.ihealthlabs.com", "/OpenApiV2/OAuthv2/userauthorization/", this::newIHealthTokenResponse);
+        addExactEndpoint("sandboxapi.ihealthlabs.com", "/OpenApiV2/OAuthv2/userauthorization/",
+                this::newIHealthTokenResponse);
+    }
+
+    private void addOAuth1Endpoints() {
+
+        addExactEndpoint("developer.health.nokia.com", "/account/request_token", this::newOAuth1TokenResponse);
+        addExactEndpoint("developer.health.nokia.com", "/account/access_token", this::newOAuth1TokenResponse);
+    }
+
+    private void addAuthorizationCheckEndpoints() {
+
+        addExactEndpoint("api.fitbit.com", "/1/user/-/activities/goals/daily.json", this::newEmptyJsonResponse);
+        addExactEndpoint("jawbone.com", "/nudge/api/v.1.1/users/@me", this::newEmptyJsonResponse);
+        addExactEndpoint("api.misfitwearables.com", "/move/resource/v1/user/me/profile", this::newEmptyJsonResponse);
+        addExactEndpoint("api.moves-app.com", "/api/1.1/user/profile", this::newEmptyJsonResponse);
+    }
+
+    private void addDataEndpoints() {
+
+        String fitbitPrefix = "/1/user/-/";
+        addFixtureEndpoint("fitbit", "api.fitbit.com", fitbitPrefix + "activities/steps/date/[^/]+/1d/.*",
+                "activities-steps-1d-1m-intraday");
+        addFixtureEndpoint("fitbit", "api.fitbit.com", fitbitPrefix + "activities/heart/date/.*",
+                "activities-heart-1d-1m-intraday");
+        addFixtureEndpoint("fitbit", "api.fitbit.com", fitbitPrefix + "activities/steps/date/.*",
+                "activities-steps-timeseries");
+        addFixtureEndpoint("fitbit", "api.fitbit.com", fitbitPrefix + "activities/date/.*",
+                "activities-date-multiple-in-activities-list");
+        addFixtureEndpoint("fitbit", "api.fitbit.com", fitbitPrefix + "body/log/weight/date/.*", "body-log-weight");
+        addFixtureEndpoint("fitbit", "api.fitbit.com", "/1\\.2/user/-/sleep/date/[^/]+/[^/]+\\.json.*",
+                "sleep-date-range");
+        addFixtureEndpoint("fitbit", "api.fitbit.com", "/1\\.2/user/-/sleep/date/.*", "sleep-date");
+
+        String googleFitPrefix = "/fitness/v1/users/me/dataSources/derived:com\\.google\\.";
+        addFixtureEndpoint("googlefit", "www.googleapis.com", googleFitPrefix + "height:.*", "merge-height");
+        addFixtureEndpoint("googlefit", "www.googleapis.com", googleFitPrefix + "weight:.*", "merge-weight");
+        addFixtureEndpoint("googlefit", "www.googleapis.com", googleFitPrefix + "calories\\.expended:.*",
+                "merge-calories-expended");
+        addFixtureEndpoint("googlefit", "www.googleapis.com", googleFitPrefix + "location\\.sample:.*",
+                "merge-location-samples");
+        addFixtureEndpoint("googlefit", "www.googleapis.com", googleFitPrefix + "heart_rate\\.bpm:.*",
+                "merge-heart-rate");
+        addFixtureEndpoint("googlefit", "www.googleapis.com", googleFitPrefix + "activity\\.segment:.*",
+                "merge-activity-segments");
+        addFixtureEndpoint("googlefit", "www.googleapis.com", googleFitPrefix + "speed:.*", "merge-speed");
+        addFixtureEndpoint("googlefit", "www.googleapis.com", googleFitPrefix + "step_count\\.delta:.*",
+                "merge-step-deltas");
+
+        for (String endpoint : new String[] {"activity", "bp", "glucose", "sleep", "spo2", "sport", "weight"}) {
+            String pathPattern = "/OpenApiV2/user/[^/]+/" + endpoint + "\\.json.*";
+
+            addFixtureEndpoint("ihealth", "api.ihealthlabs.com", pathPattern, endpoint);
+            addFixtureEndpoint("ihealth", "sandboxapi.ihealthlabs.com", pathPattern, endpoint);
+        }
+
+        String jawbonePrefix = "/nudge/api/v\\.1\\.1/users/[^/]+/";
+        addFixtureEndpoint("jawbone", "jawbone.com", jawbonePrefix + "body_events.*", "body-events");
+        addFixtureEndpoint("jawbone", "jawbone.com", jawbonePrefix + "heartrates.*", "heartrates");
+        addFixtureEndpoint("jawbone", "jawbone.com", jawbonePrefix + "moves.*", "moves");
+        addFixtureEndpoint("jawbone", "jawbone.com", jawbonePrefix + "sleeps.*", "sleeps");
+        addFixtureEndpoint("jawbone", "jawbone.com", jawbonePrefix + "workouts.*", "workouts");
+
+        String misfitPrefix = "/move/resource/v1/user/me/activity/";
+        addFixtureEndpoint("misfit", "api.misfitwearables.com", misfitPrefix + "sessions.*", "sessions");
+        addFixtureEndpoint("misfit", "api.misfitwearables.com", misfitPrefix + "sleeps.*", "sleeps");
+        addFixtureEndpoint("misfit", "api.misfitwearables.com", misfitPrefix + "summary.*", "detailed-summaries");
+
+        addFixtureEndpoint("moves", "api.moves-app.com", "/api/1\\.1/user/storyline/daily.*",
+                "user-storyline-daily");
+
+        addFixtureEndpoint("runkeeper", "api.runkeeper.com", "/fitnessActivities.*", "fitness-activities");
+
+        addFixtureEndpoint("withings", "api.health.nokia.com", "/measure\\?.*action=getmeas.*", "body-measures");
+        addFixtureEndpoint("withings", "api.health.nokia.com", "/v2/measure\\?.*action=getintradayactivity.*",
+                "intraday-activity");
+        addFixtureEndpoint("withings", "api.health.nokia.com", "/v2/measure\\?.*action=getactivity.*",
+                "activity-measures");
+        addFixtureEndpoint("withings", "api.health.nokia.com", "/v2/sleep\\?.*action=getsummary.*",
+                "sleep-summary");
+    }
+
+    private void addExactEndpoint(String host, String path, ResponseFactory responseFactory) {
+        endpoints.add(new SimulatedEndpoint(host, Pattern.compile(Pattern.quote(path) + "(\\?.*)?"), responseFactory));
+    }
+
+    private void addFixtureEndpoint(String shimKey, String host, String pathAndQueryPattern, String fixtureName) {
+
+        String fixturePath = String.format(FIXTURE_PATH, shimKey, fixtureName);
+
+        endpoints.add(new SimulatedEndpoint(host, Pattern.compile(pathAndQueryPattern),
+                () -> new SimulatedResponse(200, "application/json", getFixtureBody(fixturePath))));
+    }
+
+    private byte[] getFixtureBody(String fixturePath) {
+
+        return fixtureBodies.computeIfAbsent(fixturePath, path -> {
+
+            try (InputStream inputStream = ProviderSimulator.class.getResourceAsStream(path)) {
+                checkState(inputStream != null, "The fixture '%s' doesn't exist.", path);
+
+                JsonNode fixture = FixtureScaler.scale(objectMapper.readTree(inputStream), profile.getScaleFactor());
+                FixtureScaler.removePageLinks(fixture, "next");
+
+                return objectMapper.writeValueAsBytes(fixture);
+            }
+            catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+    }
+
+    private SimulatedResponse newOAuth2TokenResponse() {
+
+        long tokenNumber = issuedTokenCount.incrementAndGet();
+
+        ObjectNode token = objectMapper.createObjectNode()
+                .put("access_token", "simulated-access-token-" + tokenNumber)
+                .put("refresh_token", "simulated-refresh-token-" + tokenNumber)
+                .put("token_type", "Bearer")
+                .put("expires_in", 3600)
+                .put("user_id", "SIMULATED");
+
+        return newJsonResponse(token);
+    }
+
+    private SimulatedResponse newIHealthTokenResponse() {
+
+        long tokenNumber = issuedTokenCount.incrementAndGet();
+
+        ObjectNode token = objectMapper.createObjectNode()
+                .put("AccessToken", "simulated-access-token-" + tokenNumber)
+                .put("RefreshToken", "simulated-refresh-token-" + tokenNumber)
+                .put("UserID", "simulated-user")
+                .put("Expires", 3600);
+
+        return newJsonResponse(token);
+    }
+
+    private SimulatedResponse newOAuth1TokenResponse() {
+
+        long tokenNumber = issuedTokenCount.incrementAndGet();
+
+        String token = "oauth_token=simulated-token-" + tokenNumber
+                + "&oauth_token_secret=simulated-token-secret-" + tokenNumber;
+
+        return new SimulatedResponse(200, "application/x-www-form-urlencoded", token.getBytes(UTF_8));
+    }
+
+    private SimulatedResponse newEmptyJsonResponse() {
+
+        return newJsonResponse(objectMapper.createObjectNode());
+    }
+
+    private SimulatedResponse newJsonResponse(JsonNode body) {
+
+        try {
+            return new SimulatedResponse(200, "application/json", objectMapper.writeValueAsBytes(body));
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Starts serving requests.
+     *
+     * @param port the port to listen on, or 0 to listen on any free port
+     */
+    public void start(int port) throws IOException {
+
+        checkState(server == null, "The simulator has already been started.");
+
+        // a thread per concurrent request, since requests spend most of their time sleeping to simulate latency
+        executorService = Executors.newCachedThreadPool();
+
+        server = HttpServer.create(new InetSocketAddress("localhost", port), 1024);
+        server.setExecutor(executorService);
+        server.createContext("/", this::handle);
+        server.start();
+
+        logger.info("The provider simulator is listening on port {}.", getPort());
+    }
+
+    public int getPort() {
+
+        checkState(server != null, "The simulator hasn't been started.");
+
+        return server.getAddress().getPort();
+    }
+
+    public void stop() {
+
+        if (server != null) {
+            server.stop(0);
+            executorService.shutdownNow();
+            server = null;
+        }
+    }
+
+    /**
+     * @param host the host the request is addressed to, without a port
+     * @param pathAndQuery the path of the request, including its query string if any
+     * @return the response to the request, after simulating latency and faults
+     */
+    SimulatedResponse respond(String host, String pathAndQuery) {
+
+        simulateLatency();
+
+        double faultSample = ThreadLocalRandom.current().nextDouble();
+
+        if (faultSample < profile.getRateLimitRate()) {
+            return new SimulatedResponse(429, "application/json", "{\"error\":\"rate_limited\"}".getBytes(UTF_8));
+        }
+        if (faultSample < profile.getRateLimitRate() + profile.getErrorRate()) {
+            return new SimulatedResponse(503, "application/json", "{\"error\":\"unavailable\"}".getBytes(UTF_8));
+        }
+
+        for (SimulatedEndpoint endpoint : endpoints) {
+            if (endpoint.matches(host, pathAndQuery)) {
+                return endpoint.getResponseFactory().newResponse();
+            }
+        }
+
+        logger.warn("The request to '{}{}' doesn't match any simulated endpoint.", host, pathAndQuery);
+
+        return new SimulatedResponse(404, "application/json", "{\"error\":\"not_found\"}".getBytes(UTF_8));
+    }
+
+    private void simulateLatency() {
+
+        int latencyInMillis = profile.getLatencyInMillis();
+
+        if (profile.getLatencyJitterInMillis() > 0) {
+            latencyInMillis += ThreadLocalRandom.current().nextInt(profile.getLatencyJitterInMillis() + 1);
+        }
+
+        if (latencyInMillis > 0) {
+            try {
+                Thread.sleep(latencyInMillis);
+            }
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+
+        try (InputStream requestBody = exchange.getRequestBody()) {
+
+            // drain the request body so the connection can be reused
+            while (requestBody.read() != -1) {
+                // ignore the body, e.g. token request forms
+            }
+
+            String host = exchange.getRequestHeaders().getFirst("Host");
+            host = host == null ? "" : host.replaceFirst(":\\d+$", "");
+
+            String pathAndQuery = exchange.getRequestURI().getRawPath();
+
+            if (exchange.getRequestURI().getRawQuery() != null) {
+                pathAndQuery += "?" + exchange.getRequestURI().getRawQuery();
+            }
+
+            SimulatedResponse response = respond(host, pathAndQuery);
+
+            exchange.getResponseHeaders().set("Content-Type", response.getContentType());
+
+            if (response.getStatusCode() == 429) {
+                exchange.getResponseHeaders().set("Retry-After", "1");
+            }
+
+            exchange.sendResponseHeaders(response.getStatusCode(), response.getBody().length);
+
+            try (OutputStream responseBody = exchange.getResponseBody()) {
+                responseBody.write(response.getBody());
+            }
+        }
+        catch (RuntimeException e) {
+            logger.error("The simulator couldn't respond to a request.", e);
+            exchange.sendResponseHeaders(500, -1);
+        }
+        finally {
+            exchange.close();
+        }
+    }
+
+
+    @FunctionalInterface
+    interface ResponseFactory {
+
+        SimulatedResponse newResponse();
+    }
+
+
+    static class SimulatedEndpoint {
+
+        private final String host;
+        private final Pattern pathAndQueryPattern;
+        private final ResponseFactory responseFactory;
+
+        SimulatedEndpoint(String host, Pattern pathAndQueryPattern, ResponseFactory responseFactory) {
+
+            this.host = host;
+            this.pathAndQueryPattern = pathAndQueryPattern;
+            this.responseFactory = responseFactory;
+        }
+
+        boolean matches(String host, String pathAndQuery) {
+            return this.host.equals(host) && pathAndQueryPattern.matcher(pathAndQuery).matches();
+        }
+
+        ResponseFactory getResponseFactory() {
+            return responseFactory;
+        }
+    }
+
+
+    static class SimulatedResponse {
+
+        private final int statusCode;
+        private final String contentType;
+        private final byte[] body;
+
+        SimulatedResponse(int statusCode, String contentType, byte[] body) {
+
+            this.statusCode = statusCode;
+            this.contentType = contentType;
+            this.body = body;
+        }
+
+        int getStatusCode() {
+            return statusCode;
+        }
+
+        String getContentType() {
+            return contentType;
+        }
+
+        byte[] getBody() {
+            return body;
+        }
+    }
+}
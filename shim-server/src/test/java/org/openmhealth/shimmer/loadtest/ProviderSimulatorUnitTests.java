@@ -0,0 +1,122 @@
+/*
+ * Copyright 2017 Open mHealth
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.openmhealth.shimmer.loadtest;
+
+import org.testng.annotations.Test;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.hamcrest.CoreMatchers.containsString;
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+
+public class ProviderSimulatorUnitTests {
+
+    @Test
+    public void respondShouldServeFixtures() {
+
+        ProviderSimulator simulator = new ProviderSimulator(new SimulatorProfile(0, 0, 0, 0, 1));
+
+        ProviderSimulator.SimulatedResponse response = simulator.respond("api.health.nokia.com",
+                "/measure?action=getmeas&userid=1&startdate=1435672010&enddate=1435758410");
+
+        assertThat(response.getStatusCode(), equalTo(200));
+        assertThat(new String(response.getBody(), UTF_8), containsString("measuregrps"));
+    }
+
+    @Test
+    public void respondShouldIssueOAuth2Tokens() {
+
+        ProviderSimulator simulator = new ProviderSimulator(new SimulatorProfile(0, 0, 0, 0, 1));
+
+        ProviderSimulator.SimulatedResponse response = simulator.respond("api.fitbit.com", "/oauth2/token");
+
+        assertThat(response.getStatusCode(), equalTo(200));
+        assertThat(new String(response.getBody(), UTF_8),
+                containsString("\"access_token\":\"simulated-access-token-1\""));
+    }
+
+    @Test
+    public void respondShouldRateLimit() {
+
+        ProviderSimulator simulator = new ProviderSimulator(new SimulatorProfile(0, 0, 0, 1, 1));
+
+        assertThat(simulator.respond("api.runkeeper.com", "/fitnessActivities").getStatusCode(), equalTo(429));
+    }
+
+    @Test
+    public void respondShouldFail() {
+
+        ProviderSimulator simulator = new ProviderSimulator(new SimulatorProfile(0, 0, 1, 0, 1));
+
+        assertThat(simulator.respond("api.runkeeper.com", "/fitnessActivities").getStatusCode(), equalTo(503));
+    }
+
+    @Test
+    public void everyFixtureShouldExist() {
+
+        ProviderSimulator simulator = new ProviderSimulator(new SimulatorProfile(0, 0, 0, 0, 1));
+
+        // one request per simulated data endpoint
+        String[][] requests = {
+                {"api.fitbit.com", "/1/user/-/activities/steps/date/2015-05-01/1d/1min.json"},
+                {"api.fitbit.com", "/1/user/-/activities/heart/date/2015-05-01/1d/1min.json"},
+                {"api.fitbit.com", "/1/user/-/activities/steps/date/2015-05-01/2015-05-03.json"},
+                {"api.fitbit.com", "/1/user/-/activities/date/2015-05-01.json"},
+                {"api.fitbit.com", "/1/user/-/body/log/weight/date/2015-05-01/2015-05-03.json"},
+                {"api.fitbit.com", "/1.2/user/-/sleep/date/2015-05-01/2015-05-03.json"},
+                {"api.fitbit.com", "/1.2/user/-/sleep/date/2015-05-01.json"},
+                {"www.googleapis.com", "/fitness/v1/users/me/dataSources/derived:com.google.height:x/datasets/1-2"},
+                {"www.googleapis.com", "/fitness/v1/users/me/dataSources/derived:com.google.weight:x/datasets/1-2"},
+                {"www.googleapis.com",
+                        "/fitness/v1/users/me/dataSources/derived:com.google.calories.expended:x/datasets/1-2"},
+                {"www.googleapis.com",
+                        "/fitness/v1/users/me/dataSources/derived:com.google.location.sample:x/datasets/1-2"},
+                {"www.googleapis.com",
+                        "/fitness/v1/users/me/dataSources/derived:com.google.heart_rate.bpm:x/datasets/1-2"},
+                {"www.googleapis.com",
+                        "/fitness/v1/users/me/dataSources/derived:com.google.activity.segment:x/datasets/1-2"},
+                {"www.googleapis.com", "/fitness/v1/users/me/dataSources/derived:com.google.speed:x/datasets/1-2"},
+                {"www.googleapis.com",
+                        "/fitness/v1/users/me/dataSources/derived:com.google.step_count.delta:x/datasets/1-2"},
+                {"api.ihealthlabs.com", "/OpenApiV2/user/1/activity.json?sc=x"},
+                {"api.ihealthlabs.com", "/OpenApiV2/user/1/bp.json?sc=x"},
+                {"api.ihealthlabs.com", "/OpenApiV2/user/1/glucose.json?sc=x"},
+                {"api.ihealthlabs.com", "/OpenApiV2/user/1/sleep.json?sc=x"},
+                {"api.ihealthlabs.com", "/OpenApiV2/user/1/spo2.json?sc=x"},
+                {"api.ihealthlabs.com", "/OpenApiV2/user/1/sport.json?sc=x"},
+                {"api.ihealthlabs.com", "/OpenApiV2/user/1/weight.json?sc=x"},
+                {"jawbone.com", "/nudge/api/v.1.1/users/@me/body_events?limit=100"},
+                {"jawbone.com", "/nudge/api/v.1.1/users/@me/heartrates?limit=100"},
+                {"jawbone.com", "/nudge/api/v.1.1/users/@me/moves?limit=100"},
+                {"jawbone.com", "/nudge/api/v.1.1/users/@me/sleeps?limit=100"},
+                {"jawbone.com", "/nudge/api/v.1.1/users/@me/workouts?limit=100"},
+                {"api.misfitwearables.com", "/move/resource/v1/user/me/activity/sessions?start_date=2015-05-01"},
+                {"api.misfitwearables.com", "/move/resource/v1/user/me/activity/sleeps?start_date=2015-05-01"},
+                {"api.misfitwearables.com", "/move/resource/v1/user/me/activity/summary?start_date=2015-05-01"},
+                {"api.moves-app.com", "/api/1.1/user/storyline/daily?from=2015-05-01"},
+                {"api.runkeeper.com", "/fitnessActivities?pageSize=100"},
+                {"api.health.nokia.com", "/v2/measure?action=getintradayactivity&userid=1"},
+                {"api.health.nokia.com", "/v2/measure?action=getactivity&userid=1"},
+                {"api.health.nokia.com", "/v2/sleep?action=getsummary&userid=1"},
+        };
+
+        for (String[] request : requests) {
+            assertThat(request[1], simulator.respond(request[0], request[1]).getStatusCode(), equalTo(200));
+        }
+    }
+}
@@ -0,0 +1,86 @@
+/*
+ * Copyright 2017 Open mHealth
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.openmhealth.shimmer.loadtest;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+
+/**
+ * The behaviour of a provider simulator, i.e. how slowly and how reliably it responds, and how large the responses it
+ * serves are.
+ */
+public class SimulatorProfile {
+
+    private final int latencyInMillis;
+    private final int latencyJitterInMillis;
+    private final double errorRate;
+    private final double rateLimitRate;
+    private final int scaleFactor;
+
+    /**
+     * @param latencyInMillis the minimum time taken to respond
+     * @param latencyJitterInMillis the maximum random time added to the minimum time taken to respond
+     * @param errorRate the fraction of requests that fail with a 503
+     * @param rateLimitRate the fraction of requests that are rejected with a 429
+     * @param scaleFactor the number of times the largest array in each fixture is replicated
+     */
+    public SimulatorProfile(int latencyInMillis, int latencyJitterInMillis, double errorRate, double rateLimitRate,
+            int scaleFactor) {
+
+        checkArgument(latencyInMillis >= 0, "The latency is negative.");
+        checkArgument(latencyJitterInMillis >= 0, "The latency jitter is negative.");
+        checkArgument(errorRate >= 0 && rateLimitRate >= 0 && errorRate + rateLimitRate <= 1,
+                "The error and rate limit rates must be fractions that sum to at most 1.");
+        checkArgument(scaleFactor >= 1, "The scale factor must be at least 1.");
+
+        this.latencyInMillis = latencyInMillis;
+        this.latencyJitterInMillis = latencyJitterInMillis;
+        this.errorRate = errorRate;
+        this.rateLimitRate = rateLimitRate;
+        this.scaleFactor = scaleFactor;
+    }
+
+    public static SimulatorProfile fromOptions(CommandLineOptions options) {
+
+        return new SimulatorProfile(
+                options.getInt("latency-in-millis", 100),
+                options.getInt("latency-jitter-in-millis", 50),
+                options.getDouble("error-rate", 0),
+                options.getDouble("rate-limit-rate", 0),
+                options.getInt("scale-factor", 1));
+    }
+
+    public int getLatencyInMillis() {
+        return latencyInMillis;
+    }
+
+    public int getLatencyJitterInMillis() {
+        return latencyJitterInMillis;
+    }
+
+    public double getErrorRate() {
+        return errorRate;
+    }
+
+    public double getRateLimitRate() {
+        return rateLimitRate;
+    }
+
+    public int getScaleFactor() {
+        return scaleFactor;
+    }
+}